@@ -0,0 +1,53 @@
+package com.loantrackr.benchmark;
+
+import com.loantrackr.security.jwt.JwtUtil;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token issue on login and validation on every authenticated request.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtUtilBenchmark {
+
+    private static final String USERNAME = "borrower.one";
+
+    private JwtUtil jwtUtil;
+    private Map<String, Object> claims;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", "benchmark-secret-key-that-is-at-least-32-chars");
+        ReflectionTestUtils.setField(jwtUtil, "jwtExpirationMs", 900_000L);
+        jwtUtil.init();
+
+        // Same claim set as UserService issues on login
+        claims = Map.of(
+                "id", 42L,
+                "email", "borrower.one@example.com",
+                "isVerified", true,
+                "isEmailVerified", true,
+                "roles", "BORROWER");
+        token = jwtUtil.generateToken(USERNAME, claims);
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtUtil.generateToken(USERNAME, claims);
+    }
+
+    @Benchmark
+    public boolean isTokenValid() {
+        return jwtUtil.isTokenValid(token, USERNAME);
+    }
+}
@@ -0,0 +1,54 @@
+package com.loantrackr.benchmark;
+
+import com.loantrackr.enums.CalculatorEngine;
+import com.loantrackr.service.LoanCalculatorService;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * EMI / total interest / total payable as used by EMI previews, applications and disbursement.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoanCalculatorBenchmark {
+
+    @Param({"BIG_DECIMAL", "FIXED_POINT"})
+    private CalculatorEngine engine;
+
+    @Param({"6", "24", "84", "360"})
+    private int tenure;
+
+    private LoanCalculatorService calculator;
+    private BigDecimal principal;
+    private BigDecimal annualRate;
+    private BigDecimal emi;
+
+    @Setup
+    public void setUp() {
+        calculator = new LoanCalculatorService(engine);
+        principal = new BigDecimal("250000.00");
+        annualRate = new BigDecimal("14.5");
+        emi = calculator.calculateEMI(principal, annualRate, tenure);
+    }
+
+    @Benchmark
+    public BigDecimal calculateEMI() {
+        return calculator.calculateEMI(principal, annualRate, tenure);
+    }
+
+    @Benchmark
+    public BigDecimal calculateTotalInterest() {
+        return calculator.calculateTotalInterest(emi, principal, tenure);
+    }
+
+    @Benchmark
+    public BigDecimal calculateTotalPayable() {
+        return calculator.calculateTotalPayable(emi, tenure);
+    }
+}
@@ -0,0 +1,277 @@
+package com.loantrackr.benchmark;
+
+import com.loantrackr.LoanTrackrApplication;
+import com.loantrackr.dto.request.PaymentRequest;
+import com.loantrackr.enums.AuthProvider;
+import com.loantrackr.enums.LoanStatus;
+import com.loantrackr.enums.PaymentMethod;
+import com.loantrackr.enums.PaymentStatus;
+import com.loantrackr.enums.Role;
+import com.loantrackr.exception.GatewayUnavailableException;
+import com.loantrackr.model.LenderProfile;
+import com.loantrackr.model.Loan;
+import com.loantrackr.model.LoanApplication;
+import com.loantrackr.model.User;
+import com.loantrackr.repository.LoanRepository;
+import com.loantrackr.service.LoanCalculatorService;
+import com.loantrackr.service.LoanService;
+import com.loantrackr.service.RepaymentScheduleService;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test: a burst of concurrent repayments through {@link LoanService#makePayment}, the whole
+ * request path (payment gate, schedule reads, gateway bulkhead and timeout, posting), served the
+ * way Tomcat would serve them with platform threads (a pool of server.tomcat.threads.max = 200)
+ * or with spring.threads.virtual.enabled (a virtual thread per request). Each invocation is one
+ * whole burst, one payment per loan; calls per second = concurrentCalls / score.
+ * <p>
+ * The application starts as configured, so it needs the DATABASE_* and REDIS_* variables; point
+ * them at a disposable database, as each fork seeds {@code concurrentCalls} disbursed loans. After
+ * every burst the peak Hikari pool use and threads waiting for a connection, the peak bulkhead
+ * permits held and the calls the bulkhead or the pool turned away are printed with the outcomes.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PaymentConcurrencyBenchmark {
+
+    private static final int TOMCAT_MAX_THREADS = 200;
+    private static final int TENURE = 12; // Covers warmup and measurement bursts, one installment each
+    private static final long SAMPLE_INTERVAL_MS = 5;
+
+    @Param({"PLATFORM", "VIRTUAL"})
+    private String threading;
+
+    @Param({"2000"})
+    private int concurrentCalls;
+
+    private ConfigurableApplicationContext context;
+    private ExecutorService executor;
+    private List<Callable<Outcome>> calls;
+
+    private HikariPoolMXBean pool;
+    private int poolSize;
+    private Gauge bulkheadInFlight;
+    private int bulkheadPermits;
+    private Counter bulkheadRejected;
+    private Counter connectionTimeouts;
+
+    private volatile boolean sampling;
+    private Thread sampler;
+    private int peakActiveConnections;
+    private int peakAwaitingConnection;
+    private int peakInFlight;
+    private double rejectedBefore;
+    private double timeoutsBefore;
+    private Map<Outcome, Integer> outcomes;
+
+    private enum Outcome { PAID, PENDING, DECLINED, BULKHEAD_OR_CIRCUIT, OTHER }
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        boolean virtual = "VIRTUAL".equals(threading);
+        context = new SpringApplicationBuilder(LoanTrackrApplication.class)
+                .properties("spring.threads.virtual.enabled=" + virtual,
+                        "server.port=0",
+                        "spring.jpa.show-sql=false",
+                        "spring.main.keep-alive=false")
+                .run();
+        executor = virtual
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(TOMCAT_MAX_THREADS);
+
+        HikariDataSource dataSource = context.getBean(DataSource.class).unwrap(HikariDataSource.class);
+        pool = dataSource.getHikariPoolMXBean();
+        poolSize = dataSource.getMaximumPoolSize();
+        MeterRegistry registry = context.getBean(MeterRegistry.class);
+        bulkheadInFlight = registry.get("payment.gateway.in.flight").tag("operation", "payment").gauge();
+        bulkheadPermits = context.getEnvironment().getProperty("payment.gateway.payment.max-concurrent", Integer.class, 64);
+        bulkheadRejected = registry.get("payment.gateway.rejected").tag("operation", "payment").tag("reason", "bulkhead_full").counter();
+        connectionTimeouts = registry.find("hikaricp.connections.timeout").counter();
+
+        LoanService loanService = context.getBean(LoanService.class);
+        calls = new ArrayList<>(concurrentCalls);
+        for (Loan loan : seedLoans()) {
+            PaymentRequest request = PaymentRequest.builder()
+                    .amount(loan.getEmiAmount())
+                    .paymentMethod(PaymentMethod.UPI)
+                    .build();
+            Long loanId = loan.getId();
+            calls.add(() -> pay(loanService, loanId, request));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+        context.close();
+    }
+
+    @Setup(Level.Iteration)
+    public void startSampling() {
+        peakActiveConnections = 0;
+        peakAwaitingConnection = 0;
+        peakInFlight = 0;
+        rejectedBefore = bulkheadRejected.count();
+        timeoutsBefore = connectionTimeouts != null ? connectionTimeouts.count() : 0;
+        sampling = true;
+        sampler = Thread.ofPlatform().daemon().start(() -> {
+            while (sampling) {
+                peakActiveConnections = Math.max(peakActiveConnections, pool.getActiveConnections());
+                peakAwaitingConnection = Math.max(peakAwaitingConnection, pool.getThreadsAwaitingConnection());
+                peakInFlight = Math.max(peakInFlight, (int) bulkheadInFlight.value());
+                try {
+                    Thread.sleep(SAMPLE_INTERVAL_MS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+    }
+
+    @TearDown(Level.Iteration)
+    public void report() throws InterruptedException {
+        sampling = false;
+        sampler.join();
+        System.out.printf("%n[%s] outcomes %s; Hikari peak active %d/%d, peak waiting %d, connection timeouts %.0f; "
+                        + "bulkhead peak in flight %d/%d, rejected %.0f%n",
+                threading, outcomes, peakActiveConnections, poolSize, peakAwaitingConnection,
+                (connectionTimeouts != null ? connectionTimeouts.count() : 0) - timeoutsBefore,
+                peakInFlight, bulkheadPermits, bulkheadRejected.count() - rejectedBefore);
+    }
+
+    @Benchmark
+    public int paymentBurst() throws Exception {
+        Map<Outcome, Integer> counts = new EnumMap<>(Outcome.class);
+        for (Future<Outcome> result : executor.invokeAll(calls)) {
+            counts.merge(result.get(), 1, Integer::sum);
+        }
+        outcomes = counts;
+        return counts.getOrDefault(Outcome.PAID, 0);
+    }
+
+    private static Outcome pay(LoanService loanService, Long loanId, PaymentRequest request) {
+        try {
+            PaymentStatus status = loanService.makePayment(loanId, request).getStatus();
+            return status == PaymentStatus.SUCCESS ? Outcome.PAID
+                    : status == PaymentStatus.PENDING ? Outcome.PENDING
+                    : Outcome.DECLINED;
+        } catch (GatewayUnavailableException e) {
+            return Outcome.BULKHEAD_OR_CIRCUIT;
+        } catch (RuntimeException e) {
+            return Outcome.OTHER; // Collected but not posted, or a database error
+        }
+    }
+
+    /**
+     * One lender and, per call, a borrower with a disbursed loan and its schedule.
+     */
+    private List<Loan> seedLoans() {
+        EntityManager entityManager = context.getBean(EntityManager.class);
+        LoanRepository loanRepository = context.getBean(LoanRepository.class);
+        RepaymentScheduleService scheduleService = context.getBean(RepaymentScheduleService.class);
+        LoanCalculatorService loanCalculator = context.getBean(LoanCalculatorService.class);
+        String run = Long.toString(System.nanoTime(), 36);
+
+        return new TransactionTemplate(context.getBean(PlatformTransactionManager.class)).execute(status -> {
+            LenderProfile lender = LenderProfile.builder()
+                    .user(persistUser(entityManager, "bench-lender-" + run, Role.LENDER))
+                    .gstin("GST" + run)
+                    .rbiLicenseNumber("RBI" + run)
+                    .organizationName("Benchmark Finance")
+                    .isVerified(true)
+                    .interestRate(new BigDecimal("12.00"))
+                    .processingFee(new BigDecimal("500.00"))
+                    .supportedTenures(String.valueOf(TENURE))
+                    .build();
+            entityManager.persist(lender);
+
+            BigDecimal principal = new BigDecimal("50000.00");
+            BigDecimal emi = loanCalculator.calculateEMI(principal, lender.getInterestRate(), TENURE);
+            BigDecimal total = loanCalculator.calculateTotalPayable(emi, TENURE);
+            BigDecimal interest = loanCalculator.calculateTotalInterest(emi, principal, TENURE);
+            LocalDate firstDueDate = LocalDate.now().plusMonths(1);
+
+            List<Loan> loans = new ArrayList<>(concurrentCalls);
+            for (int i = 0; i < concurrentCalls; i++) {
+                LoanApplication application = new LoanApplication();
+                application.setUser(persistUser(entityManager, "bench-" + run + "-" + i, Role.BORROWER));
+                application.setLender(lender);
+                application.setLoanRequested(principal);
+                application.setInterestRate(lender.getInterestRate());
+                application.setProcessingFee(lender.getProcessingFee());
+                application.setTenure(TENURE);
+                application.setEmiAmount(emi);
+                application.setStatus(LoanStatus.DISBURSED);
+                application.setPurpose("Benchmark");
+                application.setIncomeSource("Salary");
+                application.setMonthlyIncome(new BigDecimal("60000.00"));
+                entityManager.persist(application);
+
+                Loan loan = loanRepository.save(Loan.builder()
+                        .loanApplication(application)
+                        .borrower(application.getUser())
+                        .lender(lender)
+                        .principalAmount(principal)
+                        .outstandingPrincipal(principal)
+                        .totalAmountToRepay(total)
+                        .remainingAmount(total)
+                        .totalInterestAmount(interest)
+                        .totalInstallments(TENURE)
+                        .nextDueDate(firstDueDate)
+                        .firstDueDate(firstDueDate)
+                        .emiAmount(emi)
+                        .interestRate(lender.getInterestRate())
+                        .scheduleStorage(scheduleService.getStorage())
+                        .build());
+                scheduleService.createSchedule(loan);
+                loans.add(loan);
+            }
+            return loans;
+        });
+    }
+
+    private static User persistUser(EntityManager entityManager, String username, Role role) {
+        User user = User.builder()
+                .username(username)
+                .email(username + "@example.com")
+                .password("not-used")
+                .role(role)
+                .provider(AuthProvider.LOCAL)
+                .isVerified(true)
+                .isEmailVerified(true)
+                .isActive(true)
+                .createdAt(LocalDateTime.now())
+                .build();
+        entityManager.persist(user);
+        return user;
+    }
+}
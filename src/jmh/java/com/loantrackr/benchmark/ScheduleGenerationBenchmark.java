@@ -0,0 +1,68 @@
+package com.loantrackr.benchmark;
+
+import com.loantrackr.enums.CalculatorEngine;
+import com.loantrackr.enums.ScheduleStorage;
+import com.loantrackr.model.Loan;
+import com.loantrackr.model.LoanRepaymentSchedule;
+import com.loantrackr.service.LoanCalculatorService;
+import com.loantrackr.service.RepaymentScheduleService;
+import com.loantrackr.util.PackedScheduleCodec;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory part of schedule generation: EMI, amortization and building the
+ * {@link LoanRepaymentSchedule} entities, without the repository round trip. This is also the
+ * per-read cost of a loan whose schedule is stored as {@link ScheduleStorage#COMPUTED}, next to
+ * decoding a {@link ScheduleStorage#PACKED} one.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScheduleGenerationBenchmark {
+
+    @Param({"BIG_DECIMAL", "FIXED_POINT"})
+    private CalculatorEngine engine;
+
+    @Param({"6", "12", "24", "60", "120", "240", "360"})
+    private int tenure;
+
+    private LoanCalculatorService calculator;
+    private RepaymentScheduleService scheduleService;
+    private Loan loan;
+    private byte[] packed;
+
+    @Setup
+    public void setUp() {
+        calculator = new LoanCalculatorService(engine);
+        scheduleService = new RepaymentScheduleService(null, null, null, calculator, ScheduleStorage.ROWS);
+        BigDecimal principal = new BigDecimal("250000.00");
+        BigDecimal annualRate = new BigDecimal("14.5");
+        loan = Loan.builder()
+                .id(1L)
+                .principalAmount(principal)
+                .totalInstallments(tenure)
+                .interestRate(annualRate)
+                .emiAmount(calculator.calculateEMI(principal, annualRate, tenure))
+                .firstDueDate(LocalDate.of(2025, 8, 1))
+                .build();
+        packed = PackedScheduleCodec.encode(scheduleService.buildInstallments(loan));
+    }
+
+    @Benchmark
+    public List<LoanRepaymentSchedule> generateSchedule() {
+        return scheduleService.buildInstallments(loan);
+    }
+
+    @Benchmark
+    public List<LoanRepaymentSchedule> decodePackedSchedule() {
+        return PackedScheduleCodec.decode(packed, loan);
+    }
+}
@@ -0,0 +1,36 @@
+package com.loantrackr.benchmark;
+
+import com.loantrackr.util.TenureUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TenureUtilsBenchmark {
+
+    @Param({"6", "6,12,24", "3,6,9,12,18,24,36,48,60,72,84"})
+    private String supportedTenures;
+
+    private int requestedTenure;
+
+    @Setup
+    public void setUp() {
+        String[] tenures = supportedTenures.split(",");
+        requestedTenure = Integer.parseInt(tenures[tenures.length - 1]);
+    }
+
+    @Benchmark
+    public boolean isTenureSupported_Hit() {
+        return TenureUtils.isTenureSupported(supportedTenures, requestedTenure);
+    }
+
+    @Benchmark
+    public boolean isTenureSupported_Miss() {
+        return TenureUtils.isTenureSupported(supportedTenures, 1);
+    }
+}
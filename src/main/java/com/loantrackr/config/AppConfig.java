@@ -1,13 +1,72 @@
 package com.loantrackr.config;
 
+import com.loantrackr.util.TransactionIdGenerator;
+import lombok.extern.slf4j.Slf4j;
 import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
+import java.util.concurrent.ThreadLocalRandom;
+
+@Slf4j
 @Configuration
 public class AppConfig {
     @Bean
     public ModelMapper objectMapper() {
         return new ModelMapper();
     }
+
+    /**
+     * Workers that call the payment gateway for accepted disbursements. A full queue rejects the
+     * hand-off; the disbursement stays ACCEPTED and is picked up by the next sweep.
+     */
+    @Bean
+    @ConditionalOnThreading(Threading.PLATFORM)
+    public TaskExecutor disbursementExecutor(@Value("${loan.disbursement.workers:8}") int workers,
+                                             @Value("${loan.disbursement.queue-capacity:1000}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("disbursement-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+
+    /**
+     * Virtual-thread variant: every accepted hand-off runs at once on its own virtual thread, up to
+     * as many as the pooled variant would hold running and queued; beyond that hand-offs are rejected
+     * the same way.
+     */
+    @Bean(name = "disbursementExecutor")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public TaskExecutor disbursementVirtualExecutor(@Value("${loan.disbursement.workers:8}") int workers,
+                                                    @Value("${loan.disbursement.queue-capacity:1000}") int queueCapacity) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("disbursement-");
+        executor.setVirtualThreads(true);
+        executor.setConcurrencyLimit(workers + queueCapacity);
+        executor.setRejectTasksWhenLimitReached(true);
+        executor.setTaskTerminationTimeout(30_000);
+        return executor;
+    }
+
+    /**
+     * Transaction IDs for payments, including the simulated gateway's. Each instance needs its own
+     * node ID; without one a random node ID is picked, which two instances may happen to share.
+     */
+    @Bean
+    public TransactionIdGenerator transactionIdGenerator(@Value("${payment.transaction-id.node-id:#{null}}") Integer nodeId) {
+        if (nodeId == null) {
+            nodeId = ThreadLocalRandom.current().nextInt(TransactionIdGenerator.MAX_NODE_ID + 1);
+            log.warn("payment.transaction-id.node-id is not set, using random node ID {}", nodeId);
+        }
+        return new TransactionIdGenerator(nodeId);
+    }
 }
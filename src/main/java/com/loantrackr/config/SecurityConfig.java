@@ -34,6 +34,7 @@ public class SecurityConfig {
         return http
                 .authorizeHttpRequests(request -> request
                         .requestMatchers("/v1/public/**").permitAll()
+                        .requestMatchers("/v1/gateway/callbacks").permitAll() // Authenticated by the shared gateway secret
                         .requestMatchers("/v3/api-docs/**", "/swagger-ui/**", "/swagger-ui.html", "/swagger/**", "/api-docs/**").permitAll()
                         .requestMatchers("/v1/system-admin/**").hasRole("SYSTEM_ADMIN")
                         .requestMatchers("v1/borrower/**").hasRole("BORROWER")
@@ -3,14 +3,21 @@ package com.loantrackr.controller;
 import com.loantrackr.dto.request.KycUpdateRequest;
 import com.loantrackr.dto.request.LoanApplicationRequest;
 import com.loantrackr.dto.request.PaymentRequest;
+import com.loantrackr.dto.request.PrepaymentRequest;
 import com.loantrackr.dto.request.UpdateUserRequest;
 import com.loantrackr.dto.response.*;
+import com.loantrackr.enums.PaymentStatus;
+import com.loantrackr.exception.GatewayUnavailableException;
+import com.loantrackr.exception.IdempotencyConflictException;
 import com.loantrackr.exception.OperationNotAllowedException;
+import com.loantrackr.exception.OutcomeUnknownException;
+import com.loantrackr.exception.PaymentInProgressException;
 import com.loantrackr.exception.UserNotFoundException;
 import com.loantrackr.model.BorrowerKycDetails;
 import com.loantrackr.model.LoanPayment;
 import com.loantrackr.model.LoanRepaymentSchedule;
 import com.loantrackr.service.BorrowerService;
+import com.loantrackr.service.IdempotencyService;
 import com.loantrackr.service.LoanService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -24,6 +31,7 @@ import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.Min;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -32,6 +40,7 @@ import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 @RestController
 @RequestMapping("/v1/borrower")
@@ -46,6 +55,7 @@ public class BorrowerController {
 
     private final BorrowerService borrowerService;
     private final LoanService loanService;
+    private final IdempotencyService idempotencyService;
 
 
     @GetMapping("/info")
@@ -317,6 +327,28 @@ public class BorrowerController {
         return ResponseEntity.ok(preview);
     }
 
+    @GetMapping("/loan/lenders/emi-comparison")
+    @Operation(summary = "Compare EMI across lenders",
+            description = "Calculates EMI, total interest and total payable for every active lender and every tenure it supports")
+    @ApiResponses(value = {
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "200",
+                    description = "EMI comparison calculated successfully",
+                    content = @Content(schema = @Schema(implementation = LenderEmiComparison.class))
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "400",
+                    description = "Invalid principal amount"
+            )
+    })
+    public ResponseEntity<List<LenderEmiComparison>> compareEmi(
+            @Parameter(description = "Principal loan amount (minimum 1000)")
+            @RequestParam @DecimalMin(value = "1000.00", message = "Principal amount must be at least 1000") BigDecimal principal) {
+        log.info("REST: EMI comparison request - Principal: {}", principal);
+        List<LenderEmiComparison> comparison = loanService.compareEmiAcrossLenders(principal);
+        return ResponseEntity.ok(comparison);
+    }
+
     @PostMapping("/loan/apply/{lenderId}")
     @Operation(summary = "Apply for loan",
             description = "Submits a loan application to a specific lender")
@@ -438,30 +470,204 @@ public class BorrowerController {
 
     @PostMapping("/loan/{loanId}/payments")
     @Operation(summary = "Make loan payment",
-            description = "Processes a payment for a specific loan (EMI or partial payment)")
+            description = "Processes a payment for a specific loan (EMI or partial payment). " +
+                    "Retries carrying the same Idempotency-Key receive the original outcome instead of paying again")
     @ApiResponses(value = {
             @io.swagger.v3.oas.annotations.responses.ApiResponse(
                     responseCode = "201",
                     description = "Payment processed successfully",
                     content = @Content(schema = @Schema(implementation = PaymentResponse.class))
             ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "202",
+                    description = "Payment recorded as pending: the gateway has not settled it yet or did not answer in time; the outcome follows by callback or reconciliation",
+                    content = @Content(schema = @Schema(implementation = PaymentResponse.class))
+            ),
             @io.swagger.v3.oas.annotations.responses.ApiResponse(
                     responseCode = "400",
-                    description = "Invalid payment amount or loan status"
+                    description = "Invalid payment amount, loan status or Idempotency-Key"
             ),
             @io.swagger.v3.oas.annotations.responses.ApiResponse(
                     responseCode = "404",
                     description = "Loan not found"
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "409",
+                    description = "Another payment on this loan is in progress or pending at the gateway, or the Idempotency-Key was reused for a different payment or its original payment is still being processed"
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "503",
+                    description = "Payment gateway unavailable or at capacity; nothing was charged. See Retry-After"
             )
     })
     public ResponseEntity<PaymentResponse> makePayment(
             @Parameter(description = "Loan ID to make payment for")
             @PathVariable Long loanId,
+            @Parameter(description = "Client-generated key identifying this payment across retries, e.g. a UUID")
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             @Parameter(description = "Payment details")
             @Valid @RequestBody PaymentRequest request) {
 
-        log.info("REST: Payment request - Loan ID: {}, Amount: {}", loanId, request.getAmount());
-        PaymentResponse response = loanService.makePayment(loanId, request);
-        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+        log.info("REST: Payment request - Loan ID: {}, Amount: {}, Idempotency-Key: {}", loanId, request.getAmount(), idempotencyKey);
+
+        try {
+            if (idempotencyKey == null) {
+                PaymentResponse response = loanService.makePayment(loanId, request);
+                return ResponseEntity.status(paymentStatus(response)).body(response);
+            }
+
+            String fingerprint = "loan=" + loanId + ";amount=" + request.getAmount().stripTrailingZeros().toPlainString()
+                    + ";method=" + request.getPaymentMethod();
+            PaymentResponse response = idempotencyService.execute("payment", idempotencyKey, fingerprint, PaymentResponse.class,
+                    () -> loanService.makePayment(loanId, request), BorrowerController::failedBeforeGatewayCall);
+            return ResponseEntity.status(paymentStatus(response)).body(response);
+
+        } catch (IdempotencyConflictException e) {
+            log.warn("REST: Payment rejected for Idempotency-Key: {} - {}", idempotencyKey, e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(PaymentResponse.builder()
+                    .status(PaymentStatus.FAILED)
+                    .amount(request.getAmount())
+                    .message(e.getMessage())
+                    .build());
+
+        } catch (IllegalArgumentException e) {
+            log.warn("REST: Payment rejected for loan ID: {} - {}", loanId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(PaymentResponse.builder()
+                    .status(PaymentStatus.FAILED)
+                    .amount(request.getAmount())
+                    .message(e.getMessage())
+                    .build());
+
+        } catch (OutcomeUnknownException e) {
+            log.warn("REST: Payment for Idempotency-Key: {} awaits reconciliation", idempotencyKey);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(PaymentResponse.builder()
+                    .status(PaymentStatus.PENDING)
+                    .amount(request.getAmount())
+                    .message(e.getMessage())
+                    .build());
+
+        } catch (PaymentInProgressException e) {
+            log.warn("REST: Payment for loan ID: {} rejected - {}", loanId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(PaymentResponse.builder()
+                    .status(PaymentStatus.FAILED)
+                    .amount(request.getAmount())
+                    .message(e.getMessage())
+                    .build());
+
+        } catch (GatewayUnavailableException e) {
+            log.warn("REST: Payment for loan ID: {} not processed - {}", loanId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfter().toSeconds()))
+                    .body(PaymentResponse.builder()
+                            .status(PaymentStatus.FAILED)
+                            .amount(request.getAmount())
+                            .message(e.getMessage())
+                            .build());
+        }
+    }
+
+    @GetMapping("/loan/{loanId}/foreclosure-quote")
+    @Operation(summary = "Get foreclosure quote",
+            description = "Returns the amount needed to close the loan today: outstanding principal plus interest accrued since the last due date. Read-only")
+    @ApiResponses(value = {
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "200",
+                    description = "Foreclosure quote calculated successfully",
+                    content = @Content(schema = @Schema(implementation = ForeclosureQuote.class))
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "400",
+                    description = "Loan not active or an installment is overdue"
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "404",
+                    description = "Loan not found"
+            )
+    })
+    public ResponseEntity<ForeclosureQuote> getForeclosureQuote(
+            @Parameter(description = "Loan ID to quote foreclosure for")
+            @PathVariable Long loanId) {
+        log.info("REST: Foreclosure quote request - Loan ID: {}", loanId);
+        ForeclosureQuote quote = loanService.getForeclosureQuote(loanId);
+        return ResponseEntity.ok(quote);
+    }
+
+    @PostMapping("/loan/{loanId}/prepayments")
+    @Operation(summary = "Part-prepay loan",
+            description = "Prepays part of the outstanding principal and re-amortizes the remaining installments, lowering either the EMI or the tenure")
+    @ApiResponses(value = {
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "201",
+                    description = "Prepayment processed successfully",
+                    content = @Content(schema = @Schema(implementation = PrepaymentResponse.class))
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "202",
+                    description = "Prepayment recorded as pending: the gateway has not settled it yet or did not answer in time; the loan is re-amortized once the callback confirms it",
+                    content = @Content(schema = @Schema(implementation = PrepaymentResponse.class))
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "400",
+                    description = "Invalid amount, loan not active or an installment is overdue"
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "404",
+                    description = "Loan not found"
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "409",
+                    description = "Another payment on this loan is in progress"
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "503",
+                    description = "Payment gateway unavailable or at capacity; nothing was charged. See Retry-After"
+            )
+    })
+    public ResponseEntity<PrepaymentResponse> prepay(
+            @Parameter(description = "Loan ID to prepay")
+            @PathVariable Long loanId,
+            @Parameter(description = "Prepayment details")
+            @Valid @RequestBody PrepaymentRequest request) {
+
+        log.info("REST: Prepayment request - Loan ID: {}, Amount: {}, Mode: {}", loanId, request.getAmount(), request.getMode());
+        try {
+            PrepaymentResponse response = loanService.prepay(loanId, request);
+            HttpStatus status = response.getStatus() == PaymentStatus.PENDING ? HttpStatus.ACCEPTED : HttpStatus.CREATED;
+            return ResponseEntity.status(status).body(response);
+        } catch (PaymentInProgressException e) {
+            log.warn("REST: Prepayment for loan ID: {} rejected - {}", loanId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(PrepaymentResponse.builder()
+                    .status(PaymentStatus.FAILED)
+                    .mode(request.getMode())
+                    .principalPrepaid(request.getAmount())
+                    .message(e.getMessage())
+                    .build());
+        } catch (GatewayUnavailableException e) {
+            log.warn("REST: Prepayment for loan ID: {} not processed - {}", loanId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfter().toSeconds()))
+                    .body(PrepaymentResponse.builder()
+                            .status(PaymentStatus.FAILED)
+                            .mode(request.getMode())
+                            .principalPrepaid(request.getAmount())
+                            .message(e.getMessage())
+                            .build());
+        }
+    }
+
+    /**
+     * 202 for a payment the gateway has not settled yet, 201 otherwise.
+     */
+    private static HttpStatus paymentStatus(PaymentResponse response) {
+        return response.getStatus() == PaymentStatus.PENDING ? HttpStatus.ACCEPTED : HttpStatus.CREATED;
+    }
+
+    /**
+     * Failures a payment can raise before the gateway is called; any other may follow a charge.
+     */
+    private static boolean failedBeforeGatewayCall(RuntimeException e) {
+        return e instanceof NoSuchElementException || e instanceof OperationNotAllowedException
+                || e instanceof PaymentInProgressException
+                || e instanceof GatewayUnavailableException unavailable && !unavailable.isCallAttempted();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,90 @@
+package com.loantrackr.controller;
+
+import com.loantrackr.dto.request.GatewayCallbackRequest;
+import com.loantrackr.dto.response.ApiResponse;
+import com.loantrackr.service.GatewayCallbackService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+@Slf4j
+@RestController
+@RequestMapping("/v1/gateway")
+@Tag(name = "Payment Gateway Callbacks",
+        description = "Status notifications sent by the payment gateway, authenticated with a shared secret")
+public class GatewayCallbackController {
+
+    private final GatewayCallbackService callbackService;
+    private final byte[] secret;
+
+    public GatewayCallbackController(GatewayCallbackService callbackService,
+                                     @Value("${payment.gateway.callbacks.secret:}") String secret) {
+        this.callbackService = callbackService;
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+        if (secret.isBlank()) {
+            log.warn("payment.gateway.callbacks.secret is not set; gateway callbacks will be refused");
+        }
+    }
+
+    @PostMapping("/callbacks")
+    @Operation(summary = "Receive gateway status notification",
+            description = "Records a payment status reported by the gateway. Repeated notifications are acknowledged without effect; " +
+                    "one for a transaction not recorded yet is refused so the gateway delivers it again later")
+    @ApiResponses(value = {
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "200",
+                    description = "Notification accepted; the data is its outcome (APPLIED, DUPLICATE or IGNORED)",
+                    content = @Content(schema = @Schema(implementation = ApiResponse.class))
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "401",
+                    description = "Missing or wrong gateway secret"
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "404",
+                    description = "No payment recorded for the transaction yet; redeliver later"
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "500",
+                    description = "Internal server error; redeliver later"
+            )
+    })
+    public ResponseEntity<ApiResponse<GatewayCallbackService.Outcome>> receiveCallback(
+            @Parameter(description = "Secret shared with the payment gateway")
+            @RequestHeader(value = "X-Gateway-Secret", required = false) String providedSecret,
+            @Parameter(description = "Gateway status notification")
+            @RequestBody @Valid GatewayCallbackRequest request) {
+
+        if (secret.length == 0 || providedSecret == null
+                || !MessageDigest.isEqual(secret, providedSecret.getBytes(StandardCharsets.UTF_8))) {
+            log.warn("Gateway callback for transaction {} refused: bad secret", request.getGatewayTransactionId());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(ApiResponse.error("Invalid gateway secret"));
+        }
+
+        try {
+            GatewayCallbackService.Outcome outcome = callbackService.handle(request);
+            if (outcome == GatewayCallbackService.Outcome.UNKNOWN_PAYMENT) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(ApiResponse.error("No payment recorded for this transaction yet"));
+            }
+            return ResponseEntity.ok(ApiResponse.success(outcome, "Callback processed"));
+        } catch (Exception e) {
+            log.error("Unexpected error processing gateway callback for transaction {}", request.getGatewayTransactionId(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("An unexpected error occurred"));
+        }
+    }
+}
@@ -1,11 +1,15 @@
 package com.loantrackr.controller;
 
+import com.loantrackr.dto.request.BulkDisbursementRequest;
 import com.loantrackr.dto.request.LenderUpdateRequest;
 import com.loantrackr.dto.response.*;
 import com.loantrackr.enums.LoanStatus;
+import com.loantrackr.exception.OperationNotAllowedException;
 import com.loantrackr.exception.UserNotFoundException;
+import com.loantrackr.service.DisbursementService;
 import com.loantrackr.service.LenderProfileService;
 import com.loantrackr.service.LoanService;
+import com.loantrackr.service.PortfolioProjectionService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -22,6 +26,7 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
+import java.net.URI;
 import java.util.List;
 
 @Slf4j
@@ -37,6 +42,8 @@ public class LenderController {
 
     private final LenderProfileService lenderProfileService;
     private final LoanService loanService;
+    private final DisbursementService disbursementService;
+    private final PortfolioProjectionService portfolioProjectionService;
 
     @GetMapping("/info")
     @Operation(summary = "Get lender profile information",
@@ -220,12 +227,13 @@ public class LenderController {
 
     @PostMapping("/applications/{applicationId}/disburse")
     @Operation(summary = "Disburse approved loan",
-            description = "Disburses funds for an approved loan application and activates the loan")
+            description = "Accepts an approved loan application for disbursement. Funds are sent in the background; " +
+                    "the loan is activated once the payment gateway confirms. Poll the returned disbursement for the outcome")
     @ApiResponses(value = {
             @io.swagger.v3.oas.annotations.responses.ApiResponse(
-                    responseCode = "201",
-                    description = "Loan disbursed successfully",
-                    content = @Content(schema = @Schema(implementation = LoanDisbursementResponse.class))
+                    responseCode = "202",
+                    description = "Disbursement accepted for processing",
+                    content = @Content(schema = @Schema(implementation = DisbursementStatusResponse.class))
             ),
             @io.swagger.v3.oas.annotations.responses.ApiResponse(
                     responseCode = "404",
@@ -236,12 +244,94 @@ public class LenderController {
                     description = "Loan not ready for disbursement"
             )
     })
-    public ResponseEntity<LoanDisbursementResponse> disburseLoan(
+    public ResponseEntity<DisbursementStatusResponse> disburseLoan(
             @Parameter(description = "Loan application ID to disburse")
             @PathVariable Long applicationId) {
         log.info("REST: Loan disbursement request - Application ID: {}", applicationId);
-        LoanDisbursementResponse response = loanService.disburseLoan(applicationId);
-        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+        DisbursementStatusResponse response = disbursementService.requestDisbursement(applicationId);
+        return ResponseEntity.accepted()
+                .location(URI.create("/v1/lender/disbursements/" + response.getDisbursementId()))
+                .body(response);
+    }
+
+    @GetMapping("/disbursements/{disbursementId}")
+    @Operation(summary = "Get disbursement status",
+            description = "Retrieves the progress of a disbursement request, including the activated loan once it has completed")
+    @ApiResponses(value = {
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "200",
+                    description = "Disbursement status retrieved successfully",
+                    content = @Content(schema = @Schema(implementation = DisbursementStatusResponse.class))
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "404",
+                    description = "Disbursement not found"
+            )
+    })
+    public ResponseEntity<DisbursementStatusResponse> getDisbursementStatus(
+            @Parameter(description = "Disbursement ID returned when the disbursement was requested")
+            @PathVariable Long disbursementId) {
+        log.info("REST: Disbursement status request - Disbursement ID: {}", disbursementId);
+        DisbursementStatusResponse response = disbursementService.getDisbursementStatus(disbursementId);
+        return ResponseEntity.ok(response);
+    }
+
+    @PostMapping("/disbursements/bulk")
+    @Operation(summary = "Disburse approved loans in bulk",
+            description = "Accepts many approved loan applications for disbursement at once: the ones listed, or the lender's " +
+                    "approved applications oldest first up to the limit. Funds are sent in the background; the response reports " +
+                    "each application as accepted or rejected with the reason. Poll the returned batch for the outcomes")
+    @ApiResponses(value = {
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "202",
+                    description = "Applications accepted for processing, the rest rejected with reasons",
+                    content = @Content(schema = @Schema(implementation = BulkDisbursementResponse.class))
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "400",
+                    description = "Too many applications requested"
+            )
+    })
+    public ResponseEntity<BulkDisbursementResponse> disburseLoansInBulk(
+            @Parameter(description = "Applications to disburse, or a limit on the lender's approved applications")
+            @RequestBody BulkDisbursementRequest request) {
+        log.info("REST: Bulk loan disbursement request");
+        try {
+            BulkDisbursementResponse response = disbursementService.requestBulkDisbursement(request);
+            if (response.getBatchId() == null) {
+                return ResponseEntity.ok(response);
+            }
+            return ResponseEntity.accepted()
+                    .location(URI.create("/v1/lender/disbursements/bulk/" + response.getBatchId()))
+                    .body(response);
+        } catch (OperationNotAllowedException e) {
+            return ResponseEntity.badRequest().body(BulkDisbursementResponse.builder()
+                    .disbursements(List.of())
+                    .message(e.getMessage())
+                    .build());
+        }
+    }
+
+    @GetMapping("/disbursements/bulk/{batchId}")
+    @Operation(summary = "Get bulk disbursement report",
+            description = "Retrieves the progress of every disbursement in a bulk batch, with the activated loans once completed")
+    @ApiResponses(value = {
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "200",
+                    description = "Bulk disbursement report retrieved successfully",
+                    content = @Content(schema = @Schema(implementation = BulkDisbursementResponse.class))
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "404",
+                    description = "Bulk disbursement not found"
+            )
+    })
+    public ResponseEntity<BulkDisbursementResponse> getBulkDisbursement(
+            @Parameter(description = "Batch ID returned when the bulk disbursement was requested")
+            @PathVariable String batchId) {
+        log.info("REST: Bulk disbursement report request - Batch ID: {}", batchId);
+        BulkDisbursementResponse response = disbursementService.getBulkDisbursement(batchId);
+        return ResponseEntity.ok(response);
     }
 
     @GetMapping("/applications")
@@ -430,5 +520,28 @@ public class LenderController {
         return ResponseEntity.ok(loan);
     }
 
+    @GetMapping("/portfolio/cash-flow")
+    @Operation(summary = "Project portfolio cash flow",
+            description = "Projects expected monthly principal and interest inflows across all active loans over 12, 24 or 60 months")
+    @ApiResponses(value = {
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "200",
+                    description = "Cash-flow projection calculated successfully",
+                    content = @Content(schema = @Schema(implementation = CashFlowProjection.class))
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "400",
+                    description = "Unsupported projection horizon"
+            )
+    })
+    public ResponseEntity<CashFlowProjection> getCashFlowProjection(
+            @Parameter(description = "Projection horizon in months: 12, 24 or 60")
+            @RequestParam(defaultValue = "12") int months) {
+        log.info("REST: Cash-flow projection request - Months: {}", months);
 
+        CashFlowProjection projection = portfolioProjectionService.getCurrentLenderCashFlow(months);
+
+        log.info("REST: Successfully projected cash flow over {} months", months);
+        return ResponseEntity.ok(projection);
+    }
 }
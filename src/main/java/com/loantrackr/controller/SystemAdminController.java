@@ -1,8 +1,16 @@
 package com.loantrackr.controller;
 
+import com.loantrackr.dto.request.DisbursementResolutionRequest;
 import com.loantrackr.dto.request.RegisterUser;
+import com.loantrackr.dto.response.AccrualRunResult;
 import com.loantrackr.dto.response.ApiResponse;
+import com.loantrackr.dto.response.AutoDebitRunResult;
+import com.loantrackr.dto.response.DisbursementStatusResponse;
 import com.loantrackr.dto.response.LenderProfileResponse;
+import com.loantrackr.dto.response.OverdueRunResult;
+import com.loantrackr.dto.response.ReconciliationJobResponse;
+import com.loantrackr.dto.response.RepaymentFileJobResponse;
+import com.loantrackr.dto.response.ScheduleMigrationResult;
 import com.loantrackr.dto.response.UserResponse;
 import com.loantrackr.enums.Role;
 import com.loantrackr.exception.InvalidRoleException;
@@ -11,6 +19,13 @@ import com.loantrackr.exception.UnauthorizedException;
 import com.loantrackr.exception.UserNotFoundException;
 import com.loantrackr.model.LenderOnboarding;
 import com.loantrackr.model.User;
+import com.loantrackr.service.AutoDebitJob;
+import com.loantrackr.service.DisbursementService;
+import com.loantrackr.service.InterestAccrualJob;
+import com.loantrackr.service.OverdueInstallmentJob;
+import com.loantrackr.service.ReconciliationService;
+import com.loantrackr.service.RepaymentFileService;
+import com.loantrackr.service.ScheduleMigrationService;
 import com.loantrackr.service.SystemAdminService;
 import com.loantrackr.service.UserService;
 import com.loantrackr.util.SecurityUtils;
@@ -25,11 +40,18 @@ import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.io.Resource;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
+import java.net.URI;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Optional;
 
 @Slf4j
@@ -43,6 +65,13 @@ public class SystemAdminController {
     private final SystemAdminService adminService;
     private final UserService userService;
     private final SystemAdminService systemAdminService;
+    private final ScheduleMigrationService scheduleMigrationService;
+    private final InterestAccrualJob interestAccrualJob;
+    private final RepaymentFileService repaymentFileService;
+    private final AutoDebitJob autoDebitJob;
+    private final OverdueInstallmentJob overdueInstallmentJob;
+    private final ReconciliationService reconciliationService;
+    private final DisbursementService disbursementService;
 
     // System Admin Management Endpoints
 
@@ -779,6 +808,583 @@ public class SystemAdminController {
         }
     }
 
+    @PostMapping("/loans/schedules/pack")
+    @Operation(summary = "Pack loan repayment schedules",
+            description = "Converts loans' row-per-installment schedules into a single packed column, verifying each loan's totals before switching it over")
+    @ApiResponses(value = {
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "200",
+                    description = "Migration run completed",
+                    content = @Content(schema = @Schema(implementation = ScheduleMigrationResult.class))
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "400",
+                    description = "Invalid limit"
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "403",
+                    description = "Unauthorized - only system admins can migrate schedules"
+            )
+    })
+    public ResponseEntity<ApiResponse<Object>> packRepaymentSchedules(
+            @Parameter(description = "Maximum number of loans to convert in this run")
+            @RequestParam(defaultValue = "500") int limit) {
+
+        log.info("Request received to pack repayment schedules, limit: {}", limit);
+
+        try {
+            User currentUser = getCurrentUser();
+            validateSystemAdminRole(currentUser);
+
+            ScheduleMigrationResult result = scheduleMigrationService.migrateToPacked(limit);
+
+            log.info("Repayment schedules packed - migrated: {}, failed: {}", result.getMigrated(), result.getFailedLoanIds().size());
+            return ResponseEntity.ok(ApiResponse.success(result, "Packed " + result.getMigrated() + " repayment schedules"));
+
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid schedule migration request: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(ApiResponse.error("Invalid request: " + e.getMessage()));
+
+        } catch (UnauthorizedException e) {
+            log.warn("Unauthorized attempt to pack repayment schedules");
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(ApiResponse.error("Unauthorized: " + e.getMessage()));
+
+        } catch (Exception e) {
+            log.error("Unexpected error while packing repayment schedules", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("Failed to pack repayment schedules: " + e.getMessage()));
+        }
+    }
+
+    @PostMapping("/loans/interest-accruals/run")
+    @Operation(summary = "Run end-of-day interest accrual",
+            description = "Accrues a business day's interest on all disbursed loans, resuming from the checkpoint of an unfinished run for the same date")
+    @ApiResponses(value = {
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "200",
+                    description = "Accrual run completed",
+                    content = @Content(schema = @Schema(implementation = AccrualRunResult.class))
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "400",
+                    description = "Business date is not in the past"
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "403",
+                    description = "Unauthorized - only system admins can run interest accrual"
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "409",
+                    description = "An accrual run is already in progress"
+            )
+    })
+    public ResponseEntity<ApiResponse<Object>> runInterestAccrual(
+            @Parameter(description = "Business date to accrue, defaults to yesterday")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate businessDate) {
+
+        LocalDate date = businessDate != null ? businessDate : LocalDate.now().minusDays(1);
+        log.info("Request received to run interest accrual for {}", date);
+
+        try {
+            User currentUser = getCurrentUser();
+            validateSystemAdminRole(currentUser);
+
+            AccrualRunResult result = interestAccrualJob.run(date);
+
+            log.info("Interest accrual for {} finished with status {}", date, result.getStatus());
+            return ResponseEntity.ok(ApiResponse.success(result, "Interest accrued for " + result.getProcessedLoans() + " loans"));
+
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid interest accrual request: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(ApiResponse.error("Invalid request: " + e.getMessage()));
+
+        } catch (IllegalStateException e) {
+            log.warn("Interest accrual request rejected: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(ApiResponse.error(e.getMessage()));
+
+        } catch (UnauthorizedException e) {
+            log.warn("Unauthorized attempt to run interest accrual");
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(ApiResponse.error("Unauthorized: " + e.getMessage()));
+
+        } catch (Exception e) {
+            log.error("Unexpected error while running interest accrual for {}", date, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("Failed to run interest accrual: " + e.getMessage()));
+        }
+    }
+
+    @PostMapping("/loans/auto-debits/run")
+    @Operation(summary = "Run auto-debit for a due date",
+            description = "Collects the installments falling due on a date through the payment gateway, resuming from the checkpoint of an unfinished run for the same date")
+    @ApiResponses(value = {
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "200",
+                    description = "Auto-debit run finished or stopped because the gateway was unavailable",
+                    content = @Content(schema = @Schema(implementation = AutoDebitRunResult.class))
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "400",
+                    description = "Due date is in the future or past its grace period"
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "403",
+                    description = "Unauthorized - only system admins can run auto-debit"
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "409",
+                    description = "An auto-debit run is already in progress"
+            )
+    })
+    public ResponseEntity<ApiResponse<Object>> runAutoDebit(
+            @Parameter(description = "Due date to collect, defaults to today")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dueDate) {
+
+        LocalDate date = dueDate != null ? dueDate : LocalDate.now();
+        log.info("Request received to run auto-debit for {}", date);
+
+        try {
+            User currentUser = getCurrentUser();
+            validateSystemAdminRole(currentUser);
+
+            AutoDebitRunResult result = autoDebitJob.run(date);
+
+            log.info("Auto-debit for {} finished with status {}", date, result.getStatus());
+            return ResponseEntity.ok(ApiResponse.success(result, "Collected " + result.getCollected() + " installments"));
+
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid auto-debit request: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(ApiResponse.error("Invalid request: " + e.getMessage()));
+
+        } catch (IllegalStateException e) {
+            log.warn("Auto-debit request rejected: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(ApiResponse.error(e.getMessage()));
+
+        } catch (UnauthorizedException e) {
+            log.warn("Unauthorized attempt to run auto-debit");
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(ApiResponse.error("Unauthorized: " + e.getMessage()));
+
+        } catch (Exception e) {
+            log.error("Unexpected error while running auto-debit for {}", date, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("Failed to run auto-debit: " + e.getMessage()));
+        }
+    }
+
+    @PostMapping("/loans/overdue-installments/run")
+    @Operation(summary = "Mark overdue installments and charge late fees",
+            description = "Marks installments unpaid past the configured grace period as overdue and charges the configured late fee once per installment")
+    @ApiResponses(value = {
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "200",
+                    description = "Overdue run completed",
+                    content = @Content(schema = @Schema(implementation = OverdueRunResult.class))
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "403",
+                    description = "Unauthorized - only system admins can run overdue marking"
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "409",
+                    description = "An overdue run is already in progress"
+            )
+    })
+    public ResponseEntity<ApiResponse<Object>> runOverdueMarking() {
+        log.info("Request received to run overdue marking");
+
+        try {
+            User currentUser = getCurrentUser();
+            validateSystemAdminRole(currentUser);
+
+            OverdueRunResult result = overdueInstallmentJob.run();
+
+            log.info("Overdue marking finished - {} installments marked overdue", result.getMarkedOverdue());
+            return ResponseEntity.ok(ApiResponse.success(result, result.getMarkedOverdue() + " installments marked overdue"));
+
+        } catch (IllegalStateException e) {
+            log.warn("Overdue marking request rejected: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(ApiResponse.error(e.getMessage()));
+
+        } catch (UnauthorizedException e) {
+            log.warn("Unauthorized attempt to run overdue marking");
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(ApiResponse.error("Unauthorized: " + e.getMessage()));
+
+        } catch (Exception e) {
+            log.error("Unexpected error while running overdue marking", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("Failed to run overdue marking: " + e.getMessage()));
+        }
+    }
+
+    @PostMapping(value = "/repayments/files", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(summary = "Upload a repayment debit file",
+            description = "Accepts a collections partner CSV of debit results and ingests it in the background. " +
+                    "Columns: loan_id, installment_number, amount, status, reference, debit_date, failure_reason")
+    @ApiResponses(value = {
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "202",
+                    description = "File accepted; poll the job for progress",
+                    content = @Content(schema = @Schema(implementation = RepaymentFileJobResponse.class))
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "400",
+                    description = "Not a CSV file or unexpected header"
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "403",
+                    description = "Unauthorized - only system admins can upload repayment files"
+            )
+    })
+    public ResponseEntity<ApiResponse<Object>> uploadRepaymentFile(
+            @Parameter(description = "Debit result file in CSV format")
+            @RequestParam("file") MultipartFile file) {
+
+        log.info("Request received to ingest repayment file '{}' ({} bytes)", file.getOriginalFilename(), file.getSize());
+
+        try {
+            User currentUser = getCurrentUser();
+            validateSystemAdminRole(currentUser);
+
+            RepaymentFileJobResponse job = repaymentFileService.submit(file, currentUser.getUsername());
+
+            return ResponseEntity.accepted()
+                    .location(URI.create("/v1/system-admin/repayments/files/" + job.getJobId()))
+                    .body(ApiResponse.success(job, "Repayment file accepted for processing"));
+
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid repayment file: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(ApiResponse.error("Invalid file: " + e.getMessage()));
+
+        } catch (UnauthorizedException e) {
+            log.warn("Unauthorized attempt to upload a repayment file");
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(ApiResponse.error("Unauthorized: " + e.getMessage()));
+
+        } catch (Exception e) {
+            log.error("Unexpected error while accepting repayment file '{}'", file.getOriginalFilename(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("Failed to accept repayment file: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping("/repayments/files/{jobId}")
+    @Operation(summary = "Get repayment file ingestion status",
+            description = "Returns the progress and row counts of a repayment file ingestion job")
+    @ApiResponses(value = {
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "200",
+                    description = "Job found",
+                    content = @Content(schema = @Schema(implementation = RepaymentFileJobResponse.class))
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "403",
+                    description = "Unauthorized - only system admins can view repayment file jobs"
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "404",
+                    description = "Job not found"
+            )
+    })
+    public ResponseEntity<ApiResponse<Object>> getRepaymentFileJob(
+            @Parameter(description = "Repayment file job ID")
+            @PathVariable Long jobId) {
+
+        try {
+            validateSystemAdminRole(getCurrentUser());
+
+            RepaymentFileJobResponse job = repaymentFileService.getJob(jobId);
+            return ResponseEntity.ok(ApiResponse.success(job, "Repayment file job is " + job.getStatus()));
+
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(ApiResponse.error(e.getMessage()));
+
+        } catch (UnauthorizedException e) {
+            log.warn("Unauthorized attempt to view repayment file job {}", jobId);
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(ApiResponse.error("Unauthorized: " + e.getMessage()));
+
+        } catch (Exception e) {
+            log.error("Unexpected error while fetching repayment file job {}", jobId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("Failed to fetch repayment file job: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping("/repayments/files/{jobId}/result")
+    @Operation(summary = "Download repayment file result",
+            description = "Downloads the CSV of rows that could not be posted, with the reason for each")
+    @ApiResponses(value = {
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "200",
+                    description = "Result file",
+                    content = @Content(mediaType = "text/csv", schema = @Schema(implementation = Resource.class))
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "403",
+                    description = "Unauthorized - only system admins can download repayment file results"
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "404",
+                    description = "Job not found"
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "409",
+                    description = "Job is still running"
+            )
+    })
+    public ResponseEntity<Resource> getRepaymentFileResult(
+            @Parameter(description = "Repayment file job ID")
+            @PathVariable Long jobId) {
+
+        try {
+            validateSystemAdminRole(getCurrentUser());
+
+            Resource result = repaymentFileService.getResultFile(jobId);
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType("text/csv"))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"repayment-file-" + jobId + "-result.csv\"")
+                    .body(result);
+
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+
+        } catch (UnauthorizedException e) {
+            log.warn("Unauthorized attempt to download repayment file result {}", jobId);
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+
+        } catch (Exception e) {
+            log.error("Unexpected error while fetching repayment file result {}", jobId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @PostMapping(value = "/payments/reconciliations", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(summary = "Upload a gateway settlement file for reconciliation",
+            description = "Accepts a payment gateway settlement CSV and reconciles it against recorded payments in the background. " +
+                    "Columns: gateway_transaction_id, amount, status")
+    @ApiResponses(value = {
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "202",
+                    description = "File accepted; poll the job for progress",
+                    content = @Content(schema = @Schema(implementation = ReconciliationJobResponse.class))
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "400",
+                    description = "Not a CSV file or unexpected header"
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "403",
+                    description = "Unauthorized - only system admins can reconcile settlement files"
+            )
+    })
+    public ResponseEntity<ApiResponse<Object>> uploadSettlementFile(
+            @Parameter(description = "Gateway settlement file in CSV format")
+            @RequestParam("file") MultipartFile file) {
+
+        log.info("Request received to reconcile settlement file '{}' ({} bytes)", file.getOriginalFilename(), file.getSize());
+
+        try {
+            User currentUser = getCurrentUser();
+            validateSystemAdminRole(currentUser);
+
+            ReconciliationJobResponse job = reconciliationService.submit(file, currentUser.getUsername());
+
+            return ResponseEntity.accepted()
+                    .location(URI.create("/v1/system-admin/payments/reconciliations/" + job.getJobId()))
+                    .body(ApiResponse.success(job, "Settlement file accepted for reconciliation"));
+
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid settlement file: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(ApiResponse.error("Invalid file: " + e.getMessage()));
+
+        } catch (UnauthorizedException e) {
+            log.warn("Unauthorized attempt to upload a settlement file");
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(ApiResponse.error("Unauthorized: " + e.getMessage()));
+
+        } catch (Exception e) {
+            log.error("Unexpected error while accepting settlement file '{}'", file.getOriginalFilename(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("Failed to accept settlement file: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping("/payments/reconciliations/{jobId}")
+    @Operation(summary = "Get reconciliation status",
+            description = "Returns the progress and mismatch counts of a settlement reconciliation job")
+    @ApiResponses(value = {
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "200",
+                    description = "Job found",
+                    content = @Content(schema = @Schema(implementation = ReconciliationJobResponse.class))
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "403",
+                    description = "Unauthorized - only system admins can view reconciliation jobs"
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "404",
+                    description = "Job not found"
+            )
+    })
+    public ResponseEntity<ApiResponse<Object>> getReconciliationJob(
+            @Parameter(description = "Reconciliation job ID")
+            @PathVariable Long jobId) {
+
+        try {
+            validateSystemAdminRole(getCurrentUser());
+
+            ReconciliationJobResponse job = reconciliationService.getJob(jobId);
+            return ResponseEntity.ok(ApiResponse.success(job, "Reconciliation job is " + job.getStatus()));
+
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(ApiResponse.error(e.getMessage()));
+
+        } catch (UnauthorizedException e) {
+            log.warn("Unauthorized attempt to view reconciliation job {}", jobId);
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(ApiResponse.error("Unauthorized: " + e.getMessage()));
+
+        } catch (Exception e) {
+            log.error("Unexpected error while fetching reconciliation job {}", jobId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("Failed to fetch reconciliation job: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping("/payments/reconciliations/{jobId}/mismatches")
+    @Operation(summary = "Download reconciliation mismatches",
+            description = "Downloads the CSV of settlement rows that do not match recorded payments, with the kind of mismatch for each")
+    @ApiResponses(value = {
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "200",
+                    description = "Mismatch file",
+                    content = @Content(mediaType = "text/csv", schema = @Schema(implementation = Resource.class))
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "403",
+                    description = "Unauthorized - only system admins can download reconciliation mismatches"
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "404",
+                    description = "Job not found"
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "409",
+                    description = "Job is still running"
+            )
+    })
+    public ResponseEntity<Resource> getReconciliationMismatches(
+            @Parameter(description = "Reconciliation job ID")
+            @PathVariable Long jobId) {
+
+        try {
+            validateSystemAdminRole(getCurrentUser());
+
+            Resource result = reconciliationService.getResultFile(jobId);
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType("text/csv"))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"reconciliation-" + jobId + "-mismatches.csv\"")
+                    .body(result);
+
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+
+        } catch (UnauthorizedException e) {
+            log.warn("Unauthorized attempt to download reconciliation mismatches {}", jobId);
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+
+        } catch (Exception e) {
+            log.error("Unexpected error while fetching reconciliation mismatches {}", jobId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @PostMapping("/disbursements/{disbursementId}/resolution")
+    @Operation(summary = "Resolve an unconfirmed disbursement",
+            description = "Settles a disbursement whose gateway outcome was unknown, after looking the payout up at the gateway: " +
+                    "activates the loan if the funds were sent, otherwise marks the disbursement FAILED so the application can be disbursed again")
+    @ApiResponses(value = {
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "200",
+                    description = "Disbursement resolved",
+                    content = @Content(schema = @Schema(implementation = DisbursementStatusResponse.class))
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "400",
+                    description = "Funds sent without a gateway transaction ID"
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "403",
+                    description = "Unauthorized - only system admins can resolve disbursements"
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "404",
+                    description = "Disbursement not found"
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "409",
+                    description = "Disbursement is not UNCONFIRMED, or its application is no longer approved"
+            )
+    })
+    public ResponseEntity<ApiResponse<Object>> resolveUnconfirmedDisbursement(
+            @Parameter(description = "Disbursement ID")
+            @PathVariable Long disbursementId,
+            @Valid @RequestBody DisbursementResolutionRequest request) {
+
+        log.info("Request received to resolve disbursement ID: {}", disbursementId);
+
+        try {
+            validateSystemAdminRole(getCurrentUser());
+
+            DisbursementStatusResponse response = disbursementService.resolveUnconfirmedDisbursement(disbursementId, request);
+            return ResponseEntity.ok(ApiResponse.success(response, "Disbursement resolved as " + response.getStatus()));
+
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid disbursement resolution: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(ApiResponse.error("Invalid request: " + e.getMessage()));
+
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(ApiResponse.error(e.getMessage()));
+
+        } catch (IllegalStateException e) {
+            log.warn("Disbursement resolution rejected: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(ApiResponse.error(e.getMessage()));
+
+        } catch (UnauthorizedException e) {
+            log.warn("Unauthorized attempt to resolve disbursement ID: {}", disbursementId);
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(ApiResponse.error("Unauthorized: " + e.getMessage()));
+
+        } catch (Exception e) {
+            log.error("Unexpected error while resolving disbursement ID: {}", disbursementId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("Failed to resolve disbursement: " + e.getMessage()));
+        }
+    }
+
     private User getCurrentUser() {
         String userName = SecurityUtils.getCurrentUserName();
         log.debug("Retrieving current user with username: {}", userName);
@@ -0,0 +1,13 @@
+package com.loantrackr.dto.projection;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * The installment a loan is currently accruing interest for, read without loading the entity.
+ */
+public record CurrentInstallment(Long loanId,
+                                 int installmentNumber,
+                                 LocalDate dueDate,
+                                 BigDecimal interestAmount) {
+}
@@ -0,0 +1,22 @@
+package com.loantrackr.dto.projection;
+
+import com.loantrackr.util.TenureUtils;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Loan terms of an active, verified lender, read in one query without loading the entity graph.
+ */
+public record LenderTerms(Long lenderId,
+                          String organizationName,
+                          BigDecimal interestRate,
+                          BigDecimal processingFee,
+                          List<Integer> supportedTenures) {
+
+    // Used by the JPQL constructor expression in LenderProfileRepository
+    public LenderTerms(Long lenderId, String organizationName, BigDecimal interestRate,
+                       BigDecimal processingFee, String supportedTenures) {
+        this(lenderId, organizationName, interestRate, processingFee, TenureUtils.parseSupportedTenures(supportedTenures));
+    }
+}
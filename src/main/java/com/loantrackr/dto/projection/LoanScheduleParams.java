@@ -0,0 +1,24 @@
+package com.loantrackr.dto.projection;
+
+import com.loantrackr.enums.ScheduleStorage;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * What it takes to enumerate a loan's unpaid installments when they are not stored as rows:
+ * the schedule parameters for computed schedules, the packed column for packed ones.
+ */
+public record LoanScheduleParams(Long id,
+                                 ScheduleStorage scheduleStorage,
+                                 BigDecimal principalAmount,
+                                 BigDecimal interestRate,
+                                 BigDecimal emiAmount,
+                                 LocalDate firstDueDate,
+                                 int totalInstallments,
+                                 int paidInstallments,
+                                 Integer rescheduledFromInstallment,
+                                 BigDecimal rescheduledPrincipal,
+                                 LocalDate rescheduledDueDate,
+                                 byte[] packedSchedule) {
+}
@@ -0,0 +1,13 @@
+package com.loantrackr.dto.projection;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Amounts of an unpaid installment row, read without loading the entity.
+ */
+public record PendingInstallment(Long id,
+                                 LocalDate dueDate,
+                                 BigDecimal principalAmount,
+                                 BigDecimal interestAmount) {
+}
@@ -0,0 +1,8 @@
+package com.loantrackr.dto.projection;
+
+/**
+ * An installment with a payment the gateway has not settled yet, read without loading the payment.
+ */
+public record PendingInstallmentPayment(Long loanId,
+                                        int installmentNumber) {
+}
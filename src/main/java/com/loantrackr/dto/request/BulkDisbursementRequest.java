@@ -0,0 +1,28 @@
+package com.loantrackr.dto.request;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BulkDisbursementRequest {
+
+    @Schema(
+            description = "Approved loan applications to disburse; leave empty to disburse the lender's approved applications, oldest first",
+            example = "[1024, 1025, 1031]"
+    )
+    private List<Long> applicationIds;
+
+    @Schema(
+            description = "When no applications are listed, how many approved applications to take at most",
+            example = "200"
+    )
+    private Integer limit;
+}
@@ -0,0 +1,34 @@
+package com.loantrackr.dto.request;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class DisbursementResolutionRequest {
+
+    @NotNull(message = "Whether the funds were sent is required")
+    @Schema(
+            description = "Whether the gateway sent the funds; true activates the loan, false marks the disbursement FAILED",
+            example = "true"
+    )
+    private Boolean fundsSent;
+
+    @Schema(
+            description = "Gateway transaction ID of the payout, required when the funds were sent",
+            example = "TXN123456789"
+    )
+    private String gatewayTransactionId;
+
+    @Schema(
+            description = "Why the payout failed, recorded when the funds were not sent",
+            example = "Rejected by the beneficiary bank"
+    )
+    private String reason;
+}
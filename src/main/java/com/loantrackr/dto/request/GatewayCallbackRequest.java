@@ -0,0 +1,45 @@
+package com.loantrackr.dto.request;
+
+import com.loantrackr.enums.PaymentStatus;
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class GatewayCallbackRequest {
+
+    @NotBlank
+    @Schema(
+            description = "Gateway transaction ID the notification is about",
+            example = "GW01JZ8Q4V3M2KX"
+    )
+    private String gatewayTransactionId;
+
+    @NotNull
+    @Schema(
+            description = "Status the gateway reports for the transaction",
+            example = "SUCCESS"
+    )
+    private PaymentStatus status;
+
+    @Schema(
+            description = "Amount the gateway processed (in INR)",
+            example = "8560.75"
+    )
+    private BigDecimal amount;
+
+    @Schema(
+            description = "Reason given by the gateway for a failed or cancelled transaction",
+            example = "Insufficient funds"
+    )
+    private String failureReason;
+}
@@ -38,4 +38,10 @@ public class PaymentGatewayRequest {
             example = "3"
     )
     private int installmentNumber;
+
+    @Schema(
+            description = "Merchant reference for the payment; the gateway reports the payment under it, also when the call times out",
+            example = "TXN01JQ3V8K2X01Z"
+    )
+    private String reference;
 }
\ No newline at end of file
@@ -0,0 +1,42 @@
+package com.loantrackr.dto.request;
+
+import com.loantrackr.enums.PaymentMethod;
+import com.loantrackr.enums.PrepaymentMode;
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class PrepaymentRequest {
+
+    @NotNull
+    @DecimalMin(value = "1000.00", message = "Prepayment must be at least 1000")
+    @Schema(
+            description = "Principal to prepay (in INR); interest accrued on it since the last due date is charged on top",
+            example = "50000.00"
+    )
+    private BigDecimal amount;
+
+    @NotNull
+    @Schema(
+            description = "Payment method used by the borrower",
+            example = "NETBANKING"
+    )
+    private PaymentMethod paymentMethod;
+
+    @NotNull
+    @Schema(
+            description = "Whether the prepayment should lower the EMI or shorten the tenure",
+            example = "REDUCE_TENURE"
+    )
+    private PrepaymentMode mode;
+}
@@ -0,0 +1,39 @@
+package com.loantrackr.dto.response;
+
+import com.loantrackr.enums.BatchJobStatus;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Outcome of an end-of-day interest accrual run")
+public class AccrualRunResult {
+
+    @Schema(description = "Business date interest was accrued for", example = "2025-07-14")
+    private LocalDate businessDate;
+
+    @Schema(description = "State of the run's checkpoint after this call", example = "COMPLETED")
+    private BatchJobStatus status;
+
+    @Schema(description = "Whether this call resumed an interrupted run from its checkpoint", example = "false")
+    private boolean resumed;
+
+    @Schema(description = "Disbursed loans processed for the business date, across all attempts", example = "1000000")
+    private long processedLoans;
+
+    @Schema(description = "Accrual records submitted by this call; records already written for the date are kept as they are", example = "998120")
+    private long accrualRecords;
+
+    @Schema(description = "Highest loan ID processed so far", example = "1000452")
+    private long lastProcessedLoanId;
+
+    @Schema(description = "Time taken by this call in milliseconds", example = "412000")
+    private long durationMs;
+}
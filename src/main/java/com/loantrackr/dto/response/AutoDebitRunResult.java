@@ -0,0 +1,48 @@
+package com.loantrackr.dto.response;
+
+import com.loantrackr.enums.BatchJobStatus;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Outcome of an auto-debit run for one due date")
+public class AutoDebitRunResult {
+
+    @Schema(description = "Due date installments were collected for", example = "2025-08-05")
+    private LocalDate dueDate;
+
+    @Schema(description = "State of the run's checkpoint after this call; FAILED if the gateway became unavailable", example = "COMPLETED")
+    private BatchJobStatus status;
+
+    @Schema(description = "Whether this call resumed an interrupted run from its checkpoint", example = "false")
+    private boolean resumed;
+
+    @Schema(description = "Due loans processed for the date, across all attempts", example = "312000")
+    private long processedLoans;
+
+    @Schema(description = "Installments collected and posted by this call", example = "280512")
+    private long collected;
+
+    @Schema(description = "Debits the gateway declined, recorded as failed payments", example = "30211")
+    private long bounced;
+
+    @Schema(description = "Debits the gateway did not answer in time, recorded as pending payments until it settles them", example = "12")
+    private long pending;
+
+    @Schema(description = "Collections that could not be posted, e.g. the installment was paid meanwhile; see the log", example = "3")
+    private long rejected;
+
+    @Schema(description = "Loans not attempted because the gateway was unavailable; a later run for the same date picks them up", example = "0")
+    private long skipped;
+
+    @Schema(description = "Time taken by this call in milliseconds", example = "5400000")
+    private long durationMs;
+}
@@ -0,0 +1,40 @@
+package com.loantrackr.dto.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+@Schema(description = "Per-application report of a bulk disbursement")
+public class BulkDisbursementResponse {
+
+    @Schema(description = "Identifier shared by the disbursements of the batch; empty if none was accepted", example = "DB01JQ3V8K2X01Z")
+    private String batchId;
+
+    @Schema(description = "Applications accepted for disbursement", example = "198")
+    private int accepted;
+
+    @Schema(description = "Applications turned away when the batch was submitted; only reported in the submission response", example = "2")
+    private int rejected;
+
+    @Schema(description = "Disbursements still waiting for or being sent to the payment gateway", example = "150")
+    private int inProgress;
+
+    @Schema(description = "Disbursements completed, with the loan activated", example = "45")
+    private int completed;
+
+    @Schema(description = "Disbursements that failed", example = "3")
+    private int failed;
+
+    @Schema(description = "Disbursements whose payout may have been sent without a loan being created; awaiting reconciliation", example = "0")
+    private int unconfirmed;
+
+    @Schema(description = "One entry per application, in the order requested; rejected applications have no disbursement ID and carry the reason")
+    private List<DisbursementStatusResponse> disbursements;
+
+    @Schema(description = "Human-readable summary", example = "198 of 200 applications accepted for disbursement")
+    private String message;
+}
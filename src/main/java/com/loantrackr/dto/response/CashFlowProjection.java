@@ -0,0 +1,33 @@
+package com.loantrackr.dto.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Expected monthly inflows across a lender's active loans; unpaid arrears are counted in the first month")
+public class CashFlowProjection {
+
+    @Schema(description = "Lender ID", example = "42")
+    private Long lenderId;
+
+    @Schema(description = "Projection horizon in months", example = "12")
+    private int months;
+
+    @Schema(description = "Total principal expected over the horizon", example = "15051600.00")
+    private BigDecimal totalPrincipal;
+
+    @Schema(description = "Total interest expected over the horizon", example = "3749409.00")
+    private BigDecimal totalInterest;
+
+    @Schema(description = "Month-by-month curve, starting with the current month")
+    private List<MonthlyCashFlow> curve;
+}
@@ -0,0 +1,45 @@
+package com.loantrackr.dto.response;
+
+import com.loantrackr.enums.DisbursementStatus;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@Schema(description = "Progress of a loan disbursement request")
+public class DisbursementStatusResponse {
+
+    @Schema(description = "Unique identifier of the disbursement request", example = "501")
+    private Long disbursementId;
+
+    @Schema(description = "Loan application being disbursed", example = "1024")
+    private Long applicationId;
+
+    @Schema(description = "Current state of the disbursement", example = "PROCESSING")
+    private DisbursementStatus status;
+
+    @Schema(description = "Amount to be disbursed to the borrower", example = "48000.00")
+    private BigDecimal amount;
+
+    @Schema(description = "Transaction ID issued by the payment gateway, once known", example = "GW01JQ3V8K2X01Z")
+    private String gatewayTransactionId;
+
+    @Schema(description = "Why the disbursement failed, if it did", example = "Insufficient funds in lender account")
+    private String failureReason;
+
+    @Schema(description = "When the disbursement request was accepted", example = "2025-07-23T10:15:30")
+    private LocalDateTime requestedAt;
+
+    @Schema(description = "When the disbursement completed or failed", example = "2025-07-23T10:15:34")
+    private LocalDateTime completedAt;
+
+    @Schema(description = "Loan created by the disbursement; present once it has completed")
+    private LoanDisbursementResponse loan;
+
+    @Schema(description = "Human-readable message about the disbursement state", example = "Disbursement accepted for processing")
+    private String message;
+}
@@ -0,0 +1,29 @@
+package com.loantrackr.dto.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "EMI figures for one tenure offered by a lender")
+public class EmiQuote {
+
+    @Schema(description = "Loan tenure in months", example = "24")
+    private int tenure;
+
+    @Schema(description = "Monthly EMI amount (in INR)", example = "2345.67")
+    private BigDecimal emi;
+
+    @Schema(description = "Total interest payable over the loan period", example = "6296.08")
+    private BigDecimal totalInterest;
+
+    @Schema(description = "Total amount payable over the full loan tenure (principal + interest)", example = "56296.08")
+    private BigDecimal totalPayable;
+}
@@ -0,0 +1,36 @@
+package com.loantrackr.dto.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Amount needed to close a loan today")
+public class ForeclosureQuote {
+
+    @Schema(description = "Loan ID", example = "1012")
+    private Long loanId;
+
+    @Schema(description = "Principal not yet repaid", example = "184320.55")
+    private BigDecimal outstandingPrincipal;
+
+    @Schema(description = "Interest accrued on the outstanding principal since the last due date", example = "1106.31")
+    private BigDecimal accruedInterest;
+
+    @Schema(description = "Total payable to close the loan", example = "185426.86")
+    private BigDecimal totalPayable;
+
+    @Schema(description = "Installments that would no longer be due", example = "18")
+    private int remainingInstallments;
+
+    @Schema(description = "Date the quote is valid for; accrued interest changes daily", example = "2025-07-23")
+    private LocalDate validOn;
+}
@@ -0,0 +1,33 @@
+package com.loantrackr.dto.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "EMI quotes from one lender for every tenure it supports")
+public class LenderEmiComparison {
+
+    @Schema(description = "Unique identifier of the lender", example = "101")
+    private Long lenderId;
+
+    @Schema(description = "Registered name of the lending organization", example = "FinTrust Capital Pvt. Ltd.")
+    private String organization;
+
+    @Schema(description = "Annual interest rate offered by the lender (in %)", example = "13.5")
+    private BigDecimal interestRate;
+
+    @Schema(description = "One-time processing fee charged by the lender", example = "500.00")
+    private BigDecimal processingFee;
+
+    @Schema(description = "EMI quotes, one per supported tenure")
+    private List<EmiQuote> quotes;
+}
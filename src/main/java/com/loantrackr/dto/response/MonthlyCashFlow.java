@@ -0,0 +1,32 @@
+package com.loantrackr.dto.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Expected inflow for one calendar month")
+public class MonthlyCashFlow {
+
+    @Schema(description = "Calendar month", example = "2025-08")
+    private String month;
+
+    @Schema(description = "Principal falling due in the month", example = "1254300.00")
+    private BigDecimal principal;
+
+    @Schema(description = "Interest falling due in the month", example = "312450.75")
+    private BigDecimal interest;
+
+    @Schema(description = "Principal plus interest", example = "1566750.75")
+    private BigDecimal total;
+
+    @Schema(description = "Installments falling due in the month", example = "812")
+    private int installments;
+}
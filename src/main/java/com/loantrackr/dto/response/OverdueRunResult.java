@@ -0,0 +1,45 @@
+package com.loantrackr.dto.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Outcome of an overdue marking and late-fee run")
+public class OverdueRunResult {
+
+    @Schema(description = "Date the run was made for", example = "2025-07-18")
+    private LocalDate businessDate;
+
+    @Schema(description = "Grace period applied, in days after the due date", example = "3")
+    private int gracePeriodDays;
+
+    @Schema(description = "Late fee charged per overdue installment", example = "500.00")
+    private BigDecimal lateFeeAmount;
+
+    @Schema(description = "Installments newly marked overdue, across all schedule storages", example = "18240")
+    private long markedOverdue;
+
+    @Schema(description = "Overdue installments newly charged the late fee", example = "18240")
+    private long lateFeesCharged;
+
+    @Schema(description = "Overdue installments of computed schedules inserted as rows", example = "16980")
+    private long computedInstallmentsInserted;
+
+    @Schema(description = "Packed schedules updated in place", example = "310")
+    private long packedSchedulesUpdated;
+
+    @Schema(description = "Time taken by the set-based updates of installment rows, in milliseconds", example = "850")
+    private long rowsDurationMs;
+
+    @Schema(description = "Time taken by the run in milliseconds", example = "2400")
+    private long durationMs;
+}
@@ -4,11 +4,13 @@ import com.loantrackr.enums.PaymentStatus;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
+import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 
+@Data
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
@@ -27,10 +29,16 @@ public class PaymentResponse {
     @Schema(description = "Amount paid in this transaction", example = "2000.00")
     private BigDecimal amount;
 
-    @Schema(description = "Installment number being paid", example = "3")
+    @Schema(description = "First installment the payment went to", example = "3")
     private int installmentNumber;
 
-    @Schema(description = "Remaining principal + interest after this payment", example = "12000.00")
+    @Schema(description = "Installments paid off in full by this payment", example = "2")
+    private int installmentsPaid;
+
+    @Schema(description = "Amount paid so far toward the next unpaid installment, which stays due until covered", example = "1000.25")
+    private BigDecimal partiallyPaidAmount;
+
+    @Schema(description = "Principal + interest of the installments not yet paid in full, after this payment", example = "12000.00")
     private BigDecimal remainingAmount;
 
     @Schema(description = "Due date of the next installment, if any", example = "2025-08-23", nullable = true)
@@ -0,0 +1,59 @@
+package com.loantrackr.dto.response;
+
+import com.loantrackr.enums.PaymentStatus;
+import com.loantrackr.enums.PrepaymentMode;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Outcome of a part-prepayment and the re-amortized terms")
+public class PrepaymentResponse {
+
+    @Schema(description = "Unique identifier for the payment record", example = "98766")
+    private Long paymentId;
+
+    @Schema(description = "Transaction ID associated with this payment", example = "TXN202507231512")
+    private String transactionId;
+
+    @Schema(description = "Final status of the payment transaction", example = "SUCCESS", enumAsRef = true)
+    private PaymentStatus status;
+
+    @Schema(description = "How the remaining schedule was re-amortized", example = "REDUCE_TENURE")
+    private PrepaymentMode mode;
+
+    @Schema(description = "Principal prepaid", example = "50000.00")
+    private BigDecimal principalPrepaid;
+
+    @Schema(description = "Interest accrued on the prepaid principal since the last due date", example = "300.14")
+    private BigDecimal accruedInterest;
+
+    @Schema(description = "Total amount collected", example = "50300.14")
+    private BigDecimal amountCharged;
+
+    @Schema(description = "Outstanding principal after the prepayment", example = "134320.55")
+    private BigDecimal outstandingPrincipal;
+
+    @Schema(description = "EMI from the next installment on", example = "8123.40")
+    private BigDecimal emi;
+
+    @Schema(description = "Installments left, including the next one", example = "13")
+    private int remainingInstallments;
+
+    @Schema(description = "Remaining principal + interest after this payment", example = "105604.20")
+    private BigDecimal remainingAmount;
+
+    @Schema(description = "Due date of the next installment", example = "2025-08-23")
+    private LocalDate nextDueDate;
+
+    @Schema(description = "Optional message or remarks associated with this payment", example = "Payment processed successfully")
+    private String message;
+}
@@ -0,0 +1,50 @@
+package com.loantrackr.dto.response;
+
+import com.loantrackr.enums.BatchJobStatus;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@Schema(description = "Progress of a gateway settlement reconciliation")
+public class ReconciliationJobResponse {
+
+    @Schema(description = "Unique identifier of the reconciliation job", example = "12")
+    private Long jobId;
+
+    @Schema(description = "Name of the uploaded settlement file", example = "settlement_2025-07-14.csv")
+    private String fileName;
+
+    @Schema(description = "State of the reconciliation", example = "RUNNING")
+    private BatchJobStatus status;
+
+    @Schema(description = "Data rows read so far", example = "2400000")
+    private long totalRows;
+
+    @Schema(description = "Transactions whose status and amount match our payment", example = "2399712")
+    private long matchedRows;
+
+    @Schema(description = "Transactions with no payment on our side", example = "41")
+    private long missingRows;
+
+    @Schema(description = "Transactions whose status differs from our payment", example = "230")
+    private long statusMismatches;
+
+    @Schema(description = "Transactions whose amount differs from our payment", example = "12")
+    private long amountMismatches;
+
+    @Schema(description = "Duplicate payments for one transaction and invalid file rows", example = "5")
+    private long otherMismatches;
+
+    @Schema(description = "Why the reconciliation stopped, if it failed", example = "Unexpected header")
+    private String failureReason;
+
+    @Schema(description = "When the file was uploaded", example = "2025-07-15T02:00:05")
+    private LocalDateTime createdAt;
+
+    @Schema(description = "When the reconciliation completed or failed", example = "2025-07-15T02:03:51")
+    private LocalDateTime completedAt;
+}
@@ -0,0 +1,44 @@
+package com.loantrackr.dto.response;
+
+import com.loantrackr.enums.BatchJobStatus;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@Schema(description = "Progress of a repayment file ingestion")
+public class RepaymentFileJobResponse {
+
+    @Schema(description = "Unique identifier of the ingestion job", example = "88")
+    private Long jobId;
+
+    @Schema(description = "Name of the uploaded file", example = "nach_debits_2025-07-14.csv")
+    private String fileName;
+
+    @Schema(description = "State of the ingestion", example = "RUNNING")
+    private BatchJobStatus status;
+
+    @Schema(description = "Data rows read so far", example = "42000")
+    private long totalRows;
+
+    @Schema(description = "Successful debits posted against an installment", example = "40112")
+    private long postedRows;
+
+    @Schema(description = "Failed debits recorded as failed payments", example = "1790")
+    private long bouncedRows;
+
+    @Schema(description = "Rows that could not be posted; each is listed with its reason in the result file", example = "98")
+    private long rejectedRows;
+
+    @Schema(description = "Why the ingestion stopped, if it failed", example = "Unexpected header")
+    private String failureReason;
+
+    @Schema(description = "When the file was uploaded", example = "2025-07-15T06:00:12")
+    private LocalDateTime createdAt;
+
+    @Schema(description = "When the ingestion completed or failed", example = "2025-07-15T06:01:40")
+    private LocalDateTime completedAt;
+}
@@ -0,0 +1,29 @@
+package com.loantrackr.dto.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Outcome of converting loan repayment schedules to packed storage")
+public class ScheduleMigrationResult {
+
+    @Schema(description = "Disbursed loans that were not yet packed when the run started", example = "1250")
+    private int candidates;
+
+    @Schema(description = "Loans converted and verified in this run", example = "500")
+    private int migrated;
+
+    @Schema(description = "Loans whose packed schedule failed verification or could not be converted")
+    private List<Long> failedLoanIds;
+
+    @Schema(description = "Loans still left for a later run", example = "750")
+    private int remaining;
+}
@@ -0,0 +1,7 @@
+package com.loantrackr.enums;
+
+public enum BatchJobStatus {
+    RUNNING,    // Started, or interrupted before finishing; resumes from its checkpoint
+    COMPLETED,
+    FAILED      // Stopped on an error; resumes from its checkpoint on the next run
+}
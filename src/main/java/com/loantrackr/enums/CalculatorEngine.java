@@ -0,0 +1,6 @@
+package com.loantrackr.enums;
+
+public enum CalculatorEngine {
+    BIG_DECIMAL,    // Reference engine, arbitrary precision
+    FIXED_POINT     // Long paise + fixed-point rate, same results
+}
@@ -0,0 +1,9 @@
+package com.loantrackr.enums;
+
+public enum DisbursementStatus {
+    ACCEPTED,    // Recorded, waiting for a disbursement worker
+    PROCESSING,  // Claimed by a worker, gateway call in flight
+    COMPLETED,   // Gateway confirmed, loan and schedule created
+    FAILED,      // Gateway declined or never took the payout; application stays APPROVED
+    UNCONFIRMED  // Funds may have been sent but no loan was created; blocks another disbursement until reconciled
+}
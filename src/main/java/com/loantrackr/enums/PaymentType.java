@@ -0,0 +1,6 @@
+package com.loantrackr.enums;
+
+public enum PaymentType {
+    INSTALLMENT,    // Scheduled EMI (plus any late fee)
+    PREPAYMENT      // Part-prepayment of principal outside the schedule
+}
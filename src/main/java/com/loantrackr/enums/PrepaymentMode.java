@@ -0,0 +1,6 @@
+package com.loantrackr.enums;
+
+public enum PrepaymentMode {
+    REDUCE_EMI,     // Keep the remaining tenure, lower the EMI
+    REDUCE_TENURE   // Keep the EMI, finish earlier
+}
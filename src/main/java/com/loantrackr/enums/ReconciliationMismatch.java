@@ -0,0 +1,9 @@
+package com.loantrackr.enums;
+
+public enum ReconciliationMismatch {
+    MISSING_ON_OUR_SIDE,
+    STATUS_DIFFERS,
+    AMOUNT_DIFFERS,
+    DUPLICATE_ON_OUR_SIDE,
+    INVALID_ROW
+}
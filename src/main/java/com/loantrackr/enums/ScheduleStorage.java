@@ -0,0 +1,7 @@
+package com.loantrackr.enums;
+
+public enum ScheduleStorage {
+    ROWS,       // One loan_repayment_schedule row per installment, written at disbursement
+    COMPUTED,   // Derived from the loan's schedule parameters; rows only for paid/late/overdue installments
+    PACKED      // Whole schedule encoded into Loan.packedSchedule, see PackedScheduleCodec
+}
@@ -0,0 +1,27 @@
+package com.loantrackr.exception;
+
+import java.time.Duration;
+
+public class GatewayUnavailableException extends RuntimeException {
+
+    private final boolean callAttempted;
+    private final Duration retryAfter;
+
+    /**
+     * @param callAttempted whether the request may have reached the gateway (a timeout) or was
+     *                      rejected before being sent (open circuit, no free permit)
+     */
+    public GatewayUnavailableException(String message, boolean callAttempted, Duration retryAfter) {
+        super(message);
+        this.callAttempted = callAttempted;
+        this.retryAfter = retryAfter;
+    }
+
+    public boolean isCallAttempted() {
+        return callAttempted;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,11 @@
+package com.loantrackr.exception;
+
+/**
+ * An earlier request failed after its side effects may have taken place, e.g. after a payment
+ * was sent to the gateway, so it is neither repeated nor reported as failed.
+ */
+public class OutcomeUnknownException extends RuntimeException {
+    public OutcomeUnknownException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,63 @@
+package com.loantrackr.model;
+
+import com.loantrackr.enums.BatchJobStatus;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Progress of a chunked batch job for one business date, committed together with each chunk so an
+ * interrupted run can resume after the last entity it processed.
+ */
+@Entity
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "batch_job_checkpoint",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"job_name", "business_date"}))
+public class BatchJobCheckpoint {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "batch_job_checkpoint_seq")
+    @SequenceGenerator(name = "batch_job_checkpoint_seq", sequenceName = "batch_job_checkpoint_seq", allocationSize = 1)
+    private Long id;
+
+    @Column(name = "job_name", nullable = false)
+    private String jobName;
+
+    @Column(name = "business_date", nullable = false)
+    private LocalDate businessDate;
+
+    @Column(nullable = false)
+    private long lastProcessedId;
+
+    @Column(nullable = false)
+    private long processedCount;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private BatchJobStatus status;
+
+    @Column(nullable = false)
+    private LocalDateTime startedAt;
+
+    @Column
+    private LocalDateTime updatedAt;
+
+    @Column
+    private LocalDateTime completedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        this.startedAt = LocalDateTime.now();
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        this.updatedAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,41 @@
+package com.loantrackr.model;
+
+import com.loantrackr.enums.PaymentStatus;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * A status notification received from the payment gateway. The gateway delivers each one at least
+ * once, so the pair of transaction and status is unique: a redelivery finds its row already here.
+ */
+@Entity
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "gateway_callback",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"gateway_transaction_id", "status"}))
+public class GatewayCallback {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "gateway_callback_seq")
+    @SequenceGenerator(name = "gateway_callback_seq", sequenceName = "gateway_callback_seq", allocationSize = 1)
+    private Long id;
+
+    @Column(name = "gateway_transaction_id", nullable = false)
+    private String gatewayTransactionId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private PaymentStatus status;
+
+    @Column(precision = 15, scale = 2)
+    private BigDecimal amount;
+
+    @Column(nullable = false)
+    private LocalDateTime receivedAt;
+}
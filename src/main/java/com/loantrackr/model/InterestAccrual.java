@@ -0,0 +1,46 @@
+package com.loantrackr.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Interest a loan accrued on one business day, written by the end-of-day accrual job.
+ */
+@Entity
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "interest_accrual",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"loan_id", "accrual_date"}))
+public class InterestAccrual {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "interest_accrual_seq")
+    @SequenceGenerator(name = "interest_accrual_seq", sequenceName = "interest_accrual_seq", allocationSize = 1)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "loan_id")
+    private Loan loan;
+
+    @Column(name = "accrual_date", nullable = false)
+    private LocalDate accrualDate;
+
+    @Column(nullable = false)
+    private int installmentNumber;
+
+    @Column(nullable = false, precision = 15, scale = 2)
+    private BigDecimal dailyInterest;
+
+    @Column(nullable = false, precision = 15, scale = 2)
+    private BigDecimal accruedInterest; // Accrued on the installment so far, this day included
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+}
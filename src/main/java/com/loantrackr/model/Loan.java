@@ -1,8 +1,10 @@
 package com.loantrackr.model;
 
 import com.loantrackr.enums.LoanStatus;
+import com.loantrackr.enums.ScheduleStorage;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
@@ -16,11 +18,12 @@ import java.util.List;
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
+@Table(indexes = @Index(columnList = "next_due_date, id"))
 public class Loan {
 
     @Id
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "loan_seq")
-    @SequenceGenerator(name = "loan_seq", sequenceName = "loan_seq", allocationSize = 1)
+    @SequenceGenerator(name = "loan_seq", sequenceName = "loan_seq", allocationSize = 50)
     private Long id;
 
     @OneToOne(optional = false)
@@ -63,6 +66,46 @@ public class Loan {
     @Column(nullable = false)
     private int paidInstallments = 0;
 
+    // Schedule parameters, enough to derive every installment (see RepaymentScheduleService)
+    @Column(precision = 15, scale = 2)
+    private BigDecimal emiAmount;
+
+    @Column
+    private BigDecimal interestRate; // Annual %
+
+    @Column
+    private LocalDate firstDueDate;
+
+    @Enumerated(EnumType.STRING)
+    @Column
+    private ScheduleStorage scheduleStorage; // null for loans disbursed before schedule modes existed (ROWS)
+
+    @Column
+    private byte[] packedSchedule; // Only for PACKED storage
+
+    @Column(precision = 15, scale = 2)
+    private BigDecimal outstandingPrincipal; // null for loans disbursed before it was tracked
+
+    // Paid toward the first unpaid installment, which stays unpaid until covered (see PaymentAllocator); null if none
+    @Column(precision = 15, scale = 2)
+    private BigDecimal partiallyPaidAmount;
+
+    // Set once the loan is re-amortized after a prepayment: derived installments start here
+    @Column
+    private Integer rescheduledFromInstallment;
+
+    @Column(precision = 15, scale = 2)
+    private BigDecimal rescheduledPrincipal;
+
+    @Column
+    private LocalDate rescheduledDueDate;
+
+    // Optimistic lock; JDBC writers bump it too. The default covers rows from before it existed.
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long version;
+
     @OneToMany(mappedBy = "loan", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<LoanRepaymentSchedule> repaymentSchedules;
 
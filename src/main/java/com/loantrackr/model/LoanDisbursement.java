@@ -0,0 +1,69 @@
+package com.loantrackr.model;
+
+import com.loantrackr.enums.DisbursementStatus;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * A lender's request to disburse an approved application, tracked from acceptance until the
+ * payment gateway's outcome is known. The {@link Loan} only exists once the gateway confirms.
+ */
+@Entity
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "loan_disbursement", indexes = @Index(columnList = "batch_id"))
+public class LoanDisbursement {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "loan_disbursement_seq")
+    @SequenceGenerator(name = "loan_disbursement_seq", sequenceName = "loan_disbursement_seq", allocationSize = 50)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    private LoanApplication loanApplication;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    private Loan loan; // Set on completion
+
+    @Column(nullable = false, precision = 15, scale = 2)
+    private BigDecimal amount;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private DisbursementStatus status;
+
+    @Column
+    private String gatewayTransactionId;
+
+    @Column
+    private String failureReason;
+
+    @Column(name = "batch_id")
+    private String batchId; // Set for disbursements requested in bulk
+
+    @Column(nullable = false)
+    private LocalDateTime requestedAt;
+
+    @Column
+    private LocalDateTime completedAt;
+
+    @Column
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        this.requestedAt = LocalDateTime.now();
+        if (this.status == null) this.status = DisbursementStatus.ACCEPTED;
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        this.updatedAt = LocalDateTime.now();
+    }
+}
@@ -2,6 +2,8 @@ package com.loantrackr.model;
 
 import com.loantrackr.enums.PaymentMethod;
 import com.loantrackr.enums.PaymentStatus;
+import com.loantrackr.enums.PaymentType;
+import com.loantrackr.enums.PrepaymentMode;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -14,23 +16,41 @@ import java.time.LocalDateTime;
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
-@Table(name = "loan_payments")
+@Table(name = "loan_payments", indexes = @Index(columnList = "gateway_transaction_id"))
 public class LoanPayment {
 
     @Id
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "loan_payment_seq")
-    @SequenceGenerator(name = "loan_payment_seq", sequenceName = "loan_payment_seq", allocationSize = 1)
+    @SequenceGenerator(name = "loan_payment_seq", sequenceName = "loan_payment_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY, optional = false)
     private Loan loan;
 
-    @ManyToOne(fetch = FetchType.LAZY, optional = false)
-    private LoanRepaymentSchedule repaymentSchedule;
+    @ManyToOne(fetch = FetchType.LAZY)
+    private LoanRepaymentSchedule repaymentSchedule; // null for loans with a packed schedule
+
+    @Column
+    private Integer installmentNumber; // null for prepayments
+
+    @Enumerated(EnumType.STRING)
+    @Column
+    private PaymentType paymentType; // null for payments recorded before prepayments existed (INSTALLMENT)
 
     @Column(nullable = false, precision = 15, scale = 2)
     private BigDecimal amount;
 
+    // Prepayments only: how the amount is applied once collected; amount = principalPrepaid + accruedInterest
+    @Enumerated(EnumType.STRING)
+    @Column
+    private PrepaymentMode prepaymentMode;
+
+    @Column(precision = 15, scale = 2)
+    private BigDecimal principalPrepaid;
+
+    @Column(precision = 15, scale = 2)
+    private BigDecimal accruedInterest;
+
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
     private PaymentMethod paymentMethod;
@@ -57,7 +77,8 @@ public class LoanPayment {
     @PrePersist
     protected void onCreate() {
         this.createdAt = LocalDateTime.now();
-        this.status = PaymentStatus.PENDING;
+        // Keep the gateway outcome the payment was built with
+        if (this.status == null) this.status = PaymentStatus.PENDING;
     }
 
     public boolean isSuccessful() {
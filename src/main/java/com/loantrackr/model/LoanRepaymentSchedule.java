@@ -1,8 +1,10 @@
 package com.loantrackr.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.loantrackr.enums.LoanRepaymentStatus;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -14,14 +16,16 @@ import java.time.LocalDateTime;
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
-@Table(name = "loan_repayment_schedule")
+@Table(name = "loan_repayment_schedule", indexes = @Index(columnList = "status, due_date"),
+        uniqueConstraints = @UniqueConstraint(columnNames = {"loan_id", "installment_number"}))
 public class LoanRepaymentSchedule {
 
     @Id
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "loan_repayment_seq")
-    @SequenceGenerator(name = "loan_repayment_seq", sequenceName = "loan_repayment_seq", allocationSize = 1)
+    @SequenceGenerator(name = "loan_repayment_seq", sequenceName = "loan_repayment_seq", allocationSize = 50)
     private Long id;
 
+    @JsonIgnore
     @ManyToOne(fetch = FetchType.LAZY, optional = false)
     private Loan loan;
 
@@ -53,6 +57,12 @@ public class LoanRepaymentSchedule {
     @Column(precision = 15, scale = 2)
     private BigDecimal totalAmountPaid; // EMI + Late Fee
 
+    @JsonIgnore
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long version;
+
     @Column
     private LocalDateTime createdAt;
 
@@ -62,8 +72,9 @@ public class LoanRepaymentSchedule {
     @PrePersist
     protected void onCreate() {
         this.createdAt = LocalDateTime.now();
-        this.status = LoanRepaymentStatus.PENDING;
-        this.lateFee = BigDecimal.ZERO;
+        // Derived installments may already carry a status or late fee when first persisted
+        if (this.status == null) this.status = LoanRepaymentStatus.PENDING;
+        if (this.lateFee == null) this.lateFee = BigDecimal.ZERO;
     }
 
     @PreUpdate
@@ -0,0 +1,85 @@
+package com.loantrackr.model;
+
+import com.loantrackr.enums.BatchJobStatus;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * One uploaded gateway settlement file and the progress of its reconciliation against
+ * {@code loan_payments}. Counts are committed after each chunk of rows.
+ */
+@Entity
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "reconciliation_job")
+public class ReconciliationJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "reconciliation_job_seq")
+    @SequenceGenerator(name = "reconciliation_job_seq", sequenceName = "reconciliation_job_seq", allocationSize = 1)
+    private Long id;
+
+    @Column(nullable = false)
+    private String fileName;
+
+    @Column(nullable = false)
+    private String storedFile;
+
+    @Column
+    private String resultFile;
+
+    @Column(nullable = false)
+    private String uploadedBy;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private BatchJobStatus status;
+
+    @Column(nullable = false)
+    private long totalRows;
+
+    @Column(nullable = false)
+    private long matchedRows; // Same status and amount on both sides
+
+    @Column(nullable = false)
+    private long missingRows; // In the file, no payment with that gateway transaction ID
+
+    @Column(nullable = false)
+    private long statusMismatches;
+
+    @Column(nullable = false)
+    private long amountMismatches;
+
+    @Column(nullable = false)
+    private long otherMismatches; // Duplicate payments for a transaction, invalid file rows
+
+    @Column(nullable = false)
+    private long lastProcessedLine; // Resume point after a restart
+
+    @Column
+    private String failureReason;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column
+    private LocalDateTime updatedAt;
+
+    @Column
+    private LocalDateTime completedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        this.createdAt = LocalDateTime.now();
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        this.updatedAt = LocalDateTime.now();
+    }
+}
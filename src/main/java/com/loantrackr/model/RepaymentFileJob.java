@@ -0,0 +1,79 @@
+package com.loantrackr.model;
+
+import com.loantrackr.enums.BatchJobStatus;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * One uploaded collections partner debit file and the progress of its ingestion. Counts are
+ * committed together with each chunk of rows.
+ */
+@Entity
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "repayment_file_job")
+public class RepaymentFileJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "repayment_file_job_seq")
+    @SequenceGenerator(name = "repayment_file_job_seq", sequenceName = "repayment_file_job_seq", allocationSize = 1)
+    private Long id;
+
+    @Column(nullable = false)
+    private String fileName;
+
+    @Column(nullable = false)
+    private String storedFile;
+
+    @Column
+    private String resultFile;
+
+    @Column(nullable = false)
+    private String uploadedBy;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private BatchJobStatus status;
+
+    @Column(nullable = false)
+    private long totalRows;
+
+    @Column(nullable = false)
+    private long postedRows; // Successful debits posted against an installment
+
+    @Column(nullable = false)
+    private long bouncedRows; // Failed debits recorded as failed payments
+
+    @Column(nullable = false)
+    private long rejectedRows; // Rows not posted, listed in the result file
+
+    @Column(nullable = false)
+    private long lastProcessedLine; // Resume point after a restart
+
+    @Column
+    private String failureReason;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column
+    private LocalDateTime updatedAt;
+
+    @Column
+    private LocalDateTime completedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        this.createdAt = LocalDateTime.now();
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        this.updatedAt = LocalDateTime.now();
+    }
+}
@@ -19,7 +19,7 @@ public class User {
 
     @Id
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_seq_gen")
-    @SequenceGenerator(name = "user_seq_gen", sequenceName = "user_seq", allocationSize = 1)
+    @SequenceGenerator(name = "user_seq_gen", sequenceName = "user_seq", allocationSize = 50)
     @Column(nullable = false)
     private Long id;
 
@@ -0,0 +1,11 @@
+package com.loantrackr.repository;
+
+import com.loantrackr.model.BatchJobCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+public interface BatchJobCheckpointRepository extends JpaRepository<BatchJobCheckpoint, Long> {
+    Optional<BatchJobCheckpoint> findByJobNameAndBusinessDate(String jobName, LocalDate businessDate);
+}
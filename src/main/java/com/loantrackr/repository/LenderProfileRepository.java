@@ -1,9 +1,20 @@
 package com.loantrackr.repository;
 
+import com.loantrackr.dto.projection.LenderTerms;
 import com.loantrackr.model.LenderProfile;
 import com.loantrackr.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
 
 public interface LenderProfileRepository extends JpaRepository<LenderProfile, Long> {
     LenderProfile findByUser(User user);
+
+    List<LenderProfile> findAllByIsVerifiedTrue();
+
+    @Query("SELECT new com.loantrackr.dto.projection.LenderTerms(l.id, l.organizationName, l.interestRate, l.processingFee, l.supportedTenures) " +
+            "FROM LenderProfile l JOIN l.user u " +
+            "WHERE l.isVerified = true AND u.isActive = true AND u.isVerified = true")
+    List<LenderTerms> findActiveLenderTerms();
 }
\ No newline at end of file
@@ -1,12 +1,19 @@
 package com.loantrackr.repository;
 
+import com.loantrackr.dto.response.LoanApplicationResponseForLender;
 import com.loantrackr.enums.LoanStatus;
 import com.loantrackr.model.LenderProfile;
 import com.loantrackr.model.LoanApplication;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface LoanApplicationRepository extends JpaRepository<LoanApplication, Long> {
     boolean existsByUserIdAndStatusIn(Long userId, List<LoanStatus> pending);
@@ -17,10 +24,39 @@ public interface LoanApplicationRepository extends JpaRepository<LoanApplication
 
     List<LoanApplication> findLoanApplicationByLender(LenderProfile lender);
 
-    List<LoanApplication> findByLenderId(Long lenderId);
-
-    List<LoanApplication> findByLenderIdAndStatus(Long lenderId, LoanStatus status);
+    /**
+     * A lender's applications as list rows, read in one query with the lender and borrower joined
+     * in rather than loaded per application. Arguments follow the field order of the response.
+     */
+    @Query("SELECT new com.loantrackr.dto.response.LoanApplicationResponseForLender(a.id, a.loanRequested, a.tenure, " +
+            "a.emiAmount, a.interestRate, a.processingFee, a.status, l.organizationName, a.appliedAt, a.purpose, " +
+            "u.username, u.email, a.monthlyIncome, a.incomeSource) " +
+            "FROM LoanApplication a JOIN a.lender l JOIN a.user u " +
+            "WHERE l.id = :lenderId ORDER BY a.id")
+    List<LoanApplicationResponseForLender> findResponsesByLenderId(@Param("lenderId") Long lenderId);
+
+    /**
+     * As {@link #findResponsesByLenderId}, for applications in one status.
+     */
+    @Query("SELECT new com.loantrackr.dto.response.LoanApplicationResponseForLender(a.id, a.loanRequested, a.tenure, " +
+            "a.emiAmount, a.interestRate, a.processingFee, a.status, l.organizationName, a.appliedAt, a.purpose, " +
+            "u.username, u.email, a.monthlyIncome, a.incomeSource) " +
+            "FROM LoanApplication a JOIN a.lender l JOIN a.user u " +
+            "WHERE l.id = :lenderId AND a.status = :status ORDER BY a.id")
+    List<LoanApplicationResponseForLender> findResponsesByLenderIdAndStatus(@Param("lenderId") Long lenderId,
+                                                                            @Param("status") LoanStatus status);
 
     long countByLenderIdAndStatus(Long lenderId, LoanStatus status);
 
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM LoanApplication a WHERE a.id = :id")
+    Optional<LoanApplication> findByIdForUpdate(@Param("id") Long id);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM LoanApplication a WHERE a.id IN :ids ORDER BY a.id")
+    List<LoanApplication> findAllByIdForUpdate(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT a.id FROM LoanApplication a WHERE a.lender.id = :lenderId AND a.status = :status ORDER BY a.id")
+    List<Long> findIdsByLenderIdAndStatus(@Param("lenderId") Long lenderId, @Param("status") LoanStatus status, Pageable pageable);
+
 }
\ No newline at end of file
@@ -0,0 +1,71 @@
+package com.loantrackr.repository;
+
+import com.loantrackr.enums.DisbursementStatus;
+import com.loantrackr.model.LoanDisbursement;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface LoanDisbursementRepository extends JpaRepository<LoanDisbursement, Long> {
+    boolean existsByLoanApplicationIdAndStatusIn(Long applicationId, Collection<DisbursementStatus> statuses);
+
+    @Query("SELECT d.loanApplication.id FROM LoanDisbursement d WHERE d.loanApplication.id IN :applicationIds AND d.status IN :statuses")
+    List<Long> findApplicationIdsWithStatusIn(@Param("applicationIds") Collection<Long> applicationIds,
+                                              @Param("statuses") Collection<DisbursementStatus> statuses);
+
+    List<LoanDisbursement> findByBatchIdOrderById(String batchId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT d FROM LoanDisbursement d WHERE d.id = :id")
+    Optional<LoanDisbursement> findByIdForUpdate(@Param("id") Long id);
+
+    /**
+     * Locks the given disbursements that are still ACCEPTED, for claiming them together.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT d FROM LoanDisbursement d WHERE d.id IN :ids AND d.status = com.loantrackr.enums.DisbursementStatus.ACCEPTED ORDER BY d.id")
+    List<LoanDisbursement> findAcceptedByIdInForUpdate(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT d.id FROM LoanDisbursement d WHERE d.status = com.loantrackr.enums.DisbursementStatus.ACCEPTED " +
+            "AND d.requestedAt < :before ORDER BY d.id")
+    List<Long> findAcceptedIdsRequestedBefore(@Param("before") LocalDateTime before);
+
+    /**
+     * Moves an accepted disbursement to PROCESSING; returns 0 if another worker got there first.
+     */
+    @Modifying
+    @Query("UPDATE LoanDisbursement d SET d.status = com.loantrackr.enums.DisbursementStatus.PROCESSING, d.updatedAt = :now " +
+            "WHERE d.id = :id AND d.status = com.loantrackr.enums.DisbursementStatus.ACCEPTED")
+    int claim(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    /**
+     * Returns a claimed disbursement that was never sent to the gateway to ACCEPTED.
+     */
+    @Modifying
+    @Query("UPDATE LoanDisbursement d SET d.status = com.loantrackr.enums.DisbursementStatus.ACCEPTED, d.updatedAt = :now " +
+            "WHERE d.id = :id AND d.status = com.loantrackr.enums.DisbursementStatus.PROCESSING")
+    int release(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE LoanDisbursement d SET d.status = com.loantrackr.enums.DisbursementStatus.ACCEPTED, d.updatedAt = :now " +
+            "WHERE d.id IN :ids AND d.status = com.loantrackr.enums.DisbursementStatus.PROCESSING")
+    int releaseAll(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    /**
+     * Marks UNCONFIRMED the disbursements left PROCESSING since before the cutoff, whose worker is gone.
+     */
+    @Modifying
+    @Query("UPDATE LoanDisbursement d SET d.status = com.loantrackr.enums.DisbursementStatus.UNCONFIRMED, " +
+            "d.failureReason = :reason, d.completedAt = :now, d.updatedAt = :now " +
+            "WHERE d.status = com.loantrackr.enums.DisbursementStatus.PROCESSING AND d.updatedAt < :before")
+    int markProcessingUnconfirmed(@Param("before") LocalDateTime before, @Param("now") LocalDateTime now,
+                                  @Param("reason") String reason);
+}
@@ -1,11 +1,36 @@
 package com.loantrackr.repository;
 
+import com.loantrackr.dto.projection.PendingInstallmentPayment;
 import com.loantrackr.model.Loan;
 import com.loantrackr.model.LoanPayment;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface LoanPaymentRepository extends JpaRepository<LoanPayment, Long> {
     List<LoanPayment> findByLoanOrderByCreatedAtDesc(Loan loan);
+
+    @Query("SELECT p.gatewayTransactionId FROM LoanPayment p WHERE p.gatewayTransactionId IN :references")
+    List<String> findExistingGatewayTransactionIds(@Param("references") Collection<String> references);
+
+    @Query("SELECT new com.loantrackr.dto.projection.PendingInstallmentPayment(p.loan.id, p.installmentNumber) FROM LoanPayment p " +
+            "WHERE p.loan.id IN :loanIds AND p.status = com.loantrackr.enums.PaymentStatus.PENDING AND p.installmentNumber IS NOT NULL")
+    List<PendingInstallmentPayment> findPendingInstallmentPayments(@Param("loanIds") Collection<Long> loanIds);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM LoanPayment p WHERE p.gatewayTransactionId = :gatewayTransactionId")
+    Optional<LoanPayment> findByGatewayTransactionIdForUpdate(@Param("gatewayTransactionId") String gatewayTransactionId);
+
+    @Modifying
+    @Query("UPDATE LoanPayment p SET p.installmentNumber = " +
+            "(SELECT s.installmentNumber FROM LoanRepaymentSchedule s WHERE s = p.repaymentSchedule) " +
+            "WHERE p.loan = :loan AND p.installmentNumber IS NULL")
+    int backfillInstallmentNumbers(@Param("loan") Loan loan);
 }
@@ -1,15 +1,69 @@
 package com.loantrackr.repository;
 
+import com.loantrackr.dto.projection.CurrentInstallment;
+import com.loantrackr.dto.projection.PendingInstallment;
 import com.loantrackr.enums.LoanRepaymentStatus;
 import com.loantrackr.model.Loan;
 import com.loantrackr.model.LoanRepaymentSchedule;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDate;
 import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface LoanRepaymentScheduleRepository extends JpaRepository<LoanRepaymentSchedule, Long> {
     List<LoanRepaymentSchedule> findByLoanOrderByInstallmentNumber(Loan loan);
 
     Collection<LoanRepaymentSchedule> findByLoanAndStatus(Loan loan, LoanRepaymentStatus loanRepaymentStatus);
+
+    Optional<LoanRepaymentSchedule> findFirstByLoanAndStatusInOrderByInstallmentNumberAsc(Loan loan, Collection<LoanRepaymentStatus> statuses);
+
+    Optional<LoanRepaymentSchedule> findByLoanAndInstallmentNumber(Loan loan, int installmentNumber);
+
+    /**
+     * One keyset chunk of unpaid installment rows due before {@code until} on a lender's active
+     * loans whose schedules are stored as rows. Pass the last id of the previous chunk.
+     */
+    @Query("SELECT new com.loantrackr.dto.projection.PendingInstallment(s.id, s.dueDate, s.principalAmount, s.interestAmount) " +
+            "FROM LoanRepaymentSchedule s JOIN s.loan l " +
+            "WHERE l.lender.id = :lenderId AND l.status = com.loantrackr.enums.LoanStatus.DISBURSED " +
+            "AND (l.scheduleStorage IS NULL OR l.scheduleStorage = com.loantrackr.enums.ScheduleStorage.ROWS) " +
+            "AND s.status IN (com.loantrackr.enums.LoanRepaymentStatus.PENDING, com.loantrackr.enums.LoanRepaymentStatus.OVERDUE) " +
+            "AND s.dueDate < :until AND s.id > :afterId " +
+            "ORDER BY s.id")
+    List<PendingInstallment> findPendingInstallmentsForLender(@Param("lenderId") Long lenderId,
+                                                              @Param("until") LocalDate until,
+                                                              @Param("afterId") long afterId,
+                                                              Pageable pageable);
+
+    List<LoanRepaymentSchedule> findByLoanAndInstallmentNumberGreaterThanEqualOrderByInstallmentNumber(Loan loan, int installmentNumber);
+
+    /**
+     * First unpaid installment row of each given loan.
+     */
+    @Query("SELECT new com.loantrackr.dto.projection.CurrentInstallment(l.id, s.installmentNumber, s.dueDate, s.interestAmount) " +
+            "FROM LoanRepaymentSchedule s JOIN s.loan l " +
+            "WHERE l.id IN :loanIds AND s.installmentNumber = l.paidInstallments + 1")
+    List<CurrentInstallment> findCurrentInstallments(@Param("loanIds") Collection<Long> loanIds);
+
+    /**
+     * Next installment row of each given loan, for loans that have one.
+     */
+    @Query("SELECT s FROM LoanRepaymentSchedule s JOIN s.loan l " +
+            "WHERE l.id IN :loanIds AND s.installmentNumber = l.paidInstallments + 1")
+    List<LoanRepaymentSchedule> findNextInstallmentRows(@Param("loanIds") Collection<Long> loanIds);
+
+    @Modifying
+    @Query("DELETE FROM LoanRepaymentSchedule s WHERE s.loan = :loan AND s.installmentNumber > :installmentNumber")
+    int deleteByLoanAndInstallmentNumberGreaterThan(@Param("loan") Loan loan, @Param("installmentNumber") int installmentNumber);
+
+    @Modifying
+    @Query("DELETE FROM LoanRepaymentSchedule s WHERE s.loan = :loan " +
+            "AND NOT EXISTS (SELECT p FROM LoanPayment p WHERE p.repaymentSchedule = s)")
+    int deleteUnreferencedByLoan(@Param("loan") Loan loan);
 }
\ No newline at end of file
@@ -1,14 +1,21 @@
 package com.loantrackr.repository;
 
+import com.loantrackr.dto.projection.LoanScheduleParams;
+import com.loantrackr.dto.response.LoanDetailsResponse;
 import com.loantrackr.enums.LoanStatus;
+import com.loantrackr.enums.ScheduleStorage;
 import com.loantrackr.model.LenderProfile;
 import com.loantrackr.model.Loan;
 import com.loantrackr.model.User;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 
 public interface LoanRepository extends JpaRepository<Loan, Long> {
@@ -22,7 +29,76 @@ public interface LoanRepository extends JpaRepository<Loan, Long> {
     List<Loan> findByNextDueDateAndStatus(@Param("dueDate") LocalDate dueDate,
                                           @Param("status") LoanStatus status);
 
-    List<Loan> findByLenderIdAndStatus(Long lenderId, LoanStatus status);
+    /**
+     * A lender's loans in one status as list rows, read in one query with the borrower joined in
+     * rather than loaded per loan. Arguments follow the field order of the response.
+     */
+    @Query("SELECT new com.loantrackr.dto.response.LoanDetailsResponse(l.id, b.username, l.principalAmount, " +
+            "l.totalAmountToRepay, l.remainingAmount, l.totalInterestAmount, l.totalInstallments, l.paidInstallments, " +
+            "l.nextDueDate, l.status, l.disbursedAt, " +
+            "CASE WHEN l.paidInstallments = l.totalInstallments THEN true ELSE false END) " +
+            "FROM Loan l JOIN l.borrower b " +
+            "WHERE l.lender.id = :lenderId AND l.status = :status ORDER BY l.id")
+    List<LoanDetailsResponse> findDetailsByLenderIdAndStatus(@Param("lenderId") Long lenderId,
+                                                             @Param("status") LoanStatus status);
+
+    /**
+     * One keyset chunk of a lender's active loans whose schedules are computed or packed.
+     * Pass the last id of the previous chunk.
+     */
+    @Query("SELECT new com.loantrackr.dto.projection.LoanScheduleParams(l.id, l.scheduleStorage, l.principalAmount, " +
+            "l.interestRate, l.emiAmount, l.firstDueDate, l.totalInstallments, l.paidInstallments, " +
+            "l.rescheduledFromInstallment, l.rescheduledPrincipal, l.rescheduledDueDate, l.packedSchedule) " +
+            "FROM Loan l WHERE l.lender.id = :lenderId AND l.status = com.loantrackr.enums.LoanStatus.DISBURSED " +
+            "AND l.scheduleStorage IN (com.loantrackr.enums.ScheduleStorage.COMPUTED, com.loantrackr.enums.ScheduleStorage.PACKED) " +
+            "AND l.id > :afterId ORDER BY l.id")
+    List<LoanScheduleParams> findScheduleParamsForLender(@Param("lenderId") Long lenderId,
+                                                         @Param("afterId") long afterId,
+                                                         Pageable pageable);
+
+    /**
+     * One keyset chunk of all disbursed loans, whatever their schedule storage. Pass the last id of
+     * the previous chunk.
+     */
+    @Query("SELECT new com.loantrackr.dto.projection.LoanScheduleParams(l.id, l.scheduleStorage, l.principalAmount, " +
+            "l.interestRate, l.emiAmount, l.firstDueDate, l.totalInstallments, l.paidInstallments, " +
+            "l.rescheduledFromInstallment, l.rescheduledPrincipal, l.rescheduledDueDate, l.packedSchedule) " +
+            "FROM Loan l WHERE l.status = com.loantrackr.enums.LoanStatus.DISBURSED AND l.id > :afterId ORDER BY l.id")
+    List<LoanScheduleParams> findDisbursedScheduleParams(@Param("afterId") long afterId, Pageable pageable);
+
+    /**
+     * One keyset chunk of ids of active loans whose next installment falls due on {@code dueDate}.
+     * Pass the last id of the previous chunk.
+     */
+    @Query("SELECT l.id FROM Loan l WHERE l.nextDueDate = :dueDate AND l.status = com.loantrackr.enums.LoanStatus.DISBURSED " +
+            "AND l.id > :afterId ORDER BY l.id")
+    List<Long> findIdsDueOn(@Param("dueDate") LocalDate dueDate, @Param("afterId") long afterId, Pageable pageable);
+
+    /**
+     * One keyset chunk of ids of active loans with computed or packed schedules whose next
+     * installment fell due before {@code cutoff}. Pass the last id of the previous chunk.
+     */
+    @Query("SELECT l.id FROM Loan l WHERE l.nextDueDate < :cutoff AND l.status = com.loantrackr.enums.LoanStatus.DISBURSED " +
+            "AND l.scheduleStorage IN (com.loantrackr.enums.ScheduleStorage.COMPUTED, com.loantrackr.enums.ScheduleStorage.PACKED) " +
+            "AND l.id > :afterId ORDER BY l.id")
+    List<Long> findDerivedScheduleIdsDueBefore(@Param("cutoff") LocalDate cutoff, @Param("afterId") long afterId, Pageable pageable);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT l FROM Loan l WHERE l.id IN :ids ORDER BY l.id")
+    List<Loan> findAllByIdForUpdate(@Param("ids") Collection<Long> ids);
+
+    /**
+     * One keyset chunk of ids of disbursed loans whose schedule is not stored as {@code storage}.
+     * Pass the last id of the previous chunk.
+     */
+    @Query("SELECT l.id FROM Loan l WHERE l.status = com.loantrackr.enums.LoanStatus.DISBURSED " +
+            "AND (l.scheduleStorage IS NULL OR l.scheduleStorage <> :storage) AND l.id > :afterId ORDER BY l.id")
+    List<Long> findDisbursedIdsWithScheduleStorageOtherThan(@Param("storage") ScheduleStorage storage,
+                                                            @Param("afterId") long afterId, Pageable pageable);
+
+    @Query("SELECT COUNT(l) FROM Loan l WHERE l.status = com.loantrackr.enums.LoanStatus.DISBURSED " +
+            "AND (l.scheduleStorage IS NULL OR l.scheduleStorage <> :storage)")
+    long countDisbursedWithScheduleStorageOtherThan(@Param("storage") ScheduleStorage storage);
 
 
 }
\ No newline at end of file
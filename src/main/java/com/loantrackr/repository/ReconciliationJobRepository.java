@@ -0,0 +1,11 @@
+package com.loantrackr.repository;
+
+import com.loantrackr.enums.BatchJobStatus;
+import com.loantrackr.model.ReconciliationJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface ReconciliationJobRepository extends JpaRepository<ReconciliationJob, Long> {
+    List<ReconciliationJob> findByStatusOrderById(BatchJobStatus status);
+}
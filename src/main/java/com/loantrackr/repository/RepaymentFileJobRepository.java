@@ -0,0 +1,11 @@
+package com.loantrackr.repository;
+
+import com.loantrackr.enums.BatchJobStatus;
+import com.loantrackr.model.RepaymentFileJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface RepaymentFileJobRepository extends JpaRepository<RepaymentFileJob, Long> {
+    List<RepaymentFileJob> findByStatusOrderById(BatchJobStatus status);
+}
@@ -0,0 +1,131 @@
+package com.loantrackr.service;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Annuity factors keyed by (monthly rate, tenure), populated per lender from its
+ * interest rate and supported tenures.
+ * <p>
+ * Each factor counts the lenders offering its pair and is dropped when the last of them goes.
+ * Counts and a lender's registration change together inside {@link ConcurrentHashMap#compute},
+ * so a registration and an eviction never interleave. Every change is stamped with a version:
+ * a caller that reads lender terms before registering them passes the {@link #version()} taken
+ * before the read, and the registration is discarded if the lender changed or was evicted
+ * since. Lookups for pairs that no lender offers are computed but not stored, which keeps the
+ * cache bounded by the lenders' product grid.
+ */
+public class AnnuityFactorCache {
+
+    public record Key(long monthlyRate, int tenure) {
+    }
+
+    /**
+     * @param factor EMI per unit of principal (fixed-point engine)
+     * @param growth exact {@code (1+r)^n} (BigDecimal engine)
+     */
+    public record AnnuityFactor(double factor, BigDecimal growth) {
+    }
+
+    private record Entry(AnnuityFactor factor, int lenders) {
+    }
+
+    // An evicted lender keeps an empty registration, so a registration loaded earlier can be recognised as stale
+    private record Registration(List<Key> keys, long version) {
+    }
+
+    private final Map<Key, Entry> factors = new ConcurrentHashMap<>();
+    private final Map<Long, Registration> registrations = new ConcurrentHashMap<>();
+    private final AtomicLong versions = new AtomicLong();
+    private final Function<Key, AnnuityFactor> loader;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public AnnuityFactorCache(Function<Key, AnnuityFactor> loader) {
+        this.loader = loader;
+    }
+
+    public AnnuityFactor get(long monthlyRate, int tenure) {
+        Key key = new Key(monthlyRate, tenure);
+        Entry cached = factors.get(key);
+        if (cached != null) {
+            hits.increment();
+            return cached.factor();
+        }
+        misses.increment();
+        return loader.apply(key);
+    }
+
+    /**
+     * Version of the latest registration or eviction; take it before reading the lender terms
+     * passed to {@link #register(Long, long, Collection, long)}.
+     */
+    public long version() {
+        return versions.get();
+    }
+
+    /**
+     * Precomputes the factors a lender offers, replacing whatever was registered for it before.
+     */
+    public void register(Long lenderId, long monthlyRate, Collection<Integer> tenures) {
+        register(lenderId, monthlyRate, tenures, Long.MAX_VALUE);
+    }
+
+    /**
+     * As {@link #register(Long, long, Collection)}, unless the lender was registered or evicted
+     * after {@code loadedAt}, in which case the terms are stale and nothing changes.
+     */
+    public void register(Long lenderId, long monthlyRate, Collection<Integer> tenures, long loadedAt) {
+        List<Key> keys = tenures.stream().distinct().map(tenure -> new Key(monthlyRate, tenure)).toList();
+        registrations.compute(lenderId, (id, previous) -> {
+            if (previous != null && previous.version() > loadedAt) {
+                return previous;
+            }
+            keys.forEach(this::retain);
+            if (previous != null) {
+                previous.keys().forEach(this::release);
+            }
+            return new Registration(keys, versions.incrementAndGet());
+        });
+    }
+
+    public void evict(Long lenderId) {
+        registrations.compute(lenderId, (id, previous) -> {
+            if (previous != null) {
+                previous.keys().forEach(this::release);
+            }
+            return new Registration(List.of(), versions.incrementAndGet());
+        });
+    }
+
+    private void retain(Key key) {
+        factors.compute(key, (k, entry) -> entry == null
+                ? new Entry(loader.apply(k), 1)
+                : new Entry(entry.factor(), entry.lenders() + 1));
+    }
+
+    private void release(Key key) {
+        factors.computeIfPresent(key, (k, entry) -> entry.lenders() == 1
+                ? null
+                : new Entry(entry.factor(), entry.lenders() - 1));
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int size() {
+        return factors.size();
+    }
+}
@@ -0,0 +1,484 @@
+package com.loantrackr.service;
+
+import com.loantrackr.dto.request.PaymentGatewayRequest;
+import com.loantrackr.dto.response.AutoDebitRunResult;
+import com.loantrackr.dto.response.PaymentGatewayResponse;
+import com.loantrackr.enums.BatchJobStatus;
+import com.loantrackr.enums.PaymentMethod;
+import com.loantrackr.enums.PaymentStatus;
+import com.loantrackr.exception.GatewayUnavailableException;
+import com.loantrackr.model.BatchJobCheckpoint;
+import com.loantrackr.model.LoanConfiguration;
+import com.loantrackr.repository.BatchJobCheckpointRepository;
+import com.loantrackr.repository.LoanConfigurationRepository;
+import com.loantrackr.repository.LoanRepository;
+import com.loantrackr.util.TransactionIdGenerator;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Daily auto-debit of installments falling due.
+ * <p>
+ * Walks the loans due on a date in id order, one keyset page at a time. The loans of a page are
+ * worked on with at most {@code loan.auto-debit.parallelism} in flight: each one's next
+ * installment is read in a short read-only transaction and the debit is sent to the gateway.
+ * Finished debits are gathered and posted through {@link RepaymentPostingService} in batches of
+ * {@code loan.auto-debit.post-batch-size}, one transaction per batch; the run's checkpoint is
+ * committed once the page is done and its last batch posted. No transaction is open while the
+ * gateway is called, and the parallelism is kept below the gateway client's payment bulkhead so
+ * borrowers paying by hand still get through.
+ * <p>
+ * Each loan goes through {@link LoanPaymentGate} before its installment is read and stays admitted
+ * until the batch holding its debit commits, so a borrower payment cannot charge the installment
+ * being debited; it is not held for the whole page. A loan with a payment already in flight is
+ * passed over for this run, as if nothing were due on it; the borrower is paying it at that
+ * moment.
+ * <p>
+ * Each debit carries its transaction ID as the merchant reference. One the gateway did not answer
+ * in time may still be collected, so it is recorded as pending under that reference, which the
+ * gateway's callback or the settlement file settles; an installment with a pending payment is not
+ * debited again meanwhile. If the gateway stops accepting calls altogether (open circuit, no
+ * free permit after a few retries) the run stops after posting what it collected and the
+ * checkpoint is left before the first loan it could not attempt; running the same date again
+ * resumes from there.
+ */
+@Slf4j
+@Service
+public class AutoDebitJob {
+
+    public static final String JOB_NAME = "auto-debit";
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final Duration MAX_BACKOFF = Duration.ofSeconds(5);
+
+    private final LoanRepository loanRepository;
+    private final BatchJobCheckpointRepository checkpointRepository;
+    private final LoanConfigurationRepository configRepository;
+    private final RepaymentPostingService postingService;
+    private final PaymentGatewayClient gatewayClient;
+    private final LoanPaymentGate paymentGate;
+    private final TransactionIdGenerator transactionIds;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+    private final int pageSize;
+    private final int parallelism;
+    private final int postBatchSize;
+    private final ExecutorService collectors = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public AutoDebitJob(LoanRepository loanRepository,
+                        BatchJobCheckpointRepository checkpointRepository,
+                        LoanConfigurationRepository configRepository,
+                        RepaymentPostingService postingService,
+                        PaymentGatewayClient gatewayClient,
+                        LoanPaymentGate paymentGate,
+                        TransactionIdGenerator transactionIds,
+                        PlatformTransactionManager transactionManager,
+                        @Value("${loan.auto-debit.page-size:500}") int pageSize,
+                        @Value("${loan.auto-debit.parallelism:32}") int parallelism,
+                        @Value("${loan.auto-debit.post-batch-size:50}") int postBatchSize) {
+        if (pageSize <= 0 || parallelism <= 0 || postBatchSize <= 0) {
+            throw new IllegalArgumentException("Auto-debit page size, parallelism and post batch size must be positive");
+        }
+        this.loanRepository = loanRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.configRepository = configRepository;
+        this.postingService = postingService;
+        this.gatewayClient = gatewayClient;
+        this.paymentGate = paymentGate;
+        this.transactionIds = transactionIds;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.pageSize = pageSize;
+        this.parallelism = parallelism;
+        this.postBatchSize = postBatchSize;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        collectors.shutdownNow();
+    }
+
+    /**
+     * Collects the installments falling due today.
+     */
+    @Scheduled(cron = "${loan.auto-debit.cron:0 0 6 * * *}")
+    public void collectDueToday() {
+        try {
+            run(LocalDate.now());
+        } catch (Exception e) {
+            log.error("Daily auto-debit failed", e);
+        }
+    }
+
+    /**
+     * Collects the installments falling due on {@code dueDate}, which must be within its grace
+     * period, resuming from the checkpoint if an earlier run for the same date did not finish.
+     * Returns straight away if the date is complete.
+     *
+     * @throws IllegalStateException if a run is already in progress on this instance
+     */
+    public AutoDebitRunResult run(LocalDate dueDate) {
+        if (dueDate == null || dueDate.isAfter(LocalDate.now())) {
+            throw new IllegalArgumentException("Installments cannot be collected before their due date");
+        }
+        if (dueDate.plusDays(gracePeriodDays()).isBefore(LocalDate.now())) {
+            // The amount due would include a late fee the borrower has not been told about
+            throw new IllegalArgumentException("Installments due on " + dueDate + " are past their grace period");
+        }
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("Auto-debit is already running");
+        }
+        try {
+            return execute(dueDate);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private int gracePeriodDays() {
+        LoanConfiguration config = configRepository.findByActive(true);
+        return config != null ? config.getGracePeriodDays() : OverdueInstallmentJob.DEFAULT_GRACE_PERIOD_DAYS;
+    }
+
+    private AutoDebitRunResult execute(LocalDate dueDate) {
+        long start = System.nanoTime();
+        BatchJobCheckpoint checkpoint = transactionTemplate.execute(status -> startOrResume(dueDate));
+        RunTotals totals = new RunTotals();
+
+        if (checkpoint.getStatus() == BatchJobStatus.COMPLETED) {
+            log.info("Auto-debit for {} already completed - {} loans", dueDate, checkpoint.getProcessedCount());
+            return toResult(checkpoint, false, totals, start);
+        }
+
+        boolean resumed = checkpoint.getLastProcessedId() > 0;
+        log.info("Auto-debit for {} {} after loan ID: {}", dueDate, resumed ? "resuming" : "starting",
+                checkpoint.getLastProcessedId());
+
+        PageRequest page = PageRequest.of(0, pageSize);
+        try {
+            List<Long> loanIds;
+            do {
+                loanIds = loanRepository.findIdsDueOn(dueDate, checkpoint.getLastProcessedId(), page);
+                if (loanIds.isEmpty()) {
+                    break;
+                }
+                checkpoint = processPage(checkpoint, loanIds, totals);
+            } while (loanIds.size() == pageSize && totals.skipped == 0);
+
+            checkpoint.setStatus(totals.skipped == 0 ? BatchJobStatus.COMPLETED : BatchJobStatus.FAILED);
+            checkpoint.setCompletedAt(totals.skipped == 0 ? LocalDateTime.now() : null);
+            checkpoint = checkpointRepository.save(checkpoint);
+
+        } catch (RuntimeException e) {
+            // Reload: the in-memory copy may carry progress of the page that was rolled back
+            checkpointRepository.findById(checkpoint.getId()).ifPresent(committed -> {
+                log.error("Auto-debit for {} stopped after loan ID: {}", dueDate, committed.getLastProcessedId(), e);
+                committed.setStatus(BatchJobStatus.FAILED);
+                checkpointRepository.save(committed);
+            });
+            throw e;
+        }
+
+        AutoDebitRunResult result = toResult(checkpoint, resumed, totals, start);
+        if (totals.skipped > 0) {
+            log.warn("Auto-debit for {} stopped after loan ID: {} - payment gateway unavailable, {} loans not attempted",
+                    dueDate, checkpoint.getLastProcessedId(), totals.skipped);
+        } else {
+            log.info("Auto-debit for {} completed - {} loans, {} collected, {} bounced, {} pending, {} rejected, {} ms", dueDate,
+                    result.getProcessedLoans(), totals.collected, totals.bounced, totals.pending, totals.rejected, result.getDurationMs());
+        }
+        return result;
+    }
+
+    private BatchJobCheckpoint startOrResume(LocalDate dueDate) {
+        BatchJobCheckpoint checkpoint = checkpointRepository.findByJobNameAndBusinessDate(JOB_NAME, dueDate)
+                .orElseGet(() -> BatchJobCheckpoint.builder()
+                        .jobName(JOB_NAME)
+                        .businessDate(dueDate)
+                        .build());
+
+        if (checkpoint.getStatus() == BatchJobStatus.COMPLETED) {
+            return checkpoint;
+        }
+        checkpoint.setStatus(BatchJobStatus.RUNNING);
+        return checkpointRepository.save(checkpoint);
+    }
+
+    private BatchJobCheckpoint processPage(BatchJobCheckpoint checkpoint, List<Long> loanIds, RunTotals totals) {
+        LocalDate dueDate = checkpoint.getBusinessDate();
+        PostingBatch batch = new PostingBatch(totals);
+
+        // Submitted in id order; the slots bound the loans in flight
+        Semaphore slots = new Semaphore(parallelism);
+        List<Future<Boolean>> attempts = new ArrayList<>(loanIds.size());
+        for (int i = 0; i < loanIds.size(); i++) {
+            slots.acquireUninterruptibly();
+            int sequence = i;
+            Long loanId = loanIds.get(i);
+            try {
+                attempts.add(collectors.submit(() -> {
+                    try {
+                        return collect(sequence, loanId, dueDate, batch);
+                    } finally {
+                        slots.release();
+                    }
+                }));
+            } catch (RuntimeException e) {
+                slots.release();
+                throw e;
+            }
+        }
+
+        // Every attempt is waited for, and what they collected posted, before a failure is passed on
+        RuntimeException failure = null;
+        Long firstSkippedId = null;
+        int skipped = 0;
+        for (int i = 0; i < attempts.size(); i++) {
+            try {
+                if (!await(attempts.get(i))) {
+                    skipped++;
+                    if (firstSkippedId == null) {
+                        firstSkippedId = loanIds.get(i);
+                    }
+                }
+            } catch (RuntimeException e) {
+                failure = addFailure(failure, e);
+            }
+        }
+        try {
+            batch.flush();
+        } catch (RuntimeException e) {
+            failure = addFailure(failure, e);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        totals.skipped += skipped;
+
+        // Resume before the first loan not attempted. Loans after it that were collected have left the due set;
+        // a declined one is attempted again.
+        long lastProcessedId = firstSkippedId != null ? firstSkippedId - 1 : loanIds.get(loanIds.size() - 1);
+        long processed = loanIds.stream().filter(id -> id <= lastProcessedId).count();
+        BatchJobCheckpoint saved = transactionTemplate.execute(status -> {
+            checkpoint.setLastProcessedId(lastProcessedId);
+            checkpoint.setProcessedCount(checkpoint.getProcessedCount() + processed);
+            return checkpointRepository.save(checkpoint);
+        });
+
+        log.debug("Auto-debit page committed up to loan ID: {} - {} loans", lastProcessedId, processed);
+        return saved;
+    }
+
+    /**
+     * Debits the loan's installment due on {@code dueDate}, if it still has one, under the loan's
+     * gate, and hands the debit and the permit to the batch, which lets the loan go once the debit
+     * is posted. Returns false if the gateway never accepted the call.
+     */
+    private boolean collect(int sequence, Long loanId, LocalDate dueDate, PostingBatch batch) throws InterruptedException {
+        LoanPaymentGate.Permit permit = paymentGate.tryEnter(List.of(loanId));
+        boolean queued = false;
+        try {
+            if (!permit.admits(loanId)) {
+                log.info("Loan ID: {} has a payment in progress, skipping for {}", loanId, dueDate);
+                return true;
+            }
+            RepaymentPostingService.DueInstallment installment = readOnlyTransactionTemplate
+                    .execute(status -> postingService.findDueInstallments(List.of(loanId)))
+                    .get(loanId);
+            if (installment == null || !installment.dueDate().equals(dueDate)) {
+                log.debug("Loan ID: {} has no installment due on {}, skipping", loanId, dueDate);
+                return true;
+            }
+
+            RepaymentPostingService.Debit debit = debit(sequence, installment);
+            if (debit == null) {
+                return false;
+            }
+            queued = true;
+            batch.add(debit, permit);
+            return true;
+        } finally {
+            if (!queued) {
+                permit.close();
+            }
+        }
+    }
+
+    /**
+     * Sends one debit, retrying while the gateway turns calls away. Returns null if it never
+     * accepted the call.
+     */
+    private RepaymentPostingService.Debit debit(int sequence, RepaymentPostingService.DueInstallment installment)
+            throws InterruptedException {
+        String transactionId = "AUTO" + transactionIds.next();
+        PaymentGatewayRequest request = PaymentGatewayRequest.builder()
+                .amount(installment.amountDue())
+                .paymentMethod(PaymentMethod.BANK_TRANSFER)
+                .loanId(installment.loanId())
+                .installmentNumber(installment.installmentNumber())
+                .reference(transactionId)
+                .build();
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                PaymentGatewayResponse response = gatewayClient.processPayment(request);
+                return debit(sequence, installment, response.getStatus(), transactionId,
+                        response.getTransactionId() != null ? response.getTransactionId() : transactionId,
+                        response.getFailureReason());
+
+            } catch (GatewayUnavailableException e) {
+                if (e.isCallAttempted()) {
+                    // Reported under our reference once the gateway settles it
+                    return debit(sequence, installment, PaymentStatus.PENDING, transactionId, transactionId, e.getMessage());
+                }
+                if (attempt == MAX_ATTEMPTS) {
+                    return null;
+                }
+                Duration backoff = e.getRetryAfter() != null && e.getRetryAfter().compareTo(MAX_BACKOFF) < 0
+                        ? e.getRetryAfter() : MAX_BACKOFF;
+                Thread.sleep(backoff.toMillis());
+            }
+        }
+    }
+
+    private static RepaymentPostingService.Debit debit(int sequence, RepaymentPostingService.DueInstallment installment,
+                                                       PaymentStatus status, String transactionId, String reference,
+                                                       String failureReason) {
+        return new RepaymentPostingService.Debit(sequence, installment.loanId(), installment.installmentNumber(),
+                installment.amountDue(), status, PaymentMethod.BANK_TRANSFER, transactionId, reference, LocalDate.now(),
+                status == PaymentStatus.SUCCESS ? null : failureReason);
+    }
+
+    private static boolean await(Future<Boolean> attempt) {
+        try {
+            return attempt.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while collecting auto-debits", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Auto-debit collection failed", e.getCause());
+        }
+    }
+
+    private static RuntimeException addFailure(RuntimeException failure, RuntimeException e) {
+        if (failure == null) {
+            return e;
+        }
+        failure.addSuppressed(e);
+        return failure;
+    }
+
+    private static AutoDebitRunResult toResult(BatchJobCheckpoint checkpoint, boolean resumed, RunTotals totals, long start) {
+        return AutoDebitRunResult.builder()
+                .dueDate(checkpoint.getBusinessDate())
+                .status(checkpoint.getStatus())
+                .resumed(resumed)
+                .processedLoans(checkpoint.getProcessedCount())
+                .collected(totals.collected)
+                .bounced(totals.bounced)
+                .pending(totals.pending)
+                .rejected(totals.rejected)
+                .skipped(totals.skipped)
+                .durationMs((System.nanoTime() - start) / 1_000_000)
+                .build();
+    }
+
+    /**
+     * Debits of a page collected but not yet posted, with the permits of their loans. The collector
+     * that fills the batch posts it in one transaction; whatever is left is posted once the page's
+     * attempts are all back. The permits are closed once their batch commits or fails.
+     */
+    private final class PostingBatch {
+
+        private final RunTotals totals;
+        private List<RepaymentPostingService.Debit> debits = new ArrayList<>();
+        private List<LoanPaymentGate.Permit> permits = new ArrayList<>();
+
+        private PostingBatch(RunTotals totals) {
+            this.totals = totals;
+        }
+
+        void add(RepaymentPostingService.Debit debit, LoanPaymentGate.Permit permit) {
+            PostingBatch full = null;
+            synchronized (this) {
+                debits.add(debit);
+                permits.add(permit);
+                if (debits.size() >= postBatchSize) {
+                    full = take();
+                }
+            }
+            if (full != null) {
+                full.post();
+            }
+        }
+
+        void flush() {
+            PostingBatch rest;
+            synchronized (this) {
+                rest = take();
+            }
+            if (!rest.debits.isEmpty()) {
+                rest.post();
+            }
+        }
+
+        private PostingBatch take() {
+            PostingBatch taken = new PostingBatch(totals);
+            taken.debits = debits;
+            taken.permits = permits;
+            debits = new ArrayList<>();
+            permits = new ArrayList<>();
+            return taken;
+        }
+
+        private void post() {
+            try {
+                RepaymentPostingService.Outcome outcome = transactionTemplate.execute(status -> postingService.post(debits));
+                for (RepaymentPostingService.Rejection rejection : outcome.rejections()) {
+                    // Collected but not posted: the installment changed while the gateway was called
+                    log.error("Auto-debit for loan ID: {} collected but not posted, reference {}: {}",
+                            rejection.loanId(), rejection.reference(), rejection.error());
+                }
+                totals.add(outcome);
+            } finally {
+                permits.forEach(LoanPaymentGate.Permit::close);
+            }
+        }
+    }
+
+    private static final class RunTotals {
+        private long collected;
+        private long bounced;
+        private long pending;
+        private long rejected;
+        private long skipped;
+
+        // Batches are posted from the collectors' threads
+        synchronized void add(RepaymentPostingService.Outcome outcome) {
+            collected += outcome.posted();
+            bounced += outcome.bounced();
+            pending += outcome.pending();
+            rejected += outcome.rejections().size();
+        }
+    }
+}
@@ -0,0 +1,829 @@
+package com.loantrackr.service;
+
+import com.loantrackr.dto.request.BulkDisbursementRequest;
+import com.loantrackr.dto.request.DisbursementRequest;
+import com.loantrackr.dto.request.DisbursementResolutionRequest;
+import com.loantrackr.dto.response.BulkDisbursementResponse;
+import com.loantrackr.dto.response.DisbursementResponse;
+import com.loantrackr.dto.response.DisbursementStatusResponse;
+import com.loantrackr.dto.response.LoanDisbursementResponse;
+import com.loantrackr.enums.DisbursementStatus;
+import com.loantrackr.enums.LoanStatus;
+import com.loantrackr.enums.Role;
+import com.loantrackr.exception.GatewayUnavailableException;
+import com.loantrackr.exception.OperationNotAllowedException;
+import com.loantrackr.exception.UnauthorizedException;
+import com.loantrackr.exception.UserNotFoundException;
+import com.loantrackr.model.LenderProfile;
+import com.loantrackr.model.Loan;
+import com.loantrackr.model.LoanApplication;
+import com.loantrackr.model.LoanDisbursement;
+import com.loantrackr.model.User;
+import com.loantrackr.repository.LoanApplicationRepository;
+import com.loantrackr.repository.LoanDisbursementRepository;
+import com.loantrackr.repository.LoanRepository;
+import com.loantrackr.util.SecurityUtils;
+import com.loantrackr.util.TransactionIdGenerator;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Disburses approved loan applications without holding the lender's request thread.
+ * <p>
+ * A request only records an ACCEPTED {@link LoanDisbursement} and hands its id to the
+ * {@code disbursementExecutor} once the transaction commits. A worker claims it, calls the payment
+ * gateway outside any transaction and, only when the gateway confirms, creates the {@link Loan} and
+ * its schedule and marks the application DISBURSED. Accepted disbursements that never reached a
+ * worker (full queue, restart) are re-dispatched by a periodic sweep; claiming is a conditional
+ * update, so a disbursement is never sent to the gateway twice. A disbursement whose outcome is not
+ * known (the gateway timed out, the loan could not be activated after the funds went out, or the
+ * worker died mid-call) is marked UNCONFIRMED rather than FAILED and blocks another disbursement of
+ * the application until a system admin resolves it against the gateway's records.
+ * <p>
+ * Lenders can also disburse many applications in one request. The batch is accepted and written
+ * together and sent by a single worker, which calls the gateway for several disbursements at once
+ * and activates the confirmed loans in batched writes; the lender follows the batch through a
+ * per-application report.
+ */
+@Slf4j
+@Service
+public class DisbursementService {
+
+    private static final Set<DisbursementStatus> IN_FLIGHT = EnumSet.of(DisbursementStatus.ACCEPTED, DisbursementStatus.PROCESSING);
+    // Any of these on an application means a payout may already be on its way
+    private static final Set<DisbursementStatus> UNSETTLED = EnumSet.of(DisbursementStatus.ACCEPTED, DisbursementStatus.PROCESSING,
+            DisbursementStatus.UNCONFIRMED);
+
+    private final LoanApplicationRepository loanApplicationRepository;
+    private final LoanDisbursementRepository disbursementRepository;
+    private final LoanRepository loanRepository;
+    private final RepaymentScheduleService scheduleService;
+    private final LoanCalculatorService loanCalculator;
+    private final PaymentGatewayClient gatewayClient;
+    private final UserService userService;
+    private final LenderProfileService lenderService;
+    private final TaskExecutor disbursementExecutor;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionIdGenerator transactionIds;
+    private final Duration sweepInterval;
+    private final Duration processingTimeout;
+    private final int bulkMaxApplications;
+    private final int bulkParallelism;
+    private final int bulkChunkSize;
+
+    // Bulk gateway calls run here, bounded per batch by bulkParallelism
+    private final ExecutorService payoutExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public DisbursementService(LoanApplicationRepository loanApplicationRepository,
+                               LoanDisbursementRepository disbursementRepository,
+                               LoanRepository loanRepository,
+                               RepaymentScheduleService scheduleService,
+                               LoanCalculatorService loanCalculator,
+                               PaymentGatewayClient gatewayClient,
+                               UserService userService,
+                               LenderProfileService lenderService,
+                               @Qualifier("disbursementExecutor") TaskExecutor disbursementExecutor,
+                               PlatformTransactionManager transactionManager,
+                               TransactionIdGenerator transactionIds,
+                               @Value("${loan.disbursement.sweep-interval:PT1M}") Duration sweepInterval,
+                               @Value("${loan.disbursement.processing-timeout:PT15M}") Duration processingTimeout,
+                               @Value("${loan.disbursement.bulk.max-applications:500}") int bulkMaxApplications,
+                               @Value("${loan.disbursement.bulk.parallelism:8}") int bulkParallelism,
+                               @Value("${loan.disbursement.bulk.chunk-size:100}") int bulkChunkSize) {
+        if (bulkMaxApplications <= 0 || bulkParallelism <= 0 || bulkChunkSize <= 0) {
+            throw new IllegalArgumentException("Bulk disbursement limits must be positive");
+        }
+        this.loanApplicationRepository = loanApplicationRepository;
+        this.disbursementRepository = disbursementRepository;
+        this.loanRepository = loanRepository;
+        this.scheduleService = scheduleService;
+        this.loanCalculator = loanCalculator;
+        this.gatewayClient = gatewayClient;
+        this.userService = userService;
+        this.lenderService = lenderService;
+        this.disbursementExecutor = disbursementExecutor;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionIds = transactionIds;
+        this.sweepInterval = sweepInterval;
+        this.processingTimeout = processingTimeout;
+        this.bulkMaxApplications = bulkMaxApplications;
+        this.bulkParallelism = bulkParallelism;
+        this.bulkChunkSize = bulkChunkSize;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        payoutExecutor.shutdownNow();
+    }
+
+    @Transactional
+    public DisbursementStatusResponse requestDisbursement(Long loanApplicationId) {
+        log.info("Loan disbursement requested for application ID: {}", loanApplicationId);
+
+        try {
+            LenderProfile lender = getCurrentLender();
+
+            // Row lock serializes concurrent requests for the same application
+            LoanApplication application = loanApplicationRepository.findByIdForUpdate(loanApplicationId)
+                    .orElseThrow(() -> new NoSuchElementException("Loan application not found"));
+
+            if (!application.getLender().getId().equals(lender.getId())) {
+                log.warn("Lender ID: {} attempted to disburse application {} that doesn't belong to them", lender.getId(), loanApplicationId);
+                throw new UnauthorizedException("You can only disburse loans associated with your organization");
+            }
+
+            if (application.getStatus() != LoanStatus.APPROVED) {
+                log.warn("Disbursement attempted for non-approved loan - Application ID: {}, Status: {}", loanApplicationId, application.getStatus());
+                throw new UnauthorizedException("Loan application is not approved");
+            }
+
+            if (disbursementRepository.existsByLoanApplicationIdAndStatusIn(loanApplicationId, IN_FLIGHT)) {
+                log.warn("Duplicate disbursement request for application ID: {}", loanApplicationId);
+                throw new IllegalStateException("A disbursement is already in progress for this application");
+            }
+            if (disbursementRepository.existsByLoanApplicationIdAndStatusIn(loanApplicationId, EnumSet.of(DisbursementStatus.UNCONFIRMED))) {
+                log.warn("Disbursement requested for application ID: {} with an unconfirmed payout", loanApplicationId);
+                throw new IllegalStateException("An earlier disbursement for this application is awaiting reconciliation");
+            }
+
+            LoanDisbursement disbursement = disbursementRepository.save(LoanDisbursement.builder()
+                    .loanApplication(application)
+                    .amount(application.getLoanRequested())
+                    .status(DisbursementStatus.ACCEPTED)
+                    .build());
+
+            afterCommit(() -> dispatch(disbursement.getId()));
+
+            log.info("Disbursement ID: {} accepted for application ID: {}, amount: {}",
+                    disbursement.getId(), loanApplicationId, disbursement.getAmount());
+            return toResponse(disbursement, "Disbursement accepted for processing");
+
+        } catch (NoSuchElementException | UnauthorizedException | UserNotFoundException | IllegalStateException e) {
+            log.error("Loan disbursement request failed for application ID: {} - {}", loanApplicationId, e.getMessage());
+            throw e;
+        } catch (Exception e) {
+            log.error("Unexpected error requesting disbursement for application ID: {}", loanApplicationId, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Accepts many approved applications for disbursement in one request: the ones listed or, with
+     * none listed, the lender's approved applications oldest first up to the limit. Each is checked
+     * as a single request would be; those that pass get an ACCEPTED disbursement under a shared
+     * batch ID, written in one batch, and the batch is handed to a worker once the transaction
+     * commits. Those that fail are reported with the reason and left as they are.
+     */
+    @Transactional
+    public BulkDisbursementResponse requestBulkDisbursement(BulkDisbursementRequest request) {
+        log.info("Bulk loan disbursement requested for {} applications",
+                request.getApplicationIds() != null && !request.getApplicationIds().isEmpty() ? request.getApplicationIds().size() : "approved");
+
+        try {
+            LenderProfile lender = getCurrentLender();
+            List<Long> applicationIds = resolveApplicationIds(lender, request);
+            if (applicationIds.isEmpty()) {
+                return toBulkResponse(null, List.of(), 0, "No approved applications to disburse");
+            }
+
+            // Row locks taken in id order, so concurrent bulk requests cannot deadlock
+            Map<Long, LoanApplication> applications = loanApplicationRepository.findAllByIdForUpdate(applicationIds).stream()
+                    .collect(Collectors.toMap(LoanApplication::getId, Function.identity()));
+            Set<Long> unsettled = new HashSet<>(disbursementRepository.findApplicationIdsWithStatusIn(applicationIds, UNSETTLED));
+
+            String batchId = "DB" + transactionIds.next();
+            Map<Long, LoanDisbursement> accepted = new LinkedHashMap<>();
+            Map<Long, String> rejected = new HashMap<>();
+            for (Long applicationId : applicationIds) {
+                LoanApplication application = applications.get(applicationId);
+                String rejection = application == null ? "Loan application not found"
+                        : !application.getLender().getId().equals(lender.getId()) ? "You can only disburse loans associated with your organization"
+                        : application.getStatus() != LoanStatus.APPROVED ? "Loan application is not approved"
+                        : unsettled.contains(applicationId) ? "A disbursement is already in progress or awaiting reconciliation for this application"
+                        : null;
+                if (rejection != null) {
+                    rejected.put(applicationId, rejection);
+                    continue;
+                }
+                accepted.put(applicationId, LoanDisbursement.builder()
+                        .loanApplication(application)
+                        .amount(application.getLoanRequested())
+                        .status(DisbursementStatus.ACCEPTED)
+                        .batchId(batchId)
+                        .build());
+            }
+            disbursementRepository.saveAll(accepted.values());
+
+            List<DisbursementStatusResponse> results = applicationIds.stream()
+                    .map(applicationId -> accepted.containsKey(applicationId)
+                            ? toResponse(accepted.get(applicationId), "Disbursement accepted for processing")
+                            : DisbursementStatusResponse.builder()
+                                    .applicationId(applicationId)
+                                    .failureReason(rejected.get(applicationId))
+                                    .message("Disbursement not accepted")
+                                    .build())
+                    .toList();
+
+            if (accepted.isEmpty()) {
+                log.warn("Bulk disbursement for lender ID: {} - none of {} applications accepted", lender.getId(), applicationIds.size());
+                return toBulkResponse(null, results, rejected.size(), "No application could be accepted for disbursement");
+            }
+
+            List<Long> disbursementIds = accepted.values().stream().map(LoanDisbursement::getId).toList();
+            afterCommit(() -> dispatchBatch(disbursementIds));
+
+            log.info("Bulk disbursement batch {} accepted for lender ID: {} - Accepted: {}, Rejected: {}",
+                    batchId, lender.getId(), accepted.size(), rejected.size());
+            return toBulkResponse(batchId, results, rejected.size(),
+                    accepted.size() + " of " + applicationIds.size() + " applications accepted for disbursement");
+
+        } catch (OperationNotAllowedException | UnauthorizedException | UserNotFoundException e) {
+            log.error("Bulk loan disbursement request failed - {}", e.getMessage());
+            throw e;
+        } catch (Exception e) {
+            log.error("Unexpected error requesting bulk disbursement", e);
+            throw e;
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public BulkDisbursementResponse getBulkDisbursement(String batchId) {
+        log.info("Fetching bulk disbursement batch: {}", batchId);
+
+        try {
+            LenderProfile lender = getCurrentLender();
+
+            List<LoanDisbursement> disbursements = disbursementRepository.findByBatchIdOrderById(batchId);
+            if (disbursements.isEmpty()) {
+                throw new NoSuchElementException("Bulk disbursement not found");
+            }
+            if (!disbursements.get(0).getLoanApplication().getLender().getId().equals(lender.getId())) {
+                log.warn("Lender ID: {} attempted to view bulk disbursement {} that doesn't belong to them", lender.getId(), batchId);
+                throw new UnauthorizedException("You can only view disbursements associated with your organization");
+            }
+
+            List<DisbursementStatusResponse> results = disbursements.stream()
+                    .map(disbursement -> toResponse(disbursement, getStatusMessage(disbursement.getStatus())))
+                    .toList();
+            return toBulkResponse(batchId, results, 0, "Bulk disbursement of " + disbursements.size() + " applications");
+
+        } catch (NoSuchElementException | UnauthorizedException | UserNotFoundException e) {
+            log.error("Failed to fetch bulk disbursement {} - {}", batchId, e.getMessage());
+            throw e;
+        } catch (Exception e) {
+            log.error("Unexpected error fetching bulk disbursement {}", batchId, e);
+            throw e;
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public DisbursementStatusResponse getDisbursementStatus(Long disbursementId) {
+        log.info("Fetching status of disbursement ID: {}", disbursementId);
+
+        try {
+            LenderProfile lender = getCurrentLender();
+
+            LoanDisbursement disbursement = disbursementRepository.findById(disbursementId)
+                    .orElseThrow(() -> new NoSuchElementException("Disbursement not found"));
+
+            if (!disbursement.getLoanApplication().getLender().getId().equals(lender.getId())) {
+                log.warn("Lender ID: {} attempted to view disbursement {} that doesn't belong to them", lender.getId(), disbursementId);
+                throw new UnauthorizedException("You can only view disbursements associated with your organization");
+            }
+
+            return toResponse(disbursement, getStatusMessage(disbursement.getStatus()));
+
+        } catch (NoSuchElementException | UnauthorizedException | UserNotFoundException e) {
+            log.error("Failed to fetch disbursement ID: {} - {}", disbursementId, e.getMessage());
+            throw e;
+        } catch (Exception e) {
+            log.error("Unexpected error fetching disbursement ID: {}", disbursementId, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Re-dispatches accepted disbursements that have waited longer than the sweep interval, and
+     * marks UNCONFIRMED those left PROCESSING longer than the processing timeout: their worker died
+     * with the gateway call possibly made, so they cannot be sent again.
+     */
+    @Scheduled(fixedDelayString = "${loan.disbursement.sweep-interval:PT1M}")
+    public void dispatchStaleDisbursements() {
+        LocalDateTime now = LocalDateTime.now();
+        Integer abandoned = transactionTemplate.execute(status -> disbursementRepository.markProcessingUnconfirmed(
+                now.minus(processingTimeout), now, "Worker stopped while the payout was in flight"));
+        if (abandoned != null && abandoned > 0) {
+            log.error("{} disbursements left PROCESSING for over {} marked UNCONFIRMED - needs reconciliation", abandoned, processingTimeout);
+        }
+
+        List<Long> stale = disbursementRepository.findAcceptedIdsRequestedBefore(now.minus(sweepInterval));
+        if (!stale.isEmpty()) {
+            log.info("Re-dispatching {} accepted disbursements", stale.size());
+            stale.forEach(this::dispatch);
+        }
+    }
+
+    /**
+     * Settles a disbursement left UNCONFIRMED once a system admin has looked its payout up at the
+     * gateway: if the funds went out the loan is activated as the worker would have done, otherwise
+     * the disbursement is marked FAILED and the application can be disbursed again.
+     */
+    @Transactional
+    public DisbursementStatusResponse resolveUnconfirmedDisbursement(Long disbursementId, DisbursementResolutionRequest request) {
+        log.info("Resolving unconfirmed disbursement ID: {} - Funds sent: {}, Gateway transaction ID: {}",
+                disbursementId, request.getFundsSent(), request.getGatewayTransactionId());
+
+        try {
+            boolean fundsSent = Boolean.TRUE.equals(request.getFundsSent());
+            if (fundsSent && (request.getGatewayTransactionId() == null || request.getGatewayTransactionId().isBlank())) {
+                throw new IllegalArgumentException("Gateway transaction ID is required when the funds were sent");
+            }
+
+            // Row lock serializes resolution with another admin resolving the same disbursement
+            LoanDisbursement disbursement = disbursementRepository.findByIdForUpdate(disbursementId)
+                    .orElseThrow(() -> new NoSuchElementException("Disbursement not found"));
+            if (disbursement.getStatus() != DisbursementStatus.UNCONFIRMED) {
+                throw new IllegalStateException("Disbursement is " + disbursement.getStatus() + ", only UNCONFIRMED disbursements can be resolved");
+            }
+
+            if (fundsSent) {
+                disbursement.setFailureReason(null);
+                complete(disbursementId, DisbursementResponse.builder()
+                        .transactionId(request.getGatewayTransactionId())
+                        .status("SUCCESS")
+                        .amount(disbursement.getAmount())
+                        .build());
+            } else {
+                disbursement.setStatus(DisbursementStatus.FAILED);
+                if (request.getGatewayTransactionId() != null && !request.getGatewayTransactionId().isBlank()) {
+                    disbursement.setGatewayTransactionId(request.getGatewayTransactionId());
+                }
+                disbursement.setFailureReason(request.getReason() != null && !request.getReason().isBlank()
+                        ? request.getReason()
+                        : "Not sent by the gateway, confirmed on reconciliation");
+                disbursement.setCompletedAt(LocalDateTime.now());
+                disbursementRepository.save(disbursement);
+            }
+
+            log.info("Unconfirmed disbursement ID: {} resolved as {}", disbursementId, disbursement.getStatus());
+            return toResponse(disbursement, getStatusMessage(disbursement.getStatus()));
+
+        } catch (NoSuchElementException | IllegalArgumentException | IllegalStateException e) {
+            log.error("Failed to resolve disbursement ID: {} - {}", disbursementId, e.getMessage());
+            throw e;
+        } catch (Exception e) {
+            log.error("Unexpected error resolving disbursement ID: {}", disbursementId, e);
+            throw e;
+        }
+    }
+
+    void process(Long disbursementId) {
+        Integer claimed = transactionTemplate.execute(status -> disbursementRepository.claim(disbursementId, LocalDateTime.now()));
+        if (claimed == null || claimed == 0) {
+            log.debug("Disbursement ID: {} already claimed by another worker", disbursementId);
+            return;
+        }
+
+        DisbursementRequest request = transactionTemplate.execute(status ->
+                toGatewayRequest(disbursementRepository.findById(disbursementId).orElseThrow()));
+
+        Payout payout = send(disbursementId, request);
+        if (payout.deferred()) {
+            // Never sent: hand it back to the sweep
+            transactionTemplate.executeWithoutResult(status -> disbursementRepository.release(disbursementId, LocalDateTime.now()));
+            return;
+        }
+        if (!payout.succeeded()) {
+            mark(disbursementId, payout.unconfirmed() ? DisbursementStatus.UNCONFIRMED : DisbursementStatus.FAILED,
+                    payout.transactionId(), payout.failureReason());
+            return;
+        }
+        activate(payout);
+    }
+
+    /**
+     * Sends a bulk batch: its disbursements are claimed together, sent to the gateway with at most
+     * {@code loan.disbursement.bulk.parallelism} calls in flight and the confirmed ones activated a
+     * chunk per transaction, loans and schedules written in JDBC batches. No database connection is
+     * held while the gateway is called. If a chunk cannot be activated as a whole, its disbursements
+     * are activated one at a time so one bad application does not fail the rest.
+     */
+    void processBatch(List<Long> disbursementIds) {
+        List<Claimed> claimed = transactionTemplate.execute(status ->
+                disbursementRepository.findAcceptedByIdInForUpdate(disbursementIds).stream()
+                        .map(disbursement -> {
+                            disbursement.setStatus(DisbursementStatus.PROCESSING);
+                            return new Claimed(disbursement.getId(), toGatewayRequest(disbursement));
+                        })
+                        .toList());
+        if (claimed.size() < disbursementIds.size()) {
+            log.debug("{} of {} bulk disbursements already claimed elsewhere", disbursementIds.size() - claimed.size(), disbursementIds.size());
+        }
+
+        Semaphore slots = new Semaphore(bulkParallelism);
+        List<Future<Payout>> calls = new ArrayList<>(claimed.size());
+        for (Claimed disbursement : claimed) {
+            slots.acquireUninterruptibly();
+            try {
+                calls.add(payoutExecutor.submit(() -> {
+                    try {
+                        return send(disbursement.id(), disbursement.request());
+                    } finally {
+                        slots.release();
+                    }
+                }));
+            } catch (RuntimeException e) {
+                slots.release();
+                throw e;
+            }
+        }
+
+        List<Long> deferred = new ArrayList<>();
+        List<Payout> failed = new ArrayList<>();
+        List<Payout> unconfirmed = new ArrayList<>();
+        List<Payout> succeeded = new ArrayList<>();
+        for (Future<Payout> call : calls) {
+            Payout payout = await(call);
+            if (payout.deferred()) {
+                deferred.add(payout.disbursementId());
+            } else if (payout.succeeded()) {
+                succeeded.add(payout);
+            } else if (payout.unconfirmed()) {
+                unconfirmed.add(payout);
+            } else {
+                failed.add(payout);
+            }
+        }
+
+        if (!deferred.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> disbursementRepository.releaseAll(deferred, LocalDateTime.now()));
+            log.warn("{} bulk disbursements deferred to the sweep", deferred.size());
+        }
+        if (!failed.isEmpty()) {
+            markAll(failed, DisbursementStatus.FAILED);
+        }
+        if (!unconfirmed.isEmpty()) {
+            markAll(unconfirmed, DisbursementStatus.UNCONFIRMED);
+        }
+        for (int from = 0; from < succeeded.size(); from += bulkChunkSize) {
+            List<Payout> chunk = succeeded.subList(from, Math.min(from + bulkChunkSize, succeeded.size()));
+            try {
+                transactionTemplate.executeWithoutResult(status -> completeAll(chunk));
+            } catch (Exception e) {
+                log.warn("Activating {} bulk disbursements together failed, activating them one at a time", chunk.size(), e);
+                chunk.forEach(this::activate);
+            }
+        }
+
+        log.info("Bulk disbursement batch processed - Completed: {}, Failed: {}, Unconfirmed: {}, Deferred: {}",
+                succeeded.size(), failed.size(), unconfirmed.size(), deferred.size());
+    }
+
+    /**
+     * Calls the gateway for one disbursement and classifies the outcome.
+     */
+    private Payout send(Long disbursementId, DisbursementRequest request) {
+        try {
+            DisbursementResponse response = gatewayClient.processDisbursement(request);
+            log.info("Payment gateway disbursement response for disbursement ID: {} - Status: {}, Transaction ID: {}",
+                    disbursementId, response.getStatus(), response.getTransactionId());
+            return new Payout(disbursementId, response, response.getTransactionId(), response.getFailureReason(), false, false);
+        } catch (GatewayUnavailableException e) {
+            if (e.isCallAttempted()) {
+                log.error("Payment gateway timed out for disbursement ID: {} - outcome unknown, needs reconciliation", disbursementId);
+                return new Payout(disbursementId, null, null, e.getMessage(), false, true);
+            }
+            log.warn("Disbursement ID: {} deferred - {}", disbursementId, e.getMessage());
+            return new Payout(disbursementId, null, null, null, true, false);
+        } catch (Exception e) {
+            log.error("Payment gateway disbursement failed for disbursement ID: {}", disbursementId, e);
+            return new Payout(disbursementId, null, null, "Payment gateway error: " + e.getMessage(), false, false);
+        }
+    }
+
+    private void activate(Payout payout) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> complete(payout.disbursementId(), payout.response()));
+        } catch (Exception e) {
+            log.error("Funds sent for disbursement ID: {} (gateway transaction {}) but the loan could not be activated - needs reconciliation",
+                    payout.disbursementId(), payout.transactionId(), e);
+            mark(payout.disbursementId(), DisbursementStatus.UNCONFIRMED, payout.transactionId(),
+                    "Funds sent but loan activation failed: " + e.getMessage());
+        }
+    }
+
+    private void complete(Long disbursementId, DisbursementResponse response) {
+        LoanDisbursement disbursement = disbursementRepository.findById(disbursementId).orElseThrow();
+        LoanApplication application = loanApplicationRepository.findByIdForUpdate(disbursement.getLoanApplication().getId())
+                .orElseThrow(() -> new NoSuchElementException("Loan application not found"));
+
+        if (application.getStatus() != LoanStatus.APPROVED) {
+            throw new IllegalStateException("Loan application is no longer approved: " + application.getStatus());
+        }
+
+        Loan loan = createLoan(application);
+
+        application.setStatus(LoanStatus.DISBURSED);
+        application.setLoan(loan);
+        loanApplicationRepository.save(application);
+
+        disbursement.setStatus(DisbursementStatus.COMPLETED);
+        disbursement.setLoan(loan);
+        disbursement.setGatewayTransactionId(response.getTransactionId());
+        disbursement.setCompletedAt(LocalDateTime.now());
+        disbursementRepository.save(disbursement);
+
+        log.info("Loan disbursed successfully - Loan ID: {}, Amount: {}, Borrower: {}, Disbursement ID: {}",
+                loan.getId(), loan.getPrincipalAmount(), application.getUser().getUsername(), disbursementId);
+    }
+
+    private void completeAll(List<Payout> payouts) {
+        Map<Long, LoanDisbursement> disbursements = disbursementRepository.findAllById(
+                        payouts.stream().map(Payout::disbursementId).toList()).stream()
+                .collect(Collectors.toMap(LoanDisbursement::getId, Function.identity()));
+        Map<Long, LoanApplication> applications = loanApplicationRepository.findAllByIdForUpdate(
+                        disbursements.values().stream().map(disbursement -> disbursement.getLoanApplication().getId()).toList()).stream()
+                .collect(Collectors.toMap(LoanApplication::getId, Function.identity()));
+
+        List<Loan> loans = new ArrayList<>(payouts.size());
+        for (Payout payout : payouts) {
+            LoanApplication application = applications.get(disbursements.get(payout.disbursementId()).getLoanApplication().getId());
+            if (application.getStatus() != LoanStatus.APPROVED) {
+                throw new IllegalStateException("Loan application " + application.getId() + " is no longer approved: " + application.getStatus());
+            }
+            loans.add(buildLoan(application));
+        }
+        loanRepository.saveAll(loans);
+
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < payouts.size(); i++) {
+            Payout payout = payouts.get(i);
+            LoanDisbursement disbursement = disbursements.get(payout.disbursementId());
+            LoanApplication application = applications.get(disbursement.getLoanApplication().getId());
+            Loan loan = loans.get(i);
+
+            scheduleService.createSchedule(loan);
+            application.setStatus(LoanStatus.DISBURSED);
+            application.setLoan(loan);
+            disbursement.setStatus(DisbursementStatus.COMPLETED);
+            disbursement.setLoan(loan);
+            disbursement.setGatewayTransactionId(payout.transactionId());
+            disbursement.setCompletedAt(now);
+        }
+        // Managed entities: the inserts and updates are flushed at commit, in JDBC batches
+        log.info("{} loans activated from bulk disbursements, loan IDs {} to {}",
+                loans.size(), loans.get(0).getId(), loans.get(loans.size() - 1).getId());
+    }
+
+    private Loan createLoan(LoanApplication application) {
+        Loan loan = loanRepository.save(buildLoan(application));
+        log.info("Loan entity created with ID: {}", loan.getId());
+
+        scheduleService.createSchedule(loan);
+        log.info("EMI schedule generated for {} installments", loan.getTotalInstallments());
+        return loan;
+    }
+
+    private Loan buildLoan(LoanApplication application) {
+        BigDecimal principal = application.getLoanRequested();
+        BigDecimal annualRate = application.getInterestRate();
+        int tenureMonths = application.getTenure();
+
+        log.info("Activating loan - Amount: {}, Rate: {}%, Tenure: {} months", principal, annualRate, tenureMonths);
+
+        BigDecimal emiAmount = loanCalculator.calculateEMI(principal, annualRate, tenureMonths);
+        BigDecimal totalAmount = loanCalculator.calculateTotalPayable(emiAmount, tenureMonths);
+        BigDecimal totalInterest = loanCalculator.calculateTotalInterest(emiAmount, principal, tenureMonths);
+
+        LocalDate firstDueDate = calculateFirstDueDate();
+
+        return Loan.builder()
+                .loanApplication(application)
+                .borrower(application.getUser())
+                .lender(application.getLender())
+                .principalAmount(principal)
+                .outstandingPrincipal(principal)
+                .totalAmountToRepay(totalAmount)
+                .remainingAmount(totalAmount)
+                .totalInterestAmount(totalInterest)
+                .totalInstallments(tenureMonths)
+                .nextDueDate(firstDueDate)
+                .firstDueDate(firstDueDate)
+                .emiAmount(emiAmount)
+                .interestRate(annualRate)
+                .scheduleStorage(scheduleService.getStorage())
+                .build();
+    }
+
+    private LocalDate calculateFirstDueDate() {
+        return LocalDate.now().plusMonths(1);
+    }
+
+    private void mark(Long disbursementId, DisbursementStatus outcome, String transactionId, String reason) {
+        transactionTemplate.executeWithoutResult(status -> {
+            LoanDisbursement disbursement = disbursementRepository.findById(disbursementId).orElseThrow();
+            disbursement.setStatus(outcome);
+            disbursement.setGatewayTransactionId(transactionId);
+            disbursement.setFailureReason(reason);
+            disbursement.setCompletedAt(LocalDateTime.now());
+            disbursementRepository.save(disbursement);
+        });
+        log.warn("Disbursement ID: {} {} - {}", disbursementId, outcome, reason);
+    }
+
+    private void markAll(List<Payout> payouts, DisbursementStatus outcome) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Map<Long, Payout> byId = payouts.stream().collect(Collectors.toMap(Payout::disbursementId, Function.identity()));
+            LocalDateTime now = LocalDateTime.now();
+            for (LoanDisbursement disbursement : disbursementRepository.findAllById(byId.keySet())) {
+                Payout payout = byId.get(disbursement.getId());
+                disbursement.setStatus(outcome);
+                disbursement.setGatewayTransactionId(payout.transactionId());
+                disbursement.setFailureReason(payout.failureReason());
+                disbursement.setCompletedAt(now);
+            }
+        });
+        payouts.forEach(payout -> log.warn("Disbursement ID: {} {} - {}", payout.disbursementId(), outcome, payout.failureReason()));
+    }
+
+    private static DisbursementRequest toGatewayRequest(LoanDisbursement disbursement) {
+        LoanApplication application = disbursement.getLoanApplication();
+        // No loan exists until the gateway confirms; the application identifies the transfer
+        return DisbursementRequest.builder()
+                .loanId(application.getId())
+                .borrowerAccountNumber(application.getUser().getId().toString()) // Mock
+                .amount(application.getLoanRequested())
+                .build();
+    }
+
+    private static Payout await(Future<Payout> call) {
+        try {
+            return call.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for disbursement payouts", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Disbursement payout failed unexpectedly", e.getCause());
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private void dispatch(Long disbursementId) {
+        try {
+            disbursementExecutor.execute(() -> process(disbursementId));
+        } catch (TaskRejectedException e) {
+            log.warn("Disbursement queue full, disbursement ID: {} left for the next sweep", disbursementId);
+        }
+    }
+
+    private void dispatchBatch(List<Long> disbursementIds) {
+        try {
+            disbursementExecutor.execute(() -> processBatch(disbursementIds));
+        } catch (TaskRejectedException e) {
+            log.warn("Disbursement queue full, bulk batch of {} disbursements left for the next sweep", disbursementIds.size());
+        }
+    }
+
+    private LenderProfile getCurrentLender() {
+        String username = SecurityUtils.getCurrentUserName();
+        User user = userService.getUserByUserName(username)
+                .orElseThrow(() -> new UserNotFoundException("User not found"));
+
+        if (!user.getRole().equals(Role.LENDER)) {
+            log.warn("Non-lender user {} attempted a disbursement operation", username);
+            throw new UnauthorizedException("Only lenders can disburse loans");
+        }
+        return lenderService.getLenderById(user.getId());
+    }
+
+    private List<Long> resolveApplicationIds(LenderProfile lender, BulkDisbursementRequest request) {
+        List<Long> listed = request.getApplicationIds();
+        if (listed != null && !listed.isEmpty()) {
+            List<Long> applicationIds = listed.stream().filter(Objects::nonNull).distinct().toList();
+            if (applicationIds.size() > bulkMaxApplications) {
+                throw new OperationNotAllowedException("At most " + bulkMaxApplications + " applications can be disbursed at once");
+            }
+            return applicationIds;
+        }
+        int limit = request.getLimit() != null ? request.getLimit() : bulkMaxApplications;
+        if (limit <= 0 || limit > bulkMaxApplications) {
+            throw new OperationNotAllowedException("Limit must be between 1 and " + bulkMaxApplications);
+        }
+        return loanApplicationRepository.findIdsByLenderIdAndStatus(lender.getId(), LoanStatus.APPROVED, PageRequest.of(0, limit));
+    }
+
+    private BulkDisbursementResponse toBulkResponse(String batchId, List<DisbursementStatusResponse> results, int rejected, String message) {
+        Map<DisbursementStatus, Long> counts = results.stream()
+                .filter(result -> result.getStatus() != null)
+                .collect(Collectors.groupingBy(DisbursementStatusResponse::getStatus, () -> new EnumMap<>(DisbursementStatus.class), Collectors.counting()));
+        return BulkDisbursementResponse.builder()
+                .batchId(batchId)
+                .accepted(results.size() - rejected)
+                .rejected(rejected)
+                .inProgress((int) (counts.getOrDefault(DisbursementStatus.ACCEPTED, 0L) + counts.getOrDefault(DisbursementStatus.PROCESSING, 0L)))
+                .completed(counts.getOrDefault(DisbursementStatus.COMPLETED, 0L).intValue())
+                .failed(counts.getOrDefault(DisbursementStatus.FAILED, 0L).intValue())
+                .unconfirmed(counts.getOrDefault(DisbursementStatus.UNCONFIRMED, 0L).intValue())
+                .disbursements(results)
+                .message(message)
+                .build();
+    }
+
+    private DisbursementStatusResponse toResponse(LoanDisbursement disbursement, String message) {
+        Loan loan = disbursement.getLoan();
+        LoanDisbursementResponse loanResponse = loan == null ? null : LoanDisbursementResponse.builder()
+                .loanId(loan.getId())
+                .disbursedAmount(loan.getPrincipalAmount())
+                .emiAmount(loan.getEmiAmount())
+                .totalAmount(loan.getTotalAmountToRepay())
+                .totalInterest(loan.getTotalInterestAmount())
+                .firstDueDate(loan.getFirstDueDate())
+                .disbursementTransactionId(disbursement.getGatewayTransactionId())
+                .message("Loan disbursed successfully")
+                .build();
+
+        return DisbursementStatusResponse.builder()
+                .disbursementId(disbursement.getId())
+                .applicationId(disbursement.getLoanApplication().getId())
+                .status(disbursement.getStatus())
+                .amount(disbursement.getAmount())
+                .gatewayTransactionId(disbursement.getGatewayTransactionId())
+                .failureReason(disbursement.getFailureReason())
+                .requestedAt(disbursement.getRequestedAt())
+                .completedAt(disbursement.getCompletedAt())
+                .loan(loanResponse)
+                .message(message)
+                .build();
+    }
+
+    private String getStatusMessage(DisbursementStatus status) {
+        return switch (status) {
+            case ACCEPTED -> "Disbursement accepted for processing";
+            case PROCESSING -> "Disbursement is being processed by the payment gateway";
+            case COMPLETED -> "Loan disbursed successfully";
+            case FAILED -> "Disbursement failed";
+            case UNCONFIRMED -> "Disbursement outcome unconfirmed, awaiting reconciliation";
+        };
+    }
+
+    private record Claimed(Long id, DisbursementRequest request) {
+    }
+
+    /**
+     * Gateway outcome of one disbursement.
+     *
+     * @param response null if the gateway gave none
+     * @param deferred    the call was never sent (no permit, open circuit) and can be made later
+     * @param unconfirmed the call was sent but its outcome is unknown, so it must not be made again
+     */
+    private record Payout(Long disbursementId, DisbursementResponse response, String transactionId,
+                          String failureReason, boolean deferred, boolean unconfirmed) {
+
+        boolean succeeded() {
+            return response != null && "SUCCESS".equals(response.getStatus());
+        }
+    }
+}
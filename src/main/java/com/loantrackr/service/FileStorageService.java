@@ -40,6 +40,38 @@ public class FileStorageService {
     }
 
 
+    /**
+     * Stores an uploaded CSV data file. Unlike {@link #storeFile}, which is meant for documents,
+     * only the extension is checked: partners send CSV under many content types.
+     *
+     * @return absolute path of the stored file
+     */
+    public Path storeCsvFile(MultipartFile file, String folder) {
+        if (file.isEmpty() || file.getOriginalFilename() == null) {
+            throw new IllegalArgumentException("File is empty");
+        }
+        String sanitizedFilename = sanitizeFilename(file.getOriginalFilename());
+        if (!"csv".equalsIgnoreCase(FilenameUtils.getExtension(sanitizedFilename))) {
+            throw new IllegalArgumentException("Unsupported file extension: " + FilenameUtils.getExtension(sanitizedFilename));
+        }
+
+        Path targetLocation = resolveAndValidatePath(folder, UUID.randomUUID() + "-" + sanitizedFilename);
+
+        try {
+            Files.copy(file.getInputStream(), targetLocation, StandardCopyOption.REPLACE_EXISTING);
+            return targetLocation;
+        } catch (IOException e) {
+            throw new RuntimeException("File storage failed", e);
+        }
+    }
+
+    /**
+     * Absolute path for a file the application writes itself under the upload directory.
+     */
+    public Path resolveFile(String folder, String fileName) {
+        return resolveAndValidatePath(folder, fileName);
+    }
+
     private void validateFile(MultipartFile file) {
         List<String> allowedTypes = List.of(
                 "text/plain", "application/pdf", "image/jpeg", "image/png",
@@ -0,0 +1,184 @@
+package com.loantrackr.service;
+
+import com.loantrackr.dto.request.GatewayCallbackRequest;
+import com.loantrackr.enums.PaymentStatus;
+import com.loantrackr.enums.PaymentType;
+import com.loantrackr.model.LoanPayment;
+import com.loantrackr.repository.LoanPaymentRepository;
+import com.loantrackr.util.BloomFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Applies status notifications the payment gateway sends for transactions it first answered as
+ * pending.
+ * <p>
+ * The gateway delivers each notification at least once and in no particular order, so most of
+ * what arrives under load is redelivery. Every notification is keyed by its gateway transaction
+ * and status, and the {@code gateway_callback} table's unique key on that pair decides whether it
+ * was seen: the first delivery inserts the row, any later one finds it. To keep redeliveries off
+ * the write path, keys already handled are also added to an in-memory {@link BloomFilter}; a key
+ * the filter has never seen is certainly new and goes straight to the write, and only a key it
+ * may have seen costs a lookup before being dropped. The filter is per instance and empty after a
+ * restart, which only means more lookups; the table stays the authority.
+ * <p>
+ * A new notification locks the payment, so notifications for one transaction are applied one at
+ * a time, and is checked against it before it is recorded. Only a pending payment moves: to
+ * success, applying the amount to the loan (a prepayment re-amortizes it with the mode and split
+ * it was charged for), or to failed or cancelled. A success that no longer fits the loan leaves
+ * the payment pending with the reason and the notification unrecorded, so reconciliation reports
+ * the collection against the gateway's settled status. A pending notice overtaken
+ * by the final one, and a final status contradicting the recorded one, change nothing; the latter
+ * is logged for reconciliation, as is one reporting an amount other than the payment's. Only a
+ * notification that was applied, or that the payment already reflects, is kept as seen: one
+ * ignored or for a payment not recorded yet (the gateway can call back before the payment request
+ * returns) is not, so its redelivery, or a corrected notification under the same key, is still
+ * applied later.
+ */
+@Slf4j
+@Service
+public class GatewayCallbackService {
+
+    public enum Outcome {
+        APPLIED,
+        DUPLICATE,
+        IGNORED,
+        UNAPPLIED,
+        UNKNOWN_PAYMENT
+    }
+
+    private static final String INSERT_CALLBACK =
+            "INSERT INTO gateway_callback (id, gateway_transaction_id, status, amount, received_at) " +
+            "VALUES (nextval('gateway_callback_seq'), ?, ?, ?, ?) ON CONFLICT (gateway_transaction_id, status) DO NOTHING";
+
+    private static final String DELETE_CALLBACK =
+            "DELETE FROM gateway_callback WHERE gateway_transaction_id = ? AND status = ?";
+
+    private static final String CALLBACK_EXISTS =
+            "SELECT EXISTS (SELECT 1 FROM gateway_callback WHERE gateway_transaction_id = ? AND status = ?)";
+
+    private final LoanPaymentRepository paymentRepository;
+    private final LoanService loanService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BloomFilter seen;
+    private final Map<Outcome, Counter> outcomes = new EnumMap<>(Outcome.class);
+
+    public GatewayCallbackService(LoanPaymentRepository paymentRepository,
+                                  LoanService loanService,
+                                  JdbcTemplate jdbcTemplate,
+                                  TransactionTemplate transactionTemplate,
+                                  MeterRegistry registry,
+                                  @Value("${payment.gateway.callbacks.expected-keys:1000000}") long expectedKeys,
+                                  @Value("${payment.gateway.callbacks.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.paymentRepository = paymentRepository;
+        this.loanService = loanService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.seen = new BloomFilter(expectedKeys, falsePositiveRate);
+        for (Outcome outcome : Outcome.values()) {
+            outcomes.put(outcome, Counter.builder("payment.gateway.callbacks")
+                    .description("Gateway status notifications received")
+                    .tag("outcome", outcome.name().toLowerCase())
+                    .register(registry));
+        }
+    }
+
+    public Outcome handle(GatewayCallbackRequest callback) {
+        String gatewayTransactionId = callback.getGatewayTransactionId();
+        PaymentStatus status = callback.getStatus();
+        String key = gatewayTransactionId + '|' + status;
+
+        Outcome outcome;
+        if (seen.mightContain(key)
+                && Boolean.TRUE.equals(jdbcTemplate.queryForObject(CALLBACK_EXISTS, Boolean.class, gatewayTransactionId, status.name()))) {
+            outcome = Outcome.DUPLICATE;
+        } else {
+            outcome = transactionTemplate.execute(transaction -> apply(callback));
+            if (outcome == Outcome.APPLIED || outcome == Outcome.DUPLICATE) {
+                seen.put(key);
+            }
+        }
+
+        outcomes.get(outcome).increment();
+        log.debug("Gateway callback {} {} - {}", gatewayTransactionId, status, outcome);
+        return outcome;
+    }
+
+    private Outcome apply(GatewayCallbackRequest callback) {
+        Optional<LoanPayment> found = paymentRepository.findByGatewayTransactionIdForUpdate(callback.getGatewayTransactionId());
+        if (found.isEmpty()) {
+            log.warn("Gateway callback for unknown transaction {} ({})", callback.getGatewayTransactionId(), callback.getStatus());
+            return Outcome.UNKNOWN_PAYMENT;
+        }
+        LoanPayment payment = found.get();
+
+        PaymentStatus current = payment.getStatus();
+        if (callback.getAmount() != null && callback.getAmount().compareTo(payment.getAmount()) != 0) {
+            log.error("Gateway callback for transaction {} reports amount {}, payment {} was for {}",
+                    callback.getGatewayTransactionId(), callback.getAmount(), payment.getTransactionId(), payment.getAmount());
+            return Outcome.IGNORED;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        if (current == callback.getStatus()) {
+            // Already carried by the gateway's response to the payment request
+            record(callback, now);
+            return Outcome.DUPLICATE;
+        }
+        if (callback.getStatus() == PaymentStatus.PENDING) {
+            return Outcome.IGNORED;
+        }
+        if (current != PaymentStatus.PENDING) {
+            log.error("Gateway callback reports {} for transaction {}, payment {} is recorded as {}",
+                    callback.getStatus(), callback.getGatewayTransactionId(), payment.getTransactionId(), current);
+            return Outcome.IGNORED;
+        }
+        if (!record(callback, now)) {
+            return Outcome.DUPLICATE;
+        }
+
+        if (callback.getStatus() == PaymentStatus.SUCCESS) {
+            boolean applied = payment.getPaymentType() == PaymentType.PREPAYMENT
+                    ? loanService.applyConfirmedPrepayment(payment)
+                    : loanService.applyConfirmedPayment(payment);
+            if (!applied) {
+                // Left pending against the gateway's success, so reconciliation reports it
+                forget(callback);
+                payment.setFailureReason("Collected but not applied to the loan; left for reconciliation");
+                paymentRepository.save(payment);
+                log.error("Payment {} confirmed by gateway callback but not applied to loan ID: {}", payment.getTransactionId(), payment.getLoan().getId());
+                return Outcome.UNAPPLIED;
+            }
+            payment.setPaidAt(now);
+        } else {
+            payment.setFailureReason(callback.getFailureReason());
+        }
+        payment.setStatus(callback.getStatus());
+        paymentRepository.save(payment);
+
+        log.info("Payment {} moved from {} to {} by gateway callback", payment.getTransactionId(), current, callback.getStatus());
+        return Outcome.APPLIED;
+    }
+
+    /**
+     * Returns false if the notification was recorded already.
+     */
+    private boolean record(GatewayCallbackRequest callback, LocalDateTime now) {
+        return jdbcTemplate.update(INSERT_CALLBACK, callback.getGatewayTransactionId(), callback.getStatus().name(),
+                callback.getAmount(), now) > 0;
+    }
+
+    private void forget(GatewayCallbackRequest callback) {
+        jdbcTemplate.update(DELETE_CALLBACK, callback.getGatewayTransactionId(), callback.getStatus().name());
+    }
+}
@@ -0,0 +1,162 @@
+package com.loantrackr.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.loantrackr.exception.IdempotencyConflictException;
+import com.loantrackr.exception.OutcomeUnknownException;
+import com.loantrackr.util.SecurityUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Runs a request at most once per client-supplied {@code Idempotency-Key}.
+ * <p>
+ * The first request claims the key in Redis with a short-lived IN_PROGRESS marker and, when it
+ * finishes, replaces the marker with its serialized response for {@code ttl}. Duplicates that
+ * arrive meanwhile poll until the response is stored and return it without running the action;
+ * after {@code wait-timeout} they give up with a conflict. If the action throws before it had any
+ * effect, the key is released so the client can retry with it; any other failure, such as one
+ * after the payment gateway was called, is stored as NEEDS_RECONCILIATION for {@code ttl} and
+ * replays are told the outcome is unknown rather than running the action again. Keys are scoped
+ * by operation and user, and a key reused with a different request body is rejected.
+ */
+@Slf4j
+@Service
+public class IdempotencyService {
+
+    private static final String KEY_PREFIX = "idempotency:";
+    private static final String IN_PROGRESS = "IN_PROGRESS";
+    private static final String COMPLETED = "COMPLETED";
+    private static final String NEEDS_RECONCILIATION = "NEEDS_RECONCILIATION";
+    private static final long POLL_INTERVAL_MS = 100;
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+    private final Duration lockTtl;
+    private final Duration waitTimeout;
+
+    public IdempotencyService(StringRedisTemplate redisTemplate,
+                              ObjectMapper objectMapper,
+                              @Value("${loan.payment.idempotency.ttl:PT24H}") Duration ttl,
+                              @Value("${loan.payment.idempotency.lock-ttl:PT1M}") Duration lockTtl,
+                              @Value("${loan.payment.idempotency.wait-timeout:PT10S}") Duration waitTimeout) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.ttl = ttl;
+        this.lockTtl = lockTtl;
+        this.waitTimeout = waitTimeout;
+    }
+
+    /**
+     * @param operation      namespace of the key, e.g. {@code payment}
+     * @param idempotencyKey value of the client's {@code Idempotency-Key} header
+     * @param request        canonical description of the request; a key may only be reused for an identical one
+     * @param retryable      whether a failure of the action happened before it had any effect, so it may run again
+     * @throws IdempotencyConflictException if the key belongs to a different request, or the original is still running
+     * @throws OutcomeUnknownException      if the original failed after it may have had an effect
+     */
+    public <T> T execute(String operation, String idempotencyKey, String request, Class<T> responseType, Supplier<T> action,
+                         Predicate<RuntimeException> retryable) {
+        if (idempotencyKey == null || idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency-Key must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+
+        String redisKey = KEY_PREFIX + operation + ":" + SecurityUtils.getCurrentUserName() + ":" + idempotencyKey;
+        String fingerprint = fingerprint(request);
+        long deadline = System.nanoTime() + waitTimeout.toNanos();
+
+        while (!Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(redisKey, IN_PROGRESS + "|" + fingerprint, lockTtl))) {
+            String stored = redisTemplate.opsForValue().get(redisKey);
+            if (stored == null) {
+                continue; // Released or expired in between; try to claim it
+            }
+
+            String[] parts = stored.split("\\|", 3);
+            if (!parts[1].equals(fingerprint)) {
+                log.warn("Idempotency key reused with a different request - operation: {}, key: {}", operation, idempotencyKey);
+                throw new IdempotencyConflictException("Idempotency-Key was already used for a different request");
+            }
+            if (COMPLETED.equals(parts[0])) {
+                log.info("Replaying stored response - operation: {}, key: {}", operation, idempotencyKey);
+                return deserialize(parts[2], responseType);
+            }
+            if (NEEDS_RECONCILIATION.equals(parts[0])) {
+                log.info("Replaying unknown outcome - operation: {}, key: {}", operation, idempotencyKey);
+                throw new OutcomeUnknownException(parts[2]);
+            }
+            if (System.nanoTime() > deadline) {
+                log.warn("Gave up waiting for in-flight request - operation: {}, key: {}", operation, idempotencyKey);
+                throw new IdempotencyConflictException("A request with this Idempotency-Key is still being processed");
+            }
+            sleep();
+        }
+
+        T response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            if (retryable.test(e)) {
+                redisTemplate.delete(redisKey);
+            } else {
+                log.error("Request failed after it may have taken effect, holding idempotency key: {} - operation: {}", idempotencyKey, operation);
+                store(redisKey, NEEDS_RECONCILIATION + "|" + fingerprint + "|" + "The original request failed after it may have taken effect; it will be settled by reconciliation");
+            }
+            throw e;
+        }
+
+        try {
+            redisTemplate.opsForValue().set(redisKey, COMPLETED + "|" + fingerprint + "|" + objectMapper.writeValueAsString(response), ttl);
+        } catch (Exception e) {
+            // Keep the IN_PROGRESS marker: duplicates wait it out instead of repeating the action
+            log.error("Failed to store response for idempotency key: {} - operation: {}", idempotencyKey, operation, e);
+        }
+        return response;
+    }
+
+    private void store(String redisKey, String value) {
+        try {
+            redisTemplate.opsForValue().set(redisKey, value, ttl);
+        } catch (Exception e) {
+            // The IN_PROGRESS marker stays until lockTtl, so duplicates still wait instead of repeating the action
+            log.error("Failed to store outcome for {}", redisKey, e);
+        }
+    }
+
+    private <T> T deserialize(String json, Class<T> responseType) {
+        try {
+            return objectMapper.readValue(json, responseType);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Stored idempotent response could not be read", e);
+        }
+    }
+
+    private static String fingerprint(String request) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(request.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(POLL_INTERVAL_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for an in-flight request", e);
+        }
+    }
+}
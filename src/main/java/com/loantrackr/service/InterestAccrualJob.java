@@ -0,0 +1,253 @@
+package com.loantrackr.service;
+
+import com.loantrackr.dto.projection.CurrentInstallment;
+import com.loantrackr.dto.projection.LoanScheduleParams;
+import com.loantrackr.dto.response.AccrualRunResult;
+import com.loantrackr.enums.BatchJobStatus;
+import com.loantrackr.enums.ScheduleStorage;
+import com.loantrackr.model.BatchJobCheckpoint;
+import com.loantrackr.repository.BatchJobCheckpointRepository;
+import com.loantrackr.repository.LoanRepaymentScheduleRepository;
+import com.loantrackr.repository.LoanRepository;
+import com.loantrackr.util.AccrualCalculator;
+import com.loantrackr.util.FixedPointLoanCalculator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * End-of-day interest accrual.
+ * <p>
+ * Walks disbursed loans in id order, one keyset chunk per transaction. For each loan the interest
+ * component of its current installment is spread over the installment's period
+ * (see {@link AccrualCalculator}) and the day's share is written to {@code interest_accrual}. Each
+ * chunk costs one loan query, at most one installment query for loans that store rows, and one
+ * JDBC batch insert; the job's checkpoint is updated in the same transaction, so a run that stops
+ * part-way resumes after the last committed chunk. Re-running a date is harmless: an accrual that
+ * already exists for a loan and date is left untouched.
+ */
+@Slf4j
+@Service
+public class InterestAccrualJob {
+
+    public static final String JOB_NAME = "interest-accrual";
+
+    private static final String INSERT_ACCRUAL =
+            "INSERT INTO interest_accrual (id, loan_id, accrual_date, installment_number, daily_interest, accrued_interest, created_at) " +
+            "VALUES (nextval('interest_accrual_seq'), ?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT (loan_id, accrual_date) DO NOTHING";
+
+    private final LoanRepository loanRepository;
+    private final LoanRepaymentScheduleRepository scheduleRepository;
+    private final BatchJobCheckpointRepository checkpointRepository;
+    private final RepaymentScheduleService scheduleService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public InterestAccrualJob(LoanRepository loanRepository,
+                              LoanRepaymentScheduleRepository scheduleRepository,
+                              BatchJobCheckpointRepository checkpointRepository,
+                              RepaymentScheduleService scheduleService,
+                              JdbcTemplate jdbcTemplate,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${loan.accrual.chunk-size:5000}") int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Accrual chunk size must be positive");
+        }
+        this.loanRepository = loanRepository;
+        this.scheduleRepository = scheduleRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.scheduleService = scheduleService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Accrues the day that just ended.
+     */
+    @Scheduled(cron = "${loan.accrual.cron:0 30 0 * * *}")
+    public void accrueYesterday() {
+        try {
+            run(LocalDate.now().minusDays(1));
+        } catch (Exception e) {
+            log.error("Nightly interest accrual failed", e);
+        }
+    }
+
+    /**
+     * Accrues interest for {@code businessDate}, resuming from the checkpoint if an earlier run for
+     * the same date did not finish. Returns straight away if the date is already complete.
+     *
+     * @throws IllegalStateException if a run is already in progress on this instance
+     */
+    public AccrualRunResult run(LocalDate businessDate) {
+        if (businessDate == null || !businessDate.isBefore(LocalDate.now())) {
+            throw new IllegalArgumentException("Interest can only be accrued for a past business date");
+        }
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("Interest accrual is already running");
+        }
+        try {
+            return execute(businessDate);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private AccrualRunResult execute(LocalDate businessDate) {
+        long start = System.nanoTime();
+        BatchJobCheckpoint checkpoint = transactionTemplate.execute(status -> startOrResume(businessDate));
+
+        if (checkpoint.getStatus() == BatchJobStatus.COMPLETED) {
+            log.info("Interest accrual for {} already completed - {} loans", businessDate, checkpoint.getProcessedCount());
+            return toResult(checkpoint, false, 0, start);
+        }
+
+        boolean resumed = checkpoint.getLastProcessedId() > 0;
+        log.info("Interest accrual for {} {} after loan ID: {}", businessDate, resumed ? "resuming" : "starting",
+                checkpoint.getLastProcessedId());
+
+        PageRequest chunk = PageRequest.of(0, chunkSize);
+        long records = 0;
+        try {
+            ChunkResult result;
+            do {
+                BatchJobCheckpoint current = checkpoint;
+                result = transactionTemplate.execute(status -> processChunk(current, chunk));
+                checkpoint = result.checkpoint();
+                records += result.records();
+            } while (result.loans() == chunkSize);
+
+            checkpoint.setStatus(BatchJobStatus.COMPLETED);
+            checkpoint.setCompletedAt(LocalDateTime.now());
+            checkpoint = checkpointRepository.save(checkpoint);
+
+        } catch (RuntimeException e) {
+            // Reload: the in-memory copy may carry progress of the chunk that was rolled back
+            checkpointRepository.findById(checkpoint.getId()).ifPresent(committed -> {
+                log.error("Interest accrual for {} stopped after loan ID: {}", businessDate, committed.getLastProcessedId(), e);
+                committed.setStatus(BatchJobStatus.FAILED);
+                checkpointRepository.save(committed);
+            });
+            throw e;
+        }
+
+        AccrualRunResult result = toResult(checkpoint, resumed, records, start);
+        log.info("Interest accrual for {} completed - {} loans, {} accrual records, {} ms",
+                businessDate, result.getProcessedLoans(), records, result.getDurationMs());
+        return result;
+    }
+
+    private BatchJobCheckpoint startOrResume(LocalDate businessDate) {
+        BatchJobCheckpoint checkpoint = checkpointRepository.findByJobNameAndBusinessDate(JOB_NAME, businessDate)
+                .orElseGet(() -> BatchJobCheckpoint.builder()
+                        .jobName(JOB_NAME)
+                        .businessDate(businessDate)
+                        .build());
+
+        if (checkpoint.getStatus() == BatchJobStatus.COMPLETED) {
+            return checkpoint;
+        }
+        checkpoint.setStatus(BatchJobStatus.RUNNING);
+        return checkpointRepository.save(checkpoint);
+    }
+
+    private ChunkResult processChunk(BatchJobCheckpoint checkpoint, PageRequest chunk) {
+        LocalDate businessDate = checkpoint.getBusinessDate();
+        List<LoanScheduleParams> loans = loanRepository.findDisbursedScheduleParams(checkpoint.getLastProcessedId(), chunk);
+        if (loans.isEmpty()) {
+            return new ChunkResult(checkpoint, 0, 0);
+        }
+
+        List<Long> rowLoanIds = loans.stream()
+                .filter(InterestAccrualJob::storesRows)
+                .map(LoanScheduleParams::id)
+                .toList();
+        Map<Long, CurrentInstallment> rowInstallments = rowLoanIds.isEmpty() ? Map.of()
+                : scheduleRepository.findCurrentInstallments(rowLoanIds).stream()
+                .collect(Collectors.toMap(CurrentInstallment::loanId, Function.identity()));
+
+        LocalDateTime now = LocalDateTime.now();
+        List<Object[]> batch = new ArrayList<>(loans.size());
+
+        for (LoanScheduleParams loan : loans) {
+            if (storesRows(loan)) {
+                CurrentInstallment installment = rowInstallments.get(loan.id());
+                if (installment != null) {
+                    addAccrual(batch, loan.id(), installment.installmentNumber(), installment.dueDate(),
+                            FixedPointLoanCalculator.toPaise(installment.interestAmount()), businessDate, now);
+                }
+                continue;
+            }
+
+            // Bounded a month past the business date: the current installment is due by then
+            long endEpochDay = businessDate.plusMonths(1).plusDays(1).toEpochDay();
+            boolean[] found = {false};
+            scheduleService.forEachUnpaidInstallment(loan, endEpochDay, (number, dueEpochDay, principal, interest, status) -> {
+                if (!found[0]) {
+                    found[0] = true;
+                    addAccrual(batch, loan.id(), number, LocalDate.ofEpochDay(dueEpochDay), interest, businessDate, now);
+                }
+            });
+        }
+
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_ACCRUAL, batch);
+        }
+
+        checkpoint.setLastProcessedId(loans.get(loans.size() - 1).id());
+        checkpoint.setProcessedCount(checkpoint.getProcessedCount() + loans.size());
+        BatchJobCheckpoint saved = checkpointRepository.save(checkpoint);
+
+        log.debug("Accrual chunk committed up to loan ID: {} - {} loans, {} records",
+                saved.getLastProcessedId(), loans.size(), batch.size());
+        return new ChunkResult(saved, loans.size(), batch.size());
+    }
+
+    private static void addAccrual(List<Object[]> batch, Long loanId, int installmentNumber, LocalDate dueDate,
+                                   long interestPaise, LocalDate businessDate, LocalDateTime now) {
+        long accrued = AccrualCalculator.accruedPaise(interestPaise, dueDate, businessDate);
+        if (accrued == 0) {
+            return; // Installment period has not started
+        }
+        long daily = AccrualCalculator.dailyPaise(interestPaise, dueDate, businessDate);
+        batch.add(new Object[]{loanId, businessDate, installmentNumber,
+                FixedPointLoanCalculator.fromPaise(daily), FixedPointLoanCalculator.fromPaise(accrued), now});
+    }
+
+    private static boolean storesRows(LoanScheduleParams loan) {
+        return loan.scheduleStorage() == null || loan.scheduleStorage() == ScheduleStorage.ROWS;
+    }
+
+    private static AccrualRunResult toResult(BatchJobCheckpoint checkpoint, boolean resumed, long records, long start) {
+        return AccrualRunResult.builder()
+                .businessDate(checkpoint.getBusinessDate())
+                .status(checkpoint.getStatus())
+                .resumed(resumed)
+                .processedLoans(checkpoint.getProcessedCount())
+                .accrualRecords(records)
+                .lastProcessedLoanId(checkpoint.getLastProcessedId())
+                .durationMs((System.nanoTime() - start) / 1_000_000)
+                .build();
+    }
+
+    private record ChunkResult(BatchJobCheckpoint checkpoint, int loans, int records) {
+    }
+}
@@ -0,0 +1,93 @@
+package com.loantrackr.service;
+
+import com.loantrackr.dto.projection.LenderTerms;
+import com.loantrackr.repository.LenderProfileRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory snapshot of the terms offered by active, verified lenders.
+ * <p>
+ * The snapshot is loaded with a single query and reused until it is invalidated by a lender
+ * change or reaches {@code loan.lender-snapshot.max-age}; the age bound covers changes made to
+ * the lender's user account outside the lender services.
+ * <p>
+ * A change made in a transaction invalidates the snapshot once it commits, so a reader cannot
+ * reload the old rows in between. A reload that was already running when an invalidation
+ * arrived still returns what it read, but does not keep it.
+ */
+@Slf4j
+@Service
+public class LenderCatalog {
+
+    private record Snapshot(List<LenderTerms> lenders, long loadedAtNanos) {
+    }
+
+    private final LenderProfileRepository lenderProfileRepository;
+    private final long maxAgeNanos;
+    private final ReentrantLock reloadLock = new ReentrantLock();
+    private final AtomicLong invalidations = new AtomicLong();
+    private volatile Snapshot snapshot;
+
+    public LenderCatalog(LenderProfileRepository lenderProfileRepository,
+                         @Value("${loan.lender-snapshot.max-age:30s}") Duration maxAge) {
+        this.lenderProfileRepository = lenderProfileRepository;
+        this.maxAgeNanos = maxAge.toNanos();
+    }
+
+    public List<LenderTerms> getActiveLenders() {
+        Snapshot current = snapshot;
+        if (isFresh(current)) {
+            return current.lenders();
+        }
+
+        reloadLock.lock();
+        try {
+            current = snapshot;
+            if (!isFresh(current)) {
+                long seen = invalidations.get();
+                current = new Snapshot(List.copyOf(lenderProfileRepository.findActiveLenderTerms()), System.nanoTime());
+                if (invalidations.get() == seen) {
+                    snapshot = current;
+                }
+                log.info("Lender snapshot reloaded with {} active lenders", current.lenders().size());
+            }
+            return current.lenders();
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    /**
+     * Drops the snapshot, after the current transaction commits if there is one.
+     */
+    public void invalidate() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict();
+                }
+            });
+        } else {
+            evict();
+        }
+    }
+
+    private void evict() {
+        invalidations.incrementAndGet();
+        snapshot = null;
+    }
+
+    private boolean isFresh(Snapshot current) {
+        return current != null && System.nanoTime() - current.loadedAtNanos() < maxAgeNanos;
+    }
+}
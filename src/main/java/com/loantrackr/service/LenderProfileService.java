@@ -18,12 +18,15 @@ import com.loantrackr.util.TenureUtils;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.modelmapper.ModelMapper;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.List;
 import java.util.Optional;
 
 @Slf4j
@@ -36,6 +39,8 @@ public class LenderProfileService {
     private final LenderOnboardingRepository lenderOnboardingRepository;
     private final FileStorageService storageService;
     private final ModelMapper modelMapper;
+    private final LoanCalculatorService loanCalculator;
+    private final LenderCatalog lenderCatalog;
 
     @Transactional
     public LenderOnboardingResponse createLenderOnboardingApplication(LenderOnboardingForm form) {
@@ -76,7 +81,19 @@ public class LenderProfileService {
                 .supportedTenures("6")
                 .processingFee(new BigDecimal("500"))
                 .build();
-        return lenderProfileRepository.save(lenderProfile);
+        LenderProfile saved = lenderProfileRepository.save(lenderProfile);
+        loanCalculator.registerLender(saved);
+        lenderCatalog.invalidate();
+        return saved;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmAnnuityFactorCache() {
+        // A lender changed while this loads registers itself; its older row read here must not undo that
+        long loadedAt = loanCalculator.getAnnuityFactorCache().version();
+        List<LenderProfile> verifiedLenders = lenderProfileRepository.findAllByIsVerifiedTrue();
+        verifiedLenders.forEach(lender -> loanCalculator.registerLender(lender, loadedAt));
+        log.info("Annuity factors cached for {} verified lenders", verifiedLenders.size());
     }
 
     public LenderProfile getLenderById(Long id) {
@@ -118,6 +135,8 @@ public class LenderProfileService {
             byUser.setProcessingFee(request.getProcessingFees());
         }
         byUser = lenderProfileRepository.save(byUser);
+        loanCalculator.registerLender(byUser);
+        lenderCatalog.invalidate();
         return LenderSummaryResponse.builder()
                 .lenderId(byUser.getId())
                 .organizationName(byUser.getOrganizationName())
@@ -139,6 +158,8 @@ public class LenderProfileService {
             LenderProfile byUser = lenderProfileRepository.findByUser(userByUserName.get());
             byUser.setVerified(false);
             lenderProfileRepository.save(byUser);
+            loanCalculator.evictLender(byUser.getId());
+            lenderCatalog.invalidate();
             return userService.deleteUser(byUser.getId());
 
         } catch (RuntimeException e) {
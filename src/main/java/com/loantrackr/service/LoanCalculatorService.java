@@ -0,0 +1,184 @@
+package com.loantrackr.service;
+
+import com.loantrackr.enums.CalculatorEngine;
+import com.loantrackr.model.LenderProfile;
+import com.loantrackr.util.AmortizationSchedule;
+import com.loantrackr.util.FixedPointLoanCalculator;
+import com.loantrackr.util.LoanCalculatorUtil;
+import com.loantrackr.util.TenureUtils;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+
+/**
+ * Entry point for loan math. Delegates to the engine selected by {@code loan.calculator.engine};
+ * both engines produce identical results, the fixed-point one just avoids BigDecimal arithmetic.
+ * <p>
+ * Annuity factors for the (rate, tenure) pairs that verified lenders offer are kept in an
+ * {@link AnnuityFactorCache}, so a quote for one of them skips {@code (1+r)^n} entirely.
+ */
+@Slf4j
+@Service
+public class LoanCalculatorService implements MeterBinder {
+
+    private static final BigDecimal MAX_PAISE_AMOUNT = BigDecimal.valueOf(Long.MAX_VALUE / 100);
+
+    private final CalculatorEngine engine;
+    private final AnnuityFactorCache annuityFactors;
+
+    public LoanCalculatorService(@Value("${loan.calculator.engine:BIG_DECIMAL}") CalculatorEngine engine) {
+        this.engine = engine;
+        this.annuityFactors = new AnnuityFactorCache(this::computeAnnuityFactor);
+        log.info("Loan calculator engine: {}", engine);
+    }
+
+    public CalculatorEngine getEngine() {
+        return engine;
+    }
+
+    public BigDecimal calculateEMI(BigDecimal principal, BigDecimal annualRate, int tenureInMonths) {
+        if (principal == null || annualRate == null || tenureInMonths <= 0) {
+            return LoanCalculatorUtil.calculateEMI(principal, annualRate, tenureInMonths); // throws
+        }
+
+        BigDecimal monthlyRate = LoanCalculatorUtil.toMonthlyRate(annualRate);
+        long fixedPointRate = monthlyRate.unscaledValue().longValueExact();
+
+        if (engine == CalculatorEngine.FIXED_POINT) {
+            if (!useFixedPoint(principal)) {
+                return LoanCalculatorUtil.calculateEMI(principal, annualRate, tenureInMonths);
+            }
+            double factor = annuityFactors.get(fixedPointRate, tenureInMonths).factor();
+            long emi = FixedPointLoanCalculator.calculateEmiPaise(
+                    FixedPointLoanCalculator.toPaise(principal), fixedPointRate, tenureInMonths, factor);
+            return FixedPointLoanCalculator.fromPaise(emi);
+        }
+
+        BigDecimal growth = annuityFactors.get(fixedPointRate, tenureInMonths).growth();
+        return LoanCalculatorUtil.calculateEMI(principal, monthlyRate, growth);
+    }
+
+    public BigDecimal calculateTotalInterest(BigDecimal emi, BigDecimal principal, int tenureInMonths) {
+        if (!useFixedPoint(principal, emi)) {
+            return LoanCalculatorUtil.calculateTotalInterest(emi, principal, tenureInMonths);
+        }
+        long totalPayable = Math.multiplyExact(FixedPointLoanCalculator.toPaise(emi), tenureInMonths);
+        return FixedPointLoanCalculator.fromPaise(totalPayable - FixedPointLoanCalculator.toPaise(principal));
+    }
+
+    public BigDecimal calculateTotalPayable(BigDecimal emi, int tenureInMonths) {
+        if (!useFixedPoint(emi)) {
+            return LoanCalculatorUtil.calculateTotalPayable(emi, tenureInMonths);
+        }
+        return FixedPointLoanCalculator.fromPaise(Math.multiplyExact(FixedPointLoanCalculator.toPaise(emi), tenureInMonths));
+    }
+
+    public AmortizationSchedule amortize(BigDecimal principal, BigDecimal annualRate, BigDecimal emi, int tenureInMonths) {
+        if (annualRate != null && useFixedPoint(principal, emi)) {
+            long principalPaise = FixedPointLoanCalculator.toPaise(principal);
+            long monthlyRate = FixedPointLoanCalculator.toMonthlyRate(annualRate);
+            if (FixedPointLoanCalculator.fitsAmortization(principalPaise, monthlyRate)) {
+                return FixedPointLoanCalculator.amortize(
+                        principalPaise, monthlyRate, FixedPointLoanCalculator.toPaise(emi), tenureInMonths);
+            }
+        }
+        return LoanCalculatorUtil.amortize(principal, annualRate, emi, tenureInMonths);
+    }
+
+    /**
+     * Shortest tenure, at most {@code maxTenure}, whose EMI does not exceed {@code maxEmi}.
+     * Starts from the closed form {@code n = -ln(1 - rP/E) / ln(1 + r)} and then corrects for
+     * EMI rounding, so usually only one or two EMIs are evaluated.
+     */
+    public int calculateTenureForEmi(BigDecimal principal, BigDecimal annualRate, BigDecimal maxEmi, int maxTenure) {
+        double r = LoanCalculatorUtil.toMonthlyRate(annualRate).doubleValue();
+        double x = 1 - r * principal.doubleValue() / maxEmi.doubleValue();
+        int tenure = x > 0 ? (int) Math.ceil(-Math.log(x) / Math.log1p(r)) : maxTenure;
+        tenure = Math.max(1, Math.min(tenure, maxTenure));
+
+        while (tenure > 1 && calculateEMI(principal, annualRate, tenure - 1).compareTo(maxEmi) <= 0) {
+            tenure--;
+        }
+        while (tenure < maxTenure && calculateEMI(principal, annualRate, tenure).compareTo(maxEmi) > 0) {
+            tenure++;
+        }
+        return tenure;
+    }
+
+    /**
+     * Precomputes annuity factors for the lender's current rate and tenures, dropping the ones
+     * from its previous terms. Unverified lenders are evicted instead.
+     */
+    public void registerLender(LenderProfile lender) {
+        registerLender(lender, Long.MAX_VALUE);
+    }
+
+    /**
+     * As {@link #registerLender(LenderProfile)} for a lender read after the cache was at version
+     * {@code loadedAt}; skipped if the lender has changed in the cache since.
+     */
+    public void registerLender(LenderProfile lender, long loadedAt) {
+        if (!lender.isVerified()) {
+            evictLender(lender.getId());
+            return;
+        }
+        long monthlyRate = FixedPointLoanCalculator.toMonthlyRate(lender.getInterestRate());
+        annuityFactors.register(lender.getId(), monthlyRate,
+                TenureUtils.parseSupportedTenures(lender.getSupportedTenures()), loadedAt);
+        log.debug("Annuity factors cached for lender ID: {}, cache size: {}", lender.getId(), annuityFactors.size());
+    }
+
+    public void evictLender(Long lenderId) {
+        annuityFactors.evict(lenderId);
+    }
+
+    public AnnuityFactorCache getAnnuityFactorCache() {
+        return annuityFactors;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("loan.annuity.factor.cache.hits", annuityFactors, AnnuityFactorCache::getHits)
+                .description("EMI calculations served from a cached annuity factor")
+                .register(registry);
+        FunctionCounter.builder("loan.annuity.factor.cache.misses", annuityFactors, AnnuityFactorCache::getMisses)
+                .description("EMI calculations that had to compute (1+r)^n")
+                .register(registry);
+        Gauge.builder("loan.annuity.factor.cache.size", annuityFactors, AnnuityFactorCache::size)
+                .description("Cached (rate, tenure) pairs")
+                .register(registry);
+    }
+
+    private AnnuityFactorCache.AnnuityFactor computeAnnuityFactor(AnnuityFactorCache.Key key) {
+        if (engine == CalculatorEngine.FIXED_POINT) {
+            return new AnnuityFactorCache.AnnuityFactor(
+                    FixedPointLoanCalculator.annuityFactor(key.monthlyRate(), key.tenure()), null);
+        }
+        BigDecimal monthlyRate = BigDecimal.valueOf(key.monthlyRate(), 10);
+        return new AnnuityFactorCache.AnnuityFactor(
+                Double.NaN, LoanCalculatorUtil.growthFactor(monthlyRate, key.tenure()));
+    }
+
+    /**
+     * The fixed-point engine only takes amounts that are whole paise and fit in a long;
+     * anything else goes through the BigDecimal engine so results never diverge.
+     */
+    private boolean useFixedPoint(BigDecimal... amounts) {
+        if (engine != CalculatorEngine.FIXED_POINT) return false;
+        for (BigDecimal amount : amounts) {
+            if (amount == null || !isWholePaise(amount)) return false;
+        }
+        return true;
+    }
+
+    private static boolean isWholePaise(BigDecimal amount) {
+        return (amount.scale() <= 2 || amount.stripTrailingZeros().scale() <= 2)
+                && amount.abs().compareTo(MAX_PAISE_AMOUNT) < 0;
+    }
+}
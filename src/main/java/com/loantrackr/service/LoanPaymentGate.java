@@ -0,0 +1,243 @@
+package com.loantrackr.service;
+
+import com.loantrackr.exception.PaymentInProgressException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Admits one borrower payment per loan at a time.
+ * <p>
+ * A payment reads the next installment, calls the gateway and only then updates the loan, so two
+ * payments on one loan running side by side would both charge the same installment. The gate is
+ * entered before the installment is read and left once the payment is recorded; a second payment
+ * on the loan meanwhile is turned away with {@link PaymentInProgressException} before it reaches
+ * the gateway. Loans are tracked individually, so payments on different loans never wait on each
+ * other.
+ * <p>
+ * The in-process set covers a single instance. With {@code loan.payment.advisory-lock} the gate
+ * also takes a PostgreSQL session advisory lock keyed by the loan ID, which covers every instance
+ * on the database. The locks live on a fixed set of {@code loan.payment.advisory-lock-connections}
+ * connections the gate keeps for itself, shared by all permits and each locking and unlocking its
+ * own keys, so payments in flight never take connections from the pool beyond those; if the
+ * instance dies the database drops the sessions and with them the locks.
+ * <p>
+ * Batch posting enters the gate too, through {@link #tryEnter(Collection)}: {@link AutoDebitJob}
+ * for one loan at a time while its debit is in flight, {@link RepaymentFileService} for the loans
+ * of a page at a time. A loan a borrower is paying just then is left out of the batch rather than
+ * waited for.
+ */
+@Slf4j
+@Service
+public class LoanPaymentGate {
+
+    private static final String TRY_LOCK = "SELECT pg_try_advisory_lock(?)";
+    private static final String UNLOCK = "SELECT pg_advisory_unlock(?)";
+
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+    private final DataSource dataSource;
+    private final boolean advisoryLock;
+    private final LockSession[] sessions;
+    private final AtomicInteger nextSession = new AtomicInteger();
+
+    public LoanPaymentGate(DataSource dataSource,
+                           @Value("${loan.payment.advisory-lock:false}") boolean advisoryLock,
+                           @Value("${loan.payment.advisory-lock-connections:2}") int lockConnections) {
+        if (lockConnections <= 0) {
+            throw new IllegalArgumentException("Advisory lock connections must be positive");
+        }
+        this.dataSource = dataSource;
+        this.advisoryLock = advisoryLock;
+        this.sessions = new LockSession[advisoryLock ? lockConnections : 0];
+        for (int i = 0; i < sessions.length; i++) {
+            sessions[i] = new LockSession();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (LockSession session : sessions) {
+            session.discard();
+        }
+    }
+
+    /**
+     * @throws PaymentInProgressException if a payment on the loan is already in flight
+     */
+    public Permit enter(Long loanId) {
+        Permit permit = tryEnter(List.of(loanId));
+        if (!permit.admits(loanId)) {
+            throw new PaymentInProgressException("A payment on this loan is already being processed");
+        }
+        return permit;
+    }
+
+    /**
+     * Admits each of the loans that has no payment in flight and passes over the others, for
+     * batch work that would rather leave a busy loan for a later run than wait for it. One permit
+     * covers every loan admitted.
+     */
+    public Permit tryEnter(Collection<Long> loanIds) {
+        Set<Long> admitted = new LinkedHashSet<>();
+        for (Long loanId : new LinkedHashSet<>(loanIds)) {
+            if (inFlight.add(loanId)) {
+                admitted.add(loanId);
+            } else {
+                log.warn("Payment on loan ID: {} turned away, another one is in progress on this instance", loanId);
+            }
+        }
+        if (!advisoryLock || admitted.isEmpty()) {
+            return new Permit(admitted, null);
+        }
+
+        LockSession session = sessions[Math.floorMod(nextSession.getAndIncrement(), sessions.length)];
+        Set<Long> locked = new LinkedHashSet<>();
+        try {
+            for (Long loanId : admitted) {
+                if (session.tryLock(loanId)) {
+                    locked.add(loanId);
+                } else {
+                    log.warn("Payment on loan ID: {} turned away, another one is in progress on another instance", loanId);
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            // Other permits share the session, so only this permit's locks are let go
+            session.unlock(locked);
+            inFlight.removeAll(admitted);
+            throw new IllegalStateException("Could not lock loans " + admitted + " for payment", e);
+        }
+        admitted.stream().filter(loanId -> !locked.contains(loanId)).forEach(inFlight::remove);
+        return new Permit(locked, locked.isEmpty() ? null : session);
+    }
+
+    private static boolean query(Connection connection, String sql, Long loanId) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setLong(1, loanId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() && resultSet.getBoolean(1);
+            }
+        }
+    }
+
+    /**
+     * One connection the gate keeps for its advisory locks. Lock calls are short, so permits take
+     * turns on it; it is opened on first use and again after it breaks. A lock a permit failed to
+     * release stays held until the connection is closed, which at worst turns later payments on
+     * that loan away.
+     */
+    private final class LockSession {
+
+        private Connection connection;
+
+        synchronized boolean tryLock(Long loanId) throws SQLException {
+            if (connection == null) {
+                connection = dataSource.getConnection();
+            }
+            try {
+                return query(connection, TRY_LOCK, loanId);
+            } catch (SQLException e) {
+                discardIfBroken();
+                throw e;
+            }
+        }
+
+        synchronized void unlock(Collection<Long> loanIds) {
+            if (connection == null) {
+                return; // Discarded, and its locks with it
+            }
+            try {
+                for (Long loanId : loanIds) {
+                    if (!query(connection, UNLOCK, loanId)) {
+                        log.warn("Advisory lock for loan ID: {} was no longer held", loanId);
+                    }
+                }
+            } catch (SQLException e) {
+                log.error("Failed to release advisory locks for loans {}", loanIds, e);
+                discardIfBroken();
+            }
+        }
+
+        /**
+         * A broken connection has already lost its session, and every permit's locks on it with
+         * it; a working one keeps them.
+         */
+        private void discardIfBroken() {
+            try {
+                if (connection.isValid(1)) {
+                    return;
+                }
+            } catch (SQLException e) {
+                log.warn("Failed to check advisory lock connection", e);
+            }
+            discard();
+        }
+
+        synchronized void discard() {
+            if (connection == null) {
+                return;
+            }
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                log.warn("Failed to close advisory lock connection", e);
+            } finally {
+                connection = null;
+            }
+        }
+    }
+
+    /**
+     * Admission of one payment per loan admitted; closing it lets the next payment on those loans in.
+     */
+    public final class Permit implements AutoCloseable {
+
+        private final Set<Long> loanIds;
+        private final LockSession session;
+        private boolean closed;
+
+        private Permit(Set<Long> loanIds, LockSession session) {
+            this.loanIds = Collections.unmodifiableSet(loanIds);
+            this.session = session;
+        }
+
+        /**
+         * Loans admitted, in the order they were asked for.
+         */
+        public Set<Long> getLoanIds() {
+            return loanIds;
+        }
+
+        public boolean admits(Long loanId) {
+            return loanIds.contains(loanId);
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                if (session != null) {
+                    session.unlock(loanIds);
+                }
+            } finally {
+                inFlight.removeAll(loanIds);
+            }
+        }
+    }
+}
@@ -1,58 +1,69 @@
 package com.loantrackr.service;
 
-import com.loantrackr.dto.request.DisbursementRequest;
+import com.loantrackr.dto.projection.LenderTerms;
 import com.loantrackr.dto.request.LoanApplicationRequest;
 import com.loantrackr.dto.request.PaymentGatewayRequest;
 import com.loantrackr.dto.request.PaymentRequest;
+import com.loantrackr.dto.request.PrepaymentRequest;
 import com.loantrackr.dto.response.*;
 import com.loantrackr.enums.LoanRepaymentStatus;
 import com.loantrackr.enums.LoanStatus;
 import com.loantrackr.enums.PaymentStatus;
+import com.loantrackr.enums.PaymentType;
+import com.loantrackr.enums.PrepaymentMode;
 import com.loantrackr.enums.Role;
+import com.loantrackr.exception.GatewayUnavailableException;
 import com.loantrackr.exception.OperationNotAllowedException;
+import com.loantrackr.exception.PaymentInProgressException;
 import com.loantrackr.exception.UnauthorizedException;
 import com.loantrackr.exception.UserNotFoundException;
 import com.loantrackr.model.*;
 import com.loantrackr.repository.*;
 import com.loantrackr.util.LoanCalculatorUtil;
-import com.loantrackr.util.MockPaymentGateway;
+import com.loantrackr.util.PaymentAllocator;
 import com.loantrackr.util.SecurityUtils;
 import com.loantrackr.util.TenureUtils;
+import com.loantrackr.util.TransactionIdGenerator;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.ThreadLocalRandom;
-
-import static com.loantrackr.util.LoanCalculatorUtil.*;
 
 @Slf4j
 @Service
 @AllArgsConstructor
 public class LoanService {
 
+    private static final int PARALLEL_LENDER_THRESHOLD = 64;
+    private static final int MAX_POSTING_ATTEMPTS = 3;
+
     private final LoanApplicationRepository loanApplicationRepository;
-    private final LoanRepaymentScheduleRepository scheduleRepository;
-    private final LoanConfigurationRepository configRepository;
+    private final RepaymentScheduleService scheduleService;
     private final LenderProfileRepository lenderRepository;
     private final LoanPaymentRepository paymentRepository;
-    private final MockPaymentGateway mockPaymentGateway;
+    private final PaymentGatewayClient gatewayClient;
     private final LenderProfileService lenderService;
     private final LoanRepository loanRepository;
     private final UserService userService;
+    private final LoanCalculatorService loanCalculator;
+    private final LenderCatalog lenderCatalog;
+    private final TransactionIdGenerator transactionIdGenerator;
+    private final LoanPaymentGate paymentGate;
+    private final TransactionTemplate transactionTemplate;
 
 
     public List<LenderSummaryResponse> getAllActiveLenderResponses() {
         log.info("Fetching all lenders");
         try {
-            List<LenderSummaryResponse> lenders = lenderRepository.findAll().stream()
-                    .filter(lender -> lender.isVerified() && lender.getUser().isActive() && lender.getUser().isVerified())
+            List<LenderSummaryResponse> lenders = lenderCatalog.getActiveLenders().stream()
                     .map(this::mapToSummary).toList();
             log.info("Successfully retrieved {} lenders", lenders.size());
             return lenders;
@@ -62,13 +73,13 @@ public class LoanService {
         }
     }
 
-    private LenderSummaryResponse mapToSummary(LenderProfile lender) {
+    private LenderSummaryResponse mapToSummary(LenderTerms lender) {
         return LenderSummaryResponse.builder()
-                .lenderId(lender.getId())
-                .organizationName(lender.getOrganizationName())
-                .interestRate(lender.getInterestRate())
-                .processingFee(lender.getProcessingFee())
-                .supportedTenures(TenureUtils.parseSupportedTenures(lender.getSupportedTenures()))
+                .lenderId(lender.lenderId())
+                .organizationName(lender.organizationName())
+                .interestRate(lender.interestRate())
+                .processingFee(lender.processingFee())
+                .supportedTenures(lender.supportedTenures())
                 .build();
     }
 
@@ -90,10 +101,10 @@ public class LoanService {
             }
 
             EmiPreview preview = new EmiPreview();
-            BigDecimal emi = calculateEMI(principal, lenderById.getInterestRate(), tenure);
+            BigDecimal emi = loanCalculator.calculateEMI(principal, lenderById.getInterestRate(), tenure);
             preview.setEmi(emi);
-            preview.setTotalPayable(calculateTotalPayable(emi, tenure));
-            preview.setTotalInterest(calculateTotalInterest(emi, principal, tenure));
+            preview.setTotalPayable(loanCalculator.calculateTotalPayable(emi, tenure));
+            preview.setTotalInterest(loanCalculator.calculateTotalInterest(emi, principal, tenure));
             preview.setOrganization(lenderById.getOrganizationName());
             preview.setProcessingFee(lenderById.getProcessingFee());
 
@@ -109,6 +120,45 @@ public class LoanService {
         }
     }
 
+    public List<LenderEmiComparison> compareEmiAcrossLenders(BigDecimal principal) {
+        log.info("Generating EMI comparison across lenders for principal: {}", principal);
+
+        try {
+            List<LenderTerms> lenders = lenderCatalog.getActiveLenders();
+
+            List<LenderEmiComparison> comparison = (lenders.size() >= PARALLEL_LENDER_THRESHOLD ? lenders.parallelStream() : lenders.stream())
+                    .map(lender -> mapToEmiComparison(lender, principal))
+                    .toList();
+
+            log.info("EMI comparison generated for {} lenders", comparison.size());
+            return comparison;
+        } catch (Exception e) {
+            log.error("Unexpected error generating EMI comparison for principal: {}", principal, e);
+            throw e;
+        }
+    }
+
+    private LenderEmiComparison mapToEmiComparison(LenderTerms lender, BigDecimal principal) {
+        List<EmiQuote> quotes = new ArrayList<>(lender.supportedTenures().size());
+        for (int tenure : lender.supportedTenures()) {
+            BigDecimal emi = loanCalculator.calculateEMI(principal, lender.interestRate(), tenure);
+            quotes.add(EmiQuote.builder()
+                    .tenure(tenure)
+                    .emi(emi)
+                    .totalInterest(loanCalculator.calculateTotalInterest(emi, principal, tenure))
+                    .totalPayable(loanCalculator.calculateTotalPayable(emi, tenure))
+                    .build());
+        }
+
+        return LenderEmiComparison.builder()
+                .lenderId(lender.lenderId())
+                .organization(lender.organizationName())
+                .interestRate(lender.interestRate())
+                .processingFee(lender.processingFee())
+                .quotes(quotes)
+                .build();
+    }
+
     @Transactional
     public LoanApplicationResponse applyLoan(Long lenderId, LoanApplicationRequest request) {
         String userName = SecurityUtils.getCurrentUserName();
@@ -138,7 +188,7 @@ public class LoanService {
             }
 
             // Calculate EMI
-            BigDecimal emi = LoanCalculatorUtil.calculateEMI(request.getLoanAmount(), lender.getInterestRate(), request.getTenureInMonths());
+            BigDecimal emi = loanCalculator.calculateEMI(request.getLoanAmount(), lender.getInterestRate(), request.getTenureInMonths());
 
             LoanApplication application = new LoanApplication();
             application.setUser(borrower);
@@ -343,265 +393,558 @@ public class LoanService {
         }
     }
 
-    //Disbursement
-    public LoanDisbursementResponse disburseLoan(Long loanApplicationId) {
-        log.info("Loan disbursement initiated for application ID: {}", loanApplicationId);
+    //Repayment
+    /**
+     * Takes one amount in a single gateway call and applies it across the unpaid installments in
+     * order, late fee, interest and then principal of each (see {@link PaymentAllocator}). An
+     * amount that does not cover the installment it reaches leaves it part-paid: the loan keeps
+     * what was paid toward it and it stays due for the rest. Paying ahead of the schedule is
+     * allowed up to everything still owed on it. While an installment payment on the loan is
+     * pending at the gateway no other is taken, as both would be allocated to the same installments.
+     */
+    public PaymentResponse makePayment(Long loanId, PaymentRequest request) {
+        log.info("Payment initiated for loan ID: {}, amount: {}", loanId, request.getAmount());
 
-        try {
-            LoanApplication application = loanApplicationRepository.findById(loanApplicationId).orElseThrow(() -> new NoSuchElementException("Loan application not found"));
+        // Admitted before the unpaid installments are read, so a concurrent payment cannot allocate against the same ones
+        try (LoanPaymentGate.Permit permit = paymentGate.enter(loanId)) {
+            Loan loan = loanRepository.findById(loanId).orElseThrow(() -> new NoSuchElementException("Loan not found"));
 
-            if (application.getStatus() != LoanStatus.APPROVED) {
-                log.warn("Disbursement attempted for non-approved loan - Application ID: {}, Status: {}", loanApplicationId, application.getStatus());
-                throw new UnauthorizedException("Loan application is not approved");
+            if (loan.getStatus() != LoanStatus.DISBURSED) {
+                log.warn("Payment attempted for inactive loan - Loan ID: {}, Status: {}", loanId, loan.getStatus());
+                throw new OperationNotAllowedException("Loan is not active for payments");
             }
 
-            BigDecimal principal = application.getLoanRequested();
-            BigDecimal annualRate = application.getInterestRate();
-            int tenureMonths = application.getTenure();
-
-            log.info("Processing disbursement - Amount: {}, Rate: {}%, Tenure: {} months", principal, annualRate, tenureMonths);
-
-            BigDecimal emiAmount = LoanCalculatorUtil.calculateEMI(principal, annualRate, tenureMonths);
-            BigDecimal totalAmount = LoanCalculatorUtil.calculateTotalPayable(emiAmount, tenureMonths);
-            BigDecimal totalInterest = LoanCalculatorUtil.calculateTotalInterest(emiAmount, principal, tenureMonths);
-
-            Loan loan = Loan.builder()
-                    .loanApplication(application)
-                    .borrower(application.getUser())
-                    .lender(application.getLender())
-                    .principalAmount(principal)
-                    .totalAmountToRepay(totalAmount)
-                    .remainingAmount(totalAmount)
-                    .totalInterestAmount(totalInterest)
-                    .totalInstallments(tenureMonths)
-                    .nextDueDate(calculateFirstDueDate())
-                    .build();
+            BigDecimal amount = request.getAmount();
+            if (amount == null || amount.signum() <= 0 || amount.stripTrailingZeros().scale() > 2) {
+                throw new OperationNotAllowedException("Payment amount must be positive, in whole paise");
+            }
 
-            loan = loanRepository.save(loan);
-            log.info("Loan entity created with ID: {}", loan.getId());
+            // A pending payment is allocated when the gateway confirms it, against the same installments
+            if (!paymentRepository.findPendingInstallmentPayments(List.of(loanId)).isEmpty()) {
+                log.warn("Payment attempted while another awaits the gateway - Loan ID: {}", loanId);
+                throw new PaymentInProgressException("A payment on this loan is awaiting the gateway's outcome; try again once it is settled");
+            }
 
-            generateEMISchedule(loan, emiAmount, annualRate, tenureMonths);
-            log.info("EMI schedule generated for {} installments", tenureMonths);
+            // Late fees are applied by the nightly OverdueInstallmentJob once the grace period ends
+            List<LoanRepaymentSchedule> unpaid = getUnpaidInstallments(loan);
+            PaymentAllocator.Result allocation = allocate(loan, unpaid, amount);
+            if (allocation.unallocated().signum() > 0) {
+                BigDecimal outstanding = amount.subtract(allocation.unallocated());
+                log.warn("Payment {} exceeds amount outstanding {} for loan ID: {}", amount, outstanding, loanId);
+                throw new OperationNotAllowedException("Payment cannot exceed the amount outstanding, " + outstanding + "; use a prepayment to pay down principal");
+            }
 
-            DisbursementResponse disbursementResponse = processDisbursement(loan);
-            log.info("Disbursement processed via payment gateway - Transaction ID: {}", disbursementResponse.getTransactionId());
+            LoanRepaymentSchedule firstInstallment = unpaid.get(0);
+            log.info("Processing payment for installments {} to {} of loan ID: {}", firstInstallment.getInstallmentNumber(),
+                    allocation.allocations().get(allocation.allocations().size() - 1).installmentNumber(), loanId);
 
-            application.setStatus(LoanStatus.DISBURSED);
-            application.setLoan(loan);
-            loanApplicationRepository.save(application);
+            String transactionId = generateTransactionId();
+            PaymentGatewayResponse gatewayResponse = charge(PaymentGatewayRequest.builder()
+                    .amount(amount)
+                    .paymentMethod(request.getPaymentMethod())
+                    .loanId(loanId)
+                    .installmentNumber(firstInstallment.getInstallmentNumber())
+                    .reference(transactionId)
+                    .build());
+
+            log.info("Payment gateway response - Status: {}, Gateway Transaction ID: {}", gatewayResponse.getStatus(), gatewayResponse.getTransactionId());
 
-            log.info("Loan disbursed successfully - Loan ID: {}, Amount: {}, Borrower: {}", loan.getId(), principal, application.getUser().getUsername());
-
-            return LoanDisbursementResponse.builder()
-                    .loanId(loan.getId())
-                    .disbursedAmount(principal)
-                    .emiAmount(emiAmount)
-                    .totalAmount(totalAmount)
-                    .totalInterest(totalInterest)
-                    .firstDueDate(loan.getNextDueDate())
-                    .disbursementTransactionId(disbursementResponse.getTransactionId())
-                    .message("Loan disbursed successfully")
+            LoanPayment payment;
+            if (gatewayResponse.getStatus() == PaymentStatus.SUCCESS) {
+                payment = postCollectedPayment(loan, unpaid, allocation, request, transactionId, gatewayResponse);
+                log.info("Payment successful - Loan ID: {}, Installments paid: {}, Partially paid: {}, Remaining amount: {}", loanId,
+                        allocation.settledInstallments(), allocation.partiallyPaid(), payment.getLoan().getRemainingAmount());
+            } else if (gatewayResponse.getStatus() == PaymentStatus.PENDING) {
+                // Applied by GatewayCallbackService once the gateway reports the outcome
+                log.info("Payment pending at gateway - Loan ID: {}, Installment: {}", loanId, firstInstallment.getInstallmentNumber());
+                payment = paymentRepository.save(buildInstallmentPayment(loan, firstInstallment, request, transactionId, gatewayResponse));
+            } else {
+                log.warn("Payment failed - Loan ID: {}, Installment: {}, Reason: {}", loanId, firstInstallment.getInstallmentNumber(), gatewayResponse.getFailureReason());
+                payment = paymentRepository.save(buildInstallmentPayment(loan, firstInstallment, request, transactionId, gatewayResponse));
+            }
+
+            log.info("Payment record saved - Payment ID: {}, Status: {}", payment.getId(), payment.getStatus());
+
+            Loan updated = payment.getLoan();
+            boolean success = payment.getStatus() == PaymentStatus.SUCCESS;
+            return PaymentResponse.builder()
+                    .paymentId(payment.getId())
+                    .transactionId(payment.getTransactionId())
+                    .status(payment.getStatus())
+                    .amount(payment.getAmount())
+                    .installmentNumber(payment.getInstallmentNumber())
+                    .installmentsPaid(success ? allocation.settledInstallments() : 0)
+                    .partiallyPaidAmount(getPartiallyPaidAmount(updated))
+                    .remainingAmount(updated.getRemainingAmount())
+                    .nextDueDate(updated.getNextDueDate())
+                    .message(getPaymentMessage(payment.getStatus()))
                     .build();
 
-        } catch (NoSuchElementException | UnauthorizedException e) {
-            log.error("Loan disbursement failed for application ID: {} - {}", loanApplicationId, e.getMessage());
+        } catch (NoSuchElementException | OperationNotAllowedException | GatewayUnavailableException | PaymentInProgressException e) {
+            log.error("Payment failed for loan ID: {} - {}", loanId, e.getMessage());
             throw e;
         } catch (Exception e) {
-            log.error("Unexpected error during loan disbursement for application ID: {}", loanApplicationId, e);
+            log.error("Unexpected error during payment for loan ID: {}", loanId, e);
             throw e;
         }
     }
 
-    private void generateEMISchedule(Loan loan, BigDecimal emiAmount, BigDecimal annualRate, int tenureMonths) {
-        log.info("Generating EMI schedule for loan ID: {} with {} installments", loan.getId(), tenureMonths);
-
+    /**
+     * Calls the gateway for a payment carrying our transaction ID as its reference. A call that
+     * reached the gateway but got no answer (a timeout or gateway error) may still be collected,
+     * so it is treated as pending under that reference: the payment is recorded and the gateway's
+     * callback or the settlement file decides it.
+     *
+     * @throws GatewayUnavailableException if the call was never sent
+     */
+    private PaymentGatewayResponse charge(PaymentGatewayRequest request) {
         try {
-            BigDecimal monthlyRate = annualRate.divide(BigDecimal.valueOf(1200), 10, RoundingMode.HALF_UP);
-            BigDecimal remainingBalance = loan.getPrincipalAmount();
-            LocalDate dueDate = loan.getNextDueDate();
+            return gatewayClient.processPayment(request);
+        } catch (GatewayUnavailableException e) {
+            if (!e.isCallAttempted()) {
+                throw e;
+            }
+            log.warn("No answer from the payment gateway for reference {}, loan ID: {} - recorded as pending ({})",
+                    request.getReference(), request.getLoanId(), e.getMessage());
+            return PaymentGatewayResponse.builder()
+                    .transactionId(request.getReference())
+                    .status(PaymentStatus.PENDING)
+                    .amount(request.getAmount())
+                    .paymentMethod(request.getPaymentMethod())
+                    .build();
+        }
+    }
+
+    private List<LoanRepaymentSchedule> getUnpaidInstallments(Loan loan) {
+        List<LoanRepaymentSchedule> unpaid = scheduleService.getSchedule(loan).stream()
+                .filter(installment -> !installment.isPaid())
+                .toList();
+        if (unpaid.isEmpty()) {
+            throw new OperationNotAllowedException("No pending installments found");
+        }
+        return unpaid;
+    }
 
-            List<LoanRepaymentSchedule> schedules = new ArrayList<>();
+    private PaymentAllocator.Result allocate(Loan loan, List<LoanRepaymentSchedule> unpaid, BigDecimal amount) {
+        List<PaymentAllocator.Installment> installments = unpaid.stream()
+                .map(installment -> new PaymentAllocator.Installment(installment.getInstallmentNumber(),
+                        installment.getLateFee() != null ? installment.getLateFee() : BigDecimal.ZERO,
+                        installment.getInterestAmount(), installment.getPrincipalAmount()))
+                .toList();
+        return PaymentAllocator.allocate(installments, getPartiallyPaidAmount(loan), amount);
+    }
 
-            for (int i = 1; i <= tenureMonths; i++) {
-                BigDecimal interestAmount = remainingBalance.multiply(monthlyRate).setScale(2, RoundingMode.HALF_UP);
+    private static BigDecimal getPartiallyPaidAmount(Loan loan) {
+        return loan.getPartiallyPaidAmount() != null ? loan.getPartiallyPaidAmount() : BigDecimal.ZERO;
+    }
 
-                BigDecimal principalAmount = emiAmount.subtract(interestAmount);
+    private LoanPayment buildInstallmentPayment(Loan loan, LoanRepaymentSchedule installment, PaymentRequest request,
+                                                String transactionId, PaymentGatewayResponse gatewayResponse) {
+        return LoanPayment.builder()
+                .loan(loan)
+                .repaymentSchedule(scheduleService.rowForPayment(installment).orElse(null))
+                .installmentNumber(installment.getInstallmentNumber())
+                .paymentType(PaymentType.INSTALLMENT)
+                .amount(request.getAmount())
+                .paymentMethod(request.getPaymentMethod())
+                .status(gatewayResponse.getStatus())
+                .transactionId(transactionId)
+                .gatewayTransactionId(gatewayResponse.getTransactionId())
+                .failureReason(gatewayResponse.getFailureReason())
+                .build();
+    }
 
-                if (i == tenureMonths) {
-                    principalAmount = remainingBalance;
-                    emiAmount = principalAmount.add(interestAmount);
+    /**
+     * Records a payment the gateway collected: the installments it reached, the loan and the
+     * payment are saved in one transaction. If the loan or an installment changed since they were
+     * read (the overdue job marking an installment, a debit file being posted) their versions no
+     * longer match and the posting is retried on fresh copies, as the money has already been taken.
+     * If the installments were paid meanwhile or the retries run out, the payment is still saved,
+     * as pending with the reason, so the collection is on record for reconciliation.
+     *
+     * @throws IllegalStateException if the payment could not be posted
+     */
+    private LoanPayment postCollectedPayment(Loan loan, List<LoanRepaymentSchedule> unpaid, PaymentAllocator.Result allocation,
+                                             PaymentRequest request, String transactionId, PaymentGatewayResponse gatewayResponse) {
+        int firstInstallment = unpaid.get(0).getInstallmentNumber();
+        for (int attempt = 1; ; attempt++) {
+            Loan currentLoan = loan;
+            List<LoanRepaymentSchedule> currentUnpaid = unpaid;
+            PaymentAllocator.Result currentAllocation = allocation;
+            try {
+                return transactionTemplate.execute(status -> {
+                    LoanPayment payment = buildInstallmentPayment(currentLoan, currentUnpaid.get(0), request, transactionId, gatewayResponse);
+                    payment.setPaidAt(LocalDateTime.now());
+                    applyAllocation(currentLoan, currentUnpaid, currentAllocation);
+                    return paymentRepository.save(payment);
+                });
+            } catch (OptimisticLockingFailureException | DuplicateKeyException e) {
+                // A computed installment's row written meanwhile collides on (loan, installment number)
+                log.warn("Loan ID: {} changed while installment {} onwards was being paid (attempt {} of {})", loan.getId(), firstInstallment, attempt, MAX_POSTING_ATTEMPTS);
+                loan = attempt < MAX_POSTING_ATTEMPTS ? loanRepository.findById(loan.getId()).orElse(null) : null;
+                unpaid = loan != null && loan.getStatus() == LoanStatus.DISBURSED ? scheduleService.getSchedule(loan).stream()
+                        .filter(installment -> !installment.isPaid())
+                        .toList() : List.of();
+                allocation = !unpaid.isEmpty() && unpaid.get(0).getInstallmentNumber() == firstInstallment
+                        ? allocate(loan, unpaid, request.getAmount())
+                        : null;
+                if (allocation == null || allocation.unallocated().signum() > 0) {
+                    log.error("Payment for loan ID: {}, installment {} onwards collected but not posted, gateway transaction {}",
+                            currentLoan.getId(), firstInstallment, gatewayResponse.getTransactionId(), e);
+                    LoanPayment unposted = buildInstallmentPayment(currentLoan, currentUnpaid.get(0), request, transactionId, gatewayResponse);
+                    unposted.setStatus(PaymentStatus.PENDING);
+                    unposted.setFailureReason("Collected but not posted to the loan; left for reconciliation");
+                    paymentRepository.save(unposted);
+                    throw new IllegalStateException("Payment was collected but could not be recorded; it will be settled by reconciliation", e);
                 }
-
-                LoanRepaymentSchedule schedule = LoanRepaymentSchedule.builder()
-                        .loan(loan)
-                        .installmentNumber(i)
-                        .emiAmount(emiAmount)
-                        .principalAmount(principalAmount)
-                        .interestAmount(interestAmount)
-                        .dueDate(dueDate)
-                        .build();
-
-                schedules.add(schedule);
-                remainingBalance = remainingBalance.subtract(principalAmount);
-                dueDate = dueDate.plusMonths(1);
             }
+        }
+    }
 
-            scheduleRepository.saveAll(schedules);
-            log.info("EMI schedule saved successfully for loan ID: {}", loan.getId());
+    private void applyAllocation(Loan loan, List<LoanRepaymentSchedule> unpaid, PaymentAllocator.Result allocation) {
+        log.info("Applying payment to loan ID: {} - {} installments reached", loan.getId(), allocation.allocations().size());
 
-        } catch (Exception e) {
-            log.error("Error generating EMI schedule for loan ID: {}", loan.getId(), e);
-            throw e;
+        // Loan balances move a whole installment at a time: a part-paid one still counts in full until settled
+        BigDecimal emiPaid = BigDecimal.ZERO;
+        BigDecimal principalPaid = BigDecimal.ZERO;
+        List<LoanRepaymentSchedule> settled = new ArrayList<>();
+        for (int i = 0; i < allocation.settledInstallments(); i++) {
+            LoanRepaymentSchedule installment = unpaid.get(i);
+            boolean late = installment.getStatus() == LoanRepaymentStatus.OVERDUE || installment.isOverdue();
+            installment.setPaidDate(LocalDate.now());
+            installment.setTotalAmountPaid(installment.getTotalAmountDue());
+            installment.setStatus(late ? LoanRepaymentStatus.LATE_PAID : LoanRepaymentStatus.PAID);
+            emiPaid = emiPaid.add(installment.getEmiAmount());
+            principalPaid = principalPaid.add(installment.getPrincipalAmount());
+            settled.add(installment);
+        }
+        scheduleService.saveAll(loan, settled);
+
+        loan.setRemainingAmount(loan.getRemainingAmount().subtract(emiPaid));
+        if (loan.getOutstandingPrincipal() != null) {
+            loan.setOutstandingPrincipal(loan.getOutstandingPrincipal().subtract(principalPaid));
+        }
+        loan.setPaidInstallments(loan.getPaidInstallments() + settled.size());
+        loan.setPartiallyPaidAmount(allocation.partiallyPaid().signum() > 0 ? allocation.partiallyPaid() : null);
+        // The due date stays put once the loan is repaid
+        if (settled.size() < unpaid.size()) {
+            loan.setNextDueDate(unpaid.get(settled.size()).getDueDate());
+        } else {
+            log.info("Loan fully repaid - Loan ID: {}", loan.getId());
         }
+        loan.checkRepaymentStatus();
+        loanRepository.save(loan);
+
+        log.info("Loan and installments updated successfully - Remaining installments: {}", loan.getTotalInstallments() - loan.getPaidInstallments());
     }
 
-    private LocalDate calculateFirstDueDate() {
-        return LocalDate.now().plusMonths(1);
+    /**
+     * Applies an installment payment the gateway first answered as pending and has since confirmed.
+     * Runs in the caller's transaction: the loan is locked and read afresh, and the amount is
+     * allocated against the installments unpaid now, which may have moved on since the payment was
+     * taken.
+     *
+     * @return false if the amount no longer fits the installments unpaid (they were paid meanwhile);
+     * the payment is then left for reconciliation
+     */
+    public boolean applyConfirmedPayment(LoanPayment payment) {
+        Loan loan = loanRepository.findAllByIdForUpdate(List.of(payment.getLoan().getId())).stream()
+                .findFirst()
+                .orElseThrow(() -> new NoSuchElementException("Loan not found"));
+
+        List<LoanRepaymentSchedule> unpaid = loan.getStatus() == LoanStatus.DISBURSED
+                ? scheduleService.getSchedule(loan).stream().filter(installment -> !installment.isPaid()).toList()
+                : List.of();
+        PaymentAllocator.Result allocation = unpaid.isEmpty() ? null : allocate(loan, unpaid, payment.getAmount());
+        if (allocation == null || allocation.unallocated().signum() > 0) {
+            log.error("Confirmed payment {} for loan ID: {} exceeds the amount outstanding and was not applied",
+                    payment.getTransactionId(), loan.getId());
+            return false;
+        }
+
+        applyAllocation(loan, unpaid, allocation);
+        log.info("Confirmed payment {} applied - Loan ID: {}, Installments paid: {}, Partially paid: {}",
+                payment.getTransactionId(), loan.getId(), allocation.settledInstallments(), allocation.partiallyPaid());
+        return true;
     }
 
-    private DisbursementResponse processDisbursement(Loan loan) {
-        log.info("Processing disbursement via payment gateway for loan ID: {}", loan.getId());
+    //Prepayment
+    @Transactional(readOnly = true)
+    public ForeclosureQuote getForeclosureQuote(Long loanId) {
+        log.info("Foreclosure quote requested for loan ID: {}", loanId);
 
         try {
-            DisbursementRequest request = DisbursementRequest.builder()
-                    .loanId(loan.getId())
-                    .borrowerAccountNumber(loan.getBorrower().getId().toString()) // Mock
-                    .amount(loan.getPrincipalAmount())
-                    .build();
+            Loan loan = getBorrowerLoan(loanId);
+            LoanRepaymentSchedule nextInstallment = getNextInstallmentForPrepayment(loan);
+            LocalDate today = LocalDate.now();
 
-            DisbursementResponse response = mockPaymentGateway.processDisbursement(request);
-            log.info("Payment gateway disbursement response - Status: {}, Transaction ID: {}", response.getStatus(), response.getTransactionId());
+            BigDecimal outstandingPrincipal = getOutstandingPrincipal(loan);
+            BigDecimal accruedInterest = LoanCalculatorUtil.calculateAccruedInterest(outstandingPrincipal, getAnnualRate(loan), nextInstallment.getDueDate(), today);
 
-            return response;
+            return ForeclosureQuote.builder()
+                    .loanId(loanId)
+                    .outstandingPrincipal(outstandingPrincipal)
+                    .accruedInterest(accruedInterest)
+                    .totalPayable(outstandingPrincipal.add(accruedInterest))
+                    .remainingInstallments(loan.getRemainingInstallments())
+                    .validOn(today)
+                    .build();
+
+        } catch (NoSuchElementException | OperationNotAllowedException | UnauthorizedException e) {
+            log.error("Foreclosure quote failed for loan ID: {} - {}", loanId, e.getMessage());
+            throw e;
         } catch (Exception e) {
-            log.error("Payment gateway disbursement failed for loan ID: {}", loan.getId(), e);
+            log.error("Unexpected error generating foreclosure quote for loan ID: {}", loanId, e);
             throw e;
         }
     }
 
-    //Repayment
-    public PaymentResponse makePayment(Long loanId, PaymentRequest request) {
-        log.info("Payment initiated for loan ID: {}, amount: {}", loanId, request.getAmount());
-
-        try {
-            Loan loan = loanRepository.findById(loanId).orElseThrow(() -> new NoSuchElementException("Loan not found"));
-
-            if (loan.getStatus() != LoanStatus.DISBURSED) {
-                log.warn("Payment attempted for inactive loan - Loan ID: {}, Status: {}", loanId, loan.getStatus());
-                throw new OperationNotAllowedException("Loan is not active for payments");
+    /**
+     * Applies a part-prepayment to the principal and re-amortizes only the unpaid installments,
+     * keeping either the remaining tenure or the EMI. Interest accrued on the prepaid principal
+     * since the last due date is collected with it. As in {@link #makePayment}, the gateway is
+     * called outside any transaction and the loan is only updated once the amount is collected.
+     */
+    public PrepaymentResponse prepay(Long loanId, PrepaymentRequest request) {
+        log.info("Prepayment initiated for loan ID: {}, amount: {}, mode: {}", loanId, request.getAmount(), request.getMode());
+
+        try (LoanPaymentGate.Permit permit = paymentGate.enter(loanId)) {
+            Loan loan = getBorrowerLoan(loanId);
+            LoanRepaymentSchedule nextInstallment = getNextInstallmentForPrepayment(loan);
+
+            BigDecimal principalPrepaid = request.getAmount();
+            if (principalPrepaid.stripTrailingZeros().scale() > 2) {
+                throw new OperationNotAllowedException("Prepayment amount cannot have fractions of a paisa");
             }
 
-            LoanRepaymentSchedule nextInstallment = scheduleRepository.findByLoanAndStatus(loan, LoanRepaymentStatus.PENDING).stream().min(Comparator.comparing(LoanRepaymentSchedule::getInstallmentNumber)).orElseThrow(() -> new OperationNotAllowedException("No pending installments found"));
-
-            log.info("Processing payment for installment {} of loan ID: {}", nextInstallment.getInstallmentNumber(), loanId);
-
-            calculateAndUpdateLateFee(nextInstallment);
-
-            BigDecimal totalAmountDue = nextInstallment.getTotalAmountDue();
-            if (request.getAmount().compareTo(totalAmountDue) != 0) {
-                log.warn("Payment amount mismatch - Expected: {}, Received: {} for loan ID: {}", totalAmountDue, request.getAmount(), loanId);
-                throw new OperationNotAllowedException("Payment amount must be exactly " + totalAmountDue);
+            BigDecimal outstandingPrincipal = getOutstandingPrincipal(loan);
+            if (principalPrepaid.compareTo(outstandingPrincipal) >= 0) {
+                log.warn("Prepayment {} not below outstanding principal {} for loan ID: {}", principalPrepaid, outstandingPrincipal, loanId);
+                throw new OperationNotAllowedException("Prepayment must be less than the outstanding principal " + outstandingPrincipal + "; loans cannot be closed early through prepayment");
             }
 
-            PaymentGatewayResponse gatewayResponse = mockPaymentGateway.processPayment(PaymentGatewayRequest.builder()
-                    .amount(request.getAmount())
+            BigDecimal annualRate = getAnnualRate(loan);
+            BigDecimal accruedInterest = LoanCalculatorUtil.calculateAccruedInterest(principalPrepaid, annualRate, nextInstallment.getDueDate(), LocalDate.now());
+            BigDecimal amountCharged = principalPrepaid.add(accruedInterest);
+
+            String transactionId = generateTransactionId();
+            PaymentGatewayResponse gatewayResponse = charge(PaymentGatewayRequest.builder()
+                    .amount(amountCharged)
                     .paymentMethod(request.getPaymentMethod())
                     .loanId(loanId)
-                    .installmentNumber(nextInstallment.getInstallmentNumber())
+                    .reference(transactionId)
                     .build());
 
             log.info("Payment gateway response - Status: {}, Gateway Transaction ID: {}", gatewayResponse.getStatus(), gatewayResponse.getTransactionId());
 
-            LoanPayment payment = LoanPayment.builder()
-                    .loan(loan)
-                    .repaymentSchedule(nextInstallment)
-                    .amount(request.getAmount())
-                    .paymentMethod(request.getPaymentMethod())
-                    .status(gatewayResponse.getStatus())
-                    .transactionId(generateTransactionId())
-                    .gatewayTransactionId(gatewayResponse.getTransactionId())
-                    .failureReason(gatewayResponse.getFailureReason())
-                    .build();
-
+            LoanPayment payment;
             if (gatewayResponse.getStatus() == PaymentStatus.SUCCESS) {
-                payment.setPaidAt(LocalDateTime.now());
-                updateInstallmentAndLoan(nextInstallment, loan, request.getAmount());
-                log.info("Payment successful - Loan ID: {}, Installment: {}, Remaining amount: {}", loanId, nextInstallment.getInstallmentNumber(), loan.getRemainingAmount());
+                payment = postCollectedPrepayment(loan, nextInstallment, principalPrepaid, accruedInterest, request, transactionId, gatewayResponse);
+                log.info("Prepayment successful - Loan ID: {}, Outstanding principal: {}, EMI: {}, Remaining installments: {}", loanId,
+                        payment.getLoan().getOutstandingPrincipal(), payment.getLoan().getEmiAmount(), payment.getLoan().getRemainingInstallments());
+            } else if (gatewayResponse.getStatus() == PaymentStatus.PENDING) {
+                // Applied by GatewayCallbackService once the gateway reports the outcome
+                log.info("Prepayment pending at gateway - Loan ID: {}, Transaction ID: {}", loanId, transactionId);
+                payment = paymentRepository.save(buildPrepayment(loan, principalPrepaid, accruedInterest, request, transactionId, gatewayResponse));
             } else {
-                log.warn("Payment failed - Loan ID: {}, Installment: {}, Reason: {}", loanId, nextInstallment.getInstallmentNumber(), gatewayResponse.getFailureReason());
+                log.warn("Prepayment failed - Loan ID: {}, Reason: {}", loanId, gatewayResponse.getFailureReason());
+                payment = paymentRepository.save(buildPrepayment(loan, principalPrepaid, accruedInterest, request, transactionId, gatewayResponse));
             }
 
-            paymentRepository.save(payment);
-
-            log.info("Payment record saved - Payment ID: {}, Status: {}", payment.getId(), payment.getStatus());
-
-            return PaymentResponse.builder().paymentId(payment.getId()).transactionId(payment.getTransactionId()).status(payment.getStatus()).amount(payment.getAmount()).installmentNumber(nextInstallment.getInstallmentNumber()).remainingAmount(loan.getRemainingAmount()).nextDueDate(loan.getNextDueDate()).message(getPaymentMessage(payment.getStatus())).build();
+            Loan updated = payment.getLoan();
+            return PrepaymentResponse.builder()
+                    .paymentId(payment.getId())
+                    .transactionId(payment.getTransactionId())
+                    .status(payment.getStatus())
+                    .mode(request.getMode())
+                    .principalPrepaid(principalPrepaid)
+                    .accruedInterest(accruedInterest)
+                    .amountCharged(amountCharged)
+                    .outstandingPrincipal(getOutstandingPrincipal(updated))
+                    .emi(updated.getEmiAmount())
+                    .remainingInstallments(updated.getRemainingInstallments())
+                    .remainingAmount(updated.getRemainingAmount())
+                    .nextDueDate(updated.getNextDueDate())
+                    .message(getPaymentMessage(payment.getStatus()))
+                    .build();
 
-        } catch (NoSuchElementException | OperationNotAllowedException e) {
-            log.error("Payment failed for loan ID: {} - {}", loanId, e.getMessage());
+        } catch (NoSuchElementException | OperationNotAllowedException | UnauthorizedException | GatewayUnavailableException | PaymentInProgressException e) {
+            log.error("Prepayment failed for loan ID: {} - {}", loanId, e.getMessage());
             throw e;
         } catch (Exception e) {
-            log.error("Unexpected error during payment for loan ID: {}", loanId, e);
+            log.error("Unexpected error during prepayment for loan ID: {}", loanId, e);
             throw e;
         }
     }
 
-    private void calculateAndUpdateLateFee(LoanRepaymentSchedule installment) {
-        if (installment.isOverdue() && installment.getLateFee().compareTo(BigDecimal.ZERO) == 0) {
-            log.warn("Calculating late fee for overdue installment - Loan ID: {}, Installment: {}", installment.getLoan().getId(), installment.getInstallmentNumber());
+    private LoanPayment buildPrepayment(Loan loan, BigDecimal principalPrepaid, BigDecimal accruedInterest, PrepaymentRequest request,
+                                        String transactionId, PaymentGatewayResponse gatewayResponse) {
+        return LoanPayment.builder()
+                .loan(loan)
+                .paymentType(PaymentType.PREPAYMENT)
+                .amount(principalPrepaid.add(accruedInterest))
+                .prepaymentMode(request.getMode())
+                .principalPrepaid(principalPrepaid)
+                .accruedInterest(accruedInterest)
+                .paymentMethod(request.getPaymentMethod())
+                .status(gatewayResponse.getStatus())
+                .transactionId(transactionId)
+                .gatewayTransactionId(gatewayResponse.getTransactionId())
+                .failureReason(gatewayResponse.getFailureReason())
+                .build();
+    }
 
+    /**
+     * Records a prepayment the gateway collected: the loan is re-amortized and the payment saved
+     * in one transaction, retried on fresh copies if the loan changed since it was read. If the
+     * prepayment no longer fits the loan (the installment moved on, or too little principal is
+     * left) or the retries run out, the payment is still saved, as pending with the reason, so the
+     * collection is on record for reconciliation.
+     *
+     * @throws IllegalStateException if the prepayment could not be applied
+     */
+    private LoanPayment postCollectedPrepayment(Loan loan, LoanRepaymentSchedule nextInstallment, BigDecimal principalPrepaid,
+                                                BigDecimal accruedInterest, PrepaymentRequest request, String transactionId,
+                                                PaymentGatewayResponse gatewayResponse) {
+        int installmentNumber = nextInstallment.getInstallmentNumber();
+        for (int attempt = 1; ; attempt++) {
+            Loan currentLoan = loan;
+            LoanRepaymentSchedule currentNext = nextInstallment;
             try {
-                LoanConfiguration config = configRepository.findByActive(true);
-                if (config == null) {
-                    log.warn("No active loan configuration found, using default late fee");
-                    config = LoanConfiguration.builder().lateFeeAmount(new BigDecimal("500")).build();
+                return transactionTemplate.execute(status -> {
+                    applyPrepayment(currentLoan, currentNext, getOutstandingPrincipal(currentLoan), principalPrepaid,
+                            accruedInterest, getAnnualRate(currentLoan), request.getMode());
+                    LoanPayment payment = buildPrepayment(currentLoan, principalPrepaid, accruedInterest, request, transactionId, gatewayResponse);
+                    payment.setPaidAt(LocalDateTime.now());
+                    return paymentRepository.save(payment);
+                });
+            } catch (OptimisticLockingFailureException | DuplicateKeyException e) {
+                log.warn("Loan ID: {} changed while a prepayment was being applied (attempt {} of {})", loan.getId(), attempt, MAX_POSTING_ATTEMPTS);
+                loan = attempt < MAX_POSTING_ATTEMPTS ? loanRepository.findById(loan.getId()).orElse(null) : null;
+                nextInstallment = loan != null && loan.getStatus() == LoanStatus.DISBURSED && getPartiallyPaidAmount(loan).signum() == 0
+                        ? scheduleService.findNextPending(loan)
+                        .filter(installment -> installment.getInstallmentNumber() == installmentNumber)
+                        .orElse(null)
+                        : null;
+                if (nextInstallment == null || principalPrepaid.compareTo(getOutstandingPrincipal(loan)) >= 0) {
+                    log.error("Prepayment for loan ID: {} collected but not applied, gateway transaction {}",
+                            currentLoan.getId(), gatewayResponse.getTransactionId(), e);
+                    LoanPayment unapplied = buildPrepayment(currentLoan, principalPrepaid, accruedInterest, request, transactionId, gatewayResponse);
+                    unapplied.setStatus(PaymentStatus.PENDING);
+                    unapplied.setFailureReason("Collected but not applied to the loan; left for reconciliation");
+                    paymentRepository.save(unapplied);
+                    throw new IllegalStateException("Prepayment was collected but could not be applied; it will be settled by reconciliation", e);
                 }
-
-                installment.setLateFee(config.getLateFeeAmount());
-                scheduleRepository.save(installment);
-
-                log.info("Late fee applied - Amount: {}, Loan ID: {}, Installment: {}", config.getLateFeeAmount(), installment.getLoan().getId(), installment.getInstallmentNumber());
-
-            } catch (Exception e) {
-                log.error("Error calculating late fee for installment - Loan ID: {}, Installment: {}", installment.getLoan().getId(), installment.getInstallmentNumber(), e);
-                throw e;
             }
         }
     }
 
-    private void updateInstallmentAndLoan(LoanRepaymentSchedule installment, Loan loan, BigDecimal paidAmount) {
-        log.info("Updating installment and loan status - Loan ID: {}, Installment: {}", loan.getId(), installment.getInstallmentNumber());
+    /**
+     * Applies a prepayment the gateway first answered as pending and has since confirmed, with the
+     * mode and principal and interest split it was charged for. Runs in the caller's transaction
+     * on the loan locked and read afresh; the tail is re-amortized from the installment next due now.
+     *
+     * @return false if the prepayment no longer fits the loan (an installment became overdue or
+     * part-paid, or too little principal is left) or was recorded without its split; the payment
+     * is then left for reconciliation
+     */
+    public boolean applyConfirmedPrepayment(LoanPayment payment) {
+        Loan loan = loanRepository.findAllByIdForUpdate(List.of(payment.getLoan().getId())).stream()
+                .findFirst()
+                .orElseThrow(() -> new NoSuchElementException("Loan not found"));
+
+        Optional<LoanRepaymentSchedule> nextInstallment = payment.getPrepaymentMode() != null
+                && loan.getStatus() == LoanStatus.DISBURSED && getPartiallyPaidAmount(loan).signum() == 0
+                ? scheduleService.findNextPending(loan).filter(installment -> !LocalDate.now().isAfter(installment.getDueDate()))
+                : Optional.empty();
+        BigDecimal outstandingPrincipal = getOutstandingPrincipal(loan);
+        if (nextInstallment.isEmpty() || payment.getPrincipalPrepaid().compareTo(outstandingPrincipal) >= 0) {
+            log.error("Confirmed prepayment {} for loan ID: {} no longer fits the loan and was not applied",
+                    payment.getTransactionId(), loan.getId());
+            return false;
+        }
 
-        try {
-            installment.setPaidDate(LocalDate.now());
-            installment.setTotalAmountPaid(paidAmount);
-            installment.setStatus(installment.isOverdue() ? LoanRepaymentStatus.LATE_PAID : LoanRepaymentStatus.PAID);
+        applyPrepayment(loan, nextInstallment.get(), outstandingPrincipal, payment.getPrincipalPrepaid(),
+                payment.getAccruedInterest(), getAnnualRate(loan), payment.getPrepaymentMode());
+        log.info("Confirmed prepayment {} applied - Loan ID: {}, Outstanding principal: {}, EMI: {}, Remaining installments: {}",
+                payment.getTransactionId(), loan.getId(), loan.getOutstandingPrincipal(), loan.getEmiAmount(), loan.getRemainingInstallments());
+        return true;
+    }
 
-            loan.setRemainingAmount(loan.getRemainingAmount().subtract(installment.getEmiAmount()));
-            loan.setPaidInstallments(loan.getPaidInstallments() + 1);
+    private void applyPrepayment(Loan loan, LoanRepaymentSchedule nextInstallment, BigDecimal outstandingPrincipal,
+                                 BigDecimal principalPrepaid, BigDecimal accruedInterest, BigDecimal annualRate, PrepaymentMode mode) {
+        BigDecimal newPrincipal = outstandingPrincipal.subtract(principalPrepaid);
+        int remainingInstallments = loan.getTotalInstallments() - nextInstallment.getInstallmentNumber() + 1;
+        BigDecimal currentEmi = loan.getEmiAmount() != null ? loan.getEmiAmount() : nextInstallment.getEmiAmount();
 
-            if (!loan.isFullyRepaid()) {
-                LoanRepaymentSchedule nextInstallment = scheduleRepository.findByLoanAndStatus(loan, LoanRepaymentStatus.PENDING).stream().min(Comparator.comparing(LoanRepaymentSchedule::getInstallmentNumber)).orElse(null);
+        int installments = mode == PrepaymentMode.REDUCE_TENURE
+                ? loanCalculator.calculateTenureForEmi(newPrincipal, annualRate, currentEmi, remainingInstallments)
+                : remainingInstallments;
+        BigDecimal emi = loanCalculator.calculateEMI(newPrincipal, annualRate, installments);
 
-                loan.setNextDueDate(nextInstallment != null ? nextInstallment.getDueDate() : null);
-            } else {
-                log.info("Loan fully repaid - Loan ID: {}", loan.getId());
-                loan.setNextDueDate(null);
-            }
+        // Loans disbursed before the rate was kept on the loan need it for re-amortization
+        loan.setInterestRate(annualRate);
+        BigDecimal previousRemainingAmount = loan.getRemainingAmount();
+        List<LoanRepaymentSchedule> tail = scheduleService.reamortize(loan, nextInstallment, newPrincipal, emi, installments);
 
-            scheduleRepository.save(installment);
-            loanRepository.save(loan);
+        BigDecimal remainingAmount = tail.stream().map(LoanRepaymentSchedule::getEmiAmount).reduce(BigDecimal.ZERO, BigDecimal::add);
+        BigDecimal interestSaved = previousRemainingAmount.subtract(outstandingPrincipal).subtract(remainingAmount.subtract(newPrincipal));
 
-            log.info("Loan and installment updated successfully - Remaining installments: {}", loan.getTotalInstallments() - loan.getPaidInstallments());
+        loan.setOutstandingPrincipal(newPrincipal);
+        loan.setRemainingAmount(remainingAmount);
+        loan.setTotalInterestAmount(loan.getTotalInterestAmount().subtract(interestSaved).add(accruedInterest));
+        loan.setTotalAmountToRepay(loan.getPrincipalAmount().add(loan.getTotalInterestAmount()));
+        loanRepository.save(loan);
 
-        } catch (Exception e) {
-            log.error("Error updating installment and loan - Loan ID: {}, Installment: {}", loan.getId(), installment.getInstallmentNumber(), e);
-            throw e;
+        log.info("Loan ID: {} re-amortized ({}) - EMI: {} -> {}, installments left: {} -> {}, interest saved: {}", loan.getId(), mode, currentEmi, emi, remainingInstallments, installments, interestSaved);
+    }
+
+    private Loan getBorrowerLoan(Long loanId) {
+        String username = SecurityUtils.getCurrentUserName();
+        User user = userService.getUserByUserName(username).orElseThrow(() -> new UserNotFoundException("User not found"));
+
+        Loan loan = loanRepository.findById(loanId).orElseThrow(() -> new NoSuchElementException("Loan not found"));
+
+        if (!loan.getBorrower().getId().equals(user.getId())) {
+            log.warn("User {} attempted to access loan {} that doesn't belong to them", username, loanId);
+            throw new UnauthorizedException("You can only access your own loans");
+        }
+        if (loan.getStatus() != LoanStatus.DISBURSED) {
+            log.warn("Prepayment or foreclosure attempted for inactive loan - Loan ID: {}, Status: {}", loanId, loan.getStatus());
+            throw new OperationNotAllowedException("Loan is not active for payments");
+        }
+        return loan;
+    }
+
+    private LoanRepaymentSchedule getNextInstallmentForPrepayment(Loan loan) {
+        LoanRepaymentSchedule nextInstallment = scheduleService.findNextPending(loan).orElseThrow(() -> new OperationNotAllowedException("No pending installments found"));
+
+        if (LocalDate.now().isAfter(nextInstallment.getDueDate())) {
+            throw new OperationNotAllowedException("Installment " + nextInstallment.getInstallmentNumber() + " is overdue; pay it before prepaying or foreclosing");
+        }
+        // Re-amortization starts from this installment, so it must not carry part of a payment
+        if (getPartiallyPaidAmount(loan).signum() > 0) {
+            throw new OperationNotAllowedException("Installment " + nextInstallment.getInstallmentNumber() + " is partially paid; pay the rest of it before prepaying or foreclosing");
+        }
+        return nextInstallment;
+    }
+
+    private BigDecimal getOutstandingPrincipal(Loan loan) {
+        if (loan.getOutstandingPrincipal() != null) {
+            return loan.getOutstandingPrincipal();
         }
+        return scheduleService.getSchedule(loan).stream()
+                .filter(installment -> !installment.isPaid())
+                .map(LoanRepaymentSchedule::getPrincipalAmount)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    private BigDecimal getAnnualRate(Loan loan) {
+        return loan.getInterestRate() != null ? loan.getInterestRate() : loan.getLoanApplication().getInterestRate();
     }
 
     private String generateTransactionId() {
-        return "TXN" + System.currentTimeMillis() + "_" + ThreadLocalRandom.current().nextInt(1000, 9999);
+        return "TXN" + transactionIdGenerator.next();
     }
 
     private String getPaymentMessage(PaymentStatus status) {
@@ -619,7 +962,7 @@ public class LoanService {
         try {
             Loan loan = loanRepository.findById(loanId).orElseThrow(() -> new NoSuchElementException("Loan not found"));
 
-            List<LoanRepaymentSchedule> schedule = scheduleRepository.findByLoanOrderByInstallmentNumber(loan);
+            List<LoanRepaymentSchedule> schedule = scheduleService.getSchedule(loan);
             log.info("Retrieved payment schedule with {} installments for loan ID: {}", schedule.size(), loanId);
 
             return schedule;
@@ -655,10 +998,7 @@ public class LoanService {
             LenderProfile lender = lenderService.getLenderById(user.getId());
 
             List<LoanApplicationResponseForLender> applications = loanApplicationRepository
-                    .findByLenderId(lender.getId())
-                    .stream()
-                    .map(this::mapToLoanApplicationResponseForLender)
-                    .toList();
+                    .findResponsesByLenderId(lender.getId());
 
             log.info("Retrieved {} loan requests for lender: {}", applications.size(), username);
             return applications;
@@ -689,10 +1029,7 @@ public class LoanService {
             LenderProfile lender = lenderService.getLenderById(user.getId());
 
             List<LoanApplicationResponseForLender> applications = loanApplicationRepository
-                    .findByLenderIdAndStatus(lender.getId(), status)
-                    .stream()
-                    .map(this::mapToLoanApplicationResponseForLender)
-                    .toList();
+                    .findResponsesByLenderIdAndStatus(lender.getId(), status);
 
             log.info("Retrieved {} {} loan requests for lender: {}", applications.size(), status, username);
             return applications;
@@ -743,10 +1080,7 @@ public class LoanService {
             LenderProfile lender = lenderService.getLenderById(user.getId());
 
             List<LoanDetailsResponse> loans = loanRepository
-                    .findByLenderIdAndStatus(lender.getId(), LoanStatus.DISBURSED)
-                    .stream()
-                    .map(this::mapToLoanDetailsResponse)
-                    .toList();
+                    .findDetailsByLenderIdAndStatus(lender.getId(), LoanStatus.DISBURSED);
 
             log.info("Retrieved {} active loans for lender: {}", loans.size(), username);
             return loans;
@@ -776,10 +1110,7 @@ public class LoanService {
             LenderProfile lender = lenderService.getLenderById(user.getId());
 
             List<LoanDetailsResponse> loans = loanRepository
-                    .findByLenderIdAndStatus(lender.getId(), LoanStatus.CLOSED)
-                    .stream()
-                    .map(this::mapToLoanDetailsResponse)
-                    .toList();
+                    .findDetailsByLenderIdAndStatus(lender.getId(), LoanStatus.CLOSED);
 
             log.info("Retrieved {} completed loans for lender: {}", loans.size(), username);
             return loans;
@@ -847,23 +1178,4 @@ public class LoanService {
                 .isFullyRepaid(loan.isFullyRepaid())
                 .build();
     }
-
-    private LoanApplicationResponseForLender mapToLoanApplicationResponseForLender(LoanApplication application) {
-        return LoanApplicationResponseForLender.builder()
-                .applicationId(application.getId())
-                .loanAmount(application.getLoanRequested())
-                .tenure(application.getTenure())
-                .emi(application.getEmiAmount())
-                .interestRate(application.getInterestRate())
-                .processingFee(application.getProcessingFee())
-                .status(application.getStatus())
-                .lenderName(application.getLender().getOrganizationName())
-                .appliedAt(application.getAppliedAt())
-                .purpose(application.getPurpose())
-                .borrowerName(application.getUser().getUsername())
-                .borrowerEmail(application.getUser().getEmail())
-                .monthlyIncome(application.getMonthlyIncome())
-                .incomeSource(application.getIncomeSource())
-                .build();
-    }
 }
@@ -0,0 +1,242 @@
+package com.loantrackr.service;
+
+import com.loantrackr.dto.response.OverdueRunResult;
+import com.loantrackr.enums.LoanRepaymentStatus;
+import com.loantrackr.enums.LoanStatus;
+import com.loantrackr.enums.ScheduleStorage;
+import com.loantrackr.model.Loan;
+import com.loantrackr.model.LoanConfiguration;
+import com.loantrackr.model.LoanRepaymentSchedule;
+import com.loantrackr.repository.LoanConfigurationRepository;
+import com.loantrackr.repository.LoanRepository;
+import com.loantrackr.util.PackedScheduleCodec;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Nightly overdue marking and late-fee charging.
+ * <p>
+ * An installment still unpaid {@code gracePeriodDays} after its due date becomes
+ * {@link LoanRepaymentStatus#OVERDUE} and is charged the configured {@code lateFeeAmount} once.
+ * Installment rows are handled by two set-based UPDATE statements over
+ * {@code loan_repayment_schedule}, in one transaction. Installments of computed and packed
+ * schedules have no row until they carry state, so the loans concerned, found through their next
+ * due date, are then walked in keyset chunks: overdue computed installments are inserted as rows
+ * and packed schedules are patched in place, one JDBC batch per chunk with the chunk's loans
+ * locked. Every step only touches installments not yet marked or charged, so a run can be
+ * repeated at any time.
+ */
+@Slf4j
+@Service
+public class OverdueInstallmentJob {
+
+    private static final BigDecimal DEFAULT_LATE_FEE = new BigDecimal("500");
+    static final int DEFAULT_GRACE_PERIOD_DAYS = 3; // Also used by the debit paths when no configuration is active
+
+    private static final String MARK_OVERDUE =
+            "UPDATE loan_repayment_schedule s SET status = 'OVERDUE', updated_at = ?, version = s.version + 1 FROM loan l " +
+            "WHERE l.id = s.loan_id AND l.status = 'DISBURSED' AND s.status = 'PENDING' AND s.due_date < ?";
+
+    private static final String CHARGE_LATE_FEE =
+            "UPDATE loan_repayment_schedule s SET late_fee = ?, updated_at = ?, version = s.version + 1 FROM loan l " +
+            "WHERE l.id = s.loan_id AND l.status = 'DISBURSED' AND s.status = 'OVERDUE' AND s.late_fee = 0";
+
+    // A row persisted meanwhile (by a payment, or a previous run) already went through the UPDATEs.
+    // nextval here skips a block of the pooled sequence, which never collides with Hibernate's IDs
+    private static final String INSERT_OVERDUE_INSTALLMENT =
+            "INSERT INTO loan_repayment_schedule (id, loan_id, installment_number, emi_amount, principal_amount, interest_amount, " +
+            "due_date, status, late_fee, created_at) " +
+            "SELECT nextval('loan_repayment_seq'), ?, ?, ?, ?, ?, ?, 'OVERDUE', ?, ? " +
+            "ON CONFLICT (loan_id, installment_number) DO NOTHING";
+
+    // A payment that read the computed schedule before the insert then fails its version check
+    private static final String BUMP_LOAN_VERSION = "UPDATE loan SET version = version + 1 WHERE id = ?";
+
+    private static final String UPDATE_PACKED_SCHEDULE = "UPDATE loan SET packed_schedule = ?, version = version + 1 WHERE id = ?";
+
+    private final LoanRepository loanRepository;
+    private final LoanConfigurationRepository configRepository;
+    private final RepaymentScheduleService scheduleService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public OverdueInstallmentJob(LoanRepository loanRepository,
+                                 LoanConfigurationRepository configRepository,
+                                 RepaymentScheduleService scheduleService,
+                                 JdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${loan.overdue.chunk-size:1000}") int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Overdue chunk size must be positive");
+        }
+        this.loanRepository = loanRepository;
+        this.configRepository = configRepository;
+        this.scheduleService = scheduleService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+    }
+
+    @Scheduled(cron = "${loan.overdue.cron:0 5 0 * * *}")
+    public void markOverdueToday() {
+        try {
+            run();
+        } catch (Exception e) {
+            log.error("Nightly overdue marking failed", e);
+        }
+    }
+
+    /**
+     * Marks installments past their grace period as overdue and charges their late fee, using
+     * the active loan configuration.
+     *
+     * @throws IllegalStateException if a run is already in progress on this instance
+     */
+    public OverdueRunResult run() {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("Overdue marking is already running");
+        }
+        try {
+            return execute(LocalDate.now());
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private OverdueRunResult execute(LocalDate businessDate) {
+        long start = System.nanoTime();
+        LoanConfiguration config = configRepository.findByActive(true);
+        if (config == null) {
+            log.warn("No active loan configuration found, using default late fee and grace period");
+        }
+        BigDecimal lateFee = config != null && config.getLateFeeAmount() != null ? config.getLateFeeAmount() : DEFAULT_LATE_FEE;
+        int gracePeriodDays = config != null ? config.getGracePeriodDays() : DEFAULT_GRACE_PERIOD_DAYS;
+        // Overdue once the grace period has fully passed, as LoanRepaymentSchedule.isOverdue
+        LocalDate cutoff = businessDate.minusDays(gracePeriodDays);
+
+        OverdueRunResult result = OverdueRunResult.builder()
+                .businessDate(businessDate)
+                .gracePeriodDays(gracePeriodDays)
+                .lateFeeAmount(lateFee)
+                .build();
+
+        long rowsStart = System.nanoTime();
+        transactionTemplate.executeWithoutResult(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            result.setMarkedOverdue(jdbcTemplate.update(MARK_OVERDUE, now, cutoff));
+            result.setLateFeesCharged(jdbcTemplate.update(CHARGE_LATE_FEE, lateFee, now));
+        });
+        result.setRowsDurationMs((System.nanoTime() - rowsStart) / 1_000_000);
+
+        PageRequest chunk = PageRequest.of(0, chunkSize);
+        long afterId = 0;
+        List<Long> loanIds;
+        do {
+            loanIds = loanRepository.findDerivedScheduleIdsDueBefore(cutoff, afterId, chunk);
+            if (loanIds.isEmpty()) {
+                break;
+            }
+            List<Long> ids = loanIds;
+            transactionTemplate.executeWithoutResult(status -> processChunk(ids, cutoff, lateFee, result));
+            afterId = loanIds.get(loanIds.size() - 1);
+        } while (loanIds.size() == chunkSize);
+
+        result.setDurationMs((System.nanoTime() - start) / 1_000_000);
+        log.info("Overdue marking for {} completed - {} installments marked overdue, {} late fees charged, " +
+                        "{} computed installments inserted, {} packed schedules updated, row updates {} ms, {} ms in total",
+                businessDate, result.getMarkedOverdue(), result.getLateFeesCharged(), result.getComputedInstallmentsInserted(),
+                result.getPackedSchedulesUpdated(), result.getRowsDurationMs(), result.getDurationMs());
+        return result;
+    }
+
+    private void processChunk(List<Long> loanIds, LocalDate cutoff, BigDecimal lateFee, OverdueRunResult result) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Object[]> inserts = new ArrayList<>();
+        List<Object[]> packedUpdates = new ArrayList<>();
+        List<Object[]> computedLoans = new ArrayList<>();
+
+        // Locked so a payment cannot post against an installment while it is being marked
+        for (Loan loan : loanRepository.findAllByIdForUpdate(loanIds)) {
+            if (loan.getStatus() != LoanStatus.DISBURSED) {
+                continue;
+            }
+            if (loan.getScheduleStorage() == ScheduleStorage.PACKED) {
+                // Patched on a copy: the managed loan is not modified, the batch below writes it
+                byte[] packed = loan.getPackedSchedule().clone();
+                if (markPacked(packed, loan, cutoff, lateFee, result)) {
+                    packedUpdates.add(new Object[]{packed, loan.getId()});
+                }
+            } else if (loan.getScheduleStorage() == ScheduleStorage.COMPUTED) {
+                int before = inserts.size();
+                for (LoanRepaymentSchedule installment : scheduleService.buildInstallments(loan)) {
+                    if (!installment.getDueDate().isBefore(cutoff)) {
+                        break;
+                    }
+                    if (installment.getInstallmentNumber() > loan.getPaidInstallments()) {
+                        inserts.add(new Object[]{loan.getId(), installment.getInstallmentNumber(), installment.getEmiAmount(),
+                                installment.getPrincipalAmount(), installment.getInterestAmount(), installment.getDueDate(),
+                                lateFee, now});
+                    }
+                }
+                if (inserts.size() > before) {
+                    computedLoans.add(new Object[]{loan.getId()});
+                }
+            }
+        }
+
+        if (!inserts.isEmpty()) {
+            int inserted = 0;
+            for (int count : jdbcTemplate.batchUpdate(INSERT_OVERDUE_INSTALLMENT, inserts)) {
+                inserted += Math.max(count, 0);
+            }
+            result.setComputedInstallmentsInserted(result.getComputedInstallmentsInserted() + inserted);
+            result.setMarkedOverdue(result.getMarkedOverdue() + inserted);
+            result.setLateFeesCharged(result.getLateFeesCharged() + inserted);
+            jdbcTemplate.batchUpdate(BUMP_LOAN_VERSION, computedLoans);
+        }
+        if (!packedUpdates.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_PACKED_SCHEDULE, packedUpdates);
+            result.setPackedSchedulesUpdated(result.getPackedSchedulesUpdated() + packedUpdates.size());
+        }
+        log.debug("Overdue marking processed {} loans with derived schedules up to loan ID: {}", loanIds.size(), loanIds.get(loanIds.size() - 1));
+    }
+
+    private static boolean markPacked(byte[] packed, Loan loan, LocalDate cutoff, BigDecimal lateFee, OverdueRunResult result) {
+        boolean changed = false;
+        for (LoanRepaymentSchedule installment : PackedScheduleCodec.decode(packed, loan)) {
+            if (!installment.getDueDate().isBefore(cutoff)) {
+                break;
+            }
+            if (installment.isPaid()) {
+                continue;
+            }
+            if (installment.getStatus() == LoanRepaymentStatus.PENDING) {
+                installment.setStatus(LoanRepaymentStatus.OVERDUE);
+                result.setMarkedOverdue(result.getMarkedOverdue() + 1);
+                changed = true;
+            }
+            if (installment.getLateFee() == null || installment.getLateFee().signum() == 0) {
+                installment.setLateFee(lateFee);
+                result.setLateFeesCharged(result.getLateFeesCharged() + 1);
+                changed = true;
+            }
+            PackedScheduleCodec.update(packed, installment);
+        }
+        return changed;
+    }
+}
@@ -0,0 +1,239 @@
+package com.loantrackr.service;
+
+import com.loantrackr.dto.request.DisbursementRequest;
+import com.loantrackr.dto.request.PaymentGatewayRequest;
+import com.loantrackr.dto.response.DisbursementResponse;
+import com.loantrackr.dto.response.PaymentGatewayResponse;
+import com.loantrackr.exception.GatewayUnavailableException;
+import com.loantrackr.util.CircuitBreaker;
+import com.loantrackr.util.MockPaymentGateway;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The only way into {@link MockPaymentGateway}. Payments and disbursements each get:
+ * <ul>
+ *   <li>a bulkhead: a fixed number of permits, waited for at most {@code permit-wait};</li>
+ *   <li>a per-call timeout, after which the call is cancelled;</li>
+ *   <li>a {@link CircuitBreaker} fed with errors, timeouts and slow calls. A declined payment is a
+ *       normal gateway answer and does not count as an error.</li>
+ * </ul>
+ * Calls that cannot be made fail fast with {@link GatewayUnavailableException} instead of queueing.
+ * Latency is exported as {@code payment.gateway.latency} with p50/p99 and a percentile histogram,
+ * tagged by operation and outcome.
+ */
+@Slf4j
+@Service
+public class PaymentGatewayClient {
+
+    private final MockPaymentGateway gateway;
+    private final Duration permitWait;
+    private final Guard payments;
+    private final Guard disbursements;
+
+    // Gateway calls run here so the caller can stop waiting at the timeout
+    private final ExecutorService callExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public PaymentGatewayClient(MockPaymentGateway gateway,
+                                MeterRegistry registry,
+                                @Value("${payment.gateway.permit-wait:PT0.2S}") Duration permitWait,
+                                @Value("${payment.gateway.payment.max-concurrent:64}") int paymentPermits,
+                                @Value("${payment.gateway.payment.timeout:PT5S}") Duration paymentTimeout,
+                                @Value("${payment.gateway.payment.slow-call-duration:PT3.5S}") Duration paymentSlowCall,
+                                @Value("${payment.gateway.disbursement.max-concurrent:16}") int disbursementPermits,
+                                @Value("${payment.gateway.disbursement.timeout:PT8S}") Duration disbursementTimeout,
+                                @Value("${payment.gateway.disbursement.slow-call-duration:PT5.5S}") Duration disbursementSlowCall,
+                                @Value("${payment.gateway.circuit-breaker.window-size:50}") int windowSize,
+                                @Value("${payment.gateway.circuit-breaker.minimum-calls:20}") int minimumCalls,
+                                @Value("${payment.gateway.circuit-breaker.failure-rate-threshold:50}") int failureRateThreshold,
+                                @Value("${payment.gateway.circuit-breaker.slow-call-rate-threshold:80}") int slowCallRateThreshold,
+                                @Value("${payment.gateway.circuit-breaker.wait-in-open:PT30S}") Duration waitInOpen,
+                                @Value("${payment.gateway.circuit-breaker.half-open-calls:3}") int halfOpenCalls) {
+        this.gateway = gateway;
+        this.permitWait = permitWait;
+        this.payments = new Guard("payment", paymentPermits, paymentTimeout, registry,
+                new CircuitBreaker(windowSize, minimumCalls, failureRateThreshold, slowCallRateThreshold,
+                        paymentSlowCall.toNanos(), waitInOpen.toNanos(), halfOpenCalls, System::nanoTime));
+        this.disbursements = new Guard("disbursement", disbursementPermits, disbursementTimeout, registry,
+                new CircuitBreaker(windowSize, minimumCalls, failureRateThreshold, slowCallRateThreshold,
+                        disbursementSlowCall.toNanos(), waitInOpen.toNanos(), halfOpenCalls, System::nanoTime));
+    }
+
+    public PaymentGatewayResponse processPayment(PaymentGatewayRequest request) {
+        return payments.call(() -> gateway.processPayment(request));
+    }
+
+    public DisbursementResponse processDisbursement(DisbursementRequest request) {
+        return disbursements.call(() -> gateway.processDisbursement(request));
+    }
+
+    public CircuitBreaker.State getPaymentCircuitState() {
+        return payments.breaker.getState();
+    }
+
+    public CircuitBreaker.State getDisbursementCircuitState() {
+        return disbursements.breaker.getState();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        callExecutor.shutdownNow();
+    }
+
+    private final class Guard {
+
+        private final String operation;
+        private final int maxConcurrent;
+        private final Semaphore permits;
+        private final Duration timeout;
+        private final CircuitBreaker breaker;
+
+        private final Timer succeeded;
+        private final Timer failed;
+        private final Timer timedOut;
+        private final Counter rejectedOpen;
+        private final Counter rejectedFull;
+
+        Guard(String operation, int maxConcurrent, Duration timeout, MeterRegistry registry, CircuitBreaker breaker) {
+            this.operation = operation;
+            this.maxConcurrent = maxConcurrent;
+            this.permits = new Semaphore(maxConcurrent);
+            this.timeout = timeout;
+            this.breaker = breaker;
+
+            this.succeeded = latencyTimer(registry, "success");
+            this.failed = latencyTimer(registry, "error");
+            this.timedOut = latencyTimer(registry, "timeout");
+            this.rejectedOpen = rejectedCounter(registry, "circuit_open");
+            this.rejectedFull = rejectedCounter(registry, "bulkhead_full");
+
+            Gauge.builder("payment.gateway.in.flight", permits, p -> maxConcurrent - p.availablePermits())
+                    .description("Gateway calls holding a bulkhead permit")
+                    .tag("operation", operation)
+                    .register(registry);
+            Gauge.builder("payment.gateway.circuit.state", breaker, b -> b.getState().ordinal())
+                    .description("Circuit state: 0 closed, 1 open, 2 half-open")
+                    .tag("operation", operation)
+                    .register(registry);
+        }
+
+        <T> T call(Callable<T> action) {
+            if (!breaker.tryAcquirePermission()) {
+                rejectedOpen.increment();
+                throw new GatewayUnavailableException("Payment gateway is unavailable; " + operation + " calls are suspended",
+                        false, retryAfter());
+            }
+
+            if (!acquirePermit()) {
+                breaker.releasePermission();
+                rejectedFull.increment();
+                log.warn("Payment gateway bulkhead full for {} calls ({} in flight)", operation, maxConcurrent);
+                throw new GatewayUnavailableException("Payment gateway is at capacity; try again shortly",
+                        false, Duration.ofSeconds(1));
+            }
+
+            long start = System.nanoTime();
+            Future<T> future;
+            try {
+                // The permit is held until the call itself ends, even if the caller stopped waiting
+                future = callExecutor.submit(() -> {
+                    try {
+                        return action.call();
+                    } finally {
+                        permits.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                breaker.releasePermission();
+                throw new GatewayUnavailableException("Payment gateway client is shutting down", false, Duration.ofSeconds(1));
+            }
+
+            try {
+                T result = future.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+                record(start, false, succeeded);
+                return result;
+
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                record(start, true, timedOut);
+                log.warn("Payment gateway {} call timed out after {} ms", operation, timeout.toMillis());
+                throw new GatewayUnavailableException("Payment gateway did not respond within " + timeout.toMillis() + " ms",
+                        true, retryAfter());
+
+            } catch (ExecutionException e) {
+                record(start, true, failed);
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw new IllegalStateException("Payment gateway " + operation + " call failed", e.getCause());
+
+            } catch (InterruptedException e) {
+                future.cancel(true);
+                breaker.releasePermission();
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the payment gateway", e);
+            }
+        }
+
+        private boolean acquirePermit() {
+            try {
+                return permits.tryAcquire(permitWait.toNanos(), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        private void record(long start, boolean error, Timer timer) {
+            long elapsed = System.nanoTime() - start;
+            timer.record(elapsed, TimeUnit.NANOSECONDS);
+
+            CircuitBreaker.State before = breaker.getState();
+            breaker.record(elapsed, error);
+            CircuitBreaker.State after = breaker.getState();
+            if (before != after) {
+                log.warn("Payment gateway circuit for {} calls moved from {} to {}", operation, before, after);
+            }
+        }
+
+        private Duration retryAfter() {
+            return Duration.ofNanos(Math.max(breaker.getRemainingOpenNanos(), Duration.ofSeconds(1).toNanos()));
+        }
+
+        private Timer latencyTimer(MeterRegistry registry, String outcome) {
+            return Timer.builder("payment.gateway.latency")
+                    .description("Payment gateway call latency")
+                    .tag("operation", operation)
+                    .tag("outcome", outcome)
+                    .publishPercentiles(0.5, 0.99)
+                    .publishPercentileHistogram()
+                    .register(registry);
+        }
+
+        private Counter rejectedCounter(MeterRegistry registry, String reason) {
+            return Counter.builder("payment.gateway.rejected")
+                    .description("Gateway calls refused without being sent")
+                    .tag("operation", operation)
+                    .tag("reason", reason)
+                    .register(registry);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.loantrackr.service;
+
+import com.loantrackr.dto.projection.LoanScheduleParams;
+import com.loantrackr.dto.projection.PendingInstallment;
+import com.loantrackr.dto.response.CashFlowProjection;
+import com.loantrackr.dto.response.MonthlyCashFlow;
+import com.loantrackr.enums.Role;
+import com.loantrackr.exception.UnauthorizedException;
+import com.loantrackr.exception.UserNotFoundException;
+import com.loantrackr.model.LenderProfile;
+import com.loantrackr.model.User;
+import com.loantrackr.repository.LoanRepaymentScheduleRepository;
+import com.loantrackr.repository.LoanRepository;
+import com.loantrackr.util.CashFlowCurve;
+import com.loantrackr.util.FixedPointLoanCalculator;
+import com.loantrackr.util.SecurityUtils;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Projects expected monthly inflows across a lender's whole active book.
+ * <p>
+ * Nothing is loaded as an entity. Installment rows are read as projections in keyset chunks;
+ * computed and packed schedules are read as one parameter row per loan and expanded in memory,
+ * each chunk fork-joined across loans into per-worker {@link CashFlowCurve}s that are merged.
+ */
+@Slf4j
+@Service
+@AllArgsConstructor
+public class PortfolioProjectionService {
+
+    public static final Set<Integer> SUPPORTED_HORIZONS = Set.of(12, 24, 60);
+
+    private static final int ROW_CHUNK_SIZE = 10_000;
+    private static final int LOAN_CHUNK_SIZE = 2_000;
+
+    private final LoanRepaymentScheduleRepository scheduleRepository;
+    private final LoanRepository loanRepository;
+    private final RepaymentScheduleService scheduleService;
+    private final UserService userService;
+    private final LenderProfileService lenderService;
+
+    @Transactional(readOnly = true)
+    public CashFlowProjection getCurrentLenderCashFlow(int months) {
+        String username = SecurityUtils.getCurrentUserName();
+        log.info("Cash-flow projection requested by lender: {} for {} months", username, months);
+
+        try {
+            User user = userService.getUserByUserName(username)
+                    .orElseThrow(() -> new UserNotFoundException("User not found"));
+
+            if (!user.getRole().equals(Role.LENDER)) {
+                log.warn("Non-lender user {} attempted to view a cash-flow projection", username);
+                throw new UnauthorizedException("Only lenders can view cash-flow projections");
+            }
+
+            LenderProfile lender = lenderService.getLenderById(user.getId());
+            return projectCashFlow(lender.getId(), months);
+
+        } catch (UserNotFoundException | UnauthorizedException | IllegalArgumentException e) {
+            log.error("Cash-flow projection failed for lender: {} - {}", username, e.getMessage());
+            throw e;
+        } catch (Exception e) {
+            log.error("Unexpected error projecting cash flow for lender: {}", username, e);
+            throw e;
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public CashFlowProjection projectCashFlow(Long lenderId, int months) {
+        if (!SUPPORTED_HORIZONS.contains(months)) {
+            throw new IllegalArgumentException("Projection horizon must be one of " + SUPPORTED_HORIZONS + " months");
+        }
+
+        long start = System.nanoTime();
+        CashFlowCurve curve = new CashFlowCurve(YearMonth.now(), months);
+
+        int rows = accumulateInstallmentRows(lenderId, curve);
+        int loans = accumulateDerivedSchedules(lenderId, curve);
+
+        log.info("Cash flow projected for lender ID: {} over {} months - {} installment rows, {} computed/packed loans, {} ms",
+                lenderId, months, rows, loans, (System.nanoTime() - start) / 1_000_000);
+        return toProjection(lenderId, curve);
+    }
+
+    private int accumulateInstallmentRows(Long lenderId, CashFlowCurve curve) {
+        LocalDate until = curve.getEndDate();
+        PageRequest chunk = PageRequest.of(0, ROW_CHUNK_SIZE);
+        long afterId = 0;
+        int count = 0;
+
+        List<PendingInstallment> installments;
+        do {
+            installments = scheduleRepository.findPendingInstallmentsForLender(lenderId, until, afterId, chunk);
+            for (PendingInstallment installment : installments) {
+                curve.add(installment.dueDate().toEpochDay(),
+                        FixedPointLoanCalculator.toPaise(installment.principalAmount()),
+                        FixedPointLoanCalculator.toPaise(installment.interestAmount()));
+            }
+            if (!installments.isEmpty()) {
+                afterId = installments.get(installments.size() - 1).id();
+                count += installments.size();
+            }
+        } while (installments.size() == ROW_CHUNK_SIZE);
+
+        return count;
+    }
+
+    private int accumulateDerivedSchedules(Long lenderId, CashFlowCurve curve) {
+        YearMonth firstMonth = curve.getMonth(0);
+        int months = curve.size();
+        PageRequest chunk = PageRequest.of(0, LOAN_CHUNK_SIZE);
+        long afterId = 0;
+        int count = 0;
+
+        List<LoanScheduleParams> loans;
+        do {
+            loans = loanRepository.findScheduleParamsForLender(lenderId, afterId, chunk);
+            CashFlowCurve chunkCurve = loans.parallelStream().collect(
+                    () -> new CashFlowCurve(firstMonth, months),
+                    this::accumulate,
+                    CashFlowCurve::merge);
+            curve.merge(chunkCurve);
+
+            if (!loans.isEmpty()) {
+                afterId = loans.get(loans.size() - 1).id();
+                count += loans.size();
+            }
+        } while (loans.size() == LOAN_CHUNK_SIZE);
+
+        return count;
+    }
+
+    private void accumulate(CashFlowCurve curve, LoanScheduleParams loan) {
+        scheduleService.forEachUnpaidInstallment(loan, curve.getEndEpochDay(),
+                (number, dueEpochDay, principal, interest, status) -> curve.add(dueEpochDay, principal, interest));
+    }
+
+    private CashFlowProjection toProjection(Long lenderId, CashFlowCurve curve) {
+        List<MonthlyCashFlow> months = new ArrayList<>(curve.size());
+        long totalPrincipal = 0;
+        long totalInterest = 0;
+
+        for (int i = 0; i < curve.size(); i++) {
+            long principal = curve.getPrincipalPaise(i);
+            long interest = curve.getInterestPaise(i);
+            months.add(MonthlyCashFlow.builder()
+                    .month(curve.getMonth(i).toString())
+                    .principal(FixedPointLoanCalculator.fromPaise(principal))
+                    .interest(FixedPointLoanCalculator.fromPaise(interest))
+                    .total(FixedPointLoanCalculator.fromPaise(principal + interest))
+                    .installments(curve.getInstallments(i))
+                    .build());
+            totalPrincipal += principal;
+            totalInterest += interest;
+        }
+
+        return CashFlowProjection.builder()
+                .lenderId(lenderId)
+                .months(curve.size())
+                .totalPrincipal(FixedPointLoanCalculator.fromPaise(totalPrincipal))
+                .totalInterest(FixedPointLoanCalculator.fromPaise(totalInterest))
+                .curve(months)
+                .build();
+    }
+}
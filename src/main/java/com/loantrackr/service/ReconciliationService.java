@@ -0,0 +1,345 @@
+package com.loantrackr.service;
+
+import com.loantrackr.dto.response.ReconciliationJobResponse;
+import com.loantrackr.enums.BatchJobStatus;
+import com.loantrackr.enums.PaymentStatus;
+import com.loantrackr.enums.ReconciliationMismatch;
+import com.loantrackr.model.ReconciliationJob;
+import com.loantrackr.repository.ReconciliationJobRepository;
+import com.loantrackr.util.RepaymentFileParser;
+import com.loantrackr.util.SettlementFileParser;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.Resource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Reconciliation of payment gateway settlement files against {@code loan_payments}.
+ * <p>
+ * The file is streamed and joined to our payments on the gateway transaction ID a chunk at a
+ * time: the chunk's rows are held in a hash table of at most
+ * {@code payment.reconciliation.chunk-size} entries, and our payments for those IDs are streamed
+ * back by a single query and probed against it. Memory stays bounded by the chunk size whatever
+ * the file size, and the database sees one indexed query per chunk rather than one per row.
+ * Every difference is written to the job's result file: a transaction we have no payment for,
+ * a status or amount that differs (a row can differ in both), several payments carrying the same
+ * gateway transaction ID, or a row that cannot be read. Nothing is changed on our side. Like
+ * repayment files, jobs run one at a time and resume after their last completed chunk.
+ */
+@Slf4j
+@Service
+public class ReconciliationService {
+
+    private static final String FOLDER = "reconciliations";
+    private static final String RESULT_HEADER =
+            "line_number,gateway_transaction_id,mismatch,gateway_status,our_status,gateway_amount,our_amount,payment_id,loan_id,detail";
+
+    private static final String FIND_PAYMENTS =
+            "SELECT id, loan_id, gateway_transaction_id, amount, status FROM loan_payments WHERE gateway_transaction_id = ANY (?)";
+
+    private final ReconciliationJobRepository jobRepository;
+    private final FileStorageService fileStorageService;
+    private final JdbcTemplate jdbcTemplate;
+    private final int chunkSize;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "reconciliation");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ReconciliationService(ReconciliationJobRepository jobRepository,
+                                 FileStorageService fileStorageService,
+                                 JdbcTemplate jdbcTemplate,
+                                 @Value("${payment.reconciliation.chunk-size:5000}") int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Reconciliation chunk size must be positive");
+        }
+        this.jobRepository = jobRepository;
+        this.fileStorageService = fileStorageService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.chunkSize = chunkSize;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Stores the settlement file and queues it for reconciliation.
+     *
+     * @throws IllegalArgumentException if the file is not a CSV with the expected header
+     */
+    public ReconciliationJobResponse submit(MultipartFile file, String uploadedBy) {
+        Path stored = fileStorageService.storeCsvFile(file, FOLDER);
+        try (BufferedReader reader = Files.newBufferedReader(stored, StandardCharsets.UTF_8)) {
+            SettlementFileParser.checkHeader(reader.readLine());
+        } catch (IllegalArgumentException e) {
+            deleteQuietly(stored);
+            throw e;
+        } catch (IOException e) {
+            deleteQuietly(stored);
+            throw new UncheckedIOException(e);
+        }
+
+        ReconciliationJob job = jobRepository.save(ReconciliationJob.builder()
+                .fileName(file.getOriginalFilename())
+                .storedFile(stored.toString())
+                .uploadedBy(uploadedBy)
+                .status(BatchJobStatus.RUNNING)
+                .build());
+        job.setResultFile(fileStorageService.resolveFile(FOLDER, job.getId() + "-mismatches.csv").toString());
+        job = jobRepository.save(job);
+
+        log.info("Settlement file '{}' accepted as reconciliation job ID: {} by {}", job.getFileName(), job.getId(), uploadedBy);
+        Long jobId = job.getId();
+        executor.execute(() -> reconcile(jobId));
+        return toResponse(job);
+    }
+
+    public ReconciliationJobResponse getJob(Long jobId) {
+        return toResponse(jobRepository.findById(jobId).orElseThrow(() -> new NoSuchElementException("Reconciliation job not found")));
+    }
+
+    /**
+     * @throws IllegalStateException if the job has not finished yet
+     */
+    public Resource getResultFile(Long jobId) {
+        ReconciliationJob job = jobRepository.findById(jobId).orElseThrow(() -> new NoSuchElementException("Reconciliation job not found"));
+        if (job.getStatus() == BatchJobStatus.RUNNING) {
+            throw new IllegalStateException("Reconciliation job " + jobId + " is still running");
+        }
+        return fileStorageService.loadFile(job.getResultFile());
+    }
+
+    /**
+     * Picks up jobs a previous shutdown interrupted.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedJobs() {
+        for (ReconciliationJob job : jobRepository.findByStatusOrderById(BatchJobStatus.RUNNING)) {
+            log.info("Resuming reconciliation job ID: {} after line {}", job.getId(), job.getLastProcessedLine());
+            Long jobId = job.getId();
+            executor.execute(() -> reconcile(jobId));
+        }
+    }
+
+    private void reconcile(Long jobId) {
+        ReconciliationJob job = jobRepository.findById(jobId).orElse(null);
+        if (job == null || job.getStatus() != BatchJobStatus.RUNNING) {
+            return;
+        }
+        long start = System.nanoTime();
+        long resumeAfter = job.getLastProcessedLine();
+        Path resultFile = Path.of(job.getResultFile());
+
+        try (BufferedReader reader = Files.newBufferedReader(Path.of(job.getStoredFile()), StandardCharsets.UTF_8);
+             BufferedWriter results = Files.newBufferedWriter(resultFile, StandardCharsets.UTF_8,
+                     StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+
+            if (Files.size(resultFile) == 0) {
+                results.write(RESULT_HEADER);
+                results.newLine();
+            }
+            SettlementFileParser.checkHeader(reader.readLine());
+
+            Chunk chunk = new Chunk(chunkSize);
+            long lineNumber = 1;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (lineNumber <= resumeAfter || line.isBlank()) {
+                    continue;
+                }
+                try {
+                    SettlementFileParser.Row row = SettlementFileParser.parse(lineNumber, line);
+                    if (chunk.build.containsKey(row.gatewayTransactionId())) {
+                        // A repeated ID in the file is compared again, in the next chunk
+                        processChunk(jobId, chunk, lineNumber - 1, results);
+                    }
+                    chunk.build.put(row.gatewayTransactionId(), row);
+                } catch (IllegalArgumentException e) {
+                    chunk.counts.others++;
+                    writeInvalidRow(results, lineNumber, e.getMessage());
+                }
+                chunk.rows++;
+                if (chunk.rows == chunkSize) {
+                    processChunk(jobId, chunk, lineNumber, results);
+                }
+            }
+            if (chunk.rows > 0) {
+                processChunk(jobId, chunk, lineNumber, results);
+            }
+
+            job = jobRepository.findById(jobId).orElseThrow();
+            job.setStatus(BatchJobStatus.COMPLETED);
+            job.setCompletedAt(LocalDateTime.now());
+            job = jobRepository.save(job);
+            log.info("Reconciliation job ID: {} completed - {} rows, {} matched, {} missing on our side, {} status and {} amount mismatches, {} other, {} ms",
+                    jobId, job.getTotalRows(), job.getMatchedRows(), job.getMissingRows(), job.getStatusMismatches(),
+                    job.getAmountMismatches(), job.getOtherMismatches(), (System.nanoTime() - start) / 1_000_000);
+
+        } catch (Exception e) {
+            log.error("Reconciliation job ID: {} failed", jobId, e);
+            jobRepository.findById(jobId).ifPresent(committed -> {
+                committed.setStatus(BatchJobStatus.FAILED);
+                committed.setFailureReason(e.getMessage());
+                committed.setCompletedAt(LocalDateTime.now());
+                jobRepository.save(committed);
+            });
+        }
+    }
+
+    /**
+     * Probes our payments for the chunk's transactions against its hash table, writes the
+     * differences and records progress up to {@code lastLine}. Leaves the chunk empty.
+     */
+    private void processChunk(Long jobId, Chunk chunk, long lastLine, BufferedWriter results) throws IOException {
+        Counts counts = chunk.counts;
+        if (!chunk.build.isEmpty()) {
+            Set<String> matched = new HashSet<>(chunk.build.size() * 2);
+            String[] ids = chunk.build.keySet().toArray(String[]::new);
+
+            RowCallbackHandler probe = rs -> {
+                SettlementFileParser.Row row = chunk.build.get(rs.getString("gateway_transaction_id"));
+                Payment ours = new Payment(rs.getLong("id"), rs.getLong("loan_id"),
+                        PaymentStatus.valueOf(rs.getString("status")), rs.getBigDecimal("amount"));
+                try {
+                    if (!matched.add(row.gatewayTransactionId())) {
+                        counts.others++;
+                        writeMismatch(results, row, ReconciliationMismatch.DUPLICATE_ON_OUR_SIDE, ours);
+                        return;
+                    }
+                    boolean statusDiffers = row.status() != ours.status();
+                    boolean amountDiffers = row.amount().compareTo(ours.amount()) != 0;
+                    if (statusDiffers) {
+                        counts.status++;
+                        writeMismatch(results, row, ReconciliationMismatch.STATUS_DIFFERS, ours);
+                    }
+                    if (amountDiffers) {
+                        counts.amount++;
+                        writeMismatch(results, row, ReconciliationMismatch.AMOUNT_DIFFERS, ours);
+                    }
+                    if (!statusDiffers && !amountDiffers) {
+                        counts.matched++;
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            };
+            jdbcTemplate.query(FIND_PAYMENTS, ps -> ps.setArray(1, ps.getConnection().createArrayOf("varchar", ids)), probe);
+
+            for (SettlementFileParser.Row row : chunk.build.values()) {
+                if (!matched.contains(row.gatewayTransactionId())) {
+                    counts.missing++;
+                    writeMismatch(results, row, ReconciliationMismatch.MISSING_ON_OUR_SIDE, null);
+                }
+            }
+        }
+        // Written before progress is recorded: a restart may repeat a chunk's lines, never lose them
+        results.flush();
+
+        ReconciliationJob job = jobRepository.findById(jobId).orElseThrow();
+        job.setTotalRows(job.getTotalRows() + chunk.rows);
+        job.setMatchedRows(job.getMatchedRows() + counts.matched);
+        job.setMissingRows(job.getMissingRows() + counts.missing);
+        job.setStatusMismatches(job.getStatusMismatches() + counts.status);
+        job.setAmountMismatches(job.getAmountMismatches() + counts.amount);
+        job.setOtherMismatches(job.getOtherMismatches() + counts.others);
+        job.setLastProcessedLine(lastLine);
+        jobRepository.save(job);
+        log.debug("Reconciliation job ID: {} processed up to line {}", jobId, lastLine);
+
+        chunk.clear();
+    }
+
+    private static void writeMismatch(BufferedWriter results, SettlementFileParser.Row row, ReconciliationMismatch mismatch,
+                                      Payment ours) throws IOException {
+        results.write(row.lineNumber() + "," + RepaymentFileParser.quote(row.gatewayTransactionId()) + "," + mismatch + ","
+                + row.status() + "," + (ours != null ? ours.status() : "") + ","
+                + row.amount().toPlainString() + "," + (ours != null ? ours.amount().toPlainString() : "") + ","
+                + (ours != null ? ours.id() + "," + ours.loanId() : ",") + ",");
+        results.newLine();
+    }
+
+    private static void writeInvalidRow(BufferedWriter results, long lineNumber, String error) throws IOException {
+        results.write(lineNumber + ",," + ReconciliationMismatch.INVALID_ROW + ",,,,,,," + RepaymentFileParser.quote(error));
+        results.newLine();
+    }
+
+    private ReconciliationJobResponse toResponse(ReconciliationJob job) {
+        return ReconciliationJobResponse.builder()
+                .jobId(job.getId())
+                .fileName(job.getFileName())
+                .status(job.getStatus())
+                .totalRows(job.getTotalRows())
+                .matchedRows(job.getMatchedRows())
+                .missingRows(job.getMissingRows())
+                .statusMismatches(job.getStatusMismatches())
+                .amountMismatches(job.getAmountMismatches())
+                .otherMismatches(job.getOtherMismatches())
+                .failureReason(job.getFailureReason())
+                .createdAt(job.getCreatedAt())
+                .completedAt(job.getCompletedAt())
+                .build();
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Could not delete rejected settlement file {}", path, e);
+        }
+    }
+
+    private record Payment(long id, long loanId, PaymentStatus status, BigDecimal amount) {
+    }
+
+    private static final class Chunk {
+        private final Map<String, SettlementFileParser.Row> build;
+        private Counts counts = new Counts();
+        private int rows;
+
+        private Chunk(int capacity) {
+            this.build = new HashMap<>(capacity * 4 / 3 + 1);
+        }
+
+        private void clear() {
+            build.clear();
+            counts = new Counts();
+            rows = 0;
+        }
+    }
+
+    private static final class Counts {
+        private long matched;
+        private long missing;
+        private long status;
+        private long amount;
+        private long others;
+    }
+}
@@ -0,0 +1,282 @@
+package com.loantrackr.service;
+
+import com.loantrackr.dto.response.RepaymentFileJobResponse;
+import com.loantrackr.enums.BatchJobStatus;
+import com.loantrackr.enums.PaymentMethod;
+import com.loantrackr.model.RepaymentFileJob;
+import com.loantrackr.repository.RepaymentFileJobRepository;
+import com.loantrackr.util.RepaymentFileParser;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Ingestion of collections partner debit result files (NACH / eMandate).
+ * <p>
+ * An uploaded file is stored and ingested in the background, one job at a time, so two files
+ * never post against the same loans concurrently. The file is streamed in chunks of
+ * {@code loan.repayment-file.chunk-size} lines and each chunk is posted in one transaction by
+ * {@link RepaymentPostingService}. Rows are not sent to the payment gateway: the partner already
+ * debited the borrower. Rows that cannot be posted are written to the job's result file with the
+ * reason. A row for a loan with a borrower payment in flight (see {@link LoanPaymentGate}) is
+ * rejected rather than posted under it; uploading the file again once the payment is through
+ * posts it. Job counts and the last processed line are committed with each chunk; a job interrupted
+ * by a restart resumes after its last committed chunk, and since references already posted are
+ * rejected, uploading the same file twice posts nothing twice.
+ */
+@Slf4j
+@Service
+public class RepaymentFileService {
+
+    private static final String FOLDER = "repayment-files";
+    private static final String RESULT_HEADER = "line_number,loan_id,reference,error";
+
+    private final RepaymentFileJobRepository jobRepository;
+    private final RepaymentPostingService postingService;
+    private final LoanPaymentGate paymentGate;
+    private final FileStorageService fileStorageService;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "repayment-file");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public RepaymentFileService(RepaymentFileJobRepository jobRepository,
+                                RepaymentPostingService postingService,
+                                LoanPaymentGate paymentGate,
+                                FileStorageService fileStorageService,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${loan.repayment-file.chunk-size:1000}") int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Repayment file chunk size must be positive");
+        }
+        this.jobRepository = jobRepository;
+        this.postingService = postingService;
+        this.paymentGate = paymentGate;
+        this.fileStorageService = fileStorageService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Stores the file and queues it for ingestion.
+     *
+     * @throws IllegalArgumentException if the file is not a CSV with the expected header
+     */
+    public RepaymentFileJobResponse submit(MultipartFile file, String uploadedBy) {
+        Path stored = fileStorageService.storeCsvFile(file, FOLDER);
+        try (BufferedReader reader = Files.newBufferedReader(stored, StandardCharsets.UTF_8)) {
+            RepaymentFileParser.checkHeader(reader.readLine());
+        } catch (IllegalArgumentException e) {
+            deleteQuietly(stored);
+            throw e;
+        } catch (IOException e) {
+            deleteQuietly(stored);
+            throw new UncheckedIOException(e);
+        }
+
+        RepaymentFileJob job = jobRepository.save(RepaymentFileJob.builder()
+                .fileName(file.getOriginalFilename())
+                .storedFile(stored.toString())
+                .uploadedBy(uploadedBy)
+                .status(BatchJobStatus.RUNNING)
+                .build());
+        job.setResultFile(fileStorageService.resolveFile(FOLDER, job.getId() + "-result.csv").toString());
+        job = jobRepository.save(job);
+
+        log.info("Repayment file '{}' accepted as job ID: {} by {}", job.getFileName(), job.getId(), uploadedBy);
+        Long jobId = job.getId();
+        executor.execute(() -> ingest(jobId));
+        return toResponse(job);
+    }
+
+    public RepaymentFileJobResponse getJob(Long jobId) {
+        return toResponse(jobRepository.findById(jobId).orElseThrow(() -> new NoSuchElementException("Repayment file job not found")));
+    }
+
+    /**
+     * @throws IllegalStateException if the job has not finished yet
+     */
+    public Resource getResultFile(Long jobId) {
+        RepaymentFileJob job = jobRepository.findById(jobId).orElseThrow(() -> new NoSuchElementException("Repayment file job not found"));
+        if (job.getStatus() == BatchJobStatus.RUNNING) {
+            throw new IllegalStateException("Repayment file job " + jobId + " is still running");
+        }
+        return fileStorageService.loadFile(job.getResultFile());
+    }
+
+    /**
+     * Picks up jobs a previous shutdown interrupted.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedJobs() {
+        for (RepaymentFileJob job : jobRepository.findByStatusOrderById(BatchJobStatus.RUNNING)) {
+            log.info("Resuming repayment file job ID: {} after line {}", job.getId(), job.getLastProcessedLine());
+            Long jobId = job.getId();
+            executor.execute(() -> ingest(jobId));
+        }
+    }
+
+    private void ingest(Long jobId) {
+        RepaymentFileJob job = jobRepository.findById(jobId).orElse(null);
+        if (job == null || job.getStatus() != BatchJobStatus.RUNNING) {
+            return;
+        }
+        long start = System.nanoTime();
+        long resumeAfter = job.getLastProcessedLine();
+        Path resultFile = Path.of(job.getResultFile());
+
+        try (BufferedReader reader = Files.newBufferedReader(Path.of(job.getStoredFile()), StandardCharsets.UTF_8);
+             BufferedWriter results = Files.newBufferedWriter(resultFile, StandardCharsets.UTF_8,
+                     StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+
+            if (Files.size(resultFile) == 0) {
+                results.write(RESULT_HEADER);
+                results.newLine();
+            }
+            RepaymentFileParser.checkHeader(reader.readLine());
+
+            List<RepaymentPostingService.Debit> debits = new ArrayList<>(chunkSize);
+            List<RepaymentPostingService.Rejection> rejections = new ArrayList<>();
+            long lineNumber = 1;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (lineNumber <= resumeAfter || line.isBlank()) {
+                    continue;
+                }
+                try {
+                    debits.add(toDebit(jobId, RepaymentFileParser.parse(lineNumber, line)));
+                } catch (IllegalArgumentException e) {
+                    rejections.add(new RepaymentPostingService.Rejection(lineNumber, null, null, e.getMessage()));
+                }
+                if (debits.size() + rejections.size() == chunkSize) {
+                    postChunk(jobId, debits, rejections, lineNumber, results);
+                    debits.clear();
+                    rejections.clear();
+                }
+            }
+            if (!debits.isEmpty() || !rejections.isEmpty()) {
+                postChunk(jobId, debits, rejections, lineNumber, results);
+            }
+
+            job = jobRepository.findById(jobId).orElseThrow();
+            job.setStatus(BatchJobStatus.COMPLETED);
+            job.setCompletedAt(LocalDateTime.now());
+            job = jobRepository.save(job);
+            log.info("Repayment file job ID: {} completed - {} rows, {} posted, {} bounced, {} rejected, {} ms",
+                    jobId, job.getTotalRows(), job.getPostedRows(), job.getBouncedRows(), job.getRejectedRows(),
+                    (System.nanoTime() - start) / 1_000_000);
+
+        } catch (Exception e) {
+            log.error("Repayment file job ID: {} failed", jobId, e);
+            jobRepository.findById(jobId).ifPresent(committed -> {
+                committed.setStatus(BatchJobStatus.FAILED);
+                committed.setFailureReason(e.getMessage());
+                committed.setCompletedAt(LocalDateTime.now());
+                jobRepository.save(committed);
+            });
+        }
+    }
+
+    private void postChunk(Long jobId, List<RepaymentPostingService.Debit> debits,
+                           List<RepaymentPostingService.Rejection> parseRejections, long lastLine,
+                           BufferedWriter results) throws IOException {
+        List<RepaymentPostingService.Rejection> rejections;
+        try (LoanPaymentGate.Permit permit = paymentGate.tryEnter(debits.stream().map(RepaymentPostingService.Debit::loanId).toList())) {
+            List<RepaymentPostingService.Debit> admitted = new ArrayList<>(debits.size());
+            List<RepaymentPostingService.Rejection> busy = new ArrayList<>();
+            for (RepaymentPostingService.Debit debit : debits) {
+                if (permit.admits(debit.loanId())) {
+                    admitted.add(debit);
+                } else {
+                    busy.add(new RepaymentPostingService.Rejection(debit.sequence(), debit.loanId(), debit.reference(),
+                            "A payment on this loan is already being processed"));
+                }
+            }
+            rejections = transactionTemplate.execute(status -> {
+                RepaymentPostingService.Outcome outcome = postingService.post(admitted);
+                List<RepaymentPostingService.Rejection> all = new ArrayList<>(parseRejections);
+                all.addAll(busy);
+                all.addAll(outcome.rejections());
+
+                RepaymentFileJob job = jobRepository.findById(jobId).orElseThrow();
+                job.setTotalRows(job.getTotalRows() + debits.size() + parseRejections.size());
+                job.setPostedRows(job.getPostedRows() + outcome.posted());
+                job.setBouncedRows(job.getBouncedRows() + outcome.bounced());
+                job.setRejectedRows(job.getRejectedRows() + all.size());
+                job.setLastProcessedLine(lastLine);
+                jobRepository.save(job);
+                return all;
+            });
+        }
+
+        rejections.sort(Comparator.comparingLong(RepaymentPostingService.Rejection::sequence));
+        for (RepaymentPostingService.Rejection rejection : rejections) {
+            results.write(rejection.sequence() + "," + (rejection.loanId() != null ? rejection.loanId() : "") + ","
+                    + RepaymentFileParser.quote(rejection.reference()) + "," + RepaymentFileParser.quote(rejection.error()));
+            results.newLine();
+        }
+        results.flush();
+        log.debug("Repayment file job ID: {} processed up to line {}", jobId, lastLine);
+    }
+
+    private static RepaymentPostingService.Debit toDebit(Long jobId, RepaymentFileParser.Row row) {
+        return new RepaymentPostingService.Debit(row.lineNumber(), row.loanId(), row.installmentNumber(), row.amount(),
+                row.status(), PaymentMethod.BANK_TRANSFER, "FILE" + jobId + "_" + row.lineNumber(), row.reference(),
+                row.debitDate(), row.failureReason());
+    }
+
+    private RepaymentFileJobResponse toResponse(RepaymentFileJob job) {
+        return RepaymentFileJobResponse.builder()
+                .jobId(job.getId())
+                .fileName(job.getFileName())
+                .status(job.getStatus())
+                .totalRows(job.getTotalRows())
+                .postedRows(job.getPostedRows())
+                .bouncedRows(job.getBouncedRows())
+                .rejectedRows(job.getRejectedRows())
+                .failureReason(job.getFailureReason())
+                .createdAt(job.getCreatedAt())
+                .completedAt(job.getCompletedAt())
+                .build();
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Could not delete rejected repayment file {}", path, e);
+        }
+    }
+}
@@ -0,0 +1,405 @@
+package com.loantrackr.service;
+
+import com.loantrackr.dto.projection.PendingInstallmentPayment;
+import com.loantrackr.enums.LoanRepaymentStatus;
+import com.loantrackr.enums.LoanStatus;
+import com.loantrackr.enums.PaymentMethod;
+import com.loantrackr.enums.PaymentStatus;
+import com.loantrackr.enums.PaymentType;
+import com.loantrackr.enums.ScheduleStorage;
+import com.loantrackr.model.Loan;
+import com.loantrackr.model.LoanConfiguration;
+import com.loantrackr.model.LoanRepaymentSchedule;
+import com.loantrackr.repository.LoanConfigurationRepository;
+import com.loantrackr.repository.LoanPaymentRepository;
+import com.loantrackr.repository.LoanRepaymentScheduleRepository;
+import com.loantrackr.repository.LoanRepository;
+import com.loantrackr.util.PackedScheduleCodec;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.SqlParameterValue;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Posts debits collected outside {@code makePayment} (partner files, auto-debit) in bulk.
+ * <p>
+ * A batch locks its loans in id order, resolves every debit's next pending installment with at
+ * most one schedule query, and writes payments, installments and loans as JDBC batches; the loan
+ * and installment entities are only read, so Hibernate has nothing to flush on top. A successful
+ * debit must be for the next pending installment and for exactly its amount due, late fee
+ * included and less whatever a borrower part-payment already covered, so it always settles the
+ * installment; a failed debit is recorded as a failed payment, and one whose outcome is not known
+ * yet as a pending payment for the gateway's callback to settle. The debit reference is kept as the
+ * payment's gateway transaction ID and a reference that was already posted is rejected, so
+ * posting the same debits twice has no effect.
+ */
+@Slf4j
+@Service
+public class RepaymentPostingService {
+
+    // A computed installment gets its row from whichever writer first gives it state; one written
+    // meanwhile is left alone and the batch fails, as it was decided on the derived installment
+    private static final String INSERT_INSTALLMENT =
+            "INSERT INTO loan_repayment_schedule (id, loan_id, installment_number, emi_amount, principal_amount, interest_amount, " +
+            "due_date, paid_date, status, late_fee, total_amount_paid, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) ON CONFLICT (loan_id, installment_number) DO NOTHING";
+
+    private static final String UPDATE_INSTALLMENT =
+            "UPDATE loan_repayment_schedule SET paid_date = ?, status = ?, late_fee = ?, total_amount_paid = ?, updated_at = ?, " +
+            "version = version + 1 WHERE id = ?";
+
+    // The ID sequences are pooled: Hibernate takes the block of IDs ending at each value it draws,
+    // so a value drawn here with nextval is never handed out by Hibernate, and the rest of its
+    // block simply goes unused
+    private static final String INSERT_PAYMENT =
+            "INSERT INTO loan_payments (id, loan_id, repayment_schedule_id, installment_number, payment_type, amount, " +
+            "payment_method, status, transaction_id, gateway_transaction_id, failure_reason, created_at, paid_at) " +
+            "VALUES (nextval('loan_payment_seq'), ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // Nullable columns keep their value when the row leaves them unset; a posted debit always settles any part-payment
+    private static final String UPDATE_LOAN =
+            "UPDATE loan SET remaining_amount = ?, outstanding_principal = COALESCE(?, outstanding_principal), partially_paid_amount = NULL, " +
+            "paid_installments = ?, next_due_date = COALESCE(?, next_due_date), status = ?, " +
+            "fully_repaid_at = COALESCE(?, fully_repaid_at), packed_schedule = COALESCE(?, packed_schedule), " +
+            "version = version + 1 WHERE id = ?";
+
+    private final LoanRepository loanRepository;
+    private final LoanRepaymentScheduleRepository scheduleRepository;
+    private final LoanPaymentRepository paymentRepository;
+    private final LoanConfigurationRepository configRepository;
+    private final RepaymentScheduleService scheduleService;
+    private final JdbcTemplate jdbcTemplate;
+
+    public RepaymentPostingService(LoanRepository loanRepository,
+                                   LoanRepaymentScheduleRepository scheduleRepository,
+                                   LoanPaymentRepository paymentRepository,
+                                   LoanConfigurationRepository configRepository,
+                                   RepaymentScheduleService scheduleService,
+                                   JdbcTemplate jdbcTemplate) {
+        this.loanRepository = loanRepository;
+        this.scheduleRepository = scheduleRepository;
+        this.paymentRepository = paymentRepository;
+        this.configRepository = configRepository;
+        this.scheduleService = scheduleService;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * One collected debit.
+     *
+     * @param sequence          caller's position of the debit (file line, page index), echoed in rejections
+     * @param installmentNumber installment the debit was collected for, or null to take the next pending one
+     * @param method            how the debit was collected
+     * @param transactionId     our transaction ID for the payment, unique
+     * @param reference         partner or gateway reference of the debit, unique per debit
+     */
+    public record Debit(long sequence, long loanId, Integer installmentNumber, BigDecimal amount, PaymentStatus status,
+                        PaymentMethod method, String transactionId, String reference, LocalDate debitDate,
+                        String failureReason) {
+    }
+
+    public record Rejection(long sequence, Long loanId, String reference, String error) {
+    }
+
+    /**
+     * @param posted  successful debits posted against an installment
+     * @param bounced failed debits recorded as failed payments
+     * @param pending debits with no outcome yet, recorded as pending payments
+     */
+    public record Outcome(int posted, int bounced, int pending, List<Rejection> rejections) {
+    }
+
+    /**
+     * Installment a loan's next debit should collect.
+     *
+     * @param amountDue EMI plus any late fee already charged, less what part-payments already covered
+     */
+    public record DueInstallment(Long loanId, int installmentNumber, LocalDate dueDate, BigDecimal amountDue) {
+    }
+
+    /**
+     * Posts a batch of debits. Must run in a transaction, with the debits' loans admitted by
+     * {@link LoanPaymentGate}; debits that cannot be posted are returned as rejections and do not
+     * affect the others. The amount due includes the late fee
+     * {@link OverdueInstallmentJob} has charged on the installment, if any.
+     */
+    public Outcome post(List<Debit> debits) {
+        if (debits.isEmpty()) {
+            return new Outcome(0, 0, 0, List.of());
+        }
+        // Loans are locked first, in id order, so a concurrent batch sees this one's references committed
+        Map<Long, LoanState> loans = lockLoans(debits.stream().map(Debit::loanId).collect(Collectors.toSet()));
+        Map<Long, LoanRepaymentSchedule> nextRows = findNextRows(loans.values());
+        Set<String> postedReferences = new HashSet<>(paymentRepository.findExistingGatewayTransactionIds(
+                debits.stream().map(Debit::reference).collect(Collectors.toSet())));
+        int gracePeriodDays = gracePeriodDays();
+
+        LocalDateTime now = LocalDateTime.now();
+        List<Posting> payments = new ArrayList<>(debits.size());
+        List<Object[]> installmentUpdates = new ArrayList<>();
+        List<LoanRepaymentSchedule> newInstallments = new ArrayList<>();
+        List<Rejection> rejections = new ArrayList<>();
+        int posted = 0;
+        int bounced = 0;
+        int pending = 0;
+
+        for (Debit debit : debits) {
+            String error = null;
+            LoanState state = loans.get(debit.loanId());
+            LoanRepaymentSchedule installment = null;
+
+            if (!postedReferences.add(debit.reference())) {
+                error = "Reference already posted";
+            } else if (state == null) {
+                error = "Loan not found";
+            } else if (state.loan.getStatus() != LoanStatus.DISBURSED) {
+                error = "Loan is not active for payments";
+            } else if ((installment = nextInstallment(state, nextRows)) == null) {
+                error = "No pending installments found";
+            } else if (debit.installmentNumber() != null && debit.installmentNumber() != installment.getInstallmentNumber()) {
+                error = "Next pending installment is " + installment.getInstallmentNumber();
+            }
+            if (error != null) {
+                rejections.add(new Rejection(debit.sequence(), debit.loanId(), debit.reference(), error));
+                continue;
+            }
+
+            if (debit.status() != PaymentStatus.SUCCESS) {
+                payments.add(new Posting(debit, installment));
+                if (debit.status() == PaymentStatus.PENDING) {
+                    pending++;
+                } else {
+                    bounced++;
+                }
+                continue;
+            }
+
+            boolean late = installment.getStatus() == LoanRepaymentStatus.OVERDUE
+                    || debit.debitDate().isAfter(installment.getDueDate().plusDays(gracePeriodDays)); // Same grace as OverdueInstallmentJob
+            BigDecimal fee = installment.getLateFee() != null ? installment.getLateFee() : BigDecimal.ZERO;
+            BigDecimal installmentTotal = installment.getEmiAmount().add(fee);
+            BigDecimal totalAmountDue = installmentTotal.subtract(state.partiallyPaid);
+            if (debit.amount().compareTo(totalAmountDue) != 0) {
+                rejections.add(new Rejection(debit.sequence(), debit.loanId(), debit.reference(),
+                        "Payment amount must be exactly " + totalAmountDue));
+                continue;
+            }
+
+            LoanRepaymentStatus paidStatus = late ? LoanRepaymentStatus.LATE_PAID : LoanRepaymentStatus.PAID;
+            if (installment.getId() != null) {
+                // Managed row: written by the batch below, not through the entity
+                installmentUpdates.add(new Object[]{debit.debitDate(), paidStatus.name(), fee, installmentTotal, now, installment.getId()});
+            } else {
+                installment.setLateFee(fee);
+                installment.setPaidDate(debit.debitDate());
+                installment.setTotalAmountPaid(installmentTotal);
+                installment.setStatus(paidStatus);
+                if (state.packed != null) {
+                    PackedScheduleCodec.update(state.packed, installment);
+                } else {
+                    newInstallments.add(installment);
+                }
+            }
+            state.pay(installment);
+            payments.add(new Posting(debit, installment));
+            posted++;
+        }
+
+        writeInstallments(newInstallments, installmentUpdates, now);
+        writePayments(payments, now);
+        writeLoans(loans.values(), now);
+        return new Outcome(posted, bounced, pending, rejections);
+    }
+
+    /**
+     * Next pending installment of each active loan that has one, resolved in bulk, leaving out
+     * installments with a payment the gateway has not settled yet: debiting them again could
+     * collect twice. Meant for a read-only transaction; nothing is locked.
+     */
+    public Map<Long, DueInstallment> findDueInstallments(Collection<Long> loanIds) {
+        Map<Long, LoanState> loans = new HashMap<>();
+        for (Loan loan : loanRepository.findAllById(loanIds)) {
+            if (loan.getStatus() == LoanStatus.DISBURSED) {
+                loans.put(loan.getId(), new LoanState(loan));
+            }
+        }
+        Map<Long, LoanRepaymentSchedule> nextRows = findNextRows(loans.values());
+        Set<PendingInstallmentPayment> awaited = loans.isEmpty() ? Set.of()
+                : new HashSet<>(paymentRepository.findPendingInstallmentPayments(loans.keySet()));
+
+        Map<Long, DueInstallment> due = new HashMap<>();
+        for (LoanState state : loans.values()) {
+            LoanRepaymentSchedule installment = nextInstallment(state, nextRows);
+            if (installment != null
+                    && !awaited.contains(new PendingInstallmentPayment(state.loan.getId(), installment.getInstallmentNumber()))) {
+                due.put(state.loan.getId(), new DueInstallment(state.loan.getId(), installment.getInstallmentNumber(),
+                        installment.getDueDate(), installment.getTotalAmountDue().subtract(state.partiallyPaid)));
+            }
+        }
+        return due;
+    }
+
+    private int gracePeriodDays() {
+        LoanConfiguration config = configRepository.findByActive(true);
+        return config != null ? config.getGracePeriodDays() : OverdueInstallmentJob.DEFAULT_GRACE_PERIOD_DAYS;
+    }
+
+    private Map<Long, LoanState> lockLoans(Set<Long> loanIds) {
+        Map<Long, LoanState> loans = new HashMap<>();
+        for (Loan loan : loanRepository.findAllByIdForUpdate(loanIds)) {
+            loans.put(loan.getId(), new LoanState(loan));
+        }
+        return loans;
+    }
+
+    private Map<Long, LoanRepaymentSchedule> findNextRows(Collection<LoanState> loans) {
+        List<Long> rowLoanIds = loans.stream()
+                .filter(state -> state.packed == null)
+                .map(state -> state.loan.getId())
+                .toList();
+        if (rowLoanIds.isEmpty()) {
+            return Map.of();
+        }
+        return scheduleRepository.findNextInstallmentRows(rowLoanIds).stream()
+                .collect(Collectors.toMap(installment -> installment.getLoan().getId(), Function.identity()));
+    }
+
+    private LoanRepaymentSchedule nextInstallment(LoanState state, Map<Long, LoanRepaymentSchedule> nextRows) {
+        Loan loan = state.loan;
+        int number = state.paidInstallments + 1;
+        if (number > loan.getTotalInstallments()) {
+            return null;
+        }
+        if (state.packed != null) {
+            return PackedScheduleCodec.decodeInstallment(state.packed, loan, number);
+        }
+
+        // Only a loan's first debit in the batch was prefetched; a second one is rare
+        LoanRepaymentSchedule row = number == loan.getPaidInstallments() + 1
+                ? nextRows.get(loan.getId())
+                : scheduleRepository.findByLoanAndInstallmentNumber(loan, number).orElse(null);
+        if (row != null || loan.getScheduleStorage() != ScheduleStorage.COMPUTED) {
+            return row;
+        }
+        if (state.derived == null) {
+            state.derived = scheduleService.buildInstallments(loan);
+        }
+        return state.derived.get(number - state.derived.get(0).getInstallmentNumber());
+    }
+
+    private void writeInstallments(List<LoanRepaymentSchedule> newInstallments, List<Object[]> installmentUpdates, LocalDateTime now) {
+        if (!newInstallments.isEmpty()) {
+            List<Long> ids = jdbcTemplate.queryForList("SELECT nextval('loan_repayment_seq') FROM generate_series(1, ?)",
+                    Long.class, newInstallments.size());
+            List<Object[]> inserts = new ArrayList<>(newInstallments.size());
+            for (int i = 0; i < newInstallments.size(); i++) {
+                LoanRepaymentSchedule installment = newInstallments.get(i);
+                installment.setId(ids.get(i));
+                inserts.add(new Object[]{installment.getId(), installment.getLoan().getId(), installment.getInstallmentNumber(),
+                        installment.getEmiAmount(), installment.getPrincipalAmount(), installment.getInterestAmount(),
+                        installment.getDueDate(), installment.getPaidDate(), installment.getStatus().name(),
+                        installment.getLateFee(), installment.getTotalAmountPaid(), now});
+            }
+            int[] counts = jdbcTemplate.batchUpdate(INSERT_INSTALLMENT, inserts);
+            // A rewritten batch reports no counts; the payments' foreign key to these rows then catches a skipped one
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == 0) {
+                    LoanRepaymentSchedule installment = newInstallments.get(i);
+                    throw new OptimisticLockingFailureException("Installment " + installment.getInstallmentNumber()
+                            + " of loan ID: " + installment.getLoan().getId() + " was written by another transaction");
+                }
+            }
+        }
+        if (!installmentUpdates.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_INSTALLMENT, installmentUpdates);
+        }
+    }
+
+    private void writePayments(List<Posting> payments, LocalDateTime now) {
+        if (payments.isEmpty()) {
+            return;
+        }
+        List<Object[]> inserts = new ArrayList<>(payments.size());
+        for (Posting payment : payments) {
+            Debit debit = payment.debit();
+            boolean success = debit.status() == PaymentStatus.SUCCESS;
+            inserts.add(new Object[]{debit.loanId(), new SqlParameterValue(Types.BIGINT, payment.installment().getId()),
+                    payment.installment().getInstallmentNumber(), PaymentType.INSTALLMENT.name(), debit.amount(),
+                    debit.method().name(), debit.status().name(), debit.transactionId(), debit.reference(),
+                    new SqlParameterValue(Types.VARCHAR, debit.failureReason()), now,
+                    new SqlParameterValue(Types.TIMESTAMP, success ? debit.debitDate().atStartOfDay() : null)});
+        }
+        jdbcTemplate.batchUpdate(INSERT_PAYMENT, inserts);
+    }
+
+    private void writeLoans(Collection<LoanState> loans, LocalDateTime now) {
+        List<Object[]> updates = new ArrayList<>();
+        for (LoanState state : loans) {
+            if (state.paidInstallments == state.loan.getPaidInstallments()) {
+                continue;
+            }
+            // Same rule as Loan#checkRepaymentStatus
+            boolean closed = state.remainingAmount.signum() == 0;
+            updates.add(new Object[]{state.remainingAmount, new SqlParameterValue(Types.NUMERIC, state.outstandingPrincipal),
+                    state.paidInstallments, new SqlParameterValue(Types.DATE, state.nextDueDate),
+                    (closed ? LoanStatus.CLOSED : state.loan.getStatus()).name(),
+                    new SqlParameterValue(Types.TIMESTAMP, closed ? now : null),
+                    new SqlParameterValue(Types.BINARY, state.packed), state.loan.getId()});
+        }
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_LOAN, updates);
+        }
+    }
+
+    /**
+     * Working copy of a loan while its batch is posted; the entity itself is never modified.
+     */
+    private static final class LoanState {
+        private final Loan loan;
+        private final byte[] packed;
+        private BigDecimal remainingAmount;
+        private BigDecimal outstandingPrincipal;
+        private BigDecimal partiallyPaid;
+        private int paidInstallments;
+        private LocalDate nextDueDate;
+        private List<LoanRepaymentSchedule> derived;
+
+        private LoanState(Loan loan) {
+            this.loan = loan;
+            this.packed = loan.getScheduleStorage() == ScheduleStorage.PACKED ? loan.getPackedSchedule().clone() : null;
+            this.remainingAmount = loan.getRemainingAmount();
+            this.outstandingPrincipal = loan.getOutstandingPrincipal();
+            this.partiallyPaid = loan.getPartiallyPaidAmount() != null ? loan.getPartiallyPaidAmount() : BigDecimal.ZERO;
+            this.paidInstallments = loan.getPaidInstallments();
+        }
+
+        private void pay(LoanRepaymentSchedule installment) {
+            remainingAmount = remainingAmount.subtract(installment.getEmiAmount());
+            if (outstandingPrincipal != null) {
+                outstandingPrincipal = outstandingPrincipal.subtract(installment.getPrincipalAmount());
+            }
+            partiallyPaid = BigDecimal.ZERO;
+            paidInstallments++;
+            // Installments fall due monthly; the due date stays put once the loan is repaid
+            nextDueDate = paidInstallments < loan.getTotalInstallments() ? installment.getDueDate().plusMonths(1) : null;
+        }
+    }
+
+    private record Posting(Debit debit, LoanRepaymentSchedule installment) {
+    }
+}
@@ -0,0 +1,398 @@
+package com.loantrackr.service;
+
+import com.loantrackr.dto.projection.LoanScheduleParams;
+import com.loantrackr.enums.LoanRepaymentStatus;
+import com.loantrackr.enums.ScheduleStorage;
+import com.loantrackr.model.Loan;
+import com.loantrackr.model.LoanRepaymentSchedule;
+import com.loantrackr.repository.LoanPaymentRepository;
+import com.loantrackr.repository.LoanRepaymentScheduleRepository;
+import com.loantrackr.repository.LoanRepository;
+import com.loantrackr.util.AmortizationSchedule;
+import com.loantrackr.util.PackedScheduleCodec;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Owns how a loan's repayment schedule is stored.
+ * <p>
+ * In {@link ScheduleStorage#ROWS} mode every installment is written at disbursement. In
+ * {@link ScheduleStorage#COMPUTED} mode only the schedule parameters live on the {@link Loan};
+ * installments are derived on read and a row is persisted only once an installment has state
+ * of its own (a payment attempt, a late fee, an overdue mark). In {@link ScheduleStorage#PACKED}
+ * mode the whole schedule, state included, is one column on the loan and no rows exist at all.
+ * The mode is fixed per loan at disbursement, so switching {@code loan.schedule.storage} never
+ * affects existing loans; {@link #migrateToPacked} converts them explicitly.
+ */
+@Slf4j
+@Service
+public class RepaymentScheduleService {
+
+    // Overdue installments are still unpaid and come up for payment in order
+    private static final List<LoanRepaymentStatus> UNPAID = List.of(LoanRepaymentStatus.PENDING, LoanRepaymentStatus.OVERDUE);
+
+    private final LoanRepaymentScheduleRepository scheduleRepository;
+    private final LoanRepository loanRepository;
+    private final LoanPaymentRepository paymentRepository;
+    private final LoanCalculatorService loanCalculator;
+    private final ScheduleStorage storage;
+
+    public RepaymentScheduleService(LoanRepaymentScheduleRepository scheduleRepository,
+                                    LoanRepository loanRepository,
+                                    LoanPaymentRepository paymentRepository,
+                                    LoanCalculatorService loanCalculator,
+                                    @Value("${loan.schedule.storage:ROWS}") ScheduleStorage storage) {
+        this.scheduleRepository = scheduleRepository;
+        this.loanRepository = loanRepository;
+        this.paymentRepository = paymentRepository;
+        this.loanCalculator = loanCalculator;
+        this.storage = storage;
+        log.info("Repayment schedule storage for new loans: {}", storage);
+    }
+
+    /**
+     * Storage mode to stamp on loans disbursed from now on.
+     */
+    public ScheduleStorage getStorage() {
+        return storage;
+    }
+
+    /**
+     * Writes the schedule of a freshly disbursed loan. Needs the loan's schedule parameters set.
+     */
+    public void createSchedule(Loan loan) {
+        if (isPacked(loan)) {
+            loan.setPackedSchedule(PackedScheduleCodec.encode(buildInstallments(loan)));
+            loanRepository.save(loan);
+            log.info("Packed EMI schedule ({} bytes) saved for loan ID: {}", loan.getPackedSchedule().length, loan.getId());
+            return;
+        }
+        if (isComputed(loan)) {
+            log.info("Schedule for loan ID: {} will be computed on read, no installment rows written", loan.getId());
+            return;
+        }
+        List<LoanRepaymentSchedule> schedules = buildInstallments(loan);
+        scheduleRepository.saveAll(schedules);
+        log.info("EMI schedule saved successfully for loan ID: {}", loan.getId());
+    }
+
+    public List<LoanRepaymentSchedule> getSchedule(Loan loan) {
+        if (isPacked(loan)) {
+            return PackedScheduleCodec.decode(loan.getPackedSchedule(), loan);
+        }
+        if (!isComputed(loan)) {
+            return scheduleRepository.findByLoanOrderByInstallmentNumber(loan);
+        }
+        LoanRepaymentSchedule[] installments = new LoanRepaymentSchedule[loan.getTotalInstallments()];
+        for (LoanRepaymentSchedule derived : buildInstallments(loan)) {
+            installments[derived.getInstallmentNumber() - 1] = derived;
+        }
+        // Installments before a re-amortization point were all paid, so they always have rows
+        for (LoanRepaymentSchedule persisted : scheduleRepository.findByLoanOrderByInstallmentNumber(loan)) {
+            installments[persisted.getInstallmentNumber() - 1] = persisted;
+        }
+        return Arrays.asList(installments);
+    }
+
+    /**
+     * Lowest unpaid installment. In computed mode the returned installment may be transient;
+     * it becomes a row the first time it is passed to {@link #save}.
+     */
+    public Optional<LoanRepaymentSchedule> findNextPending(Loan loan) {
+        if (isPacked(loan)) {
+            int next = PackedScheduleCodec.firstUnpaid(loan.getPackedSchedule());
+            return next < 0 ? Optional.empty() : Optional.of(PackedScheduleCodec.decodeInstallment(loan.getPackedSchedule(), loan, next));
+        }
+        if (!isComputed(loan)) {
+            return scheduleRepository.findFirstByLoanAndStatusInOrderByInstallmentNumberAsc(loan, UNPAID);
+        }
+        // Installments are paid strictly in order, so the next one follows the paid count
+        int next = loan.getPaidInstallments() + 1;
+        if (next > loan.getTotalInstallments()) {
+            return Optional.empty();
+        }
+        Optional<LoanRepaymentSchedule> persisted = scheduleRepository.findByLoanAndInstallmentNumber(loan, next);
+        if (persisted.isPresent()) {
+            return persisted;
+        }
+        return Optional.of(buildInstallments(loan).get(next - scheduleStart(loan)));
+    }
+
+    /**
+     * Persists installment state. For a packed schedule the loan's column is patched in place
+     * and the loan saved.
+     */
+    public LoanRepaymentSchedule save(LoanRepaymentSchedule installment) {
+        Loan loan = installment.getLoan();
+        if (isPacked(loan)) {
+            PackedScheduleCodec.update(loan.getPackedSchedule(), installment);
+            loanRepository.save(loan);
+            return installment;
+        }
+        return scheduleRepository.save(installment);
+    }
+
+    /**
+     * Persists the state of several installments of one loan at once: rows in one batch, or a
+     * single save of the loan for a packed schedule.
+     */
+    public void saveAll(Loan loan, List<LoanRepaymentSchedule> installments) {
+        if (installments.isEmpty()) {
+            return;
+        }
+        if (isPacked(loan)) {
+            for (LoanRepaymentSchedule installment : installments) {
+                PackedScheduleCodec.update(loan.getPackedSchedule(), installment);
+            }
+            loanRepository.save(loan);
+            return;
+        }
+        scheduleRepository.saveAll(installments);
+    }
+
+    /**
+     * Installment row a payment against this installment should reference, persisting a derived
+     * installment first if needed. Empty for packed schedules, whose payments carry only the
+     * installment number.
+     */
+    public Optional<LoanRepaymentSchedule> rowForPayment(LoanRepaymentSchedule installment) {
+        if (isPacked(installment.getLoan())) {
+            return Optional.empty();
+        }
+        if (installment.getId() == null) {
+            return Optional.of(scheduleRepository.save(installment));
+        }
+        return Optional.of(installment);
+    }
+
+    /**
+     * Converts one loan's schedule to {@link ScheduleStorage#PACKED}. The packed value is decoded
+     * again and compared installment by installment, and its totals against the source and the
+     * loan principal, before anything is changed. Installment rows that payments still reference
+     * are kept for payment history; the rest are deleted.
+     *
+     * @return false if the loan was already packed
+     * @throws IllegalStateException if the packed schedule does not reproduce the source
+     */
+    @Transactional
+    public boolean migrateToPacked(Long loanId) {
+        Loan loan = loanRepository.findById(loanId).orElseThrow(() -> new NoSuchElementException("Loan not found"));
+        if (isPacked(loan)) {
+            return false;
+        }
+
+        List<LoanRepaymentSchedule> source = getSchedule(loan);
+        if (source.size() != loan.getTotalInstallments()) {
+            throw new IllegalStateException("Schedule has " + source.size() + " installments, loan expects " + loan.getTotalInstallments());
+        }
+        byte[] packed = PackedScheduleCodec.encode(source);
+        verifyPacked(loan, source, PackedScheduleCodec.decode(packed, loan));
+
+        ScheduleStorage previous = loan.getScheduleStorage();
+        loan.setPackedSchedule(packed);
+        loan.setScheduleStorage(ScheduleStorage.PACKED);
+        loanRepository.save(loan);
+
+        int backfilled = paymentRepository.backfillInstallmentNumbers(loan);
+        int deleted = scheduleRepository.deleteUnreferencedByLoan(loan);
+        log.info("Loan ID: {} migrated from {} to PACKED schedule ({} bytes) - {} rows deleted, {} payments backfilled",
+                loanId, previous != null ? previous : ScheduleStorage.ROWS, packed.length, deleted, backfilled);
+        return true;
+    }
+
+    /**
+     * Re-amortizes the unpaid tail of the schedule, from {@code next} onwards, over
+     * {@code installments} installments of {@code emi} starting from {@code principal}. Due dates
+     * of the surviving installments do not move and paid installments are not touched; only the
+     * tail is rewritten, in whichever form the loan stores its schedule. The loan's EMI and
+     * installment count are updated, the caller saves the loan.
+     *
+     * @return the new tail, first installment being {@code next}'s replacement
+     */
+    public List<LoanRepaymentSchedule> reamortize(Loan loan, LoanRepaymentSchedule next, BigDecimal principal,
+                                                  BigDecimal emi, int installments) {
+        int from = next.getInstallmentNumber();
+        List<LoanRepaymentSchedule> tail = buildInstallments(loan, from, principal, emi, installments, next.getDueDate());
+        int lastInstallment = from + installments - 1;
+
+        if (isPacked(loan)) {
+            List<LoanRepaymentSchedule> schedule = new ArrayList<>(PackedScheduleCodec.decode(loan.getPackedSchedule(), loan).subList(0, from - 1));
+            schedule.addAll(tail);
+            loan.setPackedSchedule(PackedScheduleCodec.encode(schedule));
+        } else if (isComputed(loan)) {
+            loan.setRescheduledFromInstallment(from);
+            loan.setRescheduledPrincipal(principal);
+            loan.setRescheduledDueDate(next.getDueDate());
+            if (next.getId() != null) {
+                copyAmounts(tail.get(0), next);
+                scheduleRepository.save(next);
+            }
+        } else {
+            List<LoanRepaymentSchedule> rows = scheduleRepository.findByLoanAndInstallmentNumberGreaterThanEqualOrderByInstallmentNumber(loan, from);
+            for (int i = 0; i < Math.min(rows.size(), installments); i++) {
+                copyAmounts(tail.get(i), rows.get(i));
+            }
+            scheduleRepository.saveAll(rows.subList(0, Math.min(rows.size(), installments)));
+            int deleted = scheduleRepository.deleteByLoanAndInstallmentNumberGreaterThan(loan, lastInstallment);
+            log.debug("Re-amortized {} rows and deleted {} for loan ID: {}", Math.min(rows.size(), installments), deleted, loan.getId());
+        }
+
+        loan.setEmiAmount(emi);
+        loan.setTotalInstallments(lastInstallment);
+        log.info("Loan ID: {} re-amortized from installment {} - principal: {}, EMI: {}, installments: {}",
+                loan.getId(), from, principal, emi, installments);
+        return tail;
+    }
+
+    /**
+     * Visits, in order, the unpaid installments of a computed or packed schedule that fall due
+     * before {@code endEpochDay}, working from projection data alone. Amounts are in paise.
+     */
+    public void forEachUnpaidInstallment(LoanScheduleParams loan, long endEpochDay, PackedScheduleCodec.InstallmentVisitor visitor) {
+        if (loan.scheduleStorage() == ScheduleStorage.PACKED) {
+            PackedScheduleCodec.forEach(loan.packedSchedule(), (number, dueEpochDay, principal, interest, status) -> {
+                if (dueEpochDay < endEpochDay && status != LoanRepaymentStatus.PAID && status != LoanRepaymentStatus.LATE_PAID) {
+                    visitor.visit(number, dueEpochDay, principal, interest, status);
+                }
+            });
+            return;
+        }
+        if (loan.scheduleStorage() != ScheduleStorage.COMPUTED) {
+            throw new IllegalArgumentException("Loan ID " + loan.id() + " stores its schedule as rows");
+        }
+
+        // Same derivation as buildInstallments, without building entities
+        int start = loan.rescheduledFromInstallment() != null ? loan.rescheduledFromInstallment() : 1;
+        BigDecimal principal = loan.rescheduledPrincipal() != null ? loan.rescheduledPrincipal() : loan.principalAmount();
+        LocalDate dueDate = loan.rescheduledDueDate() != null ? loan.rescheduledDueDate() : loan.firstDueDate();
+        int installments = loan.totalInstallments() - start + 1;
+
+        AmortizationSchedule amortization = loanCalculator.amortize(principal, loan.interestRate(), loan.emiAmount(), installments);
+
+        for (int i = 0; i < installments; i++, dueDate = dueDate.plusMonths(1)) {
+            long dueEpochDay = dueDate.toEpochDay();
+            if (dueEpochDay >= endEpochDay) {
+                break;
+            }
+            if (start + i > loan.paidInstallments()) {
+                visitor.visit(start + i, dueEpochDay, amortization.getPrincipalPaise(i), amortization.getInterestPaise(i), LoanRepaymentStatus.PENDING);
+            }
+        }
+    }
+
+    /**
+     * Builds the installments the loan's schedule parameters describe, without persisting: every
+     * installment, or after a re-amortization the ones from the re-amortization point on.
+     */
+    public List<LoanRepaymentSchedule> buildInstallments(Loan loan) {
+        int start = scheduleStart(loan);
+        BigDecimal principal = loan.getRescheduledPrincipal() != null ? loan.getRescheduledPrincipal() : loan.getPrincipalAmount();
+        LocalDate dueDate = loan.getRescheduledDueDate() != null ? loan.getRescheduledDueDate() : loan.getFirstDueDate();
+        return buildInstallments(loan, start, principal, loan.getEmiAmount(), loan.getTotalInstallments() - start + 1, dueDate);
+    }
+
+    private List<LoanRepaymentSchedule> buildInstallments(Loan loan, int start, BigDecimal principal, BigDecimal emi,
+                                                          int tenureMonths, LocalDate firstDueDate) {
+        AmortizationSchedule amortization = loanCalculator.amortize(principal, loan.getInterestRate(), emi, tenureMonths);
+        LocalDate dueDate = firstDueDate;
+
+        List<LoanRepaymentSchedule> schedules = new ArrayList<>(tenureMonths);
+
+        for (int i = 0; i < tenureMonths; i++) {
+            LoanRepaymentSchedule schedule = LoanRepaymentSchedule.builder()
+                    .loan(loan)
+                    .installmentNumber(start + i)
+                    .emiAmount(amortization.getEmi(i))
+                    .principalAmount(amortization.getPrincipal(i))
+                    .interestAmount(amortization.getInterest(i))
+                    .dueDate(dueDate)
+                    .status(LoanRepaymentStatus.PENDING)
+                    .lateFee(BigDecimal.ZERO)
+                    .build();
+
+            schedules.add(schedule);
+            dueDate = dueDate.plusMonths(1);
+        }
+        return schedules;
+    }
+
+    private static void verifyPacked(Loan loan, List<LoanRepaymentSchedule> source, List<LoanRepaymentSchedule> decoded) {
+        BigDecimal sourcePrincipal = BigDecimal.ZERO;
+        BigDecimal sourceInterest = BigDecimal.ZERO;
+        BigDecimal decodedPrincipal = BigDecimal.ZERO;
+        BigDecimal decodedInterest = BigDecimal.ZERO;
+        BigDecimal decodedUnpaidPrincipal = BigDecimal.ZERO;
+
+        for (int i = 0; i < source.size(); i++) {
+            LoanRepaymentSchedule expected = source.get(i);
+            LoanRepaymentSchedule actual = decoded.get(i);
+            if (!sameInstallment(expected, actual)) {
+                throw new IllegalStateException("Packed installment " + expected.getInstallmentNumber() + " differs from source");
+            }
+            sourcePrincipal = sourcePrincipal.add(expected.getPrincipalAmount());
+            sourceInterest = sourceInterest.add(expected.getInterestAmount());
+            decodedPrincipal = decodedPrincipal.add(actual.getPrincipalAmount());
+            decodedInterest = decodedInterest.add(actual.getInterestAmount());
+            if (!actual.isPaid()) {
+                decodedUnpaidPrincipal = decodedUnpaidPrincipal.add(actual.getPrincipalAmount());
+            }
+        }
+
+        if (sourcePrincipal.compareTo(decodedPrincipal) != 0 || sourceInterest.compareTo(decodedInterest) != 0) {
+            throw new IllegalStateException("Packed schedule totals differ from source");
+        }
+        // Prepayments take principal off the schedule; they are reflected in the outstanding principal
+        if (loan.getOutstandingPrincipal() != null) {
+            if (decodedUnpaidPrincipal.compareTo(loan.getOutstandingPrincipal()) != 0) {
+                throw new IllegalStateException("Unpaid schedule principal " + decodedUnpaidPrincipal + " does not match outstanding principal " + loan.getOutstandingPrincipal());
+            }
+        } else if (decodedPrincipal.compareTo(loan.getPrincipalAmount()) != 0) {
+            throw new IllegalStateException("Schedule principal " + decodedPrincipal + " does not match loan principal " + loan.getPrincipalAmount());
+        }
+    }
+
+    private static boolean sameInstallment(LoanRepaymentSchedule expected, LoanRepaymentSchedule actual) {
+        return expected.getInstallmentNumber() == actual.getInstallmentNumber()
+                && expected.getEmiAmount().compareTo(actual.getEmiAmount()) == 0
+                && expected.getPrincipalAmount().compareTo(actual.getPrincipalAmount()) == 0
+                && expected.getInterestAmount().compareTo(actual.getInterestAmount()) == 0
+                && expected.getDueDate().equals(actual.getDueDate())
+                && Objects.equals(expected.getPaidDate(), actual.getPaidDate())
+                && (expected.getStatus() != null ? expected.getStatus() : LoanRepaymentStatus.PENDING) == actual.getStatus()
+                && sameAmount(expected.getLateFee(), actual.getLateFee())
+                && (!actual.isPaid() || sameAmount(expected.getTotalAmountPaid(), actual.getTotalAmountPaid()));
+    }
+
+    private static boolean sameAmount(BigDecimal expected, BigDecimal actual) {
+        return (expected != null ? expected : BigDecimal.ZERO).compareTo(actual != null ? actual : BigDecimal.ZERO) == 0;
+    }
+
+    private static void copyAmounts(LoanRepaymentSchedule from, LoanRepaymentSchedule to) {
+        to.setEmiAmount(from.getEmiAmount());
+        to.setPrincipalAmount(from.getPrincipalAmount());
+        to.setInterestAmount(from.getInterestAmount());
+    }
+
+    private static int scheduleStart(Loan loan) {
+        return loan.getRescheduledFromInstallment() != null ? loan.getRescheduledFromInstallment() : 1;
+    }
+
+    private static boolean isComputed(Loan loan) {
+        return loan.getScheduleStorage() == ScheduleStorage.COMPUTED;
+    }
+
+    private static boolean isPacked(Loan loan) {
+        return loan.getScheduleStorage() == ScheduleStorage.PACKED;
+    }
+}
@@ -0,0 +1,71 @@
+package com.loantrackr.service;
+
+import com.loantrackr.dto.response.ScheduleMigrationResult;
+import com.loantrackr.enums.ScheduleStorage;
+import com.loantrackr.repository.LoanRepository;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts existing loans to {@link ScheduleStorage#PACKED} schedules. Each loan is converted
+ * and verified in its own transaction, so a loan that fails verification keeps its rows and
+ * does not hold back the rest of the run. Only disbursed loans are converted, read in keyset
+ * chunks of their ids rather than all at once.
+ */
+@Slf4j
+@Service
+@AllArgsConstructor
+public class ScheduleMigrationService {
+
+    private static final int CHUNK_SIZE = 500;
+
+    private final LoanRepository loanRepository;
+    private final RepaymentScheduleService scheduleService;
+
+    public ScheduleMigrationResult migrateToPacked(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+
+        long candidates = loanRepository.countDisbursedWithScheduleStorageOtherThan(ScheduleStorage.PACKED);
+        log.info("Packing repayment schedules - {} candidate loans, limit {}", candidates, limit);
+
+        int migrated = 0;
+        int processed = 0;
+        List<Long> failed = new ArrayList<>();
+        long afterId = 0;
+
+        while (processed < limit) {
+            List<Long> loanIds = loanRepository.findDisbursedIdsWithScheduleStorageOtherThan(
+                    ScheduleStorage.PACKED, afterId, PageRequest.of(0, Math.min(CHUNK_SIZE, limit - processed)));
+            if (loanIds.isEmpty()) {
+                break;
+            }
+            for (Long loanId : loanIds) {
+                try {
+                    if (scheduleService.migrateToPacked(loanId)) {
+                        migrated++;
+                    }
+                } catch (Exception e) {
+                    log.error("Failed to pack repayment schedule for loan ID: {}", loanId, e);
+                    failed.add(loanId);
+                }
+            }
+            processed += loanIds.size();
+            afterId = loanIds.get(loanIds.size() - 1);
+        }
+
+        log.info("Packing repayment schedules finished - migrated: {}, failed: {}", migrated, failed.size());
+        return ScheduleMigrationResult.builder()
+                .candidates((int) candidates)
+                .migrated(migrated)
+                .failedLoanIds(failed)
+                .remaining((int) Math.max(0, candidates - migrated))
+                .build();
+    }
+}
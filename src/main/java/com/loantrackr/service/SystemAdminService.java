@@ -42,9 +42,11 @@ public class SystemAdminService {
     private final ModelMapper modelMapper;
     private final LoanApplicationRepository loanApplicationRepository;
     private final FileStorageService fileStorageService;
+    private final LoanCalculatorService loanCalculator;
+    private final LenderCatalog lenderCatalog;
     public String systemEmail;
 
-    public SystemAdminService(UserService userService, UserRepository userRepository, LenderProfileRepository lenderProfileRepository, LenderOnboardingRepository onboardingRepository, EmailService emailService, LenderProfileService lenderProfileService, OtpService otpService, @Value("${bootstrap.email}") String firstEmail, ModelMapper modelMapper, LoanApplicationRepository loanApplicationRepository, FileStorageService fileStorageService) {
+    public SystemAdminService(UserService userService, UserRepository userRepository, LenderProfileRepository lenderProfileRepository, LenderOnboardingRepository onboardingRepository, EmailService emailService, LenderProfileService lenderProfileService, OtpService otpService, @Value("${bootstrap.email}") String firstEmail, ModelMapper modelMapper, LoanApplicationRepository loanApplicationRepository, FileStorageService fileStorageService, LoanCalculatorService loanCalculator, LenderCatalog lenderCatalog) {
         this.userService = userService;
         this.userRepository = userRepository;
         this.lenderProfileRepository = lenderProfileRepository;
@@ -56,6 +58,8 @@ public class SystemAdminService {
         this.modelMapper = modelMapper;
         this.loanApplicationRepository = loanApplicationRepository;
         this.fileStorageService = fileStorageService;
+        this.loanCalculator = loanCalculator;
+        this.lenderCatalog = lenderCatalog;
     }
 
     public static UserResponse toUserResponse(User user) {
@@ -194,6 +198,8 @@ public class SystemAdminService {
         }
         lenderProfile.setVerified(true);
         lenderProfileRepository.save(lenderProfile);
+        loanCalculator.registerLender(lenderProfile);
+        lenderCatalog.invalidate();
         return true;
     }
 
@@ -273,6 +279,8 @@ public class SystemAdminService {
         }
         lenderProfile.setVerified(false);
         lenderProfileRepository.save(lenderProfile);
+        loanCalculator.evictLender(lenderUserId);
+        lenderCatalog.invalidate();
         return userService.deactivateUser(lenderUserId);
     }
 
@@ -288,6 +296,8 @@ public class SystemAdminService {
             throw new OperationNotAllowedException("Cannot deactivate lender as it has active loans");
         }
         userService.deleteUser(userId);
+        loanCalculator.evictLender(userId);
+        lenderCatalog.invalidate();
         log.warn("Lender permanently deleted. ID: {}", userId);
         return true;
     }
@@ -0,0 +1,35 @@
+package com.loantrackr.util;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Day-by-day accrual of an installment's interest component, in paise.
+ * <p>
+ * The interest of an installment accrues evenly over the days of its period, which runs from one
+ * month before its due date up to the due date. Cumulative accrual is rounded HALF_UP and the daily
+ * figure is the difference of two cumulative values, so the daily amounts of a period always add up
+ * to exactly the installment's interest.
+ */
+public class AccrualCalculator {
+
+    /**
+     * Interest accrued on the installment by the end of {@code asOf}; capped at the full interest
+     * once the due date is reached, zero before the period starts.
+     */
+    public static long accruedPaise(long interestPaise, LocalDate dueDate, LocalDate asOf) {
+        LocalDate periodStart = dueDate.minusMonths(1);
+        long periodDays = ChronoUnit.DAYS.between(periodStart, dueDate);
+        long elapsedDays = Math.min(Math.max(ChronoUnit.DAYS.between(periodStart, asOf), 0), periodDays);
+
+        long scaled = interestPaise * elapsedDays;
+        return (scaled + periodDays / 2) / periodDays;
+    }
+
+    /**
+     * Interest accrued on the installment during the single day {@code asOf}.
+     */
+    public static long dailyPaise(long interestPaise, LocalDate dueDate, LocalDate asOf) {
+        return accruedPaise(interestPaise, dueDate, asOf) - accruedPaise(interestPaise, dueDate, asOf.minusDays(1));
+    }
+}
@@ -0,0 +1,56 @@
+package com.loantrackr.util;
+
+import java.math.BigDecimal;
+
+/**
+ * Installment-wise split of a loan into EMI, principal and interest, held in paise.
+ * <p>
+ * Values are kept in primitive arrays so that building a schedule does not allocate
+ * per installment; {@link BigDecimal} views are only created when a caller asks for them.
+ */
+public class AmortizationSchedule {
+
+    private final long[] emiPaise;
+    private final long[] principalPaise;
+    private final long[] interestPaise;
+
+    public AmortizationSchedule(int tenureInMonths) {
+        this.emiPaise = new long[tenureInMonths];
+        this.principalPaise = new long[tenureInMonths];
+        this.interestPaise = new long[tenureInMonths];
+    }
+
+    void set(int index, long emi, long principal, long interest) {
+        emiPaise[index] = emi;
+        principalPaise[index] = principal;
+        interestPaise[index] = interest;
+    }
+
+    public int size() {
+        return emiPaise.length;
+    }
+
+    public long getEmiPaise(int index) {
+        return emiPaise[index];
+    }
+
+    public long getPrincipalPaise(int index) {
+        return principalPaise[index];
+    }
+
+    public long getInterestPaise(int index) {
+        return interestPaise[index];
+    }
+
+    public BigDecimal getEmi(int index) {
+        return FixedPointLoanCalculator.fromPaise(emiPaise[index]);
+    }
+
+    public BigDecimal getPrincipal(int index) {
+        return FixedPointLoanCalculator.fromPaise(principalPaise[index]);
+    }
+
+    public BigDecimal getInterest(int index) {
+        return FixedPointLoanCalculator.fromPaise(interestPaise[index]);
+    }
+}
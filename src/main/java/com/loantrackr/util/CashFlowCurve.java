@@ -0,0 +1,94 @@
+package com.loantrackr.util;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Arrays;
+
+/**
+ * Expected inflows bucketed by calendar month, accumulated in paise into primitive arrays.
+ * <p>
+ * Installments due before the first month are arrears and land in the first bucket; those due
+ * after the last month are ignored. Not thread-safe: give each worker its own curve and
+ * {@link #merge} them.
+ */
+public class CashFlowCurve {
+
+    private final YearMonth firstMonth;
+    private final long[] monthStarts; // epoch day of each month's first day, plus the end of the horizon
+    private final long[] principalPaise;
+    private final long[] interestPaise;
+    private final int[] installments;
+
+    public CashFlowCurve(YearMonth firstMonth, int months) {
+        if (months <= 0) {
+            throw new IllegalArgumentException("Months must be positive");
+        }
+        this.firstMonth = firstMonth;
+        this.monthStarts = new long[months + 1];
+        for (int i = 0; i <= months; i++) {
+            monthStarts[i] = firstMonth.plusMonths(i).atDay(1).toEpochDay();
+        }
+        this.principalPaise = new long[months];
+        this.interestPaise = new long[months];
+        this.installments = new int[months];
+    }
+
+    /**
+     * Epoch day just past the horizon; installments due on or after it are not counted.
+     */
+    public long getEndEpochDay() {
+        return monthStarts[monthStarts.length - 1];
+    }
+
+    public LocalDate getEndDate() {
+        return LocalDate.ofEpochDay(getEndEpochDay());
+    }
+
+    public void add(long dueEpochDay, long principal, long interest) {
+        if (dueEpochDay >= getEndEpochDay()) {
+            return;
+        }
+        int month;
+        if (dueEpochDay < monthStarts[0]) {
+            month = 0;
+        } else {
+            int index = Arrays.binarySearch(monthStarts, dueEpochDay);
+            month = index >= 0 ? index : -index - 2;
+        }
+        principalPaise[month] += principal;
+        interestPaise[month] += interest;
+        installments[month]++;
+    }
+
+    public CashFlowCurve merge(CashFlowCurve other) {
+        if (!firstMonth.equals(other.firstMonth) || size() != other.size()) {
+            throw new IllegalArgumentException("Cannot merge curves over different horizons");
+        }
+        for (int i = 0; i < size(); i++) {
+            principalPaise[i] += other.principalPaise[i];
+            interestPaise[i] += other.interestPaise[i];
+            installments[i] += other.installments[i];
+        }
+        return this;
+    }
+
+    public int size() {
+        return principalPaise.length;
+    }
+
+    public YearMonth getMonth(int index) {
+        return firstMonth.plusMonths(index);
+    }
+
+    public long getPrincipalPaise(int index) {
+        return principalPaise[index];
+    }
+
+    public long getInterestPaise(int index) {
+        return interestPaise[index];
+    }
+
+    public int getInstallments(int index) {
+        return installments[index];
+    }
+}
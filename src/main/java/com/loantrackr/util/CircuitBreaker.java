@@ -0,0 +1,179 @@
+package com.loantrackr.util;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Count-based circuit breaker over the last {@code windowSize} calls.
+ * <p>
+ * CLOSED lets every call through and trips to OPEN once at least {@code minimumCalls} outcomes are
+ * recorded and either the failure rate or the slow-call rate reaches its threshold. OPEN rejects
+ * calls for {@code openNanos}, then HALF_OPEN lets {@code halfOpenCalls} trial calls through: any
+ * failed or slow trial reopens the circuit, all of them succeeding closes it with a fresh window.
+ * <p>
+ * Every permission granted must be followed by {@link #record} or {@link #releasePermission}.
+ * State is guarded by a {@link ReentrantLock} rather than {@code synchronized} so virtual threads
+ * never pin their carrier here.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private static final byte FAILED = 1;
+    private static final byte SLOW = 2;
+
+    private final int minimumCalls;
+    private final int failureRateThreshold;   // percent
+    private final int slowCallRateThreshold;  // percent
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final int halfOpenCalls;
+    private final LongSupplier clock;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final byte[] window;
+    private int next;
+    private int recorded;
+    private int failures;
+    private int slowCalls;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int halfOpenPermits;
+    private int halfOpenSucceeded;
+
+    public CircuitBreaker(int windowSize, int minimumCalls, int failureRateThreshold, int slowCallRateThreshold,
+                          long slowCallNanos, long openNanos, int halfOpenCalls, LongSupplier clock) {
+        if (windowSize <= 0 || minimumCalls <= 0 || minimumCalls > windowSize || halfOpenCalls <= 0) {
+            throw new IllegalArgumentException("Invalid circuit breaker window");
+        }
+        this.window = new byte[windowSize];
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallNanos = slowCallNanos;
+        this.openNanos = openNanos;
+        this.halfOpenCalls = halfOpenCalls;
+        this.clock = clock;
+    }
+
+    /**
+     * @return whether a call may go ahead now
+     */
+    public boolean tryAcquirePermission() {
+        lock.lock();
+        try {
+            if (state == State.OPEN) {
+                if (clock.getAsLong() - openedAt < openNanos) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                halfOpenPermits = 0;
+                halfOpenSucceeded = 0;
+            }
+            if (state == State.HALF_OPEN) {
+                if (halfOpenPermits >= halfOpenCalls) {
+                    return false;
+                }
+                halfOpenPermits++;
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gives back a permission whose call never started.
+     */
+    public void releasePermission() {
+        lock.lock();
+        try {
+            if (state == State.HALF_OPEN && halfOpenPermits > 0) {
+                halfOpenPermits--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void record(long durationNanos, boolean failed) {
+        byte outcome = (byte) ((failed ? FAILED : 0) | (durationNanos >= slowCallNanos ? SLOW : 0));
+        lock.lock();
+        try {
+            switch (state) {
+                case OPEN -> {
+                    // Result of a call that started before the circuit opened
+                }
+                case HALF_OPEN -> {
+                    if (outcome != 0) {
+                        open();
+                    } else if (++halfOpenSucceeded >= halfOpenCalls) {
+                        close();
+                    }
+                }
+                case CLOSED -> {
+                    add(outcome);
+                    if (recorded >= minimumCalls
+                            && (failures * 100 >= failureRateThreshold * recorded || slowCalls * 100 >= slowCallRateThreshold * recorded)) {
+                        open();
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public State getState() {
+        lock.lock();
+        try {
+            return state;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Time left before an open circuit lets trial calls through; zero unless OPEN.
+     */
+    public long getRemainingOpenNanos() {
+        lock.lock();
+        try {
+            return state == State.OPEN ? Math.max(0, openNanos - (clock.getAsLong() - openedAt)) : 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void add(byte outcome) {
+        if (recorded == window.length) {
+            byte evicted = window[next];
+            failures -= evicted & FAILED;
+            slowCalls -= (evicted & SLOW) >> 1;
+        } else {
+            recorded++;
+        }
+        window[next] = outcome;
+        failures += outcome & FAILED;
+        slowCalls += (outcome & SLOW) >> 1;
+        next = (next + 1) % window.length;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = clock.getAsLong();
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        next = 0;
+        recorded = 0;
+        failures = 0;
+        slowCalls = 0;
+    }
+}
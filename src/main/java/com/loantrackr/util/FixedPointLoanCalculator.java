@@ -0,0 +1,135 @@
+package com.loantrackr.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Allocation-light counterpart of {@link LoanCalculatorUtil}.
+ * <p>
+ * Money is carried as {@code long} paise and the monthly rate as a fixed-point {@code long}
+ * with 10 decimal places, which is exactly the precision {@link LoanCalculatorUtil} rounds
+ * the monthly rate to. The annuity factor is evaluated in double precision; whenever the
+ * resulting EMI lands too close to a half-paise boundary for the rounding direction to be
+ * certain, the exact {@link BigDecimal} path is used instead, so both engines always agree.
+ */
+public class FixedPointLoanCalculator {
+
+    public static final long RATE_SCALE = 10_000_000_000L; // 10 decimal places
+    private static final long HALF_RATE_SCALE = RATE_SCALE / 2;
+
+    // Worst-case relative error of the double evaluation is ~1e-14; keep a wide margin.
+    private static final double RELATIVE_TOLERANCE = 1e-12;
+    private static final double MAX_EXACT_PAISE = 1e15;
+
+    /**
+     * Converts an annual percentage rate to the fixed-point monthly rate, rounded HALF_UP
+     * to 10 decimal places exactly like {@link LoanCalculatorUtil#calculateEMI}.
+     */
+    public static long toMonthlyRate(BigDecimal annualRate) {
+        return LoanCalculatorUtil.toMonthlyRate(annualRate).unscaledValue().longValueExact();
+    }
+
+    /**
+     * @throws ArithmeticException if the amount has fractional paise
+     */
+    public static long toPaise(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal fromPaise(long paise) {
+        return BigDecimal.valueOf(paise, 2);
+    }
+
+    /**
+     * Annuity factor {@code r(1+r)^n / ((1+r)^n - 1)} for a fixed-point monthly rate,
+     * i.e. the EMI payable per unit of principal.
+     */
+    public static double annuityFactor(long monthlyRate, int tenureInMonths) {
+        if (tenureInMonths <= 0) {
+            throw new IllegalArgumentException("Invalid input for EMI calculation");
+        }
+        double r = (double) monthlyRate / RATE_SCALE;
+        double growthMinusOne = StrictMath.expm1(tenureInMonths * StrictMath.log1p(r)); // (1 + r)^n - 1
+        return r + r / growthMinusOne;
+    }
+
+    /**
+     * Calculates EMI in paise, rounded HALF_UP like {@link LoanCalculatorUtil#calculateEMI}.
+     *
+     * @param principalPaise Loan amount in paise
+     * @param monthlyRate    Monthly rate from {@link #toMonthlyRate(BigDecimal)}
+     * @param tenureInMonths Loan tenure in months
+     * @return EMI in paise
+     */
+    public static long calculateEmiPaise(long principalPaise, long monthlyRate, int tenureInMonths) {
+        return calculateEmiPaise(principalPaise, monthlyRate, tenureInMonths, annuityFactor(monthlyRate, tenureInMonths));
+    }
+
+    /**
+     * Same as {@link #calculateEmiPaise(long, long, int)} for a factor that was already computed
+     * with {@link #annuityFactor(long, int)} for the same rate and tenure.
+     */
+    public static long calculateEmiPaise(long principalPaise, long monthlyRate, int tenureInMonths, double annuityFactor) {
+        double emi = principalPaise * annuityFactor;
+        if (principalPaise > 0 && emi < MAX_EXACT_PAISE && Double.isFinite(emi)) {
+            double floor = Math.floor(emi);
+            double fraction = emi - floor;
+            if (Math.abs(fraction - 0.5) > emi * RELATIVE_TOLERANCE + 1e-9) {
+                return (long) floor + (fraction > 0.5 ? 1 : 0);
+            }
+        }
+        // Too close to a rounding boundary (or out of the safe range): settle it exactly.
+        BigDecimal exact = LoanCalculatorUtil.calculateEMI(
+                fromPaise(principalPaise), BigDecimal.valueOf(monthlyRate * 1200, 10), tenureInMonths);
+        return exact.unscaledValue().longValueExact();
+    }
+
+    /**
+     * Splits every installment into principal and interest the same way
+     * {@link LoanCalculatorUtil#amortize} does, including the last-installment adjustment.
+     *
+     * @param principalPaise Loan amount in paise
+     * @param monthlyRate    Monthly rate from {@link #toMonthlyRate(BigDecimal)}
+     * @param emiPaise       Monthly EMI in paise
+     * @param tenureInMonths Loan tenure in months
+     * @return schedule with one entry per installment
+     */
+    public static AmortizationSchedule amortize(long principalPaise, long monthlyRate, long emiPaise, int tenureInMonths) {
+        if (!fitsAmortization(principalPaise, monthlyRate)) {
+            throw new ArithmeticException("Principal too large for fixed-point amortization");
+        }
+
+        AmortizationSchedule schedule = new AmortizationSchedule(tenureInMonths);
+        long remainingBalance = principalPaise;
+
+        for (int i = 0; i < tenureInMonths; i++) {
+            long interest = descaleHalfUp(remainingBalance * monthlyRate);
+            long principal = emiPaise - interest;
+            long emi = emiPaise;
+
+            if (i == tenureInMonths - 1) {
+                principal = remainingBalance;
+                emi = principal + interest;
+            }
+
+            schedule.set(i, emi, principal, interest);
+            remainingBalance -= principal;
+        }
+        return schedule;
+    }
+
+    /**
+     * Whether {@link #amortize} can handle the principal without overflowing.
+     */
+    public static boolean fitsAmortization(long principalPaise, long monthlyRate) {
+        return monthlyRate == 0 || Math.abs(principalPaise) <= (Long.MAX_VALUE - HALF_RATE_SCALE) / Math.abs(monthlyRate);
+    }
+
+    private static long descaleHalfUp(long value) {
+        // Same as BigDecimal HALF_UP: ties round away from zero.
+        if (value >= 0) {
+            return (value + HALF_RATE_SCALE) / RATE_SCALE;
+        }
+        return -((-value + HALF_RATE_SCALE) / RATE_SCALE);
+    }
+}
@@ -2,6 +2,8 @@ package com.loantrackr.util;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
 
 public class LoanCalculatorUtil {
 
@@ -19,14 +21,61 @@ public class LoanCalculatorUtil {
         }
 
         //[P*R*(1+R)^N]/[(1+R)^N-1]
-        BigDecimal monthlyRate = annualRate.divide(BigDecimal.valueOf(12 * 100), 10, RoundingMode.HALF_UP); // r
-        BigDecimal onePlusRPowerN = monthlyRate.add(BigDecimal.ONE).pow(tenureInMonths); // (1 + r)^n
+        BigDecimal monthlyRate = toMonthlyRate(annualRate); // r
+        BigDecimal onePlusRPowerN = growthFactor(monthlyRate, tenureInMonths); // (1 + r)^n
+        return calculateEMI(principal, monthlyRate, onePlusRPowerN);
+    }
+
+    /**
+     * Calculates EMI from a precomputed {@code (1+r)^n}, e.g. one held in a cache.
+     *
+     * @param principal      Loan amount
+     * @param monthlyRate    Monthly rate from {@link #toMonthlyRate(BigDecimal)}
+     * @param onePlusRPowerN Growth factor from {@link #growthFactor(BigDecimal, int)}
+     * @return EMI rounded to 2 decimal places
+     */
+    public static BigDecimal calculateEMI(BigDecimal principal, BigDecimal monthlyRate, BigDecimal onePlusRPowerN) {
         BigDecimal numerator = principal.multiply(monthlyRate).multiply(onePlusRPowerN);
         BigDecimal denominator = onePlusRPowerN.subtract(BigDecimal.ONE);
 
         return numerator.divide(denominator, 2, RoundingMode.HALF_UP); // EMI
     }
 
+    /**
+     * Converts an annual percentage rate to the monthly rate, rounded to 10 decimal places.
+     */
+    public static BigDecimal toMonthlyRate(BigDecimal annualRate) {
+        return annualRate.divide(BigDecimal.valueOf(12 * 100), 10, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Exact {@code (1+r)^n} for a monthly rate.
+     */
+    public static BigDecimal growthFactor(BigDecimal monthlyRate, int tenureInMonths) {
+        return monthlyRate.add(BigDecimal.ONE).pow(tenureInMonths);
+    }
+
+    /**
+     * Interest accrued on {@code principal} since the previous due date: the share of the period's
+     * interest for the days elapsed by {@code asOf}, so a whole period never costs more than the
+     * scheduled interest.
+     *
+     * @param principal   Principal the interest accrues on
+     * @param annualRate  Annual interest rate in percentage (e.g., 14.5)
+     * @param nextDueDate Due date ending the current period, which began a month earlier
+     * @param asOf        Day the interest is accrued to, clamped to the period
+     * @return Accrued interest rounded to 2 decimal places
+     */
+    public static BigDecimal calculateAccruedInterest(BigDecimal principal, BigDecimal annualRate, LocalDate nextDueDate, LocalDate asOf) {
+        LocalDate periodStart = nextDueDate.minusMonths(1);
+        long periodDays = ChronoUnit.DAYS.between(periodStart, nextDueDate);
+        long elapsedDays = Math.min(Math.max(0, ChronoUnit.DAYS.between(periodStart, asOf)), periodDays);
+
+        return principal.multiply(toMonthlyRate(annualRate))
+                .multiply(BigDecimal.valueOf(elapsedDays))
+                .divide(BigDecimal.valueOf(periodDays), 2, RoundingMode.HALF_UP);
+    }
+
     /**
      * Calculates total interest payable over the tenure.
      *
@@ -50,5 +99,41 @@ public class LoanCalculatorUtil {
     public static BigDecimal calculateTotalPayable(BigDecimal emi, int tenureInMonths) {
         return emi.multiply(BigDecimal.valueOf(tenureInMonths)).setScale(2, RoundingMode.HALF_UP);
     }
-}
 
+    /**
+     * Splits every installment into principal and interest. Interest is charged on the
+     * remaining balance; the last installment absorbs whatever balance is left.
+     *
+     * @param principal      Loan amount
+     * @param annualRate     Annual interest rate in percentage (e.g., 14.5)
+     * @param emi            Monthly EMI
+     * @param tenureInMonths Loan tenure in months
+     * @return schedule with one entry per installment
+     */
+    public static AmortizationSchedule amortize(BigDecimal principal, BigDecimal annualRate, BigDecimal emi, int tenureInMonths) {
+        BigDecimal monthlyRate = toMonthlyRate(annualRate);
+        BigDecimal remainingBalance = principal;
+        BigDecimal emiAmount = emi;
+
+        AmortizationSchedule schedule = new AmortizationSchedule(tenureInMonths);
+
+        for (int i = 1; i <= tenureInMonths; i++) {
+            BigDecimal interestAmount = remainingBalance.multiply(monthlyRate).setScale(2, RoundingMode.HALF_UP);
+
+            BigDecimal principalAmount = emiAmount.subtract(interestAmount);
+
+            if (i == tenureInMonths) {
+                principalAmount = remainingBalance;
+                emiAmount = principalAmount.add(interestAmount);
+            }
+
+            schedule.set(i - 1, toPaise(emiAmount), toPaise(principalAmount), toPaise(interestAmount));
+            remainingBalance = remainingBalance.subtract(principalAmount);
+        }
+        return schedule;
+    }
+
+    private static long toPaise(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+}
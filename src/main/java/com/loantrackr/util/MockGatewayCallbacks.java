@@ -0,0 +1,111 @@
+package com.loantrackr.util;
+
+import com.loantrackr.dto.request.GatewayCallbackRequest;
+import com.loantrackr.enums.PaymentStatus;
+import com.loantrackr.service.GatewayCallbackService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivers the status notifications {@link MockPaymentGateway} owes for transactions it answered
+ * as pending, the way a real gateway does under load: late, more than once and out of order.
+ * <p>
+ * Each transaction gets a pending notice and its final status, each sent
+ * {@code payment.gateway.simulator.callbacks.copies} times at independent random delays up to
+ * {@code max-delay}, so a pending notice regularly lands after the final one. Notifications go
+ * straight to {@link GatewayCallbackService}, skipping HTTP; one refused because the payment is
+ * not recorded yet is sent again after {@code max-delay}, up to {@code attempts} times.
+ */
+@Slf4j
+@Component
+public class MockGatewayCallbacks {
+
+    private final GatewayCallbackService callbackService;
+    private final int copies;
+    private final Duration maxDelay;
+    private final int attempts;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "mock-gateway-callbacks");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Delivery blocks on the database, so each one gets its own virtual thread rather than the timer thread
+    private final ExecutorService deliveries = Executors.newVirtualThreadPerTaskExecutor();
+
+    public MockGatewayCallbacks(@Lazy GatewayCallbackService callbackService,
+                                @Value("${payment.gateway.simulator.callbacks.copies:2}") int copies,
+                                @Value("${payment.gateway.simulator.callbacks.max-delay:PT2S}") Duration maxDelay,
+                                @Value("${payment.gateway.simulator.callbacks.attempts:5}") int attempts) {
+        if (copies < 1 || attempts < 1) {
+            throw new IllegalArgumentException("Callback copies and attempts must be at least 1");
+        }
+        this.callbackService = callbackService;
+        this.copies = copies;
+        this.maxDelay = maxDelay;
+        this.attempts = attempts;
+    }
+
+    /**
+     * Schedules the notifications for a transaction answered as pending.
+     */
+    public void schedule(String gatewayTransactionId, BigDecimal amount, PaymentStatus finalStatus, String failureReason) {
+        GatewayCallbackRequest pending = GatewayCallbackRequest.builder()
+                .gatewayTransactionId(gatewayTransactionId)
+                .status(PaymentStatus.PENDING)
+                .amount(amount)
+                .build();
+        GatewayCallbackRequest outcome = GatewayCallbackRequest.builder()
+                .gatewayTransactionId(gatewayTransactionId)
+                .status(finalStatus)
+                .amount(amount)
+                .failureReason(failureReason)
+                .build();
+
+        for (int i = 0; i < copies; i++) {
+            send(pending, randomDelay(), 1);
+            send(outcome, randomDelay(), 1);
+        }
+    }
+
+    private long randomDelay() {
+        return ThreadLocalRandom.current().nextLong(maxDelay.toMillis() + 1);
+    }
+
+    private void send(GatewayCallbackRequest callback, long delayMillis, int attempt) {
+        scheduler.schedule(() -> deliveries.execute(() -> deliver(callback, attempt)), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void deliver(GatewayCallbackRequest callback, int attempt) {
+        try {
+            if (callbackService.handle(callback) != GatewayCallbackService.Outcome.UNKNOWN_PAYMENT) {
+                return;
+            }
+        } catch (Exception e) {
+            log.warn("Simulated callback {} {} failed (attempt {} of {})",
+                    callback.getGatewayTransactionId(), callback.getStatus(), attempt, attempts, e);
+        }
+        if (attempt < attempts) {
+            send(callback, maxDelay.toMillis(), attempt + 1);
+        } else {
+            log.warn("Simulated callback {} {} dropped after {} attempts", callback.getGatewayTransactionId(), callback.getStatus(), attempts);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        deliveries.shutdownNow();
+    }
+}
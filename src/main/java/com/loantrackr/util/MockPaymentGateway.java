@@ -5,69 +5,125 @@ import com.loantrackr.dto.request.PaymentGatewayRequest;
 import com.loantrackr.dto.response.DisbursementResponse;
 import com.loantrackr.dto.response.PaymentGatewayResponse;
 import com.loantrackr.enums.PaymentStatus;
-import lombok.RequiredArgsConstructor;
+import com.loantrackr.exception.GatewayUnavailableException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.Random;
-
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.random.RandomGenerator;
+
+/**
+ * Local stand-in for the payment gateway, also used for capacity tests.
+ * <p>
+ * Each operation has its own profile under {@code payment.gateway.simulator.payment} and
+ * {@code payment.gateway.simulator.disbursement}: a {@link SimulatedLatency} distribution, the
+ * share of calls declined ({@code failure-rate}) and the share that end in a gateway error
+ * ({@code error-rate}), which callers see as a call with an unknown outcome. The defaults are the
+ * gateway's historical behaviour. Payments also have a {@code pending-rate}: the share of them
+ * answered as pending, their real outcome then arriving through {@link MockGatewayCallbacks}. A
+ * payment carrying a merchant reference is reported under that reference, and if its caller gave
+ * up on it (timed out) or it ended in a gateway error, the outcome is also sent as a callback, as
+ * a real gateway settles a payment whether or not the caller heard the answer.
+ * {@code zero-latency} skips every sleep, to load the rest of the system without waiting on the
+ * simulator.
+ * <p>
+ * Random draws come from {@link ThreadLocalRandom}, so concurrent calls never share generator
+ * state. When {@code payment.gateway.simulator.seed} is set, each call instead gets its own
+ * generator derived from the seed and the call's sequence number per operation: the n-th call
+ * makes the same draws on every run.
+ */
 @Component
-@RequiredArgsConstructor
 @Slf4j
 public class MockPaymentGateway {
 
-
-    private final Random random = new Random();
+    private static final String[] FAILURE_REASONS = {
+            "Insufficient funds",
+            "Card declined",
+            "Network timeout",
+            "Account blocked",
+            "Invalid credentials",
+            "Transaction limit exceeded"
+    };
+
+    private final Profile payments;
+    private final Profile disbursements;
+    private final TransactionIdGenerator transactionIds;
+    private final MockGatewayCallbacks callbacks;
+    private final Long seed;
+    private final boolean zeroLatency;
+
+    public MockPaymentGateway(Environment environment,
+                              TransactionIdGenerator transactionIds,
+                              MockGatewayCallbacks callbacks,
+                              @Value("${payment.gateway.simulator.seed:#{null}}") Long seed,
+                              @Value("${payment.gateway.simulator.zero-latency:false}") boolean zeroLatency) {
+        this.payments = Profile.from(environment, "payment", Duration.ofSeconds(1), Duration.ofSeconds(3), 0.10);
+        this.disbursements = Profile.from(environment, "disbursement", Duration.ofSeconds(2), Duration.ofSeconds(5), 0.05);
+        this.transactionIds = transactionIds;
+        this.callbacks = callbacks;
+        this.seed = seed;
+        this.zeroLatency = zeroLatency;
+        log.info("Payment gateway simulator - payments: {}; disbursements: {}; seed: {}{}",
+                payments, disbursements, seed != null ? seed : "none", zeroLatency ? "; zero latency" : "");
+    }
 
     public PaymentGatewayResponse processPayment(PaymentGatewayRequest request) {
-        log.info("Processing payment: Amount={}, Method={}, LoanId={}",
+        log.debug("Processing payment: Amount={}, Method={}, LoanId={}",
                 request.getAmount(), request.getPaymentMethod(), request.getLoanId());
 
-        // Simulate processing delay
+        String transactionId = request.getReference() != null ? request.getReference() : "GW" + transactionIds.next();
+        RandomGenerator random = random(payments);
+        boolean isSuccess;
         try {
-            Thread.sleep(1000 + random.nextInt(2000)); // 1-3 seconds
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
+            isSuccess = simulate(payments, random);
+        } catch (GatewayUnavailableException e) {
+            if (request.getReference() != null) {
+                callbacks.schedule(transactionId, request.getAmount(), PaymentStatus.FAILED, "Payment gateway error");
+            }
+            throw e;
         }
-
-        // Simulate success/failure (90% success rate)
-        boolean isSuccess = random.nextDouble() < 0.9;
+        String failureReason = isSuccess ? null : FAILURE_REASONS[random.nextInt(FAILURE_REASONS.length)];
+        boolean pending = payments.pendingRate > 0 && random.nextDouble() < payments.pendingRate;
+        // Interrupted while the caller's timeout cancelled the call: it never sees this response
+        boolean abandoned = Thread.currentThread().isInterrupted() && request.getReference() != null;
 
         PaymentGatewayResponse response = PaymentGatewayResponse.builder()
-                .transactionId(generateGatewayTransactionId())
-                .status(isSuccess ? PaymentStatus.SUCCESS : PaymentStatus.FAILED)
+                .transactionId(transactionId)
+                .status(pending ? PaymentStatus.PENDING : isSuccess ? PaymentStatus.SUCCESS : PaymentStatus.FAILED)
                 .amount(request.getAmount())
                 .paymentMethod(request.getPaymentMethod())
                 .processedAt(LocalDateTime.now())
                 .build();
 
-        if (!isSuccess) {
-            response.setFailureReason(getRandomFailureReason());
+        if (pending || abandoned) {
+            callbacks.schedule(response.getTransactionId(), request.getAmount(),
+                    isSuccess ? PaymentStatus.SUCCESS : PaymentStatus.FAILED, failureReason);
+        } else {
+            response.setFailureReason(failureReason);
         }
 
-        log.info("Payment processed: TransactionId={}, Status={}",
+        log.debug("Payment processed: TransactionId={}, Status={}",
                 response.getTransactionId(), response.getStatus());
 
         return response;
     }
 
     public DisbursementResponse processDisbursement(DisbursementRequest request) {
-        log.info("Processing disbursement: Amount={}, LoanId={}",
+        log.debug("Processing disbursement: Amount={}, LoanId={}",
                 request.getAmount(), request.getLoanId());
 
-
-        try {
-            Thread.sleep(2000 + random.nextInt(3000));
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
-
-        // Simulate success (95% success rate for disbursement)
-        boolean isSuccess = random.nextDouble() < 0.95;
+        RandomGenerator random = random(disbursements);
+        boolean isSuccess = simulate(disbursements, random);
 
         DisbursementResponse response = DisbursementResponse.builder()
-                .transactionId(generateGatewayTransactionId())
+                .transactionId("GW" + transactionIds.next())
                 .status(isSuccess ? "SUCCESS" : "FAILED")
                 .amount(request.getAmount())
                 .disbursedAt(LocalDateTime.now())
@@ -77,26 +133,92 @@ public class MockPaymentGateway {
             response.setFailureReason("Insufficient funds in lender account");
         }
 
-        log.info("Disbursement processed: TransactionId={}, Status={}",
+        log.debug("Disbursement processed: TransactionId={}, Status={}",
                 response.getTransactionId(), response.getStatus());
 
         return response;
     }
 
-    private String generateGatewayTransactionId() {
-        return "GW" + System.currentTimeMillis() + "_" +
-                random.nextInt(100000, 999999);
+    private RandomGenerator random(Profile profile) {
+        if (seed == null) {
+            return ThreadLocalRandom.current();
+        }
+        // SplittableRandom mixes its seed, so consecutive sequence numbers give unrelated streams
+        return new SplittableRandom(seed + profile.offset + profile.calls.getAndIncrement());
+    }
+
+    /**
+     * Waits out the simulated latency and draws the outcome.
+     *
+     * @return whether the call succeeds
+     * @throws GatewayUnavailableException for a simulated gateway error
+     */
+    private boolean simulate(Profile profile, RandomGenerator random) {
+        long latencyNanos = profile.latency.sampleNanos(random);
+        double outcome = random.nextDouble();
+
+        if (!zeroLatency && latencyNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(latencyNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (outcome < profile.errorRate) {
+            throw new GatewayUnavailableException("Payment gateway returned an error", true, Duration.ofSeconds(1));
+        }
+        return outcome >= profile.errorRate + profile.failureRate;
     }
 
-    private String getRandomFailureReason() {
-        String[] reasons = {
-                "Insufficient funds",
-                "Card declined",
-                "Network timeout",
-                "Account blocked",
-                "Invalid credentials",
-                "Transaction limit exceeded"
-        };
-        return reasons[random.nextInt(reasons.length)];
+    private static final class Profile {
+
+        private final SimulatedLatency latency;
+        private final double failureRate;
+        private final double errorRate;
+        private final double pendingRate;
+        // Keeps payment and disbursement draws apart under the same seed
+        private final long offset;
+        private final AtomicLong calls = new AtomicLong();
+
+        private Profile(SimulatedLatency latency, double failureRate, double errorRate, double pendingRate, long offset) {
+            if (failureRate < 0 || errorRate < 0 || failureRate + errorRate > 1) {
+                throw new IllegalArgumentException("Failure and error rates must be between 0 and 1 and add up to at most 1");
+            }
+            if (pendingRate < 0 || pendingRate > 1) {
+                throw new IllegalArgumentException("Pending rate must be between 0 and 1");
+            }
+            this.latency = latency;
+            this.failureRate = failureRate;
+            this.errorRate = errorRate;
+            this.pendingRate = pendingRate;
+            this.offset = offset;
+        }
+
+        static Profile from(Environment environment, String operation, Duration defaultMin, Duration defaultMax,
+                            double defaultFailureRate) {
+            String prefix = "payment.gateway.simulator." + operation + ".";
+            Duration min = environment.getProperty(prefix + "latency-min", Duration.class, defaultMin);
+            Duration max = environment.getProperty(prefix + "latency-max", Duration.class, defaultMax);
+            SimulatedLatency latency = new SimulatedLatency(
+                    environment.getProperty(prefix + "latency", SimulatedLatency.Distribution.class, SimulatedLatency.Distribution.UNIFORM),
+                    min,
+                    max,
+                    environment.getProperty(prefix + "latency-median", Duration.class, min.plus(max).dividedBy(2)),
+                    environment.getProperty(prefix + "latency-sigma", Double.class, 0.5),
+                    environment.getProperty(prefix + "spike-rate", Double.class, 0.0),
+                    environment.getProperty(prefix + "spike-latency", Duration.class, Duration.ZERO));
+            return new Profile(latency,
+                    environment.getProperty(prefix + "failure-rate", Double.class, defaultFailureRate),
+                    environment.getProperty(prefix + "error-rate", Double.class, 0.0),
+                    environment.getProperty(prefix + "pending-rate", Double.class, 0.0),
+                    (long) operation.hashCode() << 32);
+        }
+
+        @Override
+        public String toString() {
+            return latency + ", " + failureRate + " declined, " + errorRate + " errors"
+                    + (pendingRate > 0 ? ", " + pendingRate + " pending" : "");
+        }
     }
 }
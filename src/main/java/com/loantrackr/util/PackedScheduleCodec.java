@@ -0,0 +1,260 @@
+package com.loantrackr.util;
+
+import com.loantrackr.enums.LoanRepaymentStatus;
+import com.loantrackr.model.Loan;
+import com.loantrackr.model.LoanRepaymentSchedule;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary encoding of a whole repayment schedule into a single column value.
+ * <p>
+ * Layout (version 1):
+ * <pre>
+ * header     version byte, installment count (varint), first due date as epoch day (zigzag varint)
+ * fixed part per installment: days since previous due date (varint),
+ *            principal and interest paise as deltas from the previous installment (zigzag varint)
+ * state part per installment, {@value #STATE_BYTES} bytes at the end of the array:
+ *            status code (1), paid date as days from the due date (2, {@link Short#MIN_VALUE} if unpaid),
+ *            late fee paise (4)
+ * </pre>
+ * The state part has a fixed width so a payment can be posted by patching a few bytes in place.
+ * EMI is not stored: it is always principal plus interest, the last installment included.
+ */
+public class PackedScheduleCodec {
+
+    public static final byte VERSION = 1;
+    private static final int STATE_BYTES = 7;
+    private static final short NOT_PAID = Short.MIN_VALUE;
+
+    // Code = index; append only, the order is part of the stored format
+    private static final LoanRepaymentStatus[] STATUS_CODES = {
+            LoanRepaymentStatus.PENDING,
+            LoanRepaymentStatus.PAID,
+            LoanRepaymentStatus.OVERDUE,
+            LoanRepaymentStatus.LATE_PAID
+    };
+
+    /**
+     * @param installments installments numbered 1..n, in order
+     * @throws ArithmeticException if an amount has fractional paise or a value does not fit the format
+     */
+    public static byte[] encode(List<LoanRepaymentSchedule> installments) {
+        int count = installments.size();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 + count * (4 + STATE_BYTES));
+        out.write(VERSION);
+        writeVarint(out, count);
+
+        LocalDate previousDueDate = count > 0 ? installments.get(0).getDueDate() : LocalDate.EPOCH;
+        writeVarint(out, zigzag(previousDueDate.toEpochDay()));
+
+        long previousPrincipal = 0;
+        long previousInterest = 0;
+        for (int i = 0; i < count; i++) {
+            LoanRepaymentSchedule installment = installments.get(i);
+            if (installment.getInstallmentNumber() != i + 1) {
+                throw new IllegalArgumentException("Installments must be numbered 1.." + count + " in order");
+            }
+            long principal = FixedPointLoanCalculator.toPaise(installment.getPrincipalAmount());
+            long interest = FixedPointLoanCalculator.toPaise(installment.getInterestAmount());
+            if (principal + interest != FixedPointLoanCalculator.toPaise(installment.getEmiAmount())) {
+                throw new IllegalArgumentException("EMI of installment " + (i + 1) + " is not principal plus interest");
+            }
+
+            writeVarint(out, installment.getDueDate().toEpochDay() - previousDueDate.toEpochDay());
+            writeVarint(out, zigzag(principal - previousPrincipal));
+            writeVarint(out, zigzag(interest - previousInterest));
+
+            previousDueDate = installment.getDueDate();
+            previousPrincipal = principal;
+            previousInterest = interest;
+        }
+
+        byte[] packed = new byte[out.size() + count * STATE_BYTES];
+        System.arraycopy(out.toByteArray(), 0, packed, 0, out.size());
+        for (LoanRepaymentSchedule installment : installments) {
+            update(packed, installment);
+        }
+        return packed;
+    }
+
+    public static int size(byte[] packed) {
+        checkVersion(packed);
+        return (int) readVarint(packed, new int[]{1});
+    }
+
+    public static List<LoanRepaymentSchedule> decode(byte[] packed, Loan loan) {
+        return decode(packed, loan, size(packed));
+    }
+
+    /**
+     * Decodes a single installment; only the fixed part before it is scanned.
+     */
+    public static LoanRepaymentSchedule decodeInstallment(byte[] packed, Loan loan, int installmentNumber) {
+        if (installmentNumber < 1 || installmentNumber > size(packed)) {
+            throw new IllegalArgumentException("No installment " + installmentNumber + " in schedule");
+        }
+        return decode(packed, loan, installmentNumber).get(installmentNumber - 1);
+    }
+
+    /**
+     * Receives installments straight from the packed bytes, without building entities.
+     */
+    @FunctionalInterface
+    public interface InstallmentVisitor {
+        void visit(int installmentNumber, long dueEpochDay, long principalPaise, long interestPaise, LoanRepaymentStatus status);
+    }
+
+    public static void forEach(byte[] packed, InstallmentVisitor visitor) {
+        checkVersion(packed);
+        int[] position = {1};
+        int count = (int) readVarint(packed, position);
+        int stateOffset = packed.length - count * STATE_BYTES;
+        long dueEpochDay = unzigzag(readVarint(packed, position));
+
+        long principal = 0;
+        long interest = 0;
+        for (int i = 0; i < count; i++) {
+            dueEpochDay += readVarint(packed, position);
+            principal += unzigzag(readVarint(packed, position));
+            interest += unzigzag(readVarint(packed, position));
+            visitor.visit(i + 1, dueEpochDay, principal, interest, STATUS_CODES[packed[stateOffset + i * STATE_BYTES]]);
+        }
+    }
+
+    /**
+     * Lowest installment that is neither paid nor late-paid, or -1 if the schedule is settled.
+     */
+    public static int firstUnpaid(byte[] packed) {
+        int count = size(packed);
+        int stateOffset = packed.length - count * STATE_BYTES;
+        for (int i = 0; i < count; i++) {
+            LoanRepaymentStatus status = STATUS_CODES[packed[stateOffset + i * STATE_BYTES]];
+            if (status != LoanRepaymentStatus.PAID && status != LoanRepaymentStatus.LATE_PAID) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Writes the status, paid date and late fee of one installment into the packed schedule in place.
+     */
+    public static void update(byte[] packed, LoanRepaymentSchedule installment) {
+        int count = size(packed);
+        int number = installment.getInstallmentNumber();
+        if (number < 1 || number > count) {
+            throw new IllegalArgumentException("No installment " + number + " in schedule");
+        }
+        int offset = packed.length - (count - number + 1) * STATE_BYTES;
+
+        LoanRepaymentStatus status = installment.getStatus() != null ? installment.getStatus() : LoanRepaymentStatus.PENDING;
+        short paidOffset = NOT_PAID;
+        if (installment.getPaidDate() != null) {
+            long days = installment.getPaidDate().toEpochDay() - installment.getDueDate().toEpochDay();
+            if (days <= NOT_PAID || days > Short.MAX_VALUE) {
+                throw new ArithmeticException("Paid date too far from due date for installment " + number);
+            }
+            paidOffset = (short) days;
+        }
+        int lateFee = installment.getLateFee() != null
+                ? Math.toIntExact(FixedPointLoanCalculator.toPaise(installment.getLateFee()))
+                : 0;
+
+        packed[offset] = (byte) statusCode(status);
+        packed[offset + 1] = (byte) (paidOffset >> 8);
+        packed[offset + 2] = (byte) paidOffset;
+        packed[offset + 3] = (byte) (lateFee >> 24);
+        packed[offset + 4] = (byte) (lateFee >> 16);
+        packed[offset + 5] = (byte) (lateFee >> 8);
+        packed[offset + 6] = (byte) lateFee;
+    }
+
+    private static List<LoanRepaymentSchedule> decode(byte[] packed, Loan loan, int upTo) {
+        checkVersion(packed);
+        int[] position = {1};
+        int count = (int) readVarint(packed, position);
+        int stateOffset = packed.length - count * STATE_BYTES;
+        LocalDate dueDate = LocalDate.ofEpochDay(unzigzag(readVarint(packed, position)));
+
+        List<LoanRepaymentSchedule> installments = new ArrayList<>(upTo);
+        long principal = 0;
+        long interest = 0;
+        for (int i = 0; i < upTo; i++) {
+            dueDate = dueDate.plusDays(readVarint(packed, position));
+            principal += unzigzag(readVarint(packed, position));
+            interest += unzigzag(readVarint(packed, position));
+
+            int offset = stateOffset + i * STATE_BYTES;
+            LoanRepaymentStatus status = STATUS_CODES[packed[offset]];
+            short paidOffset = (short) (((packed[offset + 1] & 0xFF) << 8) | (packed[offset + 2] & 0xFF));
+            int lateFee = ((packed[offset + 3] & 0xFF) << 24) | ((packed[offset + 4] & 0xFF) << 16)
+                    | ((packed[offset + 5] & 0xFF) << 8) | (packed[offset + 6] & 0xFF);
+
+            BigDecimal emi = FixedPointLoanCalculator.fromPaise(principal + interest);
+            BigDecimal fee = FixedPointLoanCalculator.fromPaise(lateFee);
+            boolean paid = status == LoanRepaymentStatus.PAID || status == LoanRepaymentStatus.LATE_PAID;
+
+            installments.add(LoanRepaymentSchedule.builder()
+                    .loan(loan)
+                    .installmentNumber(i + 1)
+                    .emiAmount(emi)
+                    .principalAmount(FixedPointLoanCalculator.fromPaise(principal))
+                    .interestAmount(FixedPointLoanCalculator.fromPaise(interest))
+                    .dueDate(dueDate)
+                    .paidDate(paidOffset != NOT_PAID ? dueDate.plusDays(paidOffset) : null)
+                    .status(status)
+                    .lateFee(fee)
+                    .totalAmountPaid(paid ? emi.add(fee) : null)
+                    .build());
+        }
+        return installments;
+    }
+
+    private static int statusCode(LoanRepaymentStatus status) {
+        for (int i = 0; i < STATUS_CODES.length; i++) {
+            if (STATUS_CODES[i] == status) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported repayment status: " + status);
+    }
+
+    private static void checkVersion(byte[] packed) {
+        if (packed == null || packed.length == 0 || packed[0] != VERSION) {
+            throw new IllegalArgumentException("Unsupported packed schedule format");
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarint(byte[] packed, int[] position) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = packed[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+}
@@ -0,0 +1,93 @@
+package com.loantrackr.util;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits one payment across a loan's unpaid installments.
+ * <p>
+ * Installments are settled strictly in order, and within each one the money goes to the late fee
+ * first, then interest, then principal. A payment that runs out part way leaves the installment
+ * it stopped at part-paid; since every earlier installment is then settled, only the first unpaid
+ * installment of a loan can ever be part-paid, and the amount paid toward it is all the state a
+ * caller has to keep between payments.
+ */
+public class PaymentAllocator {
+
+    /**
+     * Full amounts of an unpaid installment.
+     */
+    public record Installment(int number, BigDecimal lateFee, BigDecimal interest, BigDecimal principal) {
+
+        public BigDecimal total() {
+            return lateFee.add(interest).add(principal);
+        }
+    }
+
+    /**
+     * Share of the payment that went to one installment.
+     *
+     * @param settled whether the installment is now paid in full
+     */
+    public record Allocation(int installmentNumber, BigDecimal lateFee, BigDecimal interest, BigDecimal principal,
+                             boolean settled) {
+
+        public BigDecimal total() {
+            return lateFee.add(interest).add(principal);
+        }
+    }
+
+    /**
+     * @param allocations   installments the payment reached, in order; all but the last are settled
+     * @param partiallyPaid amount paid so far toward the first installment left unpaid, zero if none is part-paid
+     * @param unallocated   part of the payment left once every installment was settled
+     */
+    public record Result(List<Allocation> allocations, BigDecimal partiallyPaid, BigDecimal unallocated) {
+
+        public int settledInstallments() {
+            return (int) allocations.stream().filter(Allocation::settled).count();
+        }
+    }
+
+    /**
+     * @param unpaid        unpaid installments, in order
+     * @param partiallyPaid amount already paid toward the first of them by earlier payments
+     * @param amount        payment to allocate
+     */
+    public static Result allocate(List<Installment> unpaid, BigDecimal partiallyPaid, BigDecimal amount) {
+        if (amount.signum() < 0 || partiallyPaid.signum() < 0) {
+            throw new IllegalArgumentException("Amounts must not be negative");
+        }
+        if (partiallyPaid.signum() > 0 && (unpaid.isEmpty() || partiallyPaid.compareTo(unpaid.get(0).total()) >= 0)) {
+            throw new IllegalArgumentException("Amount already paid must be less than the first unpaid installment");
+        }
+
+        List<Allocation> allocations = new ArrayList<>();
+        BigDecimal remaining = amount;
+        BigDecimal credit = partiallyPaid; // Consumed by the first installment's buckets, in the same order
+        BigDecimal stillPartiallyPaid = partiallyPaid;
+
+        for (Installment installment : unpaid) {
+            if (remaining.signum() == 0) {
+                break;
+            }
+            BigDecimal[] owed = {installment.lateFee(), installment.interest(), installment.principal()};
+            BigDecimal[] paid = new BigDecimal[owed.length];
+            BigDecimal paidBefore = credit;
+            for (int i = 0; i < owed.length; i++) {
+                BigDecimal credited = credit.min(owed[i]);
+                credit = credit.subtract(credited);
+                paid[i] = remaining.min(owed[i].subtract(credited));
+                remaining = remaining.subtract(paid[i]);
+            }
+
+            BigDecimal paidSoFar = paidBefore.add(paid[0]).add(paid[1]).add(paid[2]);
+            boolean settled = paidSoFar.compareTo(installment.total()) == 0;
+            allocations.add(new Allocation(installment.number(), paid[0], paid[1], paid[2], settled));
+            stillPartiallyPaid = settled ? BigDecimal.ZERO : paidSoFar;
+        }
+
+        return new Result(allocations, stillPartiallyPaid, remaining);
+    }
+}
@@ -0,0 +1,153 @@
+package com.loantrackr.util;
+
+import com.loantrackr.enums.PaymentStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Line-level parsing of collections partner debit result files.
+ * <p>
+ * Format: a header line, then one debit result per line:
+ * <pre>
+ * loan_id,installment_number,amount,status,reference,debit_date,failure_reason
+ * 1042,7,8560.75,SUCCESS,NACH2507140001,2025-07-14,
+ * 1043,3,4410.00,FAILED,NACH2507140002,2025-07-14,"Insufficient funds, retry allowed"
+ * </pre>
+ * {@code installment_number} may be left empty, {@code status} is {@code SUCCESS} or {@code FAILED}
+ * and {@code failure_reason} is only read for failed debits. Fields may be double-quoted, with
+ * {@code ""} for a quote inside a quoted field; a record never spans lines.
+ */
+public class RepaymentFileParser {
+
+    public static final List<String> COLUMNS = List.of(
+            "loan_id", "installment_number", "amount", "status", "reference", "debit_date", "failure_reason");
+
+    public record Row(long lineNumber, long loanId, Integer installmentNumber, BigDecimal amount,
+                      PaymentStatus status, String reference, LocalDate debitDate, String failureReason) {
+    }
+
+    /**
+     * @throws IllegalArgumentException if the header does not list the expected columns in order
+     */
+    public static void checkHeader(String line) {
+        if (line == null) {
+            throw new IllegalArgumentException("File is empty");
+        }
+        List<String> columns = split(line.startsWith("\uFEFF") ? line.substring(1) : line).stream()
+                .map(column -> column.trim().toLowerCase())
+                .toList();
+        if (!columns.equals(COLUMNS)) {
+            throw new IllegalArgumentException("Unexpected header, expected: " + String.join(",", COLUMNS));
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException with a message fit for the result file if the line is invalid
+     */
+    public static Row parse(long lineNumber, String line) {
+        List<String> fields = split(line);
+        if (fields.size() != COLUMNS.size()) {
+            throw new IllegalArgumentException("Expected " + COLUMNS.size() + " fields, found " + fields.size());
+        }
+
+        long loanId = parseLong(fields.get(0), "loan_id");
+        String installment = fields.get(1).trim();
+        Integer installmentNumber = null;
+        if (!installment.isEmpty()) {
+            long number = parseLong(installment, "installment_number");
+            if (number < 1 || number > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Invalid installment_number: " + installment);
+            }
+            installmentNumber = (int) number;
+        }
+
+        BigDecimal amount;
+        try {
+            amount = new BigDecimal(fields.get(2).trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid amount: " + fields.get(2));
+        }
+        if (amount.signum() <= 0 || amount.scale() > 2) {
+            throw new IllegalArgumentException("Amount must be positive with at most 2 decimals: " + fields.get(2));
+        }
+
+        PaymentStatus status = switch (fields.get(3).trim().toUpperCase()) {
+            case "SUCCESS" -> PaymentStatus.SUCCESS;
+            case "FAILED" -> PaymentStatus.FAILED;
+            default -> throw new IllegalArgumentException("Status must be SUCCESS or FAILED: " + fields.get(3));
+        };
+
+        String reference = fields.get(4).trim();
+        if (reference.isEmpty()) {
+            throw new IllegalArgumentException("Reference is required");
+        }
+
+        LocalDate debitDate;
+        try {
+            debitDate = LocalDate.parse(fields.get(5).trim());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid debit_date, expected yyyy-MM-dd: " + fields.get(5));
+        }
+
+        String failureReason = fields.get(6).trim();
+        return new Row(lineNumber, loanId, installmentNumber, amount, status, reference, debitDate,
+                status == PaymentStatus.FAILED && !failureReason.isEmpty() ? failureReason : null);
+    }
+
+    public static List<String> split(String line) {
+        List<String> fields = new ArrayList<>(COLUMNS.size());
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * Quotes a value for a CSV field if it needs it.
+     */
+    public static String quote(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\r", " ").replace("\n", " ").replace("\"", "\"\"") + '"';
+    }
+
+    private static long parseLong(String value, String column) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + column + ": " + value);
+        }
+    }
+}
@@ -5,6 +5,13 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 
+/**
+ * Reads the authenticated user from the security context of the current request thread, which is a
+ * virtual thread when {@code spring.threads.virtual.enabled} is set. The context is a plain
+ * (non-inheritable) thread local owned by that thread alone, so nothing is shared between virtual
+ * threads or pinned to a carrier. Background workers such as disbursement and accrual jobs have no
+ * context and must not call this.
+ */
 public class SecurityUtils {
     public static String getCurrentUserName() {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
@@ -0,0 +1,74 @@
+package com.loantrackr.util;
+
+import com.loantrackr.enums.PaymentStatus;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Line-level parsing of payment gateway settlement files.
+ * <p>
+ * Format: a header line, then one gateway transaction per line:
+ * <pre>
+ * gateway_transaction_id,amount,status
+ * GW00DDQ6K9R8C01,8560.75,SUCCESS
+ * GW00DDQ6KB4AC02,4410.00,FAILED
+ * </pre>
+ * {@code status} is a {@link PaymentStatus} name. Quoting follows {@link RepaymentFileParser}.
+ */
+public class SettlementFileParser {
+
+    public static final List<String> COLUMNS = List.of("gateway_transaction_id", "amount", "status");
+
+    public record Row(long lineNumber, String gatewayTransactionId, BigDecimal amount, PaymentStatus status) {
+    }
+
+    /**
+     * @throws IllegalArgumentException if the header does not list the expected columns in order
+     */
+    public static void checkHeader(String line) {
+        if (line == null) {
+            throw new IllegalArgumentException("File is empty");
+        }
+        List<String> columns = RepaymentFileParser.split(line.startsWith("\uFEFF") ? line.substring(1) : line).stream()
+                .map(column -> column.trim().toLowerCase())
+                .toList();
+        if (!columns.equals(COLUMNS)) {
+            throw new IllegalArgumentException("Unexpected header, expected: " + String.join(",", COLUMNS));
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException with a message fit for the result file if the line is invalid
+     */
+    public static Row parse(long lineNumber, String line) {
+        List<String> fields = RepaymentFileParser.split(line);
+        if (fields.size() != COLUMNS.size()) {
+            throw new IllegalArgumentException("Expected " + COLUMNS.size() + " fields, found " + fields.size());
+        }
+
+        String gatewayTransactionId = fields.get(0).trim();
+        if (gatewayTransactionId.isEmpty()) {
+            throw new IllegalArgumentException("Gateway transaction ID is required");
+        }
+
+        BigDecimal amount;
+        try {
+            amount = new BigDecimal(fields.get(1).trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid amount: " + fields.get(1));
+        }
+        if (amount.signum() < 0 || amount.scale() > 2) {
+            throw new IllegalArgumentException("Amount must not be negative and have at most 2 decimals: " + fields.get(1));
+        }
+
+        PaymentStatus status;
+        try {
+            status = PaymentStatus.valueOf(fields.get(2).trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid status: " + fields.get(2));
+        }
+
+        return new Row(lineNumber, gatewayTransactionId, amount, status);
+    }
+}
@@ -0,0 +1,86 @@
+package com.loantrackr.util;
+
+import java.time.Duration;
+import java.util.random.RandomGenerator;
+
+/**
+ * Latency distribution of a simulated remote call.
+ * <ul>
+ *   <li>{@link Distribution#FIXED}: always {@code median}</li>
+ *   <li>{@link Distribution#UNIFORM}: uniform between {@code min} and {@code max}</li>
+ *   <li>{@link Distribution#LOG_NORMAL}: {@code median * e^(sigma * Z)}, kept between {@code min} and {@code max}</li>
+ * </ul>
+ * On top of any of them, a fraction {@code spikeRate} of calls takes {@code spike} longer, the tail
+ * a real gateway shows during a GC pause or a failover.
+ * <p>
+ * Holds no random state: the caller passes the generator, so one instance can be sampled from any
+ * number of threads.
+ */
+public final class SimulatedLatency {
+
+    public enum Distribution {
+        FIXED,
+        UNIFORM,
+        LOG_NORMAL
+    }
+
+    private final Distribution distribution;
+    private final long minNanos;
+    private final long maxNanos;
+    private final long medianNanos;
+    private final double sigma;
+    private final double spikeRate;
+    private final long spikeNanos;
+
+    /**
+     * @throws IllegalArgumentException if a duration is negative, {@code min} is above
+     *                                  {@code max}, or a rate is outside 0..1
+     */
+    public SimulatedLatency(Distribution distribution, Duration min, Duration max, Duration median, double sigma,
+                            double spikeRate, Duration spike) {
+        if (distribution == null) {
+            throw new IllegalArgumentException("Latency distribution is required");
+        }
+        if (min.isNegative() || max.isNegative() || median.isNegative() || spike.isNegative()) {
+            throw new IllegalArgumentException("Latencies must not be negative");
+        }
+        if (min.compareTo(max) > 0) {
+            throw new IllegalArgumentException("Minimum latency " + min + " is above maximum " + max);
+        }
+        if (sigma < 0) {
+            throw new IllegalArgumentException("Latency sigma must not be negative");
+        }
+        if (spikeRate < 0 || spikeRate > 1) {
+            throw new IllegalArgumentException("Spike rate must be between 0 and 1");
+        }
+        this.distribution = distribution;
+        this.minNanos = min.toNanos();
+        this.maxNanos = max.toNanos();
+        this.medianNanos = median.toNanos();
+        this.sigma = sigma;
+        this.spikeRate = spikeRate;
+        this.spikeNanos = spike.toNanos();
+    }
+
+    public long sampleNanos(RandomGenerator random) {
+        long nanos = switch (distribution) {
+            case FIXED -> medianNanos;
+            case UNIFORM -> minNanos == maxNanos ? minNanos : random.nextLong(minNanos, maxNanos);
+            case LOG_NORMAL -> Math.max(minNanos, Math.min(maxNanos, (long) (medianNanos * Math.exp(sigma * random.nextGaussian()))));
+        };
+        if (spikeRate > 0 && random.nextDouble() < spikeRate) {
+            nanos += spikeNanos;
+        }
+        return nanos;
+    }
+
+    @Override
+    public String toString() {
+        return switch (distribution) {
+            case FIXED -> "FIXED " + Duration.ofNanos(medianNanos);
+            case UNIFORM -> "UNIFORM " + Duration.ofNanos(minNanos) + ".." + Duration.ofNanos(maxNanos);
+            case LOG_NORMAL -> "LOG_NORMAL median " + Duration.ofNanos(medianNanos) + ", sigma " + sigma
+                    + ", " + Duration.ofNanos(minNanos) + ".." + Duration.ofNanos(maxNanos);
+        } + (spikeRate > 0 ? ", " + spikeRate + " spikes of " + Duration.ofNanos(spikeNanos) : "");
+    }
+}
@@ -0,0 +1,8 @@
+-- Runs before Hibernate starts (spring.sql.init), which rejects a sequence whose increment differs
+-- from its mapping's allocationSize. Sequences created by earlier versions step by 1; new
+-- databases have none yet and Hibernate creates them with the right increment.
+ALTER SEQUENCE IF EXISTS loan_seq INCREMENT BY 50;
+ALTER SEQUENCE IF EXISTS loan_repayment_seq INCREMENT BY 50;
+ALTER SEQUENCE IF EXISTS loan_payment_seq INCREMENT BY 50;
+ALTER SEQUENCE IF EXISTS loan_disbursement_seq INCREMENT BY 50;
+ALTER SEQUENCE IF EXISTS user_seq INCREMENT BY 50;
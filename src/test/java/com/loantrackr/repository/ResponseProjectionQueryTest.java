@@ -0,0 +1,169 @@
+package com.loantrackr.repository;
+
+import com.loantrackr.dto.response.LoanApplicationResponseForLender;
+import com.loantrackr.dto.response.LoanDetailsResponse;
+import com.loantrackr.enums.LoanStatus;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.jpa.repository.Query;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The listing queries build their responses with JPQL constructor expressions, which bind by
+ * position: reordering the response's fields, or two columns of one type, would still run and
+ * fill the wrong fields. Each query's arguments are checked here against the response's fields,
+ * name by name and type by type, without a database.
+ */
+class ResponseProjectionQueryTest {
+
+    private static final Pattern CONSTRUCTOR = Pattern.compile("SELECT new ([\\w.]+)\\((.*)\\) FROM", Pattern.DOTALL);
+    private static final Pattern ROOT = Pattern.compile("FROM (\\w+) (\\w+)");
+    private static final Pattern JOIN = Pattern.compile("JOIN (\\w+)\\.(\\w+) (\\w+)");
+
+    @Test
+    void testFindResponsesByLenderId_ArgumentsMatchResponseFields() throws ReflectiveOperationException {
+        assertMapping(query(LoanApplicationRepository.class, "findResponsesByLenderId", Long.class),
+                LoanApplicationResponseForLender.class, applicationResponseMapping());
+    }
+
+    @Test
+    void testFindResponsesByLenderIdAndStatus_ArgumentsMatchResponseFields() throws ReflectiveOperationException {
+        assertMapping(query(LoanApplicationRepository.class, "findResponsesByLenderIdAndStatus", Long.class, LoanStatus.class),
+                LoanApplicationResponseForLender.class, applicationResponseMapping());
+    }
+
+    @Test
+    void testFindDetailsByLenderIdAndStatus_ArgumentsMatchResponseFields() throws ReflectiveOperationException {
+        Map<String, String> mapping = new LinkedHashMap<>();
+        mapping.put("loanId", "l.id");
+        mapping.put("borrowerName", "b.username");
+        mapping.put("principalAmount", "l.principalAmount");
+        mapping.put("totalAmountToRepay", "l.totalAmountToRepay");
+        mapping.put("remainingAmount", "l.remainingAmount");
+        mapping.put("totalInterestAmount", "l.totalInterestAmount");
+        mapping.put("totalInstallments", "l.totalInstallments");
+        mapping.put("paidInstallments", "l.paidInstallments");
+        mapping.put("nextDueDate", "l.nextDueDate");
+        mapping.put("status", "l.status");
+        mapping.put("disbursedAt", "l.disbursedAt");
+        mapping.put("isFullyRepaid", "CASE WHEN l.paidInstallments = l.totalInstallments THEN true ELSE false END");
+
+        assertMapping(query(LoanRepository.class, "findDetailsByLenderIdAndStatus", Long.class, LoanStatus.class),
+                LoanDetailsResponse.class, mapping);
+    }
+
+    private static Map<String, String> applicationResponseMapping() {
+        Map<String, String> mapping = new LinkedHashMap<>();
+        mapping.put("applicationId", "a.id");
+        mapping.put("loanAmount", "a.loanRequested");
+        mapping.put("tenure", "a.tenure");
+        mapping.put("emi", "a.emiAmount");
+        mapping.put("interestRate", "a.interestRate");
+        mapping.put("processingFee", "a.processingFee");
+        mapping.put("status", "a.status");
+        mapping.put("lenderName", "l.organizationName");
+        mapping.put("appliedAt", "a.appliedAt");
+        mapping.put("purpose", "a.purpose");
+        mapping.put("borrowerName", "u.username");
+        mapping.put("borrowerEmail", "u.email");
+        mapping.put("monthlyIncome", "a.monthlyIncome");
+        mapping.put("incomeSource", "a.incomeSource");
+        return mapping;
+    }
+
+    private static void assertMapping(String jpql, Class<?> response, Map<String, String> expected) throws ReflectiveOperationException {
+        Matcher constructor = CONSTRUCTOR.matcher(jpql);
+        assertTrue(constructor.find(), "No constructor expression in: " + jpql);
+        assertEquals(response.getName(), constructor.group(1));
+
+        List<Field> fields = Arrays.stream(response.getDeclaredFields())
+                .filter(field -> !Modifier.isStatic(field.getModifiers()))
+                .toList();
+        assertEquals(List.copyOf(expected.keySet()), fields.stream().map(Field::getName).toList(),
+                "Mapping out of step with the fields of " + response.getSimpleName());
+        List<String> arguments = splitArguments(constructor.group(2));
+        assertEquals(List.copyOf(expected.values()), arguments);
+
+        Map<String, Class<?>> aliases = aliases(jpql);
+        for (int i = 0; i < fields.size(); i++) {
+            Class<?> selected = arguments.get(i).startsWith("CASE") ? Boolean.class : resolve(aliases, arguments.get(i));
+            assertEquals(wrap(fields.get(i).getType()), wrap(selected),
+                    "Type of " + arguments.get(i) + " for " + response.getSimpleName() + "." + fields.get(i).getName());
+        }
+        // The constructor the expression resolves to
+        response.getConstructor(fields.stream().map(Field::getType).toArray(Class<?>[]::new));
+    }
+
+    private static String query(Class<?> repository, String method, Class<?>... parameterTypes) throws NoSuchMethodException {
+        return repository.getMethod(method, parameterTypes).getAnnotation(Query.class).value();
+    }
+
+    private static List<String> splitArguments(String arguments) {
+        List<String> split = new ArrayList<>();
+        int depth = 0;
+        int start = 0;
+        for (int i = 0; i < arguments.length(); i++) {
+            char c = arguments.charAt(i);
+            if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == ',' && depth == 0) {
+                split.add(arguments.substring(start, i).trim());
+                start = i + 1;
+            }
+        }
+        split.add(arguments.substring(start).trim());
+        return split;
+    }
+
+    private static Map<String, Class<?>> aliases(String jpql) throws NoSuchFieldException {
+        Map<String, Class<?>> aliases = new HashMap<>();
+        Matcher root = ROOT.matcher(jpql);
+        assertTrue(root.find());
+        try {
+            aliases.put(root.group(2), Class.forName("com.loantrackr.model." + root.group(1)));
+        } catch (ClassNotFoundException e) {
+            fail("Unknown entity " + root.group(1));
+        }
+        Matcher join = JOIN.matcher(jpql);
+        while (join.find()) {
+            aliases.put(join.group(3), aliases.get(join.group(1)).getDeclaredField(join.group(2)).getType());
+        }
+        return aliases;
+    }
+
+    private static Class<?> resolve(Map<String, Class<?>> aliases, String path) throws NoSuchFieldException {
+        String[] parts = path.split("\\.");
+        Class<?> type = aliases.get(parts[0]);
+        assertNotNull(type, "Unknown alias in " + path);
+        for (int i = 1; i < parts.length; i++) {
+            type = type.getDeclaredField(parts[i]).getType();
+        }
+        return type;
+    }
+
+    private static Class<?> wrap(Class<?> type) {
+        if (type == int.class) {
+            return Integer.class;
+        }
+        if (type == long.class) {
+            return Long.class;
+        }
+        if (type == boolean.class) {
+            return Boolean.class;
+        }
+        return type;
+    }
+}
@@ -0,0 +1,109 @@
+package com.loantrackr.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnnuityFactorCacheTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+    private final AnnuityFactorCache cache = new AnnuityFactorCache(key -> {
+        loads.incrementAndGet();
+        return new AnnuityFactorCache.AnnuityFactor(key.tenure(), BigDecimal.ONE);
+    });
+
+    @Test
+    void testRegister_PrecomputesLenderTenures() {
+        cache.register(1L, 100L, List.of(6, 12, 24));
+
+        assertEquals(3, cache.size());
+        assertEquals(3, loads.get());
+
+        cache.get(100L, 12);
+        assertEquals(1, cache.getHits());
+        assertEquals(0, cache.getMisses());
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void testGet_UnregisteredPair_CountsMissAndIsNotStored() {
+        AnnuityFactorCache.AnnuityFactor factor = cache.get(100L, 36);
+
+        assertEquals(36.0, factor.factor());
+        assertEquals(1, cache.getMisses());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testRegister_RateChange_EvictsOldPairs() {
+        cache.register(1L, 100L, List.of(6, 12));
+        cache.register(1L, 200L, List.of(6, 12));
+
+        assertEquals(2, cache.size());
+        cache.get(100L, 6);
+        assertEquals(1, cache.getMisses());
+        cache.get(200L, 6);
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    void testEvict_KeepsPairsOfferedByOtherLenders() {
+        cache.register(1L, 100L, List.of(6, 12));
+        cache.register(2L, 100L, List.of(12, 24));
+
+        cache.evict(1L);
+
+        assertEquals(2, cache.size());
+        cache.get(100L, 12);
+        cache.get(100L, 6);
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void testRegister_LoadedBeforeEvict_IsDiscarded() {
+        cache.register(1L, 100L, List.of(6, 12));
+        long loadedAt = cache.version();
+
+        cache.evict(1L);
+        cache.register(1L, 100L, List.of(6, 12), loadedAt);
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testRegister_LoadedBeforeNewerTerms_KeepsNewerTerms() {
+        long loadedAt = cache.version();
+        cache.register(1L, 200L, List.of(6));
+
+        cache.register(1L, 100L, List.of(6), loadedAt);
+
+        cache.get(200L, 6);
+        cache.get(100L, 6);
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void testEvict_ConcurrentWithRegisterOfSharedPair_KeepsPair() throws Exception {
+        Thread churn = new Thread(() -> {
+            for (int i = 0; i < 20_000; i++) {
+                cache.register(1L, 100L, List.of(12));
+                cache.evict(1L);
+            }
+        });
+        churn.start();
+        for (int i = 0; i < 20_000; i++) {
+            cache.register(2L, 100L, List.of(12, 24));
+        }
+        churn.join();
+
+        assertEquals(2, cache.size());
+        cache.get(100L, 12);
+        assertEquals(1, cache.getHits());
+    }
+}
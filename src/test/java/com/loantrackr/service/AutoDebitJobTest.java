@@ -0,0 +1,223 @@
+package com.loantrackr.service;
+
+import com.loantrackr.dto.request.PaymentGatewayRequest;
+import com.loantrackr.dto.response.AutoDebitRunResult;
+import com.loantrackr.dto.response.PaymentGatewayResponse;
+import com.loantrackr.enums.BatchJobStatus;
+import com.loantrackr.enums.PaymentStatus;
+import com.loantrackr.exception.GatewayUnavailableException;
+import com.loantrackr.model.BatchJobCheckpoint;
+import com.loantrackr.repository.BatchJobCheckpointRepository;
+import com.loantrackr.repository.LoanConfigurationRepository;
+import com.loantrackr.repository.LoanRepository;
+import com.loantrackr.util.TransactionIdGenerator;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class AutoDebitJobTest {
+
+    private static final LocalDate TODAY = LocalDate.now();
+    private static final List<Long> DUE_LOANS = List.of(1L, 2L, 3L, 4L, 5L);
+
+    private final LoanRepository loanRepository = mock(LoanRepository.class);
+    private final BatchJobCheckpointRepository checkpointRepository = mock(BatchJobCheckpointRepository.class);
+    private final RepaymentPostingService postingService = mock(RepaymentPostingService.class);
+    private final PaymentGatewayClient gatewayClient = mock(PaymentGatewayClient.class);
+    private final LoanPaymentGate paymentGate = new LoanPaymentGate(null, false, 2);
+    private final AutoDebitJob job = new AutoDebitJob(loanRepository, checkpointRepository, mock(LoanConfigurationRepository.class),
+            postingService, gatewayClient, paymentGate, new TransactionIdGenerator(1), mock(PlatformTransactionManager.class), 2, 2, 2);
+
+    private final Set<Long> collected = ConcurrentHashMap.newKeySet();
+    private final List<String> references = new CopyOnWriteArrayList<>();
+    private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+    private final Set<Long> heldWhilePosting = ConcurrentHashMap.newKeySet();
+    private BatchJobCheckpoint stored;
+
+    @Test
+    void testRun_WalksEveryPage_CollectsEachLoanOnce() {
+        stubRepositories();
+        when(gatewayClient.processPayment(any())).thenAnswer(invocation -> success(invocation.getArgument(0)));
+
+        AutoDebitRunResult result = job.run(TODAY);
+
+        assertEquals(BatchJobStatus.COMPLETED, result.getStatus());
+        assertFalse(result.isResumed());
+        assertEquals(5, result.getProcessedLoans());
+        assertEquals(5, result.getCollected());
+        assertEquals(0, result.getSkipped());
+        assertEquals(Set.copyOf(DUE_LOANS), collected);
+        // Pages of two: after 0, 2 and 4
+        verify(loanRepository).findIdsDueOn(eq(TODAY), eq(0L), any());
+        verify(loanRepository).findIdsDueOn(eq(TODAY), eq(2L), any());
+        verify(loanRepository).findIdsDueOn(eq(TODAY), eq(4L), any());
+        assertEquals(5L, stored.getLastProcessedId());
+        // Generated references, all distinct
+        assertTrue(references.stream().allMatch(reference -> reference.startsWith("AUTO")));
+        assertEquals(5, Set.copyOf(references).size());
+    }
+
+    @Test
+    void testRun_GatewayUnavailable_StopsBeforeLoanAndResumesThere() {
+        stubRepositories();
+        when(gatewayClient.processPayment(any())).thenAnswer(invocation -> {
+            PaymentGatewayRequest request = invocation.getArgument(0);
+            if (request.getLoanId() == 3L) {
+                throw new GatewayUnavailableException("Payment gateway circuit open", false, Duration.ofMillis(1));
+            }
+            return success(request);
+        });
+
+        AutoDebitRunResult stopped = job.run(TODAY);
+
+        assertEquals(BatchJobStatus.FAILED, stopped.getStatus());
+        assertEquals(1, stopped.getSkipped());
+        assertEquals(2, stopped.getProcessedLoans());
+        assertEquals(2L, stored.getLastProcessedId());
+        // The page was finished but the next one not started
+        verify(loanRepository, never()).findIdsDueOn(eq(TODAY), eq(4L), any());
+        verify(gatewayClient, times(3)).processPayment(argThat(request -> request.getLoanId() == 3L));
+        assertFalse(collected.contains(3L));
+
+        reset(gatewayClient);
+        when(gatewayClient.processPayment(any())).thenAnswer(invocation -> success(invocation.getArgument(0)));
+
+        AutoDebitRunResult resumed = job.run(TODAY);
+
+        assertEquals(BatchJobStatus.COMPLETED, resumed.getStatus());
+        assertTrue(resumed.isResumed());
+        assertEquals(5, resumed.getProcessedLoans());
+        assertEquals(Set.copyOf(DUE_LOANS), collected);
+        // Loan 4 was collected in the first run and is no longer due
+        verify(gatewayClient, never()).processPayment(argThat(request -> request.getLoanId() == 4L));
+    }
+
+    @Test
+    void testRun_Completed_NotRunAgain() {
+        stubRepositories();
+        when(gatewayClient.processPayment(any())).thenAnswer(invocation -> success(invocation.getArgument(0)));
+        job.run(TODAY);
+        clearInvocations(gatewayClient, loanRepository);
+
+        AutoDebitRunResult again = job.run(TODAY);
+
+        assertEquals(BatchJobStatus.COMPLETED, again.getStatus());
+        assertEquals(5, again.getProcessedLoans());
+        verifyNoInteractions(gatewayClient, loanRepository);
+    }
+
+    @Test
+    void testRun_LoanBeingPaid_PassedOverWithoutHoldingOthers() {
+        stubRepositories();
+        when(gatewayClient.processPayment(any())).thenAnswer(invocation -> success(invocation.getArgument(0)));
+
+        AutoDebitRunResult result;
+        try (LoanPaymentGate.Permit borrowerPayment = paymentGate.enter(2L)) {
+            result = job.run(TODAY);
+        }
+
+        assertEquals(BatchJobStatus.COMPLETED, result.getStatus());
+        assertEquals(4, result.getCollected());
+        assertFalse(collected.contains(2L));
+        // Every loan the run admitted was let go once the batch holding its debit was posted
+        for (Long loanId : DUE_LOANS) {
+            paymentGate.enter(loanId).close();
+        }
+    }
+
+    @Test
+    void testRun_DebitsPostedInBatches_LoansHeldUntilTheirBatchCommits() {
+        AutoDebitJob batchingJob = new AutoDebitJob(loanRepository, checkpointRepository, mock(LoanConfigurationRepository.class),
+                postingService, gatewayClient, paymentGate, new TransactionIdGenerator(1), mock(PlatformTransactionManager.class), 5, 5, 2);
+        stubRepositories();
+        when(gatewayClient.processPayment(any())).thenAnswer(invocation -> success(invocation.getArgument(0)));
+
+        AutoDebitRunResult result = batchingJob.run(TODAY);
+
+        assertEquals(BatchJobStatus.COMPLETED, result.getStatus());
+        assertEquals(5, result.getCollected());
+        assertEquals(Set.copyOf(DUE_LOANS), collected);
+        // Two full batches posted by the collectors, the odd debit once the page was back
+        assertEquals(List.of(1, 2, 2), batchSizes.stream().sorted().toList());
+        assertEquals(Set.copyOf(DUE_LOANS), heldWhilePosting);
+        for (Long loanId : DUE_LOANS) {
+            paymentGate.enter(loanId).close();
+        }
+    }
+
+    private void stubRepositories() {
+        when(checkpointRepository.findByJobNameAndBusinessDate(AutoDebitJob.JOB_NAME, TODAY))
+                .thenAnswer(invocation -> Optional.ofNullable(stored));
+        when(checkpointRepository.save(any())).thenAnswer(invocation -> {
+            stored = copy(invocation.getArgument(0));
+            stored.setId(1L);
+            return copy(stored);
+        });
+        when(checkpointRepository.findById(1L)).thenAnswer(invocation -> Optional.ofNullable(stored).map(AutoDebitJobTest::copy));
+        when(loanRepository.findIdsDueOn(eq(TODAY), anyLong(), any())).thenAnswer(invocation -> {
+            long afterId = invocation.getArgument(1);
+            Pageable page = invocation.getArgument(2);
+            return DUE_LOANS.stream().filter(id -> id > afterId).limit(page.getPageSize()).toList();
+        });
+        when(postingService.findDueInstallments(any())).thenAnswer(invocation -> {
+            Collection<Long> loanIds = invocation.getArgument(0);
+            return loanIds.stream()
+                    .filter(loanId -> !collected.contains(loanId))
+                    .collect(Collectors.toMap(loanId -> loanId,
+                            loanId -> new RepaymentPostingService.DueInstallment(loanId, 1, TODAY, new BigDecimal("1000.00"))));
+        });
+        when(postingService.post(any())).thenAnswer(invocation -> {
+            List<RepaymentPostingService.Debit> debits = invocation.getArgument(0);
+            batchSizes.add(debits.size());
+            int posted = 0;
+            for (RepaymentPostingService.Debit debit : debits) {
+                try (LoanPaymentGate.Permit permit = paymentGate.tryEnter(List.of(debit.loanId()))) {
+                    if (!permit.admits(debit.loanId())) {
+                        heldWhilePosting.add(debit.loanId());
+                    }
+                }
+                if (debit.status() == PaymentStatus.SUCCESS) {
+                    collected.add(debit.loanId());
+                    posted++;
+                }
+            }
+            return new RepaymentPostingService.Outcome(posted, 0, 0, List.of());
+        });
+    }
+
+    private PaymentGatewayResponse success(PaymentGatewayRequest request) {
+        references.add(request.getReference());
+        return PaymentGatewayResponse.builder()
+                .transactionId(request.getReference())
+                .status(PaymentStatus.SUCCESS)
+                .amount(request.getAmount())
+                .build();
+    }
+
+    private static BatchJobCheckpoint copy(BatchJobCheckpoint checkpoint) {
+        return BatchJobCheckpoint.builder()
+                .id(checkpoint.getId())
+                .jobName(checkpoint.getJobName())
+                .businessDate(checkpoint.getBusinessDate())
+                .lastProcessedId(checkpoint.getLastProcessedId())
+                .processedCount(checkpoint.getProcessedCount())
+                .status(checkpoint.getStatus())
+                .completedAt(checkpoint.getCompletedAt())
+                .build();
+    }
+}
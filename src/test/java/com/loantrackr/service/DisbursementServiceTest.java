@@ -0,0 +1,367 @@
+package com.loantrackr.service;
+
+import com.loantrackr.dto.request.DisbursementRequest;
+import com.loantrackr.dto.request.DisbursementResolutionRequest;
+import com.loantrackr.dto.response.DisbursementResponse;
+import com.loantrackr.dto.response.DisbursementStatusResponse;
+import com.loantrackr.enums.DisbursementStatus;
+import com.loantrackr.enums.LoanStatus;
+import com.loantrackr.enums.Role;
+import com.loantrackr.exception.GatewayUnavailableException;
+import com.loantrackr.model.LenderProfile;
+import com.loantrackr.model.Loan;
+import com.loantrackr.model.LoanApplication;
+import com.loantrackr.model.LoanDisbursement;
+import com.loantrackr.model.User;
+import com.loantrackr.repository.LoanApplicationRepository;
+import com.loantrackr.repository.LoanDisbursementRepository;
+import com.loantrackr.repository.LoanRepository;
+import com.loantrackr.util.TransactionIdGenerator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class DisbursementServiceTest {
+
+    private final LoanApplicationRepository applicationRepository = mock(LoanApplicationRepository.class);
+    private final LoanDisbursementRepository disbursementRepository = mock(LoanDisbursementRepository.class);
+    private final LoanRepository loanRepository = mock(LoanRepository.class);
+    private final RepaymentScheduleService scheduleService = mock(RepaymentScheduleService.class);
+    private final PaymentGatewayClient gatewayClient = mock(PaymentGatewayClient.class);
+    private final UserService userService = mock(UserService.class);
+    private final LenderProfileService lenderService = mock(LenderProfileService.class);
+    private final TaskExecutor disbursementExecutor = mock(TaskExecutor.class);
+    private final DisbursementService service = new DisbursementService(applicationRepository, disbursementRepository,
+            loanRepository, scheduleService, mock(LoanCalculatorService.class), gatewayClient, userService,
+            lenderService, disbursementExecutor, mock(PlatformTransactionManager.class),
+            new TransactionIdGenerator(1), Duration.ofMinutes(1), Duration.ofMinutes(15), 500, 4, 100);
+
+    private final Map<Long, LoanDisbursement> disbursements = new LinkedHashMap<>();
+    private final Map<Long, LoanApplication> applications = new LinkedHashMap<>();
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void testRequestDisbursement_Approved_AcceptedAndDispatchedAfterCommit() {
+        approve(1L);
+        stubRepositories();
+        signInLender();
+        when(disbursementRepository.save(any())).thenAnswer(invocation -> {
+            LoanDisbursement disbursement = invocation.getArgument(0);
+            disbursement.setId(1L);
+            disbursements.put(1L, disbursement);
+            return disbursement;
+        });
+
+        TransactionSynchronizationManager.initSynchronization();
+        DisbursementStatusResponse response = service.requestDisbursement(11L);
+
+        assertEquals(DisbursementStatus.ACCEPTED, response.getStatus());
+        assertEquals(1L, response.getDisbursementId());
+        assertEquals(new BigDecimal("100000.00"), response.getAmount());
+        // Not handed to a worker until the transaction commits
+        verifyNoInteractions(disbursementExecutor, gatewayClient);
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        verify(disbursementExecutor).execute(any());
+        assertEquals(LoanStatus.APPROVED, applications.get(11L).getStatus());
+    }
+
+    @Test
+    void testRequestDisbursement_InFlightOrUnconfirmed_Rejected() {
+        accept(1L);
+        stubRepositories();
+        signInLender();
+        TransactionSynchronizationManager.initSynchronization();
+
+        when(disbursementRepository.existsByLoanApplicationIdAndStatusIn(eq(11L), argThat(statuses -> statuses.contains(DisbursementStatus.PROCESSING))))
+                .thenReturn(true);
+        assertThrows(IllegalStateException.class, () -> service.requestDisbursement(11L));
+
+        reset(disbursementRepository);
+        stubRepositories();
+        when(disbursementRepository.existsByLoanApplicationIdAndStatusIn(eq(11L), argThat(statuses -> statuses.contains(DisbursementStatus.UNCONFIRMED))))
+                .thenReturn(true);
+        IllegalStateException unconfirmed = assertThrows(IllegalStateException.class, () -> service.requestDisbursement(11L));
+        assertTrue(unconfirmed.getMessage().contains("awaiting reconciliation"));
+
+        verify(disbursementRepository, never()).save(any());
+        assertTrue(TransactionSynchronizationManager.getSynchronizations().isEmpty());
+    }
+
+    @Test
+    void testProcess_Claimed_SentOnceAndLoanActivated() {
+        accept(1L);
+        stubRepositories();
+        when(disbursementRepository.claim(eq(1L), any())).thenReturn(1).thenReturn(0);
+        when(gatewayClient.processDisbursement(any())).thenReturn(response("TXN_11", "SUCCESS", null));
+
+        service.process(1L);
+        // A second dispatch of the same disbursement, from the sweep or a redelivery
+        service.process(1L);
+
+        verify(gatewayClient, times(1)).processDisbursement(argThat(request -> request.getLoanId() == 11L));
+        assertEquals(DisbursementStatus.COMPLETED, disbursements.get(1L).getStatus());
+        assertEquals("TXN_11", disbursements.get(1L).getGatewayTransactionId());
+        assertNotNull(disbursements.get(1L).getLoan());
+        assertEquals(LoanStatus.DISBURSED, applications.get(11L).getStatus());
+        verify(scheduleService).createSchedule(any());
+    }
+
+    @Test
+    void testProcess_GatewayTimedOut_Unconfirmed() {
+        accept(1L);
+        stubRepositories();
+        when(disbursementRepository.claim(eq(1L), any())).thenReturn(1);
+        when(gatewayClient.processDisbursement(any())).thenThrow(new GatewayUnavailableException("Payment gateway timed out", true, null));
+
+        service.process(1L);
+
+        assertEquals(DisbursementStatus.UNCONFIRMED, disbursements.get(1L).getStatus());
+        assertEquals("Payment gateway timed out", disbursements.get(1L).getFailureReason());
+        assertNull(disbursements.get(1L).getLoan());
+        assertEquals(LoanStatus.APPROVED, applications.get(11L).getStatus());
+        verify(disbursementRepository, never()).release(anyLong(), any());
+    }
+
+    @Test
+    void testProcess_GatewayNotCalled_ReleasedToSweep() {
+        accept(1L);
+        stubRepositories();
+        when(disbursementRepository.claim(eq(1L), any())).thenReturn(1);
+        when(gatewayClient.processDisbursement(any())).thenThrow(new GatewayUnavailableException("Payment gateway circuit open", false, Duration.ofSeconds(30)));
+
+        service.process(1L);
+
+        verify(disbursementRepository).release(eq(1L), any());
+        assertEquals(DisbursementStatus.ACCEPTED, disbursements.get(1L).getStatus());
+        assertNull(disbursements.get(1L).getFailureReason());
+    }
+
+    @Test
+    void testDispatchStaleDisbursements_MarksStuckProcessingUnconfirmedAndRedispatchesAccepted() {
+        when(disbursementRepository.markProcessingUnconfirmed(any(), any(), anyString())).thenReturn(2);
+        when(disbursementRepository.findAcceptedIdsRequestedBefore(any())).thenReturn(List.of(7L, 8L, 9L));
+        doNothing().doThrow(new TaskRejectedException("Queue full")).doNothing().when(disbursementExecutor).execute(any());
+        LocalDateTime before = LocalDateTime.now();
+
+        service.dispatchStaleDisbursements();
+
+        // PROCESSING for longer than the timeout: the worker died, possibly mid-call
+        verify(disbursementRepository).markProcessingUnconfirmed(
+                argThat(cutoff -> !cutoff.isAfter(LocalDateTime.now().minusMinutes(15)) && !cutoff.isBefore(before.minusMinutes(15))),
+                any(), eq("Worker stopped while the payout was in flight"));
+        verify(disbursementRepository).findAcceptedIdsRequestedBefore(
+                argThat(cutoff -> !cutoff.isAfter(LocalDateTime.now().minusMinutes(1)) && !cutoff.isBefore(before.minusMinutes(1))));
+        // A rejected dispatch is left for the next sweep without stopping the rest
+        verify(disbursementExecutor, times(3)).execute(any());
+        verifyNoInteractions(gatewayClient);
+    }
+
+    @Test
+    void testProcessBatch_MixedGatewayOutcomes_EachDisbursementSettledOnItsOwn() {
+        for (long id = 1; id <= 5; id++) {
+            accept(id);
+        }
+        stubRepositories();
+        when(gatewayClient.processDisbursement(any())).thenAnswer(invocation -> {
+            long applicationId = invocation.<DisbursementRequest>getArgument(0).getLoanId();
+            return switch ((int) applicationId) {
+                case 11 -> response("TXN_11", "SUCCESS", null);
+                case 12 -> response("TXN_12", "FAILED", "Account closed");
+                case 13 -> throw new GatewayUnavailableException("Payment gateway timed out", true, null);
+                case 14 -> throw new GatewayUnavailableException("Payment gateway circuit open", false, Duration.ofSeconds(30));
+                default -> throw new IllegalStateException("Connection reset");
+            };
+        });
+
+        service.processBatch(List.of(1L, 2L, 3L, 4L, 5L));
+
+        assertEquals(DisbursementStatus.COMPLETED, disbursements.get(1L).getStatus());
+        assertEquals("TXN_11", disbursements.get(1L).getGatewayTransactionId());
+        assertNotNull(disbursements.get(1L).getLoan());
+        assertEquals(LoanStatus.DISBURSED, applications.get(11L).getStatus());
+
+        assertEquals(DisbursementStatus.FAILED, disbursements.get(2L).getStatus());
+        assertEquals("Account closed", disbursements.get(2L).getFailureReason());
+        assertEquals(DisbursementStatus.UNCONFIRMED, disbursements.get(3L).getStatus());
+        assertEquals(DisbursementStatus.FAILED, disbursements.get(5L).getStatus());
+        assertEquals("Payment gateway error: Connection reset", disbursements.get(5L).getFailureReason());
+        for (long id = 2; id <= 5; id++) {
+            assertNull(disbursements.get(id).getLoan());
+            assertEquals(LoanStatus.APPROVED, applications.get(id + 10).getStatus());
+        }
+
+        // Never sent, so handed back to the sweep rather than failed
+        verify(disbursementRepository).releaseAll(eq(List.of(4L)), any());
+        assertEquals(DisbursementStatus.PROCESSING, disbursements.get(4L).getStatus());
+        verify(loanRepository).saveAll(argThat(loans -> StreamSupport.stream(loans.spliterator(), false).count() == 1));
+    }
+
+    @Test
+    void testProcessBatch_ChunkActivationFails_ActivatesOneAtATimeAndMarksTheBadOneUnconfirmed() {
+        accept(1L);
+        accept(2L);
+        stubRepositories();
+        when(gatewayClient.processDisbursement(any())).thenAnswer(invocation -> {
+            long applicationId = invocation.<DisbursementRequest>getArgument(0).getLoanId();
+            if (applicationId == 12) {
+                // Withdrawn while its payout was in flight
+                applications.get(12L).setStatus(LoanStatus.WITHDRAWN);
+            }
+            return response("TXN_" + applicationId, "SUCCESS", null);
+        });
+
+        service.processBatch(List.of(1L, 2L));
+
+        assertEquals(DisbursementStatus.COMPLETED, disbursements.get(1L).getStatus());
+        assertNotNull(disbursements.get(1L).getLoan());
+        assertEquals(DisbursementStatus.UNCONFIRMED, disbursements.get(2L).getStatus());
+        assertEquals("TXN_12", disbursements.get(2L).getGatewayTransactionId());
+        assertTrue(disbursements.get(2L).getFailureReason().startsWith("Funds sent but loan activation failed"));
+        assertNull(disbursements.get(2L).getLoan());
+        verify(loanRepository, times(1)).save(any(Loan.class));
+    }
+
+    @Test
+    void testResolveUnconfirmedDisbursement_FundsSent_LoanActivated() {
+        unconfirm(1L);
+        stubRepositories();
+
+        DisbursementStatusResponse response = service.resolveUnconfirmedDisbursement(1L, DisbursementResolutionRequest.builder()
+                .fundsSent(true)
+                .gatewayTransactionId("TXN_11")
+                .build());
+
+        assertEquals(DisbursementStatus.COMPLETED, response.getStatus());
+        assertEquals("TXN_11", disbursements.get(1L).getGatewayTransactionId());
+        assertNull(disbursements.get(1L).getFailureReason());
+        assertNotNull(response.getLoan());
+        assertEquals(LoanStatus.DISBURSED, applications.get(11L).getStatus());
+        verify(scheduleService).createSchedule(any());
+        verifyNoInteractions(gatewayClient);
+    }
+
+    @Test
+    void testResolveUnconfirmedDisbursement_NotSent_FailedAndApplicationStaysApproved() {
+        unconfirm(1L);
+        stubRepositories();
+
+        DisbursementStatusResponse response = service.resolveUnconfirmedDisbursement(1L, DisbursementResolutionRequest.builder()
+                .fundsSent(false)
+                .reason("No such payout at the gateway")
+                .build());
+
+        assertEquals(DisbursementStatus.FAILED, response.getStatus());
+        assertEquals("No such payout at the gateway", disbursements.get(1L).getFailureReason());
+        assertNull(disbursements.get(1L).getLoan());
+        assertEquals(LoanStatus.APPROVED, applications.get(11L).getStatus());
+        verify(loanRepository, never()).save(any(Loan.class));
+    }
+
+    @Test
+    void testResolveUnconfirmedDisbursement_NotUnconfirmedOrNoTransactionId_Rejected() {
+        accept(1L);
+        stubRepositories();
+
+        DisbursementResolutionRequest sent = DisbursementResolutionRequest.builder().fundsSent(true).gatewayTransactionId("TXN_11").build();
+        assertThrows(IllegalStateException.class, () -> service.resolveUnconfirmedDisbursement(1L, sent));
+        assertEquals(DisbursementStatus.ACCEPTED, disbursements.get(1L).getStatus());
+
+        disbursements.get(1L).setStatus(DisbursementStatus.UNCONFIRMED);
+        DisbursementResolutionRequest noTransaction = DisbursementResolutionRequest.builder().fundsSent(true).build();
+        assertThrows(IllegalArgumentException.class, () -> service.resolveUnconfirmedDisbursement(1L, noTransaction));
+        assertEquals(DisbursementStatus.UNCONFIRMED, disbursements.get(1L).getStatus());
+        verify(loanRepository, never()).save(any(Loan.class));
+    }
+
+    private void unconfirm(long id) {
+        accept(id);
+        disbursements.get(id).setStatus(DisbursementStatus.UNCONFIRMED);
+        disbursements.get(id).setFailureReason("Payment gateway timed out");
+    }
+
+    private void accept(long id) {
+        LoanApplication application = approve(id);
+        disbursements.put(id, LoanDisbursement.builder()
+                .id(id)
+                .loanApplication(application)
+                .amount(application.getLoanRequested())
+                .status(DisbursementStatus.ACCEPTED)
+                .batchId("DB1")
+                .build());
+    }
+
+    private LoanApplication approve(long id) {
+        LoanApplication application = new LoanApplication();
+        application.setId(id + 10);
+        application.setUser(User.builder().id(id + 100).username("borrower" + id).build());
+        application.setLender(LenderProfile.builder().id(500L).build());
+        application.setStatus(LoanStatus.APPROVED);
+        application.setLoanRequested(new BigDecimal("100000.00"));
+        application.setInterestRate(new BigDecimal("12.00"));
+        application.setTenure(12);
+        applications.put(application.getId(), application);
+        return application;
+    }
+
+    private void signInLender() {
+        User user = User.builder().id(500L).username("lender1").role(Role.LENDER).build();
+        when(userService.getUserByUserName("lender1")).thenReturn(Optional.of(user));
+        when(lenderService.getLenderById(500L)).thenReturn(LenderProfile.builder().id(500L).user(user).build());
+        org.springframework.security.core.userdetails.User principal =
+                new org.springframework.security.core.userdetails.User("lender1", "secret", List.of());
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(principal, null, List.of()));
+    }
+
+    private void stubRepositories() {
+        when(disbursementRepository.findAcceptedByIdInForUpdate(anyCollection())).thenAnswer(invocation ->
+                invocation.<Collection<Long>>getArgument(0).stream().map(disbursements::get).toList());
+        when(disbursementRepository.findAllById(anyIterable())).thenAnswer(invocation ->
+                StreamSupport.stream(invocation.<Iterable<Long>>getArgument(0).spliterator(), false).map(disbursements::get).toList());
+        when(disbursementRepository.findById(anyLong())).thenAnswer(invocation ->
+                Optional.ofNullable(disbursements.get(invocation.<Long>getArgument(0))));
+        when(disbursementRepository.findByIdForUpdate(anyLong())).thenAnswer(invocation ->
+                Optional.ofNullable(disbursements.get(invocation.<Long>getArgument(0))));
+        when(applicationRepository.findAllByIdForUpdate(anyCollection())).thenAnswer(invocation ->
+                invocation.<Collection<Long>>getArgument(0).stream().map(applications::get).toList());
+        when(applicationRepository.findByIdForUpdate(anyLong())).thenAnswer(invocation ->
+                Optional.ofNullable(applications.get(invocation.<Long>getArgument(0))));
+        when(loanRepository.saveAll(anyIterable())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(loanRepository.save(any(Loan.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    private static DisbursementResponse response(String transactionId, String status, String failureReason) {
+        return DisbursementResponse.builder()
+                .transactionId(transactionId)
+                .status(status)
+                .failureReason(failureReason)
+                .build();
+    }
+}
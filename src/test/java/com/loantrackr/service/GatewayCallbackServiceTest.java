@@ -0,0 +1,146 @@
+package com.loantrackr.service;
+
+import com.loantrackr.dto.request.GatewayCallbackRequest;
+import com.loantrackr.enums.PaymentStatus;
+import com.loantrackr.enums.PaymentType;
+import com.loantrackr.enums.PrepaymentMode;
+import com.loantrackr.model.Loan;
+import com.loantrackr.model.LoanPayment;
+import com.loantrackr.repository.LoanPaymentRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class GatewayCallbackServiceTest {
+
+    private static final String GATEWAY_TRANSACTION_ID = "TXN_CALLBACK";
+
+    private final LoanPaymentRepository paymentRepository = mock(LoanPaymentRepository.class);
+    private final LoanService loanService = mock(LoanService.class);
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final GatewayCallbackService service = new GatewayCallbackService(paymentRepository, loanService, jdbcTemplate,
+            new TransactionTemplate(mock(PlatformTransactionManager.class)), new SimpleMeterRegistry(), 1000, 0.01);
+
+    @Test
+    void testHandle_AmountMismatch_NotRecordedSoCorrectedCallbackApplies() {
+        LoanPayment payment = pendingPayment();
+        when(paymentRepository.findByGatewayTransactionIdForUpdate(GATEWAY_TRANSACTION_ID)).thenReturn(Optional.of(payment));
+        when(jdbcTemplate.update(startsWith("INSERT INTO gateway_callback"), any(), any(), any(), any())).thenReturn(1);
+        when(loanService.applyConfirmedPayment(payment)).thenReturn(true);
+
+        assertEquals(GatewayCallbackService.Outcome.IGNORED, service.handle(callback(PaymentStatus.SUCCESS, "999.00")));
+        verify(jdbcTemplate, never()).update(startsWith("INSERT INTO gateway_callback"), any(), any(), any(), any());
+        assertEquals(PaymentStatus.PENDING, payment.getStatus());
+
+        assertEquals(GatewayCallbackService.Outcome.APPLIED, service.handle(callback(PaymentStatus.SUCCESS, "1000.00")));
+        verify(loanService).applyConfirmedPayment(payment);
+        assertEquals(PaymentStatus.SUCCESS, payment.getStatus());
+    }
+
+    @Test
+    void testHandle_SuccessNotApplied_LeftPendingAndForgotten() {
+        LoanPayment payment = pendingPayment();
+        when(paymentRepository.findByGatewayTransactionIdForUpdate(GATEWAY_TRANSACTION_ID)).thenReturn(Optional.of(payment));
+        when(jdbcTemplate.update(startsWith("INSERT INTO gateway_callback"), any(), any(), any(), any())).thenReturn(1);
+        when(loanService.applyConfirmedPayment(payment)).thenReturn(false);
+
+        assertEquals(GatewayCallbackService.Outcome.UNAPPLIED, service.handle(callback(PaymentStatus.SUCCESS, "1000.00")));
+
+        assertEquals(PaymentStatus.PENDING, payment.getStatus());
+        assertNull(payment.getPaidAt());
+        assertNotNull(payment.getFailureReason());
+        verify(paymentRepository).save(payment);
+        verify(jdbcTemplate).update(startsWith("DELETE FROM gateway_callback"), eq(GATEWAY_TRANSACTION_ID), eq("SUCCESS"));
+
+        // Not taken for seen, so a redelivery is applied again rather than dropped
+        assertEquals(GatewayCallbackService.Outcome.UNAPPLIED, service.handle(callback(PaymentStatus.SUCCESS, "1000.00")));
+        verify(jdbcTemplate, never()).queryForObject(startsWith("SELECT EXISTS"), eq(Boolean.class), any(), any());
+    }
+
+    @Test
+    void testHandle_PrepaymentConfirmed_Applied() {
+        LoanPayment payment = pendingPayment();
+        payment.setPaymentType(PaymentType.PREPAYMENT);
+        payment.setPrepaymentMode(PrepaymentMode.REDUCE_TENURE);
+        payment.setPrincipalPrepaid(new BigDecimal("990.00"));
+        payment.setAccruedInterest(new BigDecimal("10.00"));
+        when(paymentRepository.findByGatewayTransactionIdForUpdate(GATEWAY_TRANSACTION_ID)).thenReturn(Optional.of(payment));
+        when(jdbcTemplate.update(startsWith("INSERT INTO gateway_callback"), any(), any(), any(), any())).thenReturn(1);
+        when(loanService.applyConfirmedPrepayment(payment)).thenReturn(true);
+
+        assertEquals(GatewayCallbackService.Outcome.APPLIED, service.handle(callback(PaymentStatus.SUCCESS, "1000.00")));
+
+        verify(loanService, never()).applyConfirmedPayment(any());
+        assertEquals(PaymentStatus.SUCCESS, payment.getStatus());
+        assertNotNull(payment.getPaidAt());
+    }
+
+    @Test
+    void testHandle_PrepaymentNotApplied_LeftPending() {
+        LoanPayment payment = pendingPayment();
+        payment.setPaymentType(PaymentType.PREPAYMENT);
+        when(paymentRepository.findByGatewayTransactionIdForUpdate(GATEWAY_TRANSACTION_ID)).thenReturn(Optional.of(payment));
+        when(jdbcTemplate.update(startsWith("INSERT INTO gateway_callback"), any(), any(), any(), any())).thenReturn(1);
+
+        assertEquals(GatewayCallbackService.Outcome.UNAPPLIED, service.handle(callback(PaymentStatus.SUCCESS, "1000.00")));
+
+        assertEquals(PaymentStatus.PENDING, payment.getStatus());
+    }
+
+    @Test
+    void testHandle_StatusConflict_NotRecorded() {
+        LoanPayment payment = pendingPayment();
+        payment.setStatus(PaymentStatus.FAILED);
+        when(paymentRepository.findByGatewayTransactionIdForUpdate(GATEWAY_TRANSACTION_ID)).thenReturn(Optional.of(payment));
+
+        assertEquals(GatewayCallbackService.Outcome.IGNORED, service.handle(callback(PaymentStatus.SUCCESS, "1000.00")));
+        assertEquals(GatewayCallbackService.Outcome.IGNORED, service.handle(callback(PaymentStatus.SUCCESS, "1000.00")));
+
+        verify(jdbcTemplate, never()).update(startsWith("INSERT INTO gateway_callback"), any(), any(), any(), any());
+        // Never taken for seen, so no redelivery lookup either
+        verify(jdbcTemplate, never()).queryForObject(startsWith("SELECT EXISTS"), eq(Boolean.class), any(), any());
+        verify(loanService, never()).applyConfirmedPayment(any());
+    }
+
+    @Test
+    void testHandle_AppliedThenRedelivered_Duplicate() {
+        LoanPayment payment = pendingPayment();
+        when(paymentRepository.findByGatewayTransactionIdForUpdate(GATEWAY_TRANSACTION_ID)).thenReturn(Optional.of(payment));
+        when(jdbcTemplate.update(startsWith("INSERT INTO gateway_callback"), any(), any(), any(), any())).thenReturn(1);
+        when(jdbcTemplate.queryForObject(startsWith("SELECT EXISTS"), eq(Boolean.class), any(), any())).thenReturn(true);
+
+        assertEquals(GatewayCallbackService.Outcome.APPLIED, service.handle(callback(PaymentStatus.FAILED, null)));
+        assertEquals(GatewayCallbackService.Outcome.DUPLICATE, service.handle(callback(PaymentStatus.FAILED, null)));
+
+        verify(paymentRepository, times(1)).findByGatewayTransactionIdForUpdate(GATEWAY_TRANSACTION_ID);
+        assertEquals(PaymentStatus.FAILED, payment.getStatus());
+    }
+
+    private static LoanPayment pendingPayment() {
+        return LoanPayment.builder()
+                .loan(Loan.builder().id(1L).build())
+                .transactionId("TXN_OURS")
+                .gatewayTransactionId(GATEWAY_TRANSACTION_ID)
+                .paymentType(PaymentType.INSTALLMENT)
+                .amount(new BigDecimal("1000.00"))
+                .status(PaymentStatus.PENDING)
+                .build();
+    }
+
+    private static GatewayCallbackRequest callback(PaymentStatus status, String amount) {
+        return GatewayCallbackRequest.builder()
+                .gatewayTransactionId(GATEWAY_TRANSACTION_ID)
+                .status(status)
+                .amount(amount != null ? new BigDecimal(amount) : null)
+                .build();
+    }
+}
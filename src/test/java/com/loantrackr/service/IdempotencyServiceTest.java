@@ -0,0 +1,204 @@
+package com.loantrackr.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.loantrackr.dto.response.PaymentResponse;
+import com.loantrackr.enums.PaymentStatus;
+import com.loantrackr.exception.IdempotencyConflictException;
+import com.loantrackr.exception.OperationNotAllowedException;
+import com.loantrackr.exception.OutcomeUnknownException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class IdempotencyServiceTest {
+
+    private static final String KEY = "6f1c2a0e-key";
+
+    private final Map<String, Entry> redis = new ConcurrentHashMap<>();
+    private final AtomicInteger runs = new AtomicInteger();
+    private IdempotencyService service;
+
+    private record Entry(String value, long expiresAt) {
+        boolean live() {
+            return System.nanoTime() < expiresAt;
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        service = service(Duration.ofSeconds(30), Duration.ofMillis(300));
+        signIn("borrower1");
+    }
+
+    @AfterEach
+    void clearSecurityContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void testExecute_Completed_ReplaysStoredResponseWithoutRunning() {
+        PaymentResponse first = service.execute("payment", KEY, "loan=1;amount=500", PaymentResponse.class, pay("TXN_1"), e -> true);
+        PaymentResponse replay = service.execute("payment", KEY, "loan=1;amount=500", PaymentResponse.class, pay("TXN_2"), e -> true);
+
+        assertEquals(1, runs.get());
+        assertEquals("TXN_1", first.getTransactionId());
+        assertEquals("TXN_1", replay.getTransactionId());
+        assertEquals(PaymentStatus.SUCCESS, replay.getStatus());
+        assertTrue(stored().startsWith("COMPLETED|"));
+    }
+
+    @Test
+    void testExecute_DifferentRequestSameKey_Conflict() {
+        service.execute("payment", KEY, "loan=1;amount=500", PaymentResponse.class, pay("TXN_1"), e -> true);
+
+        assertThrows(IdempotencyConflictException.class,
+                () -> service.execute("payment", KEY, "loan=1;amount=900", PaymentResponse.class, pay("TXN_2"), e -> true));
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void testExecute_SameKeyOtherUser_RunsSeparately() {
+        service.execute("payment", KEY, "loan=1;amount=500", PaymentResponse.class, pay("TXN_1"), e -> true);
+        signIn("borrower2");
+
+        PaymentResponse other = service.execute("payment", KEY, "loan=1;amount=500", PaymentResponse.class, pay("TXN_2"), e -> true);
+
+        assertEquals(2, runs.get());
+        assertEquals("TXN_2", other.getTransactionId());
+    }
+
+    @Test
+    void testExecute_FailedBeforeEffect_KeyReleasedForRetry() {
+        assertThrows(OperationNotAllowedException.class, () -> service.execute("payment", KEY, "loan=1;amount=500",
+                PaymentResponse.class, fail(new OperationNotAllowedException("Loan is not active for payments")), e -> true));
+        assertTrue(redis.isEmpty());
+
+        PaymentResponse retried = service.execute("payment", KEY, "loan=1;amount=500", PaymentResponse.class, pay("TXN_1"), e -> true);
+
+        assertEquals(2, runs.get());
+        assertEquals("TXN_1", retried.getTransactionId());
+    }
+
+    @Test
+    void testExecute_FailedAfterEffect_NeedsReconciliationAndNotRunAgain() {
+        assertThrows(IllegalStateException.class, () -> service.execute("payment", KEY, "loan=1;amount=500",
+                PaymentResponse.class, fail(new IllegalStateException("Collected but not posted")), e -> false));
+        assertTrue(stored().startsWith("NEEDS_RECONCILIATION|"));
+
+        assertThrows(OutcomeUnknownException.class,
+                () -> service.execute("payment", KEY, "loan=1;amount=500", PaymentResponse.class, pay("TXN_2"), e -> true));
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void testExecute_InProgress_DuplicateGivesUpAfterWaitTimeout() {
+        List<RuntimeException> duplicate = new ArrayList<>();
+        PaymentResponse original = service.execute("payment", KEY, "loan=1;amount=500", PaymentResponse.class, () -> {
+            assertTrue(stored().startsWith("IN_PROGRESS|"));
+            try {
+                service.execute("payment", KEY, "loan=1;amount=500", PaymentResponse.class, pay("TXN_2"), e -> true);
+            } catch (RuntimeException e) {
+                duplicate.add(e);
+            }
+            return pay("TXN_1").get();
+        }, e -> true);
+
+        assertEquals("TXN_1", original.getTransactionId());
+        assertEquals(1, runs.get());
+        assertEquals(1, duplicate.size());
+        assertInstanceOf(IdempotencyConflictException.class, duplicate.get(0));
+    }
+
+    @Test
+    void testExecute_ExpiredLock_ClaimedByNextRequest() {
+        service = service(Duration.ofMillis(200), Duration.ofSeconds(5));
+        // A worker that died mid-request leaves only its IN_PROGRESS marker behind
+        assertThrows(AssertionError.class, () -> service.execute("payment", KEY, "loan=1;amount=500", PaymentResponse.class,
+                () -> {
+                    throw new AssertionError("worker died");
+                }, e -> true));
+        assertTrue(stored().startsWith("IN_PROGRESS|"));
+
+        PaymentResponse next = service.execute("payment", KEY, "loan=1;amount=500", PaymentResponse.class, pay("TXN_1"), e -> true);
+
+        assertEquals("TXN_1", next.getTransactionId());
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void testExecute_InvalidKey_Rejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> service.execute("payment", " ", "loan=1;amount=500", PaymentResponse.class, pay("TXN_1"), e -> true));
+        assertThrows(IllegalArgumentException.class,
+                () -> service.execute("payment", "k".repeat(256), "loan=1;amount=500", PaymentResponse.class, pay("TXN_1"), e -> true));
+        assertEquals(0, runs.get());
+        assertTrue(redis.isEmpty());
+    }
+
+    private Supplier<PaymentResponse> pay(String transactionId) {
+        return () -> {
+            runs.incrementAndGet();
+            return PaymentResponse.builder()
+                    .transactionId(transactionId)
+                    .status(PaymentStatus.SUCCESS)
+                    .build();
+        };
+    }
+
+    private Supplier<PaymentResponse> fail(RuntimeException failure) {
+        return () -> {
+            runs.incrementAndGet();
+            throw failure;
+        };
+    }
+
+    private String stored() {
+        return redis.values().iterator().next().value();
+    }
+
+    private static void signIn(String username) {
+        User user = new User(username, "secret", List.of());
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+    }
+
+    /**
+     * Backs the Redis calls the service makes with a map whose entries expire like keys with a TTL.
+     */
+    @SuppressWarnings("unchecked")
+    private IdempotencyService service(Duration lockTtl, Duration waitTimeout) {
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> values = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(values);
+        when(values.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenAnswer(invocation -> {
+            String key = invocation.getArgument(0);
+            Entry entry = new Entry(invocation.getArgument(1), System.nanoTime() + invocation.<Duration>getArgument(2).toNanos());
+            return redis.compute(key, (k, current) -> current != null && current.live() ? current : entry) == entry;
+        });
+        when(values.get(anyString())).thenAnswer(invocation -> {
+            Entry entry = redis.get(invocation.<String>getArgument(0));
+            return entry != null && entry.live() ? entry.value() : null;
+        });
+        doAnswer(invocation -> redis.put(invocation.getArgument(0),
+                new Entry(invocation.getArgument(1), System.nanoTime() + invocation.<Duration>getArgument(2).toNanos())))
+                .when(values).set(anyString(), anyString(), any(Duration.class));
+        when(redisTemplate.delete(anyString())).thenAnswer(invocation -> redis.remove(invocation.<String>getArgument(0)) != null);
+        return new IdempotencyService(redisTemplate, new ObjectMapper().findAndRegisterModules(), Duration.ofHours(24), lockTtl, waitTimeout);
+    }
+}
@@ -0,0 +1,57 @@
+package com.loantrackr.service;
+
+import com.loantrackr.dto.projection.LenderTerms;
+import com.loantrackr.repository.LenderProfileRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class LenderCatalogTest {
+
+    private final LenderProfileRepository repository = mock(LenderProfileRepository.class);
+    private final LenderCatalog catalog = new LenderCatalog(repository, Duration.ofHours(1));
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void testInvalidate_InTransaction_EvictsOnlyAfterCommit() {
+        when(repository.findActiveLenderTerms()).thenReturn(List.of(terms("8.50")), List.of(terms("9.00")));
+        catalog.getActiveLenders();
+
+        TransactionSynchronizationManager.initSynchronization();
+        catalog.invalidate();
+
+        assertEquals(new BigDecimal("8.50"), catalog.getActiveLenders().get(0).interestRate());
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertEquals(new BigDecimal("9.00"), catalog.getActiveLenders().get(0).interestRate());
+    }
+
+    @Test
+    void testInvalidate_DuringReload_ReloadIsNotKept() {
+        when(repository.findActiveLenderTerms()).thenAnswer(invocation -> {
+            catalog.invalidate();
+            return List.of(terms("8.50"));
+        }).thenReturn(List.of(terms("9.00")));
+
+        assertEquals(new BigDecimal("8.50"), catalog.getActiveLenders().get(0).interestRate());
+        assertEquals(new BigDecimal("9.00"), catalog.getActiveLenders().get(0).interestRate());
+        verify(repository, times(2)).findActiveLenderTerms();
+    }
+
+    private static LenderTerms terms(String rate) {
+        return new LenderTerms(1L, "Test Finance", new BigDecimal(rate), new BigDecimal("500"), List.of(12));
+    }
+}
@@ -0,0 +1,181 @@
+package com.loantrackr.service;
+
+import com.loantrackr.enums.CalculatorEngine;
+import com.loantrackr.util.AmortizationSchedule;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Re-amortization after a part-prepayment, as {@link LoanService} does it: the outstanding
+ * principal less the prepayment is spread over the remaining tenure (reduce EMI) or over the
+ * shortest tenure the current EMI still covers (reduce tenure). Run against both engines.
+ */
+class LoanCalculatorServiceTest {
+
+    private static final BigDecimal RATE = new BigDecimal("12.00");
+    private static final BigDecimal ODD_RATE = new BigDecimal("10.75");
+
+    @Test
+    void testReduceEmi_KeepsTenureAndLowersEmi() {
+        for (CalculatorEngine engine : CalculatorEngine.values()) {
+            LoanCalculatorService calculator = new LoanCalculatorService(engine);
+            BigDecimal currentEmi = calculator.calculateEMI(new BigDecimal("500000.00"), RATE, 60);
+            BigDecimal outstanding = outstandingAfter(calculator, new BigDecimal("500000.00"), RATE, currentEmi, 60, 12);
+            BigDecimal newPrincipal = outstanding.subtract(new BigDecimal("100000.00"));
+
+            BigDecimal emi = calculator.calculateEMI(newPrincipal, RATE, 48);
+            AmortizationSchedule schedule = calculator.amortize(newPrincipal, RATE, emi, 48);
+
+            assertTrue(emi.compareTo(currentEmi) < 0, engine + ": " + emi + " >= " + currentEmi);
+            assertEquals(48, schedule.size());
+            assertClosesOut(engine, schedule, newPrincipal, RATE, emi);
+        }
+    }
+
+    @Test
+    void testReduceTenure_ShortestTenureCurrentEmiCovers() {
+        for (CalculatorEngine engine : CalculatorEngine.values()) {
+            LoanCalculatorService calculator = new LoanCalculatorService(engine);
+            BigDecimal currentEmi = calculator.calculateEMI(new BigDecimal("500000.00"), RATE, 60);
+            BigDecimal outstanding = outstandingAfter(calculator, new BigDecimal("500000.00"), RATE, currentEmi, 60, 12);
+            BigDecimal newPrincipal = outstanding.subtract(new BigDecimal("100000.00"));
+
+            int tenure = calculator.calculateTenureForEmi(newPrincipal, RATE, currentEmi, 48);
+            BigDecimal emi = calculator.calculateEMI(newPrincipal, RATE, tenure);
+
+            assertTrue(tenure < 48, engine + ": " + tenure);
+            assertTrue(emi.compareTo(currentEmi) <= 0, engine + ": " + emi + " > " + currentEmi);
+            assertTrue(calculator.calculateEMI(newPrincipal, RATE, tenure - 1).compareTo(currentEmi) > 0, engine + ": " + tenure);
+            assertClosesOut(engine, calculator.amortize(newPrincipal, RATE, emi, tenure), newPrincipal, RATE, emi);
+        }
+    }
+
+    @Test
+    void testReduceTenure_MatchesLinearSearch() {
+        for (CalculatorEngine engine : CalculatorEngine.values()) {
+            LoanCalculatorService calculator = new LoanCalculatorService(engine);
+            for (int remaining = 2; remaining <= 120; remaining += 7) {
+                BigDecimal currentEmi = calculator.calculateEMI(new BigDecimal("250000.00"), ODD_RATE, remaining);
+                for (String prepaid : new String[]{"0.01", "1234.56", "50000.00", "180000.00"}) {
+                    BigDecimal newPrincipal = new BigDecimal("250000.00").subtract(new BigDecimal(prepaid));
+
+                    int expected = 1;
+                    while (expected < remaining && calculator.calculateEMI(newPrincipal, ODD_RATE, expected).compareTo(currentEmi) > 0) {
+                        expected++;
+                    }
+
+                    assertEquals(expected, calculator.calculateTenureForEmi(newPrincipal, ODD_RATE, currentEmi, remaining),
+                            engine + ": remaining " + remaining + ", prepaid " + prepaid);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testReduceTenure_SmallBalance_OneFinalInstallment() {
+        for (CalculatorEngine engine : CalculatorEngine.values()) {
+            LoanCalculatorService calculator = new LoanCalculatorService(engine);
+            BigDecimal newPrincipal = new BigDecimal("500.00");
+
+            int tenure = calculator.calculateTenureForEmi(newPrincipal, RATE, new BigDecimal("11122.22"), 48);
+            BigDecimal emi = calculator.calculateEMI(newPrincipal, RATE, tenure);
+            AmortizationSchedule schedule = calculator.amortize(newPrincipal, RATE, emi, tenure);
+
+            assertEquals(1, tenure, engine.toString());
+            assertEquals(new BigDecimal("505.00"), emi, engine.toString());
+            assertEquals(new BigDecimal("500.00"), schedule.getPrincipal(0), engine.toString());
+            assertEquals(new BigDecimal("5.00"), schedule.getInterest(0), engine.toString());
+        }
+    }
+
+    @Test
+    void testReduceTenure_EmiBelowInterest_KeepsRemainingTenure() {
+        for (CalculatorEngine engine : CalculatorEngine.values()) {
+            LoanCalculatorService calculator = new LoanCalculatorService(engine);
+
+            // 1,000.00 a month never covers the 1% interest on 200,000.00
+            assertEquals(36, calculator.calculateTenureForEmi(new BigDecimal("200000.00"), RATE, new BigDecimal("1000.00"), 36),
+                    engine.toString());
+        }
+    }
+
+    @Test
+    void testReduceEmi_OddAmounts_FinalInstallmentAbsorbsRounding() {
+        for (CalculatorEngine engine : CalculatorEngine.values()) {
+            LoanCalculatorService calculator = new LoanCalculatorService(engine);
+            for (String principal : new String[]{"100000.01", "99999.99", "12345.67", "0.99"}) {
+                for (int tenure : new int[]{1, 2, 37, 84}) {
+                    BigDecimal newPrincipal = new BigDecimal(principal);
+                    BigDecimal emi = calculator.calculateEMI(newPrincipal, ODD_RATE, tenure);
+
+                    assertClosesOut(engine, calculator.amortize(newPrincipal, ODD_RATE, emi, tenure), newPrincipal, ODD_RATE, emi);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testEngines_SameReamortization() {
+        LoanCalculatorService bigDecimal = new LoanCalculatorService(CalculatorEngine.BIG_DECIMAL);
+        LoanCalculatorService fixedPoint = new LoanCalculatorService(CalculatorEngine.FIXED_POINT);
+
+        for (String principal : new String[]{"100000.01", "387654.32", "4999999.99"}) {
+            BigDecimal newPrincipal = new BigDecimal(principal);
+            BigDecimal currentEmi = bigDecimal.calculateEMI(newPrincipal.add(new BigDecimal("75000.00")), ODD_RATE, 84);
+
+            int tenure = bigDecimal.calculateTenureForEmi(newPrincipal, ODD_RATE, currentEmi, 84);
+            assertEquals(tenure, fixedPoint.calculateTenureForEmi(newPrincipal, ODD_RATE, currentEmi, 84), principal);
+
+            BigDecimal emi = bigDecimal.calculateEMI(newPrincipal, ODD_RATE, tenure);
+            assertEquals(emi, fixedPoint.calculateEMI(newPrincipal, ODD_RATE, tenure), principal);
+
+            AmortizationSchedule expected = bigDecimal.amortize(newPrincipal, ODD_RATE, emi, tenure);
+            AmortizationSchedule actual = fixedPoint.amortize(newPrincipal, ODD_RATE, emi, tenure);
+            for (int i = 0; i < tenure; i++) {
+                assertEquals(expected.getEmiPaise(i), actual.getEmiPaise(i), principal + " #" + (i + 1));
+                assertEquals(expected.getInterestPaise(i), actual.getInterestPaise(i), principal + " #" + (i + 1));
+            }
+        }
+    }
+
+    /**
+     * Principal repaid sums to the re-amortized principal, interest is charged on the remaining
+     * balance, and only the final installment differs from the EMI, by at most a paisa per installment.
+     */
+    private static void assertClosesOut(CalculatorEngine engine, AmortizationSchedule schedule,
+                                        BigDecimal principal, BigDecimal annualRate, BigDecimal emi) {
+        BigDecimal monthlyRate = annualRate.divide(BigDecimal.valueOf(1200), 10, RoundingMode.HALF_UP);
+        BigDecimal balance = principal;
+        int last = schedule.size() - 1;
+
+        for (int i = 0; i <= last; i++) {
+            String installment = engine + ": " + principal + " over " + schedule.size() + " #" + (i + 1);
+            assertEquals(balance.multiply(monthlyRate).setScale(2, RoundingMode.HALF_UP), schedule.getInterest(i), installment);
+            assertEquals(schedule.getEmi(i), schedule.getPrincipal(i).add(schedule.getInterest(i)), installment);
+            if (i < last) {
+                assertEquals(emi, schedule.getEmi(i), installment);
+            } else {
+                assertEquals(balance, schedule.getPrincipal(i), installment);
+                BigDecimal drift = schedule.getEmi(i).subtract(emi).abs();
+                assertTrue(drift.compareTo(new BigDecimal("0.01").multiply(BigDecimal.valueOf(schedule.size()))) <= 0,
+                        installment + " drifted " + drift);
+            }
+            balance = balance.subtract(schedule.getPrincipal(i));
+        }
+        assertEquals(0, balance.signum(), engine + ": " + principal + " left " + balance);
+    }
+
+    private static BigDecimal outstandingAfter(LoanCalculatorService calculator, BigDecimal principal, BigDecimal annualRate,
+                                               BigDecimal emi, int tenure, int paid) {
+        AmortizationSchedule schedule = calculator.amortize(principal, annualRate, emi, tenure);
+        BigDecimal outstanding = principal;
+        for (int i = 0; i < paid; i++) {
+            outstanding = outstanding.subtract(schedule.getPrincipal(i));
+        }
+        return outstanding;
+    }
+}
@@ -0,0 +1,158 @@
+package com.loantrackr.service;
+
+import com.loantrackr.exception.PaymentInProgressException;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class LoanPaymentGateTest {
+
+    private final DataSource dataSource = mock(DataSource.class);
+    private final Connection connection = mock(Connection.class);
+    private final PreparedStatement statement = mock(PreparedStatement.class);
+    private final ResultSet resultSet = mock(ResultSet.class);
+
+    @Test
+    void testEnter_LoanAlreadyAdmitted_RejectedUntilReleased() {
+        LoanPaymentGate gate = new LoanPaymentGate(dataSource, false, 2);
+
+        LoanPaymentGate.Permit permit = gate.enter(1L);
+
+        assertThrows(PaymentInProgressException.class, () -> gate.enter(1L));
+        try (LoanPaymentGate.Permit other = gate.enter(2L)) {
+            assertTrue(other.admits(2L));
+        }
+        permit.close();
+        assertDoesNotThrow(() -> gate.enter(1L).close());
+    }
+
+    @Test
+    void testEnter_PaymentThrows_ReleasesLoan() {
+        LoanPaymentGate gate = new LoanPaymentGate(dataSource, false, 2);
+
+        assertThrows(IllegalStateException.class, () -> {
+            try (LoanPaymentGate.Permit permit = gate.enter(1L)) {
+                throw new IllegalStateException("Gateway failed");
+            }
+        });
+
+        assertDoesNotThrow(() -> gate.enter(1L).close());
+    }
+
+    @Test
+    void testTryEnter_SomeLoansBusy_AdmitsTheOthersAndReleasesThemOnClose() {
+        LoanPaymentGate gate = new LoanPaymentGate(dataSource, false, 2);
+        LoanPaymentGate.Permit payment = gate.enter(2L);
+
+        try (LoanPaymentGate.Permit batch = gate.tryEnter(List.of(1L, 2L, 3L, 1L))) {
+            assertEquals(Set.of(1L, 3L), batch.getLoanIds());
+            assertFalse(batch.admits(2L));
+            assertThrows(PaymentInProgressException.class, () -> gate.enter(3L));
+        }
+
+        assertDoesNotThrow(() -> gate.enter(3L).close());
+        assertThrows(PaymentInProgressException.class, () -> gate.enter(2L));
+        payment.close();
+    }
+
+    @Test
+    void testTryEnter_AdvisoryLockHeldElsewhere_TurnsLoanAwayAndUnlocksOnlyItsOwn() throws SQLException {
+        stubConnection();
+        when(resultSet.getBoolean(1)).thenReturn(true, false, true);
+        LoanPaymentGate gate = new LoanPaymentGate(dataSource, true, 1);
+
+        LoanPaymentGate.Permit batch = gate.tryEnter(List.of(1L, 2L));
+
+        assertEquals(Set.of(1L), batch.getLoanIds());
+        batch.close();
+        verify(connection, times(2)).prepareStatement("SELECT pg_try_advisory_lock(?)");
+        verify(connection).prepareStatement("SELECT pg_advisory_unlock(?)");
+        verify(statement, times(2)).setLong(1, 1L);
+        verify(connection, never()).close();
+    }
+
+    @Test
+    void testTryEnter_ManyPermits_ShareTheLockConnections() throws SQLException {
+        stubConnection();
+        when(resultSet.getBoolean(1)).thenReturn(true);
+        LoanPaymentGate gate = new LoanPaymentGate(dataSource, true, 2);
+
+        List<LoanPaymentGate.Permit> permits = new ArrayList<>();
+        for (long loanId = 1; loanId <= 10; loanId++) {
+            permits.add(gate.enter(loanId));
+        }
+        permits.forEach(LoanPaymentGate.Permit::close);
+
+        verify(dataSource, times(2)).getConnection();
+        verify(connection, never()).close();
+        gate.shutdown();
+        verify(connection, times(2)).close();
+    }
+
+    @Test
+    void testEnter_AdvisoryLockHeldElsewhere_Rejected() throws SQLException {
+        stubConnection();
+        when(resultSet.getBoolean(1)).thenReturn(false, true);
+        LoanPaymentGate gate = new LoanPaymentGate(dataSource, true, 1);
+
+        assertThrows(PaymentInProgressException.class, () -> gate.enter(1L));
+        verify(connection, never()).prepareStatement("SELECT pg_advisory_unlock(?)");
+
+        // Not left marked in flight on this instance
+        assertDoesNotThrow(() -> gate.enter(1L).close());
+    }
+
+    @Test
+    void testEnter_AdvisoryLockQueryFails_BrokenConnectionReplaced() throws SQLException {
+        stubConnection();
+        when(statement.executeQuery()).thenThrow(new SQLException("Connection reset"));
+        when(connection.isValid(anyInt())).thenReturn(false);
+        LoanPaymentGate gate = new LoanPaymentGate(dataSource, true, 1);
+
+        assertThrows(IllegalStateException.class, () -> gate.enter(1L));
+        verify(connection).close();
+
+        reset(statement);
+        when(statement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.getBoolean(1)).thenReturn(true);
+        assertDoesNotThrow(() -> gate.enter(1L).close());
+        verify(dataSource, times(2)).getConnection();
+    }
+
+    @Test
+    void testTryEnter_AdvisoryLockQueryFailsMidBatch_ReleasesLocksTaken() throws SQLException {
+        stubConnection();
+        when(resultSet.getBoolean(1)).thenReturn(true);
+        when(statement.executeQuery()).thenReturn(resultSet, resultSet).thenThrow(new SQLException("Lock timeout")).thenReturn(resultSet);
+        when(connection.isValid(anyInt())).thenReturn(true);
+        LoanPaymentGate gate = new LoanPaymentGate(dataSource, true, 1);
+        LoanPaymentGate.Permit other = gate.enter(3L);
+
+        assertThrows(IllegalStateException.class, () -> gate.tryEnter(List.of(1L, 2L)));
+
+        // The connection and the other permit's lock on it are kept
+        verify(connection, never()).close();
+        verify(connection).prepareStatement("SELECT pg_advisory_unlock(?)");
+        verify(statement, times(2)).setLong(1, 1L); // Locked, then unlocked
+        assertTrue(other.admits(3L));
+        other.close();
+    }
+
+    private void stubConnection() throws SQLException {
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+    }
+}
@@ -0,0 +1,162 @@
+package com.loantrackr.service;
+
+import com.loantrackr.dto.response.OverdueRunResult;
+import com.loantrackr.enums.LoanRepaymentStatus;
+import com.loantrackr.enums.LoanStatus;
+import com.loantrackr.enums.ScheduleStorage;
+import com.loantrackr.model.Loan;
+import com.loantrackr.model.LoanConfiguration;
+import com.loantrackr.model.LoanRepaymentSchedule;
+import com.loantrackr.repository.LoanConfigurationRepository;
+import com.loantrackr.repository.LoanRepository;
+import com.loantrackr.util.AmortizationSchedule;
+import com.loantrackr.util.LoanCalculatorUtil;
+import com.loantrackr.util.PackedScheduleCodec;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class OverdueInstallmentJobTest {
+
+    private static final long LOAN_ID = 7L;
+
+    private final LoanRepository loanRepository = mock(LoanRepository.class);
+    private final LoanConfigurationRepository configRepository = mock(LoanConfigurationRepository.class);
+    private final RepaymentScheduleService scheduleService = mock(RepaymentScheduleService.class);
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final OverdueInstallmentJob job = new OverdueInstallmentJob(loanRepository, configRepository, scheduleService,
+            jdbcTemplate, mock(PlatformTransactionManager.class), 100);
+
+    @Test
+    void testRun_ActiveConfiguration_MarksRowsPastGraceAndChargesConfiguredFee() {
+        when(configRepository.findByActive(true)).thenReturn(configuration(5, "750.00"));
+        when(jdbcTemplate.update(startsWith("UPDATE loan_repayment_schedule s SET status = 'OVERDUE'"), any(LocalDateTime.class), any(LocalDate.class))).thenReturn(4);
+        when(jdbcTemplate.update(startsWith("UPDATE loan_repayment_schedule s SET late_fee"), any(BigDecimal.class), any(LocalDateTime.class))).thenReturn(3);
+
+        OverdueRunResult result = job.run();
+
+        LocalDate cutoff = LocalDate.now().minusDays(5);
+        verify(jdbcTemplate).update(startsWith("UPDATE loan_repayment_schedule s SET status = 'OVERDUE'"), any(LocalDateTime.class), eq(cutoff));
+        verify(jdbcTemplate).update(startsWith("UPDATE loan_repayment_schedule s SET late_fee"), eq(new BigDecimal("750.00")), any(LocalDateTime.class));
+        verify(loanRepository).findDerivedScheduleIdsDueBefore(eq(cutoff), eq(0L), any());
+        assertEquals(5, result.getGracePeriodDays());
+        assertEquals(new BigDecimal("750.00"), result.getLateFeeAmount());
+        assertEquals(4, result.getMarkedOverdue());
+        assertEquals(3, result.getLateFeesCharged());
+    }
+
+    @Test
+    void testRun_NoActiveConfiguration_UsesDefaultGraceAndFee() {
+        OverdueRunResult result = job.run();
+
+        verify(jdbcTemplate).update(startsWith("UPDATE loan_repayment_schedule s SET status = 'OVERDUE'"), any(LocalDateTime.class),
+                eq(LocalDate.now().minusDays(3)));
+        verify(jdbcTemplate).update(startsWith("UPDATE loan_repayment_schedule s SET late_fee"), eq(new BigDecimal("500")), any(LocalDateTime.class));
+        assertEquals(3, result.getGracePeriodDays());
+        assertEquals(0, result.getMarkedOverdue());
+    }
+
+    @Test
+    void testRun_PackedSchedule_MarksUnpaidInstallmentsPastGraceAndChargesOnce() {
+        // Due four, three, two and one month ago, today and next month; the first is paid and the
+        // third was marked and charged by an earlier run
+        List<LoanRepaymentSchedule> installments = schedule(6, LocalDate.now().minusMonths(4));
+        installments.get(0).setStatus(LoanRepaymentStatus.PAID);
+        installments.get(0).setPaidDate(installments.get(0).getDueDate());
+        installments.get(2).setStatus(LoanRepaymentStatus.OVERDUE);
+        installments.get(2).setLateFee(new BigDecimal("500.00"));
+        Loan loan = loan(ScheduleStorage.PACKED, 1);
+        loan.setPackedSchedule(PackedScheduleCodec.encode(installments));
+        when(configRepository.findByActive(true)).thenReturn(configuration(3, "750.00"));
+        when(loanRepository.findDerivedScheduleIdsDueBefore(any(), eq(0L), any())).thenReturn(List.of(LOAN_ID));
+        when(loanRepository.findAllByIdForUpdate(List.of(LOAN_ID))).thenReturn(List.of(loan));
+
+        OverdueRunResult result = job.run();
+
+        ArgumentCaptor<List<Object[]>> updates = ArgumentCaptor.captor();
+        verify(jdbcTemplate).batchUpdate(startsWith("UPDATE loan SET packed_schedule"), updates.capture());
+        byte[] packed = (byte[]) updates.getValue().get(0)[0];
+        List<LoanRepaymentSchedule> marked = PackedScheduleCodec.decode(packed, loan);
+        assertEquals(LoanRepaymentStatus.PAID, marked.get(0).getStatus());
+        assertEquals(LoanRepaymentStatus.OVERDUE, marked.get(1).getStatus());
+        assertEquals(new BigDecimal("750.00"), marked.get(1).getLateFee());
+        assertEquals(new BigDecimal("500.00"), marked.get(2).getLateFee());
+        assertEquals(LoanRepaymentStatus.OVERDUE, marked.get(3).getStatus());
+        assertEquals(LoanRepaymentStatus.PENDING, marked.get(4).getStatus());
+        assertEquals(0, marked.get(4).getLateFee().signum());
+        // The managed loan keeps its schedule; only the batch writes the patched copy
+        assertNotSame(loan.getPackedSchedule(), packed);
+        assertEquals(2, result.getMarkedOverdue());
+        assertEquals(2, result.getLateFeesCharged());
+        assertEquals(1, result.getPackedSchedulesUpdated());
+    }
+
+    @Test
+    void testRun_ComputedSchedule_InsertsUnpaidInstallmentsPastGraceWithFee() {
+        Loan loan = loan(ScheduleStorage.COMPUTED, 1);
+        when(scheduleService.buildInstallments(loan)).thenReturn(schedule(6, LocalDate.now().minusMonths(4)));
+        when(loanRepository.findDerivedScheduleIdsDueBefore(any(), eq(0L), any())).thenReturn(List.of(LOAN_ID));
+        when(loanRepository.findAllByIdForUpdate(List.of(LOAN_ID))).thenReturn(List.of(loan));
+        // The third was given a row meanwhile and is left alone
+        when(jdbcTemplate.batchUpdate(startsWith("INSERT INTO loan_repayment_schedule"), anyList())).thenReturn(new int[]{1, 0, 1});
+
+        OverdueRunResult result = job.run();
+
+        ArgumentCaptor<List<Object[]>> inserts = ArgumentCaptor.captor();
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO loan_repayment_schedule"), inserts.capture());
+        assertEquals(List.of(2, 3, 4), inserts.getValue().stream().map(row -> (Integer) row[1]).toList());
+        inserts.getValue().forEach(row -> assertEquals(new BigDecimal("500"), row[6]));
+        verify(jdbcTemplate).batchUpdate(startsWith("UPDATE loan SET version"), anyList());
+        assertEquals(2, result.getComputedInstallmentsInserted());
+        assertEquals(2, result.getMarkedOverdue());
+        assertEquals(2, result.getLateFeesCharged());
+    }
+
+    private static LoanConfiguration configuration(int gracePeriodDays, String lateFee) {
+        LoanConfiguration config = new LoanConfiguration();
+        config.setGracePeriodDays(gracePeriodDays);
+        config.setLateFeeAmount(new BigDecimal(lateFee));
+        return config;
+    }
+
+    private static Loan loan(ScheduleStorage storage, int paidInstallments) {
+        Loan loan = new Loan();
+        loan.setId(LOAN_ID);
+        loan.setStatus(LoanStatus.DISBURSED);
+        loan.setScheduleStorage(storage);
+        loan.setTotalInstallments(6);
+        loan.setPaidInstallments(paidInstallments);
+        return loan;
+    }
+
+    private static List<LoanRepaymentSchedule> schedule(int tenure, LocalDate firstDueDate) {
+        BigDecimal principal = new BigDecimal("30000.00");
+        BigDecimal annualRate = new BigDecimal("12");
+        BigDecimal emi = LoanCalculatorUtil.calculateEMI(principal, annualRate, tenure);
+        AmortizationSchedule amortization = LoanCalculatorUtil.amortize(principal, annualRate, emi, tenure);
+        List<LoanRepaymentSchedule> installments = new ArrayList<>();
+        for (int i = 0; i < tenure; i++) {
+            installments.add(LoanRepaymentSchedule.builder()
+                    .installmentNumber(i + 1)
+                    .emiAmount(amortization.getEmi(i))
+                    .principalAmount(amortization.getPrincipal(i))
+                    .interestAmount(amortization.getInterest(i))
+                    .dueDate(firstDueDate.plusMonths(i))
+                    .status(LoanRepaymentStatus.PENDING)
+                    .lateFee(BigDecimal.ZERO)
+                    .build());
+        }
+        return installments;
+    }
+}
@@ -0,0 +1,149 @@
+package com.loantrackr.service;
+
+import com.loantrackr.dto.request.PaymentGatewayRequest;
+import com.loantrackr.dto.response.PaymentGatewayResponse;
+import com.loantrackr.enums.PaymentStatus;
+import com.loantrackr.exception.GatewayUnavailableException;
+import com.loantrackr.util.CircuitBreaker;
+import com.loantrackr.util.MockPaymentGateway;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * The guard around payment calls, against a gateway that fails, answers or hangs on demand.
+ * One bulkhead permit, a 200 ms timeout and a circuit that trips once two calls in a row failed.
+ */
+class PaymentGatewayClientTest {
+
+    private static final Duration TIMEOUT = Duration.ofMillis(200);
+
+    private final MockPaymentGateway gateway = mock(MockPaymentGateway.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final CountDownLatch hangingCallEnds = new CountDownLatch(1);
+    private PaymentGatewayClient client;
+
+    @AfterEach
+    void shutdown() {
+        hangingCallEnds.countDown();
+        client.shutdown();
+    }
+
+    @Test
+    void testProcessPayment_TimedOut_PermitHeldUntilCallEnds() throws Exception {
+        client = newClient(Duration.ofSeconds(30));
+        when(gateway.processPayment(any())).thenAnswer(invocation -> hang()).thenReturn(success());
+
+        GatewayUnavailableException timedOut = assertThrows(GatewayUnavailableException.class, this::pay);
+        assertTrue(timedOut.isCallAttempted());
+
+        // Cancelling did not end the call, so its permit is still taken
+        assertEquals(1, inFlight());
+        GatewayUnavailableException full = assertThrows(GatewayUnavailableException.class, this::pay);
+        assertFalse(full.isCallAttempted());
+        verify(gateway, times(1)).processPayment(any());
+
+        hangingCallEnds.countDown();
+        awaitNoneInFlight();
+        assertEquals(PaymentStatus.SUCCESS, pay().getStatus());
+    }
+
+    @Test
+    void testProcessPayment_BulkheadFull_HandsBackBreakerPermission() throws Exception {
+        client = newClient(Duration.ofMillis(300));
+        when(gateway.processPayment(any()))
+                .thenThrow(new IllegalStateException("Gateway error"))
+                .thenAnswer(invocation -> hang())
+                .thenReturn(success());
+
+        assertThrows(IllegalStateException.class, this::pay);
+        assertThrows(GatewayUnavailableException.class, this::pay); // Times out, still holding the permit
+        assertEquals(CircuitBreaker.State.OPEN, client.getPaymentCircuitState());
+
+        // The one half-open trial is granted, then turned away by the bulkhead before being sent
+        Thread.sleep(400);
+        GatewayUnavailableException full = assertThrows(GatewayUnavailableException.class, this::pay);
+        assertFalse(full.isCallAttempted());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, client.getPaymentCircuitState());
+
+        // Had the trial not been handed back, the circuit would turn this call away too
+        hangingCallEnds.countDown();
+        awaitNoneInFlight();
+        assertEquals(PaymentStatus.SUCCESS, pay().getStatus());
+        assertEquals(CircuitBreaker.State.CLOSED, client.getPaymentCircuitState());
+        verify(gateway, times(3)).processPayment(any());
+    }
+
+    @Test
+    void testProcessPayment_CircuitOpen_FailsFastWithRetryAfter() {
+        client = newClient(Duration.ofSeconds(30));
+        when(gateway.processPayment(any())).thenThrow(new IllegalStateException("Gateway error"));
+
+        assertThrows(IllegalStateException.class, this::pay);
+        assertThrows(IllegalStateException.class, this::pay);
+        assertEquals(CircuitBreaker.State.OPEN, client.getPaymentCircuitState());
+
+        long start = System.nanoTime();
+        GatewayUnavailableException open = assertThrows(GatewayUnavailableException.class, this::pay);
+        assertTrue(System.nanoTime() - start < TIMEOUT.toNanos());
+        assertFalse(open.isCallAttempted());
+        assertTrue(open.getRetryAfter().compareTo(Duration.ofSeconds(29)) > 0, open.getRetryAfter().toString());
+        assertTrue(open.getRetryAfter().compareTo(Duration.ofSeconds(30)) <= 0, open.getRetryAfter().toString());
+        verify(gateway, times(2)).processPayment(any());
+    }
+
+    private PaymentGatewayClient newClient(Duration waitInOpen) {
+        // Window of 2, trips at 50% failures; slow calls never count here
+        return new PaymentGatewayClient(gateway, registry, Duration.ofMillis(50),
+                1, TIMEOUT, Duration.ofSeconds(10),
+                1, TIMEOUT, Duration.ofSeconds(10),
+                2, 2, 50, 100, waitInOpen, 1);
+    }
+
+    private PaymentGatewayResponse pay() {
+        return client.processPayment(new PaymentGatewayRequest());
+    }
+
+    /**
+     * A gateway call that ignores cancellation and only returns once the test lets it.
+     */
+    private PaymentGatewayResponse hang() {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                hangingCallEnds.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return success();
+    }
+
+    private double inFlight() {
+        return registry.get("payment.gateway.in.flight").tag("operation", "payment").gauge().value();
+    }
+
+    private void awaitNoneInFlight() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (inFlight() > 0) {
+            assertTrue(System.nanoTime() < deadline, "Hanging call never released its permit");
+            Thread.sleep(10);
+        }
+    }
+
+    private static PaymentGatewayResponse success() {
+        return PaymentGatewayResponse.builder().transactionId("TXN1").status(PaymentStatus.SUCCESS).build();
+    }
+}
@@ -0,0 +1,184 @@
+package com.loantrackr.service;
+
+import com.loantrackr.enums.BatchJobStatus;
+import com.loantrackr.model.ReconciliationJob;
+import com.loantrackr.repository.ReconciliationJobRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ReconciliationServiceTest {
+
+    private static final String HEADER =
+            "line_number,gateway_transaction_id,mismatch,gateway_status,our_status,gateway_amount,our_amount,payment_id,loan_id,detail";
+    private static final List<String> SETTLEMENT_FILE = List.of(
+            "gateway_transaction_id,amount,status",
+            "GW1,100.00,SUCCESS",  // 2: matched
+            "GW2,200.00,SUCCESS",  // 3: two payments of ours carry GW2
+            "GW1,100.00,SUCCESS",  // 4: GW1 again, so lines 2-3 are reconciled first
+            "GW3,300.00,SUCCESS",  // 5: no payment of ours
+            "GW4,400.00,FAILED",   // 6: status and amount both differ
+            "GW5,abc,SUCCESS");    // 7: unreadable
+
+    private final ReconciliationJobRepository jobRepository = mock(ReconciliationJobRepository.class);
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final ReconciliationService service = new ReconciliationService(jobRepository, mock(FileStorageService.class), jdbcTemplate, 3);
+
+    // id, loan_id, gateway_transaction_id, amount, status
+    private final List<Object[]> payments = List.of(
+            new Object[]{11L, 1L, "GW1", "100.00", "SUCCESS"},
+            new Object[]{12L, 2L, "GW2", "200.00", "SUCCESS"},
+            new Object[]{13L, 2L, "GW2", "200.00", "SUCCESS"},
+            new Object[]{14L, 4L, "GW4", "450.00", "SUCCESS"});
+    private final List<Set<String>> queried = new ArrayList<>();
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    @TempDir
+    Path folder;
+
+    @AfterEach
+    void shutdown() {
+        service.shutdown();
+    }
+
+    @Test
+    void testReconcile_ChunkedProbe_ReportsEveryMismatch() throws Exception {
+        ReconciliationJob job = job(0);
+
+        run(job);
+
+        assertEquals(BatchJobStatus.COMPLETED, job.getStatus());
+        // The repeated GW1 flushed the first chunk early; the unreadable line left nothing to query
+        // Differences found probing are written before the chunk's missing transactions
+        assertEquals(List.of(Set.of("GW1", "GW2"), Set.of("GW1", "GW3", "GW4")), queried);
+        assertEquals(6, job.getTotalRows());
+        assertEquals(3, job.getMatchedRows());
+        assertEquals(1, job.getMissingRows());
+        assertEquals(1, job.getStatusMismatches());
+        assertEquals(1, job.getAmountMismatches());
+        assertEquals(2, job.getOtherMismatches());
+        assertEquals(7, job.getLastProcessedLine());
+        assertEquals(List.of(
+                HEADER,
+                "3,GW2,DUPLICATE_ON_OUR_SIDE,SUCCESS,SUCCESS,200.00,200.00,13,2,",
+                "6,GW4,STATUS_DIFFERS,FAILED,SUCCESS,400.00,450.00,14,4,",
+                "6,GW4,AMOUNT_DIFFERS,FAILED,SUCCESS,400.00,450.00,14,4,",
+                "5,GW3,MISSING_ON_OUR_SIDE,SUCCESS,,300.00,,,,",
+                "7,,INVALID_ROW,,,,,,,Invalid amount: abc"), results(job));
+    }
+
+    @Test
+    void testReconcile_Interrupted_ResumesAfterLastProcessedLine() throws Exception {
+        // Lines 2-3 were reconciled before the restart
+        ReconciliationJob job = job(3);
+        job.setTotalRows(2);
+        job.setMatchedRows(2);
+        job.setOtherMismatches(1);
+        Files.write(Path.of(job.getResultFile()), List.of(HEADER, "3,GW2,DUPLICATE_ON_OUR_SIDE,SUCCESS,SUCCESS,200.00,200.00,13,2,"));
+
+        run(job);
+
+        assertEquals(BatchJobStatus.COMPLETED, job.getStatus());
+        assertEquals(List.of(Set.of("GW1", "GW3", "GW4")), queried);
+        assertEquals(6, job.getTotalRows());
+        assertEquals(3, job.getMatchedRows());
+        assertEquals(2, job.getOtherMismatches());
+        List<String> results = results(job);
+        assertEquals(6, results.size());
+        assertEquals(1, results.stream().filter(HEADER::equals).count());
+        assertEquals(1, results.stream().filter(line -> line.contains("DUPLICATE_ON_OUR_SIDE")).count());
+    }
+
+    private ReconciliationJob job(long lastProcessedLine) throws IOException {
+        Path stored = Files.write(folder.resolve("settlement.csv"), SETTLEMENT_FILE);
+        return ReconciliationJob.builder()
+                .id(1L)
+                .fileName("settlement.csv")
+                .storedFile(stored.toString())
+                .resultFile(folder.resolve("1-mismatches.csv").toString())
+                .uploadedBy("admin")
+                .status(BatchJobStatus.RUNNING)
+                .lastProcessedLine(lastProcessedLine)
+                .build();
+    }
+
+    private void run(ReconciliationJob job) throws Exception {
+        when(jobRepository.findByStatusOrderById(BatchJobStatus.RUNNING)).thenReturn(List.of(job));
+        when(jobRepository.findById(1L)).thenReturn(Optional.of(job));
+        when(jobRepository.save(any())).thenAnswer(invocation -> {
+            ReconciliationJob saved = invocation.getArgument(0);
+            if (saved.getStatus() != BatchJobStatus.RUNNING) {
+                finished.countDown();
+            }
+            return saved;
+        });
+        stubPaymentQuery();
+
+        service.resumeInterruptedJobs();
+
+        assertTrue(finished.await(10, TimeUnit.SECONDS), "Reconciliation did not finish");
+    }
+
+    /**
+     * Streams back our payments for the IDs bound to the query, in table order.
+     */
+    private void stubPaymentQuery() throws Exception {
+        doAnswer(invocation -> {
+            String[][] ids = new String[1][];
+            Connection connection = mock(Connection.class);
+            when(connection.createArrayOf(eq("varchar"), any())).thenAnswer(create -> {
+                ids[0] = (String[]) create.getArgument(1);
+                return null;
+            });
+            PreparedStatement statement = mock(PreparedStatement.class);
+            when(statement.getConnection()).thenReturn(connection);
+            invocation.<PreparedStatementSetter>getArgument(1).setValues(statement);
+            queried.add(Set.of(ids[0]));
+
+            RowCallbackHandler handler = invocation.getArgument(2);
+            for (Object[] payment : payments) {
+                if (Set.of(ids[0]).contains((String) payment[2])) {
+                    handler.processRow(row(payment));
+                }
+            }
+            return null;
+        }).when(jdbcTemplate).query(startsWith("SELECT id, loan_id, gateway_transaction_id"),
+                any(PreparedStatementSetter.class), any(RowCallbackHandler.class));
+    }
+
+    private static ResultSet row(Object[] payment) throws Exception {
+        ResultSet resultSet = mock(ResultSet.class);
+        when(resultSet.getLong("id")).thenReturn((Long) payment[0]);
+        when(resultSet.getLong("loan_id")).thenReturn((Long) payment[1]);
+        when(resultSet.getString("gateway_transaction_id")).thenReturn((String) payment[2]);
+        when(resultSet.getBigDecimal("amount")).thenReturn(new BigDecimal((String) payment[3]));
+        when(resultSet.getString("status")).thenReturn((String) payment[4]);
+        return resultSet;
+    }
+
+    private static List<String> results(ReconciliationJob job) throws IOException {
+        return Files.readAllLines(Path.of(job.getResultFile()), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,334 @@
+package com.loantrackr.service;
+
+import com.loantrackr.enums.LoanRepaymentStatus;
+import com.loantrackr.enums.LoanStatus;
+import com.loantrackr.enums.PaymentMethod;
+import com.loantrackr.enums.PaymentStatus;
+import com.loantrackr.enums.ScheduleStorage;
+import com.loantrackr.model.Loan;
+import com.loantrackr.model.LoanRepaymentSchedule;
+import com.loantrackr.repository.LoanConfigurationRepository;
+import com.loantrackr.repository.LoanPaymentRepository;
+import com.loantrackr.repository.LoanRepaymentScheduleRepository;
+import com.loantrackr.repository.LoanRepository;
+import com.loantrackr.util.AmortizationSchedule;
+import com.loantrackr.util.LoanCalculatorUtil;
+import com.loantrackr.util.PackedScheduleCodec;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.SqlParameterValue;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class RepaymentPostingServiceTest {
+
+    private static final long LOAN_ID = 7L;
+    private static final int TENURE = 6;
+    private static final LocalDate FIRST_DUE_DATE = LocalDate.of(2025, 1, 5);
+
+    private final LoanRepository loanRepository = mock(LoanRepository.class);
+    private final LoanRepaymentScheduleRepository scheduleRepository = mock(LoanRepaymentScheduleRepository.class);
+    private final LoanPaymentRepository paymentRepository = mock(LoanPaymentRepository.class);
+    private final RepaymentScheduleService scheduleService = mock(RepaymentScheduleService.class);
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final RepaymentPostingService postingService = new RepaymentPostingService(loanRepository, scheduleRepository,
+            paymentRepository, mock(LoanConfigurationRepository.class), scheduleService, jdbcTemplate);
+
+    private final List<LoanRepaymentSchedule> installments = schedule();
+
+    @Test
+    void testPost_RowsLoan_SettlesNextInstallmentAndBumpsVersions() {
+        Loan loan = loan(ScheduleStorage.ROWS, 1);
+        LoanRepaymentSchedule next = row(2, 102L);
+        stubLoan(loan, next);
+
+        RepaymentPostingService.Outcome outcome = postingService.post(List.of(debit(1, emi(2), "REF1")));
+
+        assertEquals(1, outcome.posted());
+        assertTrue(outcome.rejections().isEmpty());
+        Object[] installmentUpdate = single("UPDATE loan_repayment_schedule");
+        assertEquals(LoanRepaymentStatus.PAID.name(), installmentUpdate[1]);
+        assertEquals(emi(2), installmentUpdate[3]);
+        assertEquals(102L, installmentUpdate[5]);
+        Object[] payment = single("INSERT INTO loan_payments");
+        assertEquals(102L, value(payment[1]));
+        assertEquals("REF1", payment[8]);
+        Object[] loanUpdate = single("UPDATE loan SET");
+        assertEquals(remainingAfter(2), loanUpdate[0]);
+        assertEquals(2, loanUpdate[2]);
+        assertEquals(installments.get(2).getDueDate(), value(loanUpdate[3]));
+        assertEquals(LoanStatus.DISBURSED.name(), loanUpdate[4]);
+        assertNull(value(loanUpdate[5]));
+        // Written past the entities, so both writes carry the optimistic lock along
+        verify(jdbcTemplate).batchUpdate(argThat((String sql) -> sql.startsWith("UPDATE loan_repayment_schedule")
+                && sql.contains("version = version + 1")), anyList());
+        verify(jdbcTemplate).batchUpdate(argThat((String sql) -> sql.startsWith("UPDATE loan SET")
+                && sql.contains("version = version + 1")), anyList());
+    }
+
+    @Test
+    void testPost_DuplicateReference_RejectedAndNothingWritten() {
+        Loan loan = loan(ScheduleStorage.ROWS, 1);
+        stubLoan(loan, row(2, 102L));
+        when(paymentRepository.findExistingGatewayTransactionIds(anyCollection())).thenReturn(List.of("REF_POSTED"));
+
+        RepaymentPostingService.Outcome outcome = postingService.post(List.of(
+                debit(1, emi(2), "REF_POSTED"),
+                bounce(2, emi(2), "REF_BOUNCED"),
+                bounce(3, emi(2), "REF_BOUNCED")));
+
+        assertEquals(0, outcome.posted());
+        assertEquals(1, outcome.bounced());
+        assertEquals(List.of(1L, 3L), outcome.rejections().stream().map(RepaymentPostingService.Rejection::sequence).toList());
+        outcome.rejections().forEach(rejection -> assertEquals("Reference already posted", rejection.error()));
+        assertEquals(PaymentStatus.FAILED.name(), single("INSERT INTO loan_payments")[6]);
+        verify(jdbcTemplate, never()).batchUpdate(startsWith("UPDATE loan"), anyList());
+    }
+
+    @Test
+    void testPost_WrongAmount_Rejected() {
+        Loan loan = loan(ScheduleStorage.ROWS, 1);
+        stubLoan(loan, row(2, 102L));
+
+        RepaymentPostingService.Outcome outcome = postingService.post(List.of(debit(1, emi(2).subtract(new BigDecimal("0.01")), "REF1")));
+
+        assertEquals(0, outcome.posted());
+        assertEquals("Payment amount must be exactly " + emi(2), outcome.rejections().get(0).error());
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    void testPost_OverdueInstallmentWithFee_LatePaidWithFee() {
+        Loan loan = loan(ScheduleStorage.ROWS, 1);
+        LoanRepaymentSchedule next = row(2, 102L);
+        next.setStatus(LoanRepaymentStatus.OVERDUE);
+        next.setLateFee(new BigDecimal("500.00"));
+        stubLoan(loan, next);
+        BigDecimal due = emi(2).add(new BigDecimal("500.00"));
+
+        assertEquals("Payment amount must be exactly " + due,
+                postingService.post(List.of(debit(1, emi(2), "REF1"))).rejections().get(0).error());
+        RepaymentPostingService.Outcome outcome = postingService.post(List.of(debit(2, due, "REF2")));
+
+        assertEquals(1, outcome.posted());
+        Object[] installmentUpdate = single("UPDATE loan_repayment_schedule");
+        assertEquals(LoanRepaymentStatus.LATE_PAID.name(), installmentUpdate[1]);
+        assertEquals(new BigDecimal("500.00"), installmentUpdate[2]);
+        assertEquals(due, installmentUpdate[3]);
+        // The fee is not part of the amount to repay
+        assertEquals(remainingAfter(2), single("UPDATE loan SET")[0]);
+    }
+
+    @Test
+    void testPost_ExistingPartPayment_CollectsTheRestAndClearsIt() {
+        Loan loan = loan(ScheduleStorage.ROWS, 1);
+        loan.setPartiallyPaidAmount(new BigDecimal("1000.00"));
+        stubLoan(loan, row(2, 102L));
+        BigDecimal rest = emi(2).subtract(new BigDecimal("1000.00"));
+
+        RepaymentPostingService.Outcome outcome = postingService.post(List.of(debit(1, rest, "REF1")));
+
+        assertEquals(1, outcome.posted());
+        assertEquals(rest, single("INSERT INTO loan_payments")[4]);
+        // The installment is settled in full, part-payment included
+        assertEquals(emi(2), single("UPDATE loan_repayment_schedule")[3]);
+        verify(jdbcTemplate).batchUpdate(contains("partially_paid_amount = NULL"), anyList());
+    }
+
+    @Test
+    void testPost_ComputedLoan_InsertsInstallmentRowAndChecksRowCount() {
+        Loan loan = loan(ScheduleStorage.COMPUTED, 1);
+        stubLoan(loan, null);
+        when(scheduleService.buildInstallments(loan)).thenAnswer(invocation -> copies());
+        when(jdbcTemplate.queryForList(startsWith("SELECT nextval('loan_repayment_seq')"), eq(Long.class), anyInt()))
+                .thenReturn(List.of(900L));
+        when(jdbcTemplate.batchUpdate(startsWith("INSERT INTO loan_repayment_schedule"), anyList())).thenReturn(new int[]{1});
+
+        RepaymentPostingService.Outcome outcome = postingService.post(List.of(debit(1, emi(2), "REF1")));
+
+        assertEquals(1, outcome.posted());
+        Object[] insert = single("INSERT INTO loan_repayment_schedule");
+        assertEquals(900L, insert[0]);
+        assertEquals(2, insert[2]);
+        assertEquals(LoanRepaymentStatus.PAID.name(), insert[8]);
+        assertEquals(900L, value(single("INSERT INTO loan_payments")[1]));
+
+        // A row written meanwhile by another transaction is not overwritten, and the batch fails
+        clearInvocations(jdbcTemplate);
+        when(jdbcTemplate.batchUpdate(startsWith("INSERT INTO loan_repayment_schedule"), anyList())).thenReturn(new int[]{0});
+        assertThrows(OptimisticLockingFailureException.class, () -> postingService.post(List.of(debit(2, emi(2), "REF2"))));
+        verify(jdbcTemplate, never()).batchUpdate(startsWith("INSERT INTO loan_payments"), anyList());
+    }
+
+    @Test
+    void testPost_PackedLoan_PatchesCopyOfPackedSchedule() {
+        Loan loan = loan(ScheduleStorage.PACKED, 1);
+        installments.get(0).setStatus(LoanRepaymentStatus.PAID);
+        installments.get(0).setPaidDate(installments.get(0).getDueDate());
+        loan.setPackedSchedule(PackedScheduleCodec.encode(installments));
+        stubLoan(loan, null);
+
+        RepaymentPostingService.Outcome outcome = postingService.post(List.of(debit(1, emi(2), "REF1")));
+
+        assertEquals(1, outcome.posted());
+        byte[] packed = (byte[]) value(single("UPDATE loan SET")[6]);
+        assertNotSame(loan.getPackedSchedule(), packed);
+        List<LoanRepaymentSchedule> patched = PackedScheduleCodec.decode(packed, loan);
+        assertEquals(LoanRepaymentStatus.PAID, patched.get(1).getStatus());
+        assertEquals(LoanRepaymentStatus.PENDING, patched.get(2).getStatus());
+        assertNull(value(single("INSERT INTO loan_payments")[1]));
+        verifyNoInteractions(scheduleRepository);
+        verify(jdbcTemplate, never()).batchUpdate(startsWith("INSERT INTO loan_repayment_schedule"), anyList());
+    }
+
+    @Test
+    void testPost_SecondDebitForLoanInBatch_SettlesFollowingInstallment() {
+        Loan loan = loan(ScheduleStorage.ROWS, 1);
+        stubLoan(loan, row(2, 102L));
+        when(scheduleRepository.findByLoanAndInstallmentNumber(loan, 3)).thenReturn(Optional.of(row(3, 103L)));
+
+        RepaymentPostingService.Outcome outcome = postingService.post(List.of(debit(1, emi(2), "REF1"), debit(2, emi(3), "REF2")));
+
+        assertEquals(2, outcome.posted());
+        List<Object[]> installmentUpdates = batch("UPDATE loan_repayment_schedule");
+        assertEquals(List.of(102L, 103L), installmentUpdates.stream().map(row -> row[5]).toList());
+        Object[] loanUpdate = single("UPDATE loan SET");
+        assertEquals(remainingAfter(3), loanUpdate[0]);
+        assertEquals(3, loanUpdate[2]);
+        assertEquals(installments.get(3).getDueDate(), value(loanUpdate[3]));
+    }
+
+    @Test
+    void testPost_FinalInstallment_ClosesLoan() {
+        Loan loan = loan(ScheduleStorage.ROWS, TENURE - 1);
+        stubLoan(loan, row(TENURE, 106L));
+
+        RepaymentPostingService.Outcome outcome = postingService.post(List.of(debit(1, emi(TENURE), "REF1")));
+
+        assertEquals(1, outcome.posted());
+        Object[] loanUpdate = single("UPDATE loan SET");
+        assertEquals(0, ((BigDecimal) loanUpdate[0]).signum());
+        assertEquals(0, ((BigDecimal) value(loanUpdate[1])).signum());
+        assertEquals(TENURE, loanUpdate[2]);
+        // The due date stays put
+        assertNull(value(loanUpdate[3]));
+        assertEquals(LoanStatus.CLOSED.name(), loanUpdate[4]);
+        assertNotNull(value(loanUpdate[5]));
+
+        // Nothing is left to debit
+        clearInvocations(jdbcTemplate);
+        loan.setPaidInstallments(TENURE);
+        assertEquals("No pending installments found",
+                postingService.post(List.of(debit(2, emi(TENURE), "REF2"))).rejections().get(0).error());
+    }
+
+    private void stubLoan(Loan loan, LoanRepaymentSchedule nextRow) {
+        when(loanRepository.findAllByIdForUpdate(anyCollection())).thenReturn(List.of(loan));
+        when(scheduleRepository.findNextInstallmentRows(anyCollection())).thenReturn(nextRow != null ? List.of(nextRow) : List.of());
+    }
+
+    private Loan loan(ScheduleStorage storage, int paidInstallments) {
+        Loan loan = new Loan();
+        loan.setId(LOAN_ID);
+        loan.setStatus(LoanStatus.DISBURSED);
+        loan.setScheduleStorage(storage);
+        loan.setTotalInstallments(TENURE);
+        loan.setPaidInstallments(paidInstallments);
+        loan.setRemainingAmount(remainingAfter(paidInstallments));
+        loan.setOutstandingPrincipal(installments.subList(paidInstallments, TENURE).stream()
+                .map(LoanRepaymentSchedule::getPrincipalAmount)
+                .reduce(BigDecimal.ZERO, BigDecimal::add));
+        loan.setNextDueDate(installments.get(Math.min(paidInstallments, TENURE - 1)).getDueDate());
+        installments.forEach(installment -> installment.setLoan(loan));
+        return loan;
+    }
+
+    private LoanRepaymentSchedule row(int number, Long id) {
+        LoanRepaymentSchedule row = copyOf(installments.get(number - 1));
+        row.setId(id);
+        return row;
+    }
+
+    private List<LoanRepaymentSchedule> copies() {
+        return new ArrayList<>(installments.stream().map(RepaymentPostingServiceTest::copyOf).toList());
+    }
+
+    private BigDecimal emi(int number) {
+        return installments.get(number - 1).getEmiAmount();
+    }
+
+    private BigDecimal remainingAfter(int paidInstallments) {
+        return installments.subList(paidInstallments, TENURE).stream()
+                .map(LoanRepaymentSchedule::getEmiAmount)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    private RepaymentPostingService.Debit debit(long sequence, BigDecimal amount, String reference) {
+        return new RepaymentPostingService.Debit(sequence, LOAN_ID, null, amount, PaymentStatus.SUCCESS, PaymentMethod.BANK_TRANSFER,
+                "AUTO" + sequence, reference, FIRST_DUE_DATE.plusMonths(1), null);
+    }
+
+    private RepaymentPostingService.Debit bounce(long sequence, BigDecimal amount, String reference) {
+        return new RepaymentPostingService.Debit(sequence, LOAN_ID, null, amount, PaymentStatus.FAILED, PaymentMethod.BANK_TRANSFER,
+                "AUTO" + sequence, reference, FIRST_DUE_DATE.plusMonths(1), "Insufficient funds");
+    }
+
+    private List<Object[]> batch(String sqlPrefix) {
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.captor();
+        verify(jdbcTemplate).batchUpdate(startsWith(sqlPrefix), rows.capture());
+        return rows.getValue();
+    }
+
+    private Object[] single(String sqlPrefix) {
+        List<Object[]> rows = batch(sqlPrefix);
+        assertEquals(1, rows.size());
+        return rows.get(0);
+    }
+
+    private static Object value(Object parameter) {
+        return parameter instanceof SqlParameterValue value ? value.getValue() : parameter;
+    }
+
+    private static List<LoanRepaymentSchedule> schedule() {
+        BigDecimal principal = new BigDecimal("30000.00");
+        BigDecimal annualRate = new BigDecimal("12");
+        BigDecimal emi = LoanCalculatorUtil.calculateEMI(principal, annualRate, TENURE);
+        AmortizationSchedule amortization = LoanCalculatorUtil.amortize(principal, annualRate, emi, TENURE);
+        List<LoanRepaymentSchedule> installments = new ArrayList<>();
+        for (int i = 0; i < TENURE; i++) {
+            installments.add(LoanRepaymentSchedule.builder()
+                    .installmentNumber(i + 1)
+                    .emiAmount(amortization.getEmi(i))
+                    .principalAmount(amortization.getPrincipal(i))
+                    .interestAmount(amortization.getInterest(i))
+                    .dueDate(FIRST_DUE_DATE.plusMonths(i))
+                    .status(LoanRepaymentStatus.PENDING)
+                    .lateFee(BigDecimal.ZERO)
+                    .build());
+        }
+        return installments;
+    }
+
+    private static LoanRepaymentSchedule copyOf(LoanRepaymentSchedule installment) {
+        return LoanRepaymentSchedule.builder()
+                .loan(installment.getLoan())
+                .installmentNumber(installment.getInstallmentNumber())
+                .emiAmount(installment.getEmiAmount())
+                .principalAmount(installment.getPrincipalAmount())
+                .interestAmount(installment.getInterestAmount())
+                .dueDate(installment.getDueDate())
+                .status(installment.getStatus())
+                .lateFee(installment.getLateFee())
+                .build();
+    }
+}
@@ -0,0 +1,220 @@
+package com.loantrackr.service;
+
+import com.loantrackr.enums.CalculatorEngine;
+import com.loantrackr.enums.LoanRepaymentStatus;
+import com.loantrackr.enums.ScheduleStorage;
+import com.loantrackr.model.Loan;
+import com.loantrackr.model.LoanRepaymentSchedule;
+import com.loantrackr.repository.LoanPaymentRepository;
+import com.loantrackr.repository.LoanRepaymentScheduleRepository;
+import com.loantrackr.repository.LoanRepository;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * The same loan stored as {@link ScheduleStorage#ROWS} and as {@link ScheduleStorage#COMPUTED}
+ * must present the same schedule: derived installments match the rows written at disbursement,
+ * and rows persisted for installments with state of their own take the place of derived ones.
+ */
+class RepaymentScheduleServiceTest {
+
+    private static final BigDecimal PRINCIPAL = new BigDecimal("250000.00");
+    private static final BigDecimal RATE = new BigDecimal("10.75");
+    private static final int TENURE = 24;
+    private static final LocalDate FIRST_DUE_DATE = LocalDate.of(2025, 1, 31); // Month ends shift due dates
+
+    private final LoanRepaymentScheduleRepository scheduleRepository = mock(LoanRepaymentScheduleRepository.class);
+    private final LoanCalculatorService loanCalculator = new LoanCalculatorService(CalculatorEngine.BIG_DECIMAL);
+    private final RepaymentScheduleService scheduleService = new RepaymentScheduleService(scheduleRepository,
+            mock(LoanRepository.class), mock(LoanPaymentRepository.class), loanCalculator, ScheduleStorage.COMPUTED);
+
+    private final Loan rowsLoan = loan(1L, ScheduleStorage.ROWS);
+    private final Loan computedLoan = loan(2L, ScheduleStorage.COMPUTED);
+    private final List<LoanRepaymentSchedule> rows = new ArrayList<>();
+    private final List<LoanRepaymentSchedule> computedRows = new ArrayList<>();
+
+    @Test
+    void testGetSchedule_ComputedMatchesRows() {
+        stubRepository();
+        scheduleService.createSchedule(rowsLoan);
+        scheduleService.createSchedule(computedLoan);
+
+        assertEquals(TENURE, rows.size());
+        assertTrue(computedRows.isEmpty());
+        assertSameSchedule(scheduleService.getSchedule(rowsLoan), scheduleService.getSchedule(computedLoan));
+        assertEquals(LocalDate.of(2025, 2, 28), scheduleService.getSchedule(computedLoan).get(1).getDueDate());
+    }
+
+    @Test
+    void testGetSchedule_ComputedMergesStoredInstallments() {
+        stubRepository();
+        scheduleService.createSchedule(rowsLoan);
+        List<LoanRepaymentSchedule> derived = scheduleService.getSchedule(computedLoan);
+
+        // Installment 1 paid and installment 2 marked overdue with a late fee, in both modes
+        markPaid(rows.get(0));
+        markOverdue(rows.get(1));
+        computedRows.add(markPaid(copyOf(derived.get(0))));
+        computedRows.add(markOverdue(copyOf(derived.get(1))));
+        rowsLoan.setPaidInstallments(1);
+        computedLoan.setPaidInstallments(1);
+
+        List<LoanRepaymentSchedule> merged = scheduleService.getSchedule(computedLoan);
+
+        assertSameSchedule(scheduleService.getSchedule(rowsLoan), merged);
+        assertSame(computedRows.get(0), merged.get(0));
+        assertSame(computedRows.get(1), merged.get(1));
+        assertEquals(LoanRepaymentStatus.PENDING, merged.get(2).getStatus());
+        assertNull(merged.get(2).getId());
+        // The overdue row comes up next in both modes
+        assertSame(computedRows.get(1), scheduleService.findNextPending(computedLoan).orElseThrow());
+        assertEquals(2, scheduleService.findNextPending(rowsLoan).orElseThrow().getInstallmentNumber());
+    }
+
+    @Test
+    void testFindNextPending_Computed_DerivesInstallmentRowsWouldHold() {
+        stubRepository();
+        scheduleService.createSchedule(rowsLoan);
+        rowsLoan.setPaidInstallments(5);
+        computedLoan.setPaidInstallments(5);
+        rows.subList(0, 5).forEach(row -> row.setStatus(LoanRepaymentStatus.PAID));
+
+        LoanRepaymentSchedule fromRows = scheduleService.findNextPending(rowsLoan).orElseThrow();
+        LoanRepaymentSchedule derived = scheduleService.findNextPending(computedLoan).orElseThrow();
+
+        assertEquals(6, derived.getInstallmentNumber());
+        assertSameInstallment(fromRows, derived);
+
+        computedLoan.setPaidInstallments(TENURE);
+        assertTrue(scheduleService.findNextPending(computedLoan).isEmpty());
+    }
+
+    @Test
+    void testReamortize_ComputedMatchesRows() {
+        stubRepository();
+        scheduleService.createSchedule(rowsLoan);
+        List<LoanRepaymentSchedule> derived = scheduleService.getSchedule(computedLoan);
+        for (int i = 0; i < 6; i++) {
+            markPaid(rows.get(i));
+            computedRows.add(markPaid(copyOf(derived.get(i))));
+        }
+        LocalDate nextDueDate = derived.get(6).getDueDate();
+        rowsLoan.setPaidInstallments(6);
+        computedLoan.setPaidInstallments(6);
+
+        // A prepayment that shortens the tenure: 18 installments left, re-amortized over 12
+        BigDecimal principal = new BigDecimal("120000.00");
+        BigDecimal emi = loanCalculator.calculateEMI(principal, RATE, 12);
+        List<LoanRepaymentSchedule> rowsTail = scheduleService.reamortize(rowsLoan, scheduleService.findNextPending(rowsLoan).orElseThrow(), principal, emi, 12);
+        List<LoanRepaymentSchedule> computedTail = scheduleService.reamortize(computedLoan, scheduleService.findNextPending(computedLoan).orElseThrow(), principal, emi, 12);
+
+        assertEquals(18, computedLoan.getTotalInstallments());
+        assertEquals(rowsLoan.getTotalInstallments(), computedLoan.getTotalInstallments());
+        assertSameSchedule(rowsTail, computedTail);
+        List<LoanRepaymentSchedule> fromRows = scheduleService.getSchedule(rowsLoan);
+        List<LoanRepaymentSchedule> computed = scheduleService.getSchedule(computedLoan);
+        assertSameSchedule(fromRows, computed);
+        assertEquals(nextDueDate, computed.get(6).getDueDate());
+        assertEquals(principal, computed.subList(6, 18).stream().map(LoanRepaymentSchedule::getPrincipalAmount).reduce(BigDecimal.ZERO, BigDecimal::add));
+    }
+
+    private void stubRepository() {
+        when(scheduleRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<LoanRepaymentSchedule> saved = invocation.getArgument(0);
+            if (rows.isEmpty()) {
+                rows.addAll(saved);
+            }
+            return saved;
+        });
+        when(scheduleRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        // Mirrors deleteByLoanAndInstallmentNumberGreaterThan once the loan's tenure shrinks
+        when(scheduleRepository.findByLoanOrderByInstallmentNumber(any())).thenAnswer(invocation -> {
+            Loan loan = invocation.getArgument(0);
+            return stored(loan).stream().filter(row -> row.getInstallmentNumber() <= loan.getTotalInstallments()).toList();
+        });
+        when(scheduleRepository.findByLoanAndInstallmentNumber(any(), anyInt())).thenAnswer(invocation -> {
+            Loan loan = invocation.getArgument(0);
+            int number = invocation.getArgument(1);
+            return stored(loan).stream().filter(row -> row.getInstallmentNumber() == number).findFirst();
+        });
+        when(scheduleRepository.findFirstByLoanAndStatusInOrderByInstallmentNumberAsc(any(), anyCollection())).thenAnswer(invocation -> {
+            Loan loan = invocation.getArgument(0);
+            return stored(loan).stream().filter(row -> !row.isPaid()).findFirst();
+        });
+        when(scheduleRepository.findByLoanAndInstallmentNumberGreaterThanEqualOrderByInstallmentNumber(any(), anyInt())).thenAnswer(invocation -> {
+            Loan loan = invocation.getArgument(0);
+            int from = invocation.getArgument(1);
+            return stored(loan).stream().filter(row -> row.getInstallmentNumber() >= from).toList();
+        });
+    }
+
+    private List<LoanRepaymentSchedule> stored(Loan loan) {
+        return loan == rowsLoan ? rows : computedRows;
+    }
+
+    private Loan loan(Long id, ScheduleStorage storage) {
+        BigDecimal emi = loanCalculator.calculateEMI(PRINCIPAL, RATE, TENURE);
+        return Loan.builder()
+                .id(id)
+                .principalAmount(PRINCIPAL)
+                .interestRate(RATE)
+                .emiAmount(emi)
+                .totalInstallments(TENURE)
+                .firstDueDate(FIRST_DUE_DATE)
+                .scheduleStorage(storage)
+                .build();
+    }
+
+    private static LoanRepaymentSchedule markPaid(LoanRepaymentSchedule installment) {
+        installment.setStatus(LoanRepaymentStatus.PAID);
+        installment.setPaidDate(installment.getDueDate().minusDays(2));
+        installment.setTotalAmountPaid(installment.getEmiAmount());
+        return installment;
+    }
+
+    private static LoanRepaymentSchedule markOverdue(LoanRepaymentSchedule installment) {
+        installment.setStatus(LoanRepaymentStatus.OVERDUE);
+        installment.setLateFee(new BigDecimal("500.00"));
+        return installment;
+    }
+
+    private static LoanRepaymentSchedule copyOf(LoanRepaymentSchedule installment) {
+        return LoanRepaymentSchedule.builder()
+                .loan(installment.getLoan())
+                .installmentNumber(installment.getInstallmentNumber())
+                .emiAmount(installment.getEmiAmount())
+                .principalAmount(installment.getPrincipalAmount())
+                .interestAmount(installment.getInterestAmount())
+                .dueDate(installment.getDueDate())
+                .status(installment.getStatus())
+                .lateFee(installment.getLateFee())
+                .build();
+    }
+
+    private static void assertSameSchedule(List<LoanRepaymentSchedule> expected, List<LoanRepaymentSchedule> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSameInstallment(expected.get(i), actual.get(i));
+        }
+    }
+
+    private static void assertSameInstallment(LoanRepaymentSchedule expected, LoanRepaymentSchedule actual) {
+        String installment = "#" + expected.getInstallmentNumber();
+        assertEquals(expected.getInstallmentNumber(), actual.getInstallmentNumber(), installment);
+        assertEquals(expected.getDueDate(), actual.getDueDate(), installment);
+        assertEquals(expected.getEmiAmount(), actual.getEmiAmount(), installment);
+        assertEquals(expected.getPrincipalAmount(), actual.getPrincipalAmount(), installment);
+        assertEquals(expected.getInterestAmount(), actual.getInterestAmount(), installment);
+        assertEquals(expected.getStatus(), actual.getStatus(), installment);
+        assertEquals(expected.getLateFee(), actual.getLateFee(), installment);
+        assertEquals(expected.getPaidDate(), actual.getPaidDate(), installment);
+    }
+}
@@ -0,0 +1,146 @@
+package com.loantrackr.service;
+
+import com.loantrackr.enums.AuthProvider;
+import com.loantrackr.enums.LoanStatus;
+import com.loantrackr.enums.Role;
+import com.loantrackr.enums.ScheduleStorage;
+import com.loantrackr.model.LenderProfile;
+import com.loantrackr.model.Loan;
+import com.loantrackr.model.LoanApplication;
+import com.loantrackr.model.User;
+import com.loantrackr.repository.LoanRepository;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Statements a 360-installment disbursement sends with row storage: the loan and its schedule
+ * are inserted in JDBC batches and their IDs drawn from pooled sequences. Without batching and
+ * pooling it takes a sequence call and an INSERT per row, 722 statements.
+ * <p>
+ * Needs the database; it runs with {@code -Pintegration}, not in the default build.
+ */
+@Tag("integration")
+@SpringBootTest(properties = {
+        "loan.schedule.storage=ROWS",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Transactional
+class ScheduleBatchInsertTest {
+
+    private static final int TENURE = 360;
+    private static final int BATCH_SIZE = 50;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private RepaymentScheduleService scheduleService;
+
+    @Autowired
+    private LoanCalculatorService loanCalculator;
+
+    @Test
+    void testCreateSchedule_360Installments_BatchesInsertsAndPoolsIds() {
+        LoanApplication application = persistApplication();
+        Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        BigDecimal principal = application.getLoanRequested();
+        BigDecimal emi = loanCalculator.calculateEMI(principal, application.getInterestRate(), TENURE);
+        BigDecimal total = loanCalculator.calculateTotalPayable(emi, TENURE);
+        LocalDate firstDueDate = LocalDate.now().plusMonths(1);
+        Loan loan = loanRepository.save(Loan.builder()
+                .loanApplication(application)
+                .borrower(application.getUser())
+                .lender(application.getLender())
+                .principalAmount(principal)
+                .outstandingPrincipal(principal)
+                .totalAmountToRepay(total)
+                .remainingAmount(total)
+                .totalInterestAmount(loanCalculator.calculateTotalInterest(emi, principal, TENURE))
+                .totalInstallments(TENURE)
+                .nextDueDate(firstDueDate)
+                .firstDueDate(firstDueDate)
+                .emiAmount(emi)
+                .interestRate(application.getInterestRate())
+                .scheduleStorage(ScheduleStorage.ROWS)
+                .build());
+        scheduleService.createSchedule(loan);
+        entityManager.flush();
+
+        assertEquals(TENURE + 1, statistics.getEntityInsertCount());
+
+        // One batch for the loan, then full batches of installments; each sequence call covers a
+        // whole batch, plus one more per sequence when this JVM draws its first block
+        long batches = 1 + (TENURE + BATCH_SIZE - 1) / BATCH_SIZE;
+        long sequenceCalls = batches + 2;
+        long statements = statistics.getPrepareStatementCount();
+        assertTrue(statements <= batches + sequenceCalls, "Statements sent: " + statements);
+    }
+
+    private LoanApplication persistApplication() {
+        String suffix = Long.toString(System.nanoTime(), 36);
+        User borrower = persistUser("batch-borrower-" + suffix, Role.BORROWER);
+        User lenderUser = persistUser("batch-lender-" + suffix, Role.LENDER);
+
+        LenderProfile lender = LenderProfile.builder()
+                .user(lenderUser)
+                .gstin("GST" + suffix)
+                .rbiLicenseNumber("RBI" + suffix)
+                .organizationName("Batch Test Finance")
+                .isVerified(true)
+                .interestRate(new BigDecimal("8.50"))
+                .processingFee(new BigDecimal("1000.00"))
+                .supportedTenures("120,240,360")
+                .build();
+        entityManager.persist(lender);
+
+        LoanApplication application = new LoanApplication();
+        application.setUser(borrower);
+        application.setLender(lender);
+        application.setLoanRequested(new BigDecimal("5001000.00"));
+        application.setInterestRate(lender.getInterestRate());
+        application.setProcessingFee(lender.getProcessingFee());
+        application.setTenure(TENURE);
+        application.setEmiAmount(BigDecimal.ZERO);
+        application.setStatus(LoanStatus.APPROVED);
+        application.setPurpose("Home purchase");
+        application.setIncomeSource("Salary");
+        application.setMonthlyIncome(new BigDecimal("150000.00"));
+        entityManager.persist(application);
+
+        entityManager.flush();
+        return application;
+    }
+
+    private User persistUser(String username, Role role) {
+        User user = User.builder()
+                .username(username)
+                .email(username + "@example.com")
+                .password("not-used")
+                .role(role)
+                .provider(AuthProvider.LOCAL)
+                .isVerified(true)
+                .isEmailVerified(true)
+                .isActive(true)
+                .createdAt(LocalDateTime.now())
+                .build();
+        entityManager.persist(user);
+        return user;
+    }
+}
@@ -0,0 +1,65 @@
+package com.loantrackr.service;
+
+import com.loantrackr.dto.response.ScheduleMigrationResult;
+import com.loantrackr.enums.ScheduleStorage;
+import com.loantrackr.repository.LoanRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ScheduleMigrationServiceTest {
+
+    private static final List<Long> UNPACKED = LongStream.rangeClosed(1, 1200).boxed().toList();
+
+    private final LoanRepository loanRepository = mock(LoanRepository.class);
+    private final RepaymentScheduleService scheduleService = mock(RepaymentScheduleService.class);
+    private final ScheduleMigrationService service = new ScheduleMigrationService(loanRepository, scheduleService);
+
+    @Test
+    void testMigrateToPacked_ReadsKeysetChunksUpToLimit() {
+        stubRepository();
+        when(scheduleService.migrateToPacked(anyLong())).thenReturn(true);
+
+        ScheduleMigrationResult result = service.migrateToPacked(700);
+
+        assertEquals(1200, result.getCandidates());
+        assertEquals(700, result.getMigrated());
+        assertEquals(500, result.getRemaining());
+        verify(loanRepository).findDisbursedIdsWithScheduleStorageOtherThan(eq(ScheduleStorage.PACKED), eq(0L),
+                argThat(page -> page.getPageSize() == 500));
+        // The second chunk asks only for what is left of the limit
+        verify(loanRepository).findDisbursedIdsWithScheduleStorageOtherThan(eq(ScheduleStorage.PACKED), eq(500L),
+                argThat(page -> page.getPageSize() == 200));
+        verify(scheduleService, never()).migrateToPacked(701L);
+    }
+
+    @Test
+    void testMigrateToPacked_FailedLoanSkipped_RunContinuesToEnd() {
+        stubRepository();
+        when(scheduleService.migrateToPacked(anyLong())).thenReturn(true);
+        when(scheduleService.migrateToPacked(3L)).thenThrow(new IllegalStateException("Packed installment 4 differs from source"));
+
+        ScheduleMigrationResult result = service.migrateToPacked(5000);
+
+        assertEquals(1199, result.getMigrated());
+        assertEquals(List.of(3L), result.getFailedLoanIds());
+        assertEquals(1, result.getRemaining());
+        verify(scheduleService).migrateToPacked(1200L);
+        verify(loanRepository).findDisbursedIdsWithScheduleStorageOtherThan(eq(ScheduleStorage.PACKED), eq(1200L), any());
+    }
+
+    private void stubRepository() {
+        when(loanRepository.countDisbursedWithScheduleStorageOtherThan(ScheduleStorage.PACKED)).thenReturn((long) UNPACKED.size());
+        when(loanRepository.findDisbursedIdsWithScheduleStorageOtherThan(eq(ScheduleStorage.PACKED), anyLong(), any())).thenAnswer(invocation -> {
+            long afterId = invocation.getArgument(1);
+            Pageable page = invocation.getArgument(2);
+            return UNPACKED.stream().filter(id -> id > afterId).limit(page.getPageSize()).toList();
+        });
+    }
+}
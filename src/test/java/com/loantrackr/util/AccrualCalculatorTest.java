@@ -0,0 +1,41 @@
+package com.loantrackr.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccrualCalculatorTest {
+
+    private static final LocalDate DUE_DATE = LocalDate.of(2025, 8, 5); // Period 2025-07-05 .. 2025-08-05, 31 days
+
+    @Test
+    void testDailyPaise_SumsToInstallmentInterest() {
+        long interest = 100_000; // Not divisible by 31
+
+        long total = 0;
+        for (LocalDate day = LocalDate.of(2025, 7, 6); !day.isAfter(DUE_DATE); day = day.plusDays(1)) {
+            long daily = AccrualCalculator.dailyPaise(interest, DUE_DATE, day);
+            assertTrue(daily == 3225 || daily == 3226, "Uneven daily accrual on " + day + ": " + daily);
+            total += daily;
+        }
+
+        assertEquals(interest, total);
+        assertEquals(interest, AccrualCalculator.accruedPaise(interest, DUE_DATE, DUE_DATE));
+    }
+
+    @Test
+    void testAccruedPaise_ProRataAndRoundedHalfUp() {
+        assertEquals(3226, AccrualCalculator.accruedPaise(100_000, DUE_DATE, LocalDate.of(2025, 7, 6))); // 3225.8
+        assertEquals(50_000, AccrualCalculator.accruedPaise(62_000, DUE_DATE, LocalDate.of(2025, 7, 30)));
+    }
+
+    @Test
+    void testAccruedPaise_ZeroBeforePeriodAndCappedWhenOverdue() {
+        assertEquals(0, AccrualCalculator.accruedPaise(100_000, DUE_DATE, LocalDate.of(2025, 7, 5)));
+        assertEquals(0, AccrualCalculator.accruedPaise(100_000, DUE_DATE, LocalDate.of(2025, 6, 20)));
+        assertEquals(100_000, AccrualCalculator.accruedPaise(100_000, DUE_DATE, LocalDate.of(2025, 8, 20)));
+        assertEquals(0, AccrualCalculator.dailyPaise(100_000, DUE_DATE, LocalDate.of(2025, 8, 20)));
+    }
+}
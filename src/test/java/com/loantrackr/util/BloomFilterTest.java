@@ -0,0 +1,71 @@
+package com.loantrackr.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+
+    @Test
+    void testMightContain_NoFalseNegatives() {
+        BloomFilter filter = new BloomFilter(100_000, 0.01);
+        for (int i = 0; i < 100_000; i++) {
+            filter.put("GW" + i + "|SUCCESS");
+        }
+        for (int i = 0; i < 100_000; i++) {
+            assertTrue(filter.mightContain("GW" + i + "|SUCCESS"), "Missing GW" + i);
+        }
+    }
+
+    @Test
+    void testMightContain_FalsePositivesNearTargetRate() {
+        BloomFilter filter = new BloomFilter(100_000, 0.01);
+        for (int i = 0; i < 100_000; i++) {
+            filter.put("GW" + i + "|SUCCESS");
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("GW" + i + "|FAILED")) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 2_000, "False positives: " + falsePositives);
+        assertEquals(7, filter.getHashCount());
+    }
+
+    @Test
+    void testPut_ConcurrentWritersLoseNoBits() throws InterruptedException {
+        BloomFilter filter = new BloomFilter(400_000, 0.01);
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int thread = t;
+            Thread writer = new Thread(() -> {
+                for (int i = 0; i < 50_000; i++) {
+                    filter.put(thread + ":" + i);
+                }
+            });
+            writer.start();
+            writers.add(writer);
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        for (int t = 0; t < 8; t++) {
+            for (int i = 0; i < 50_000; i++) {
+                assertTrue(filter.mightContain(t + ":" + i));
+            }
+        }
+    }
+
+    @Test
+    void testConstructor_RejectsInvalidSizing() {
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(0, 0.01));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(1_000, 0));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(1_000, 1));
+    }
+}
@@ -0,0 +1,67 @@
+package com.loantrackr.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CashFlowCurveTest {
+
+    private static final YearMonth JULY = YearMonth.of(2025, 7);
+
+    @Test
+    void testAdd_BucketsByCalendarMonth() {
+        CashFlowCurve curve = new CashFlowCurve(JULY, 12);
+
+        curve.add(day(2025, 7, 1), 100, 10);
+        curve.add(day(2025, 7, 31), 200, 20);
+        curve.add(day(2025, 8, 1), 300, 30);
+        curve.add(day(2026, 6, 30), 400, 40);
+
+        assertEquals(300, curve.getPrincipalPaise(0));
+        assertEquals(30, curve.getInterestPaise(0));
+        assertEquals(2, curve.getInstallments(0));
+        assertEquals(300, curve.getPrincipalPaise(1));
+        assertEquals(400, curve.getPrincipalPaise(11));
+        assertEquals(YearMonth.of(2026, 6), curve.getMonth(11));
+    }
+
+    @Test
+    void testAdd_ArrearsInFirstMonthAndBeyondHorizonIgnored() {
+        CashFlowCurve curve = new CashFlowCurve(JULY, 12);
+
+        curve.add(day(2025, 3, 15), 500, 50);
+        curve.add(day(2026, 7, 1), 700, 70);
+
+        assertEquals(500, curve.getPrincipalPaise(0));
+        assertEquals(1, curve.getInstallments(0));
+        assertEquals(LocalDate.of(2026, 7, 1), curve.getEndDate());
+        long total = 0;
+        for (int i = 0; i < curve.size(); i++) {
+            total += curve.getPrincipalPaise(i);
+        }
+        assertEquals(500, total);
+    }
+
+    @Test
+    void testMerge_SumsBuckets() {
+        CashFlowCurve first = new CashFlowCurve(JULY, 24);
+        CashFlowCurve second = new CashFlowCurve(JULY, 24);
+        first.add(day(2025, 9, 5), 100, 1);
+        second.add(day(2025, 9, 25), 250, 2);
+        second.add(day(2027, 6, 5), 900, 9);
+
+        first.merge(second);
+
+        assertEquals(350, first.getPrincipalPaise(2));
+        assertEquals(3, first.getInterestPaise(2));
+        assertEquals(900, first.getPrincipalPaise(23));
+        assertThrows(IllegalArgumentException.class, () -> first.merge(new CashFlowCurve(JULY, 12)));
+    }
+
+    private static long day(int year, int month, int day) {
+        return LocalDate.of(year, month, day).toEpochDay();
+    }
+}
@@ -0,0 +1,99 @@
+package com.loantrackr.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long SLOW = TimeUnit.SECONDS.toNanos(5);
+    private static final long OPEN_FOR = TimeUnit.SECONDS.toNanos(30);
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private CircuitBreaker newBreaker() {
+        // Window of 10, trips at 50% failures or 80% slow calls once 5 calls are recorded
+        return new CircuitBreaker(10, 5, 50, 80, TimeUnit.SECONDS.toNanos(3), OPEN_FOR, 2, clock::get);
+    }
+
+    @Test
+    void testRecord_TripsOnFailureRateOnlyAfterMinimumCalls() {
+        CircuitBreaker breaker = newBreaker();
+
+        for (int i = 0; i < 4; i++) {
+            breaker.record(FAST, true);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        breaker.record(FAST, false); // 4 of 5 failed
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquirePermission());
+        assertEquals(OPEN_FOR, breaker.getRemainingOpenNanos());
+    }
+
+    @Test
+    void testRecord_TripsOnSlowCallRate() {
+        CircuitBreaker breaker = newBreaker();
+
+        breaker.record(FAST, false);
+        for (int i = 0; i < 3; i++) {
+            breaker.record(SLOW, false);
+        }
+        breaker.record(FAST, false); // 3 of 5 slow
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        for (int i = 0; i < 5; i++) {
+            breaker.record(SLOW, false); // 8 of 10 slow
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void testRecord_OnlyTheLastWindowCounts() {
+        CircuitBreaker breaker = newBreaker();
+
+        for (int i = 0; i < 10; i++) {
+            breaker.record(FAST, false);
+        }
+        for (int i = 0; i < 4; i++) {
+            breaker.record(FAST, true); // 4 of the last 10 failed
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        breaker.record(FAST, true); // 5 of the last 10, though only 5 of 15 overall
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void testHalfOpen_ClosesAfterSuccessfulTrialsAndReopensOnFailure() {
+        CircuitBreaker breaker = newBreaker();
+        for (int i = 0; i < 5; i++) {
+            breaker.record(FAST, true);
+        }
+
+        clock.addAndGet(OPEN_FOR);
+        assertTrue(breaker.tryAcquirePermission());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquirePermission());
+        assertFalse(breaker.tryAcquirePermission()); // only 2 trial calls
+
+        breaker.record(FAST, true);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        clock.addAndGet(OPEN_FOR);
+        assertTrue(breaker.tryAcquirePermission());
+        breaker.releasePermission(); // never sent
+        assertTrue(breaker.tryAcquirePermission());
+        assertTrue(breaker.tryAcquirePermission());
+        breaker.record(FAST, false);
+        breaker.record(FAST, false);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        breaker.record(FAST, true); // fresh window: a single failure does not trip
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+}
@@ -0,0 +1,106 @@
+package com.loantrackr.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FixedPointLoanCalculatorTest {
+
+    private static final int MIN_RATE_BPS = 100;   // 1.00% (LenderUpdateRequest lower bound)
+    private static final int MAX_RATE_BPS = 5000;  // 50.00% (LenderUpdateRequest upper bound)
+
+    /**
+     * Every lender rate at two decimals, 1.00% to 50.00% in 0.01% steps, with every tenure an
+     * application can ask for. Principals are drawn from a fixed seed, one per combination; rates
+     * with more decimals and tenures beyond 84 months are sampled by the tests below.
+     */
+    @Test
+    void testEnginesAgree_AllSupportedRatesAndApplicationTenures() {
+        Random random = new Random(20250723L);
+        for (int rateBps = MIN_RATE_BPS; rateBps <= MAX_RATE_BPS; rateBps++) {
+            BigDecimal annualRate = BigDecimal.valueOf(rateBps, 2);
+            for (int tenure = 3; tenure <= 84; tenure++) {
+                assertEnginesAgree(randomPrincipalPaise(random), annualRate, tenure);
+            }
+        }
+    }
+
+    @Test
+    void testEnginesAgree_RandomRatesUpToThirtyYears() {
+        Random random = new Random(7L);
+        for (int i = 0; i < 3000; i++) {
+            BigDecimal annualRate = BigDecimal.valueOf(MIN_RATE_BPS + random.nextInt(MAX_RATE_BPS - MIN_RATE_BPS + 1), 2);
+            int tenure = 1 + random.nextInt(360);
+            assertEnginesAgree(randomPrincipalPaise(random), annualRate, tenure);
+        }
+    }
+
+    @Test
+    void testEnginesAgree_FractionalRatesAndBoundaryPrincipals() {
+        long[] principals = {1L, 99L, 100_000L, 123_456_789L, 9_999_999_999L};
+        String[] rates = {"1", "7.125", "10.99", "12.3456789", "33.333", "50"};
+        int[] tenures = {1, 3, 6, 12, 24, 60, 84, 120, 240, 360};
+        for (long principal : principals) {
+            for (String rate : rates) {
+                for (int tenure : tenures) {
+                    assertEnginesAgree(principal, new BigDecimal(rate), tenure);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testCalculateEmiPaise_InvalidTenure_ThrowsException() {
+        assertThrows(IllegalArgumentException.class, () ->
+                FixedPointLoanCalculator.calculateEmiPaise(100_000L, FixedPointLoanCalculator.toMonthlyRate(BigDecimal.TEN), 0)
+        );
+    }
+
+    @Test
+    void testToPaise_FractionalPaise_ThrowsException() {
+        assertThrows(ArithmeticException.class, () -> FixedPointLoanCalculator.toPaise(new BigDecimal("10.005")));
+    }
+
+    @Test
+    void testAmortize_LastInstallmentClearsBalance() {
+        long principal = 50_000_000L;
+        long monthlyRate = FixedPointLoanCalculator.toMonthlyRate(new BigDecimal("14.5"));
+        long emi = FixedPointLoanCalculator.calculateEmiPaise(principal, monthlyRate, 360);
+
+        AmortizationSchedule schedule = FixedPointLoanCalculator.amortize(principal, monthlyRate, emi, 360);
+
+        long repaidPrincipal = 0;
+        for (int i = 0; i < schedule.size(); i++) {
+            repaidPrincipal += schedule.getPrincipalPaise(i);
+            assertEquals(schedule.getEmiPaise(i), schedule.getPrincipalPaise(i) + schedule.getInterestPaise(i));
+        }
+        assertEquals(principal, repaidPrincipal);
+    }
+
+    private static long randomPrincipalPaise(Random random) {
+        // ₹1,000 to ₹1 crore, with paise
+        return 100_000L + (long) (random.nextDouble() * 1_000_000_000L);
+    }
+
+    private static void assertEnginesAgree(long principalPaise, BigDecimal annualRate, int tenure) {
+        BigDecimal principal = FixedPointLoanCalculator.fromPaise(principalPaise);
+        String label = "principal=" + principal + ", rate=" + annualRate + ", tenure=" + tenure;
+
+        BigDecimal expectedEmi = LoanCalculatorUtil.calculateEMI(principal, annualRate, tenure);
+        long monthlyRate = FixedPointLoanCalculator.toMonthlyRate(annualRate);
+        long emi = FixedPointLoanCalculator.calculateEmiPaise(principalPaise, monthlyRate, tenure);
+        assertEquals(expectedEmi, FixedPointLoanCalculator.fromPaise(emi), label);
+
+        AmortizationSchedule expected = LoanCalculatorUtil.amortize(principal, annualRate, expectedEmi, tenure);
+        AmortizationSchedule actual = FixedPointLoanCalculator.amortize(principalPaise, monthlyRate, emi, tenure);
+        assertEquals(expected.size(), actual.size(), label);
+        for (int i = 0; i < tenure; i++) {
+            assertEquals(expected.getEmiPaise(i), actual.getEmiPaise(i), label + ", installment=" + (i + 1));
+            assertEquals(expected.getPrincipalPaise(i), actual.getPrincipalPaise(i), label + ", installment=" + (i + 1));
+            assertEquals(expected.getInterestPaise(i), actual.getInterestPaise(i), label + ", installment=" + (i + 1));
+        }
+    }
+}
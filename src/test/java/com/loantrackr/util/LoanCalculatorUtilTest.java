@@ -0,0 +1,45 @@
+package com.loantrackr.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoanCalculatorUtilTest {
+
+    private static final BigDecimal RATE = new BigDecimal("12.00"); // 1% a month
+    private static final LocalDate DUE_DATE = LocalDate.of(2025, 8, 5); // Period 2025-07-05 .. 2025-08-05, 31 days
+
+    @Test
+    void testCalculateAccruedInterest_WholePeriod_EqualsMonthsInterest() {
+        assertEquals(new BigDecimal("10.00"), accrued("1000.00", DUE_DATE));
+        assertEquals(new BigDecimal("0.00"), accrued("1000.00", LocalDate.of(2025, 7, 5)));
+    }
+
+    @Test
+    void testCalculateAccruedInterest_ProRataOverPeriodDays() {
+        assertEquals(new BigDecimal("0.32"), accrued("1000.00", LocalDate.of(2025, 7, 6))); // 10 / 31
+        assertEquals(new BigDecimal("5.16"), accrued("1000.00", LocalDate.of(2025, 7, 21))); // 10 * 16 / 31
+        // A February period is 28 days long, so half of it is half the interest
+        assertEquals(new BigDecimal("5.00"), LoanCalculatorUtil.calculateAccruedInterest(
+                new BigDecimal("1000.00"), RATE, LocalDate.of(2025, 3, 5), LocalDate.of(2025, 2, 19)));
+    }
+
+    @Test
+    void testCalculateAccruedInterest_RoundedHalfUp() {
+        // 449.50 * 1% / 31 = 0.145 exactly
+        assertEquals(new BigDecimal("0.15"), accrued("449.50", LocalDate.of(2025, 7, 6)));
+    }
+
+    @Test
+    void testCalculateAccruedInterest_ZeroBeforePeriodAndCappedWhenOverdue() {
+        assertEquals(new BigDecimal("0.00"), accrued("1000.00", LocalDate.of(2025, 6, 20)));
+        assertEquals(new BigDecimal("10.00"), accrued("1000.00", LocalDate.of(2025, 8, 20)));
+    }
+
+    private static BigDecimal accrued(String principal, LocalDate asOf) {
+        return LoanCalculatorUtil.calculateAccruedInterest(new BigDecimal(principal), RATE, DUE_DATE, asOf);
+    }
+}
@@ -0,0 +1,107 @@
+package com.loantrackr.util;
+
+import com.loantrackr.enums.LoanRepaymentStatus;
+import com.loantrackr.model.Loan;
+import com.loantrackr.model.LoanRepaymentSchedule;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PackedScheduleCodecTest {
+
+    @Test
+    void testRoundTrip_ThirtyYearSchedule() {
+        Loan loan = new Loan();
+        List<LoanRepaymentSchedule> source = schedule(new BigDecimal("2500000.00"), new BigDecimal("8.75"), 360, LocalDate.of(2025, 1, 31));
+
+        byte[] packed = PackedScheduleCodec.encode(source);
+        List<LoanRepaymentSchedule> decoded = PackedScheduleCodec.decode(packed, loan);
+
+        assertEquals(360, PackedScheduleCodec.size(packed));
+        assertEquals(360, decoded.size());
+        for (int i = 0; i < source.size(); i++) {
+            LoanRepaymentSchedule expected = source.get(i);
+            LoanRepaymentSchedule actual = decoded.get(i);
+            assertEquals(expected.getInstallmentNumber(), actual.getInstallmentNumber());
+            assertEquals(0, expected.getEmiAmount().compareTo(actual.getEmiAmount()));
+            assertEquals(0, expected.getPrincipalAmount().compareTo(actual.getPrincipalAmount()));
+            assertEquals(0, expected.getInterestAmount().compareTo(actual.getInterestAmount()));
+            assertEquals(expected.getDueDate(), actual.getDueDate());
+            assertEquals(LoanRepaymentStatus.PENDING, actual.getStatus());
+            assertNull(actual.getPaidDate());
+            assertSame(loan, actual.getLoan());
+        }
+        // Well under the ~40 bytes per installment of four amount columns alone
+        assertTrue(packed.length < 360 * 16, "Packed size: " + packed.length);
+    }
+
+    @Test
+    void testUpdate_PatchesStateInPlace() {
+        List<LoanRepaymentSchedule> source = schedule(new BigDecimal("50000.00"), new BigDecimal("12"), 12, LocalDate.of(2025, 3, 5));
+        byte[] packed = PackedScheduleCodec.encode(source);
+        int length = packed.length;
+
+        LoanRepaymentSchedule first = PackedScheduleCodec.decodeInstallment(packed, null, 1);
+        first.setStatus(LoanRepaymentStatus.LATE_PAID);
+        first.setPaidDate(first.getDueDate().plusDays(9));
+        first.setLateFee(new BigDecimal("250.00"));
+        PackedScheduleCodec.update(packed, first);
+
+        assertEquals(length, packed.length);
+        assertEquals(2, PackedScheduleCodec.firstUnpaid(packed));
+
+        LoanRepaymentSchedule decoded = PackedScheduleCodec.decodeInstallment(packed, null, 1);
+        assertEquals(LoanRepaymentStatus.LATE_PAID, decoded.getStatus());
+        assertEquals(first.getDueDate().plusDays(9), decoded.getPaidDate());
+        assertEquals(new BigDecimal("250.00"), decoded.getLateFee());
+        assertEquals(0, decoded.getTotalAmountPaid().compareTo(decoded.getEmiAmount().add(new BigDecimal("250.00"))));
+
+        LoanRepaymentSchedule second = PackedScheduleCodec.decodeInstallment(packed, null, 2);
+        assertEquals(LoanRepaymentStatus.PENDING, second.getStatus());
+        assertEquals(0, second.getPrincipalAmount().compareTo(source.get(1).getPrincipalAmount()));
+    }
+
+    @Test
+    void testFirstUnpaid_SettledSchedule() {
+        List<LoanRepaymentSchedule> source = schedule(new BigDecimal("10000.00"), new BigDecimal("10"), 3, LocalDate.of(2025, 6, 1));
+        source.forEach(installment -> {
+            installment.setStatus(LoanRepaymentStatus.PAID);
+            installment.setPaidDate(installment.getDueDate());
+        });
+
+        assertEquals(-1, PackedScheduleCodec.firstUnpaid(PackedScheduleCodec.encode(source)));
+    }
+
+    @Test
+    void testEncode_RejectsOutOfOrderInstallments() {
+        List<LoanRepaymentSchedule> source = schedule(new BigDecimal("10000.00"), new BigDecimal("10"), 3, LocalDate.of(2025, 6, 1));
+        source.add(0, source.remove(2));
+
+        assertThrows(IllegalArgumentException.class, () -> PackedScheduleCodec.encode(source));
+    }
+
+    private static List<LoanRepaymentSchedule> schedule(BigDecimal principal, BigDecimal annualRate, int tenure, LocalDate firstDueDate) {
+        BigDecimal emi = LoanCalculatorUtil.calculateEMI(principal, annualRate, tenure);
+        AmortizationSchedule amortization = LoanCalculatorUtil.amortize(principal, annualRate, emi, tenure);
+        List<LoanRepaymentSchedule> installments = new ArrayList<>();
+        LocalDate dueDate = firstDueDate;
+        for (int i = 0; i < tenure; i++) {
+            installments.add(LoanRepaymentSchedule.builder()
+                    .installmentNumber(i + 1)
+                    .emiAmount(amortization.getEmi(i))
+                    .principalAmount(amortization.getPrincipal(i))
+                    .interestAmount(amortization.getInterest(i))
+                    .dueDate(dueDate)
+                    .status(LoanRepaymentStatus.PENDING)
+                    .lateFee(BigDecimal.ZERO)
+                    .build());
+            dueDate = dueDate.plusMonths(1);
+        }
+        return installments;
+    }
+}
@@ -0,0 +1,86 @@
+package com.loantrackr.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaymentAllocatorTest {
+
+    // EMI 8,560.75 each; the first two carry a late fee too
+    private static final List<PaymentAllocator.Installment> UNPAID = List.of(
+            installment(4, "500.00", "1200.00", "7360.75"),
+            installment(5, "500.00", "1126.40", "7434.35"),
+            installment(6, "0.00", "1052.06", "7508.69"));
+
+    @Test
+    void testAllocate_SettlesSeveralInstallmentsInOrder() {
+        PaymentAllocator.Result result = PaymentAllocator.allocate(UNPAID, BigDecimal.ZERO, new BigDecimal("18121.50"));
+
+        assertEquals(2, result.allocations().size());
+        assertEquals(2, result.settledInstallments());
+        assertAllocation(result.allocations().get(0), 4, "500.00", "1200.00", "7360.75", true);
+        assertAllocation(result.allocations().get(1), 5, "500.00", "1126.40", "7434.35", true);
+        assertEquals(0, result.partiallyPaid().signum());
+        assertEquals(0, result.unallocated().signum());
+    }
+
+    @Test
+    void testAllocate_PartialGoesToFeeThenInterestThenPrincipal() {
+        PaymentAllocator.Result result = PaymentAllocator.allocate(UNPAID, BigDecimal.ZERO, new BigDecimal("10061.00"));
+
+        assertEquals(1, result.settledInstallments());
+        assertAllocation(result.allocations().get(1), 5, "500.00", "500.25", "0.00", false);
+        assertEquals(0, new BigDecimal("1000.25").compareTo(result.partiallyPaid()));
+
+        // Only the fee and part of the interest: no principal reached
+        PaymentAllocator.Result feeOnly = PaymentAllocator.allocate(UNPAID, BigDecimal.ZERO, new BigDecimal("800.00"));
+        assertAllocation(feeOnly.allocations().get(0), 4, "500.00", "300.00", "0.00", false);
+    }
+
+    @Test
+    void testAllocate_ContinuesFromAmountAlreadyPaid() {
+        // 1,000.25 paid earlier: the fee and 500.25 of the interest
+        PaymentAllocator.Result result = PaymentAllocator.allocate(UNPAID.subList(1, 3), new BigDecimal("1000.25"), new BigDecimal("8000.00"));
+
+        assertAllocation(result.allocations().get(0), 5, "0.00", "626.15", "7373.85", false);
+        assertEquals(0, new BigDecimal("9000.25").compareTo(result.partiallyPaid()));
+
+        PaymentAllocator.Result rest = PaymentAllocator.allocate(UNPAID.subList(1, 3), new BigDecimal("9000.25"), new BigDecimal("60.50"));
+        assertAllocation(rest.allocations().get(0), 5, "0.00", "0.00", "60.50", true);
+        assertEquals(0, rest.partiallyPaid().signum());
+    }
+
+    @Test
+    void testAllocate_ReportsOverpayment() {
+        PaymentAllocator.Result result = PaymentAllocator.allocate(UNPAID, BigDecimal.ZERO, new BigDecimal("30000.00"));
+
+        assertEquals(3, result.settledInstallments());
+        assertEquals(0, new BigDecimal("3317.75").compareTo(result.unallocated()));
+    }
+
+    @Test
+    void testAllocate_RejectsInvalidAmounts() {
+        assertThrows(IllegalArgumentException.class,
+                () -> PaymentAllocator.allocate(UNPAID, BigDecimal.ZERO, new BigDecimal("-1")));
+        assertThrows(IllegalArgumentException.class,
+                () -> PaymentAllocator.allocate(UNPAID, new BigDecimal("9060.75"), BigDecimal.ONE));
+        assertThrows(IllegalArgumentException.class,
+                () -> PaymentAllocator.allocate(List.of(), BigDecimal.ONE, BigDecimal.ONE));
+    }
+
+    private static PaymentAllocator.Installment installment(int number, String lateFee, String interest, String principal) {
+        return new PaymentAllocator.Installment(number, new BigDecimal(lateFee), new BigDecimal(interest), new BigDecimal(principal));
+    }
+
+    private static void assertAllocation(PaymentAllocator.Allocation allocation, int number, String lateFee,
+                                         String interest, String principal, boolean settled) {
+        assertEquals(number, allocation.installmentNumber());
+        assertEquals(0, new BigDecimal(lateFee).compareTo(allocation.lateFee()), "late fee");
+        assertEquals(0, new BigDecimal(interest).compareTo(allocation.interest()), "interest");
+        assertEquals(0, new BigDecimal(principal).compareTo(allocation.principal()), "principal");
+        assertEquals(settled, allocation.settled());
+    }
+}
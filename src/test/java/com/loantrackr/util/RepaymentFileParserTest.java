@@ -0,0 +1,61 @@
+package com.loantrackr.util;
+
+import com.loantrackr.enums.PaymentStatus;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RepaymentFileParserTest {
+
+    @Test
+    void testParse_SuccessAndFailedRows() {
+        RepaymentFileParser.Row success = RepaymentFileParser.parse(2, "1042,7,8560.75,SUCCESS,NACH2507140001,2025-07-14,");
+        assertEquals(2, success.lineNumber());
+        assertEquals(1042, success.loanId());
+        assertEquals(Integer.valueOf(7), success.installmentNumber());
+        assertEquals(new BigDecimal("8560.75"), success.amount());
+        assertEquals(PaymentStatus.SUCCESS, success.status());
+        assertEquals("NACH2507140001", success.reference());
+        assertEquals(LocalDate.of(2025, 7, 14), success.debitDate());
+        assertNull(success.failureReason());
+
+        RepaymentFileParser.Row failed = RepaymentFileParser.parse(3, " 1043 ,, 4410.00 ,failed,NACH2507140002,2025-07-14,\"Insufficient funds, \"\"R01\"\"\"");
+        assertNull(failed.installmentNumber());
+        assertEquals(PaymentStatus.FAILED, failed.status());
+        assertEquals("Insufficient funds, \"R01\"", failed.failureReason());
+    }
+
+    @Test
+    void testParse_RejectsInvalidRows() {
+        assertThrows(IllegalArgumentException.class, () -> RepaymentFileParser.parse(2, "1042,7,8560.75,SUCCESS,NACH1"));
+        assertThrows(IllegalArgumentException.class, () -> RepaymentFileParser.parse(2, "abc,7,8560.75,SUCCESS,NACH1,2025-07-14,"));
+        assertThrows(IllegalArgumentException.class, () -> RepaymentFileParser.parse(2, "1042,7,8560.755,SUCCESS,NACH1,2025-07-14,"));
+        assertThrows(IllegalArgumentException.class, () -> RepaymentFileParser.parse(2, "1042,7,-1,SUCCESS,NACH1,2025-07-14,"));
+        assertThrows(IllegalArgumentException.class, () -> RepaymentFileParser.parse(2, "1042,0,8560.75,SUCCESS,NACH1,2025-07-14,"));
+        assertThrows(IllegalArgumentException.class, () -> RepaymentFileParser.parse(2, "1042,7,8560.75,PENDING,NACH1,2025-07-14,"));
+        assertThrows(IllegalArgumentException.class, () -> RepaymentFileParser.parse(2, "1042,7,8560.75,SUCCESS, ,2025-07-14,"));
+        assertThrows(IllegalArgumentException.class, () -> RepaymentFileParser.parse(2, "1042,7,8560.75,SUCCESS,NACH1,14/07/2025,"));
+        assertThrows(IllegalArgumentException.class, () -> RepaymentFileParser.parse(2, "1042,7,8560.75,SUCCESS,NACH1,2025-07-14,\"open"));
+    }
+
+    @Test
+    void testCheckHeader() {
+        assertDoesNotThrow(() -> RepaymentFileParser.checkHeader("loan_id,installment_number,amount,status,reference,debit_date,failure_reason"));
+        assertDoesNotThrow(() -> RepaymentFileParser.checkHeader("\uFEFFLOAN_ID, Installment_Number,amount,status,reference,debit_date,failure_reason"));
+        assertThrows(IllegalArgumentException.class, () -> RepaymentFileParser.checkHeader(null));
+        assertThrows(IllegalArgumentException.class, () -> RepaymentFileParser.checkHeader("loan_id,amount,status,reference,debit_date"));
+    }
+
+    @Test
+    void testQuote_RoundTripsThroughSplit() {
+        assertEquals("plain", RepaymentFileParser.quote("plain"));
+        assertEquals("", RepaymentFileParser.quote(null));
+
+        String value = "Amount must be exactly 8,560.75 (\"EMI\")";
+        assertEquals(List.of("1", value), RepaymentFileParser.split("1," + RepaymentFileParser.quote(value)));
+    }
+}
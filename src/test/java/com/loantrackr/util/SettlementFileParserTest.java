@@ -0,0 +1,43 @@
+package com.loantrackr.util;
+
+import com.loantrackr.enums.PaymentStatus;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SettlementFileParserTest {
+
+    @Test
+    void testParse_ValidRows() {
+        SettlementFileParser.Row row = SettlementFileParser.parse(2, "GW1752470400123_482913,8560.75,SUCCESS");
+        assertEquals(2, row.lineNumber());
+        assertEquals("GW1752470400123_482913", row.gatewayTransactionId());
+        assertEquals(new BigDecimal("8560.75"), row.amount());
+        assertEquals(PaymentStatus.SUCCESS, row.status());
+
+        SettlementFileParser.Row quoted = SettlementFileParser.parse(3, "\" GW1752470400377_120044 \", 4410 ,cancelled");
+        assertEquals("GW1752470400377_120044", quoted.gatewayTransactionId());
+        assertEquals(0, new BigDecimal("4410.00").compareTo(quoted.amount()));
+        assertEquals(PaymentStatus.CANCELLED, quoted.status());
+    }
+
+    @Test
+    void testParse_RejectsInvalidRows() {
+        assertThrows(IllegalArgumentException.class, () -> SettlementFileParser.parse(2, "GW1,100.00"));
+        assertThrows(IllegalArgumentException.class, () -> SettlementFileParser.parse(2, " ,100.00,SUCCESS"));
+        assertThrows(IllegalArgumentException.class, () -> SettlementFileParser.parse(2, "GW1,abc,SUCCESS"));
+        assertThrows(IllegalArgumentException.class, () -> SettlementFileParser.parse(2, "GW1,-5,SUCCESS"));
+        assertThrows(IllegalArgumentException.class, () -> SettlementFileParser.parse(2, "GW1,1.005,SUCCESS"));
+        assertThrows(IllegalArgumentException.class, () -> SettlementFileParser.parse(2, "GW1,100.00,SETTLED"));
+    }
+
+    @Test
+    void testCheckHeader() {
+        assertDoesNotThrow(() -> SettlementFileParser.checkHeader("gateway_transaction_id,amount,status"));
+        assertDoesNotThrow(() -> SettlementFileParser.checkHeader("\uFEFFGateway_Transaction_ID, Amount ,STATUS"));
+        assertThrows(IllegalArgumentException.class, () -> SettlementFileParser.checkHeader(null));
+        assertThrows(IllegalArgumentException.class, () -> SettlementFileParser.checkHeader("gateway_transaction_id,status,amount"));
+    }
+}
@@ -0,0 +1,88 @@
+package com.loantrackr.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SimulatedLatencyTest {
+
+    private static final long MS = 1_000_000;
+
+    @Test
+    void testSample_FixedAndUniform() {
+        SimulatedLatency fixed = new SimulatedLatency(SimulatedLatency.Distribution.FIXED,
+                Duration.ZERO, Duration.ZERO, Duration.ofMillis(40), 0, 0, Duration.ZERO);
+        assertEquals(40 * MS, fixed.sampleNanos(new SplittableRandom(1)));
+
+        SimulatedLatency uniform = new SimulatedLatency(SimulatedLatency.Distribution.UNIFORM,
+                Duration.ofSeconds(1), Duration.ofSeconds(3), Duration.ofSeconds(2), 0, 0, Duration.ZERO);
+        SplittableRandom random = new SplittableRandom(7);
+        for (int i = 0; i < 10_000; i++) {
+            long nanos = uniform.sampleNanos(random);
+            assertTrue(nanos >= 1000 * MS && nanos < 3000 * MS);
+        }
+    }
+
+    @Test
+    void testSample_LogNormalCentersOnMedianWithinBounds() {
+        SimulatedLatency latency = new SimulatedLatency(SimulatedLatency.Distribution.LOG_NORMAL,
+                Duration.ofMillis(10), Duration.ofSeconds(2), Duration.ofMillis(200), 0.6, 0, Duration.ZERO);
+        SplittableRandom random = new SplittableRandom(42);
+
+        long[] samples = new long[20_001];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = latency.sampleNanos(random);
+            assertTrue(samples[i] >= 10 * MS && samples[i] <= 2000 * MS);
+        }
+        Arrays.sort(samples);
+        long median = samples[samples.length / 2];
+        assertTrue(median > 190 * MS && median < 210 * MS, "median " + median);
+        // Right-skewed: the 99th percentile is far further above the median than the 1st is below
+        assertTrue(samples[samples.length * 99 / 100] - median > 2 * (median - samples[samples.length / 100]));
+    }
+
+    @Test
+    void testSample_SpikesAddToTheShareOfCallsConfigured() {
+        SimulatedLatency latency = new SimulatedLatency(SimulatedLatency.Distribution.FIXED,
+                Duration.ZERO, Duration.ZERO, Duration.ofMillis(50), 0, 0.02, Duration.ofSeconds(6));
+        SplittableRandom random = new SplittableRandom(3);
+
+        int spikes = 0;
+        for (int i = 0; i < 50_000; i++) {
+            long nanos = latency.sampleNanos(random);
+            if (nanos == 6050 * MS) {
+                spikes++;
+            } else {
+                assertEquals(50 * MS, nanos);
+            }
+        }
+        assertTrue(spikes > 850 && spikes < 1150, "spikes " + spikes);
+    }
+
+    @Test
+    void testSample_SameSeedSameDraws() {
+        SimulatedLatency latency = new SimulatedLatency(SimulatedLatency.Distribution.LOG_NORMAL,
+                Duration.ZERO, Duration.ofSeconds(10), Duration.ofMillis(300), 1.0, 0.1, Duration.ofSeconds(4));
+        SplittableRandom first = new SplittableRandom(99);
+        SplittableRandom second = new SplittableRandom(99);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(latency.sampleNanos(first), latency.sampleNanos(second));
+        }
+    }
+
+    @Test
+    void testConstructor_RejectsInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new SimulatedLatency(SimulatedLatency.Distribution.UNIFORM,
+                Duration.ofSeconds(3), Duration.ofSeconds(1), Duration.ofSeconds(2), 0, 0, Duration.ZERO));
+        assertThrows(IllegalArgumentException.class, () -> new SimulatedLatency(SimulatedLatency.Distribution.FIXED,
+                Duration.ZERO, Duration.ZERO, Duration.ofMillis(-1), 0, 0, Duration.ZERO));
+        assertThrows(IllegalArgumentException.class, () -> new SimulatedLatency(SimulatedLatency.Distribution.FIXED,
+                Duration.ZERO, Duration.ZERO, Duration.ZERO, 0, 1.5, Duration.ZERO));
+        assertThrows(IllegalArgumentException.class, () -> new SimulatedLatency(null,
+                Duration.ZERO, Duration.ZERO, Duration.ZERO, 0, 0, Duration.ZERO));
+    }
+}
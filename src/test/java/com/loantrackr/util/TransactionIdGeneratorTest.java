@@ -0,0 +1,117 @@
+package com.loantrackr.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionIdGeneratorTest {
+
+    private static final long NOW = TransactionIdGenerator.EPOCH_MILLIS + 200L * 24 * 3600 * 1000;
+
+    @Test
+    void testNextId_UniqueAcrossThreads() throws InterruptedException {
+        TransactionIdGenerator generator = new TransactionIdGenerator(7);
+        int threads = 8;
+        int perThread = 500_000;
+        long[][] generated = new long[threads][perThread];
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            long[] ids = generated[t];
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < ids.length; i++) {
+                    ids[i] = generator.nextId();
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        long[] all = new long[threads * perThread];
+        for (int t = 0; t < threads; t++) {
+            long[] ids = generated[t];
+            for (int i = 1; i < ids.length; i++) {
+                assertTrue(ids[i] > ids[i - 1], "IDs must increase within a thread");
+            }
+            System.arraycopy(ids, 0, all, t * perThread, perThread);
+        }
+        Arrays.sort(all);
+        for (int i = 1; i < all.length; i++) {
+            assertNotEquals(all[i - 1], all[i], "Duplicate ID");
+        }
+        assertEquals(7, TransactionIdGenerator.nodeId(all[0]));
+    }
+
+    @Test
+    void testNextId_BorrowsAheadWhenSequenceRunsOut() {
+        TransactionIdGenerator generator = new TransactionIdGenerator(1, () -> NOW);
+
+        long previous = generator.nextId();
+        assertEquals(NOW, TransactionIdGenerator.timestampMillis(previous));
+        for (int i = 1; i < 10_000; i++) {
+            long id = generator.nextId();
+            assertTrue(id > previous);
+            previous = id;
+        }
+        // 10,000 IDs in a frozen millisecond: 4096 per millisecond, so two borrowed
+        assertEquals(NOW + 2, TransactionIdGenerator.timestampMillis(previous));
+    }
+
+    @Test
+    void testNextId_KeepsIncreasingWhenClockStepsBack() {
+        AtomicLong clock = new AtomicLong(NOW);
+        TransactionIdGenerator generator = new TransactionIdGenerator(3, clock::get);
+
+        long before = generator.nextId();
+        clock.set(NOW - 5_000);
+        long after = generator.nextId();
+        assertTrue(after > before);
+        assertEquals(NOW, TransactionIdGenerator.timestampMillis(after));
+
+        clock.set(NOW + 1_000);
+        assertEquals(NOW + 1_000, TransactionIdGenerator.timestampMillis(generator.nextId()));
+    }
+
+    @Test
+    void testEncode_FixedWidthAndOrderedLikeTheNumbers() {
+        long[] ids = {0, 1, 31, 32, 1L << 40, (NOW - TransactionIdGenerator.EPOCH_MILLIS) << 22, Long.MAX_VALUE};
+        for (int i = 0; i < ids.length; i++) {
+            String encoded = TransactionIdGenerator.encode(ids[i]);
+            assertEquals(13, encoded.length());
+            if (i > 0) {
+                assertTrue(encoded.compareTo(TransactionIdGenerator.encode(ids[i - 1])) > 0);
+            }
+        }
+        assertEquals("0000000000000", TransactionIdGenerator.encode(0));
+        assertEquals("000000000000Z", TransactionIdGenerator.encode(31));
+        assertEquals("7ZZZZZZZZZZZZ", TransactionIdGenerator.encode(Long.MAX_VALUE));
+
+        TransactionIdGenerator generator = new TransactionIdGenerator(0);
+        String first = generator.next();
+        assertTrue(generator.next().compareTo(first) > 0);
+    }
+
+    @Test
+    void testConstructor_RejectsNodeIdOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> new TransactionIdGenerator(-1));
+        assertThrows(IllegalArgumentException.class, () -> new TransactionIdGenerator(TransactionIdGenerator.MAX_NODE_ID + 1));
+        assertDoesNotThrow(() -> new TransactionIdGenerator(TransactionIdGenerator.MAX_NODE_ID));
+    }
+}